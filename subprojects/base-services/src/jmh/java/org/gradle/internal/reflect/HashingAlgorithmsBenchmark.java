@@ -23,6 +23,9 @@
 import org.bouncycastle.jcajce.provider.digest.Blake2b;
 import org.bouncycastle.jcajce.provider.digest.MD5;
 import org.bouncycastle.jcajce.provider.digest.SHA1;
+import org.gradle.internal.hash.ChunkedStreamHasher;
+import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.hash.StreamHasher;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Level;
@@ -35,6 +38,7 @@
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.infra.Blackhole;
 
+import java.io.ByteArrayInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Map;
@@ -62,15 +66,18 @@ private static MessageDigest getDigest(String name) {
         .put("sha1.bc", new MessageDigestHashProcessorFactory(new SHA1.Digest()))
         .put("blake2b.bc", new MessageDigestHashProcessorFactory(new Blake2b.Blake2b160()))
         .put("murmur3.guava", new GuavaProcessorFactory(Hashing.murmur3_128()))
+        .put("md5.gradle", new StreamHasherProcessorFactory(new DefaultStreamHasher()))
+        .put("chunked-md5.gradle", new StreamHasherProcessorFactory(new ChunkedStreamHasher(org.gradle.internal.hash.Hashing.md5(), "md5")))
+        .put("chunked-murmur3.gradle", new StreamHasherProcessorFactory(new ChunkedStreamHasher(org.gradle.internal.hash.Hashing.murmur3(), "murmur3")))
         .build();
 
     Random random = new Random(1234L);
 
-    @Param({"16", "1024", "65536"})
+    @Param({"16", "1024", "65536", "16777216"})
     int hashSize;
 
     // @Param({"md5.java", "md5.bc", "sha1.java", "sha1.bc", "blake2b.bc"})
-    @Param({"md5.java", "murmur3.guava"})
+    @Param({"md5.java", "murmur3.guava", "md5.gradle", "chunked-md5.gradle", "chunked-murmur3.gradle"})
     String type;
 
     byte[] input;
@@ -155,4 +162,17 @@ public void process(byte[] input, Blackhole blackhole) {
             blackhole.consume(hasher.hash());
         }
     }
+
+    private static class StreamHasherProcessorFactory implements HashProcessorFactory {
+        private final StreamHasher streamHasher;
+
+        public StreamHasherProcessorFactory(StreamHasher streamHasher) {
+            this.streamHasher = streamHasher;
+        }
+
+        @Override
+        public HashProcessor create() {
+            return (input, blackhole) -> blackhole.consume(streamHasher.hash(new ByteArrayInputStream(input)));
+        }
+    }
 }
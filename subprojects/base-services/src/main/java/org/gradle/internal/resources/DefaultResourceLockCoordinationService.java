@@ -22,11 +22,23 @@
 import org.gradle.internal.UncheckedException;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Serializes all resource lock state changes through a single lock, so that several resource locks can be changed atomically.
+ *
+ * Threads waiting to retry a transform are woken up on any state change, except for threads that are only waiting
+ * to acquire an exclusive lock, which are woken up when that lock is released.
+ */
 public class DefaultResourceLockCoordinationService implements ResourceLockCoordinationService {
-    private final Object lock = new Object();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition stateChanged = lock.newCondition();
+    private final Map<ResourceLock, Condition> lockReleased = new HashMap<ResourceLock, Condition>();
     private final ThreadLocal<List<ResourceLockState>> currentState = new ThreadLocal<List<ResourceLockState>>() {
         @Override
         protected List<ResourceLockState> initialValue() {
@@ -39,36 +51,50 @@ public boolean withStateLock(Transformer<ResourceLockState.Disposition, Resource
         while (true) {
             DefaultResourceLockState resourceLockState = new DefaultResourceLockState();
             ResourceLockState.Disposition disposition;
-            synchronized (lock) {
-                try {
-                    currentState.get().add(resourceLockState);
-                    disposition = stateLockAction.transform(resourceLockState);
-
-                    switch (disposition) {
-                        case RETRY:
-                            resourceLockState.releaseLocks();
-                            try {
-                                lock.wait();
-                            } catch (InterruptedException e) {
-                                throw UncheckedException.throwAsUncheckedException(e);
-                            }
-                            break;
-                        case FINISHED:
-                            maybeNotifyStateChange(resourceLockState);
-                            return true;
-                        case FAILED:
-                            resourceLockState.releaseLocks();
-                            return false;
-                        default:
-                            throw new IllegalArgumentException("Unhandled disposition type: " + disposition.name());
-                    }
-                } catch (Throwable t) {
-                    resourceLockState.releaseLocks();
-                    throw UncheckedException.throwAsUncheckedException(t);
-                } finally {
-                    currentState.get().remove(resourceLockState);
+            lock.lock();
+            try {
+                currentState.get().add(resourceLockState);
+                disposition = stateLockAction.transform(resourceLockState);
+
+                switch (disposition) {
+                    case RETRY:
+                        resourceLockState.releaseLocks();
+                        awaitStateChange(resourceLockState);
+                        break;
+                    case FINISHED:
+                        maybeNotifyStateChange(resourceLockState);
+                        return true;
+                    case FAILED:
+                        resourceLockState.releaseLocks();
+                        return false;
+                    default:
+                        throw new IllegalArgumentException("Unhandled disposition type: " + disposition.name());
                 }
+            } catch (Throwable t) {
+                resourceLockState.releaseLocks();
+                throw UncheckedException.throwAsUncheckedException(t);
+            } finally {
+                currentState.get().remove(resourceLockState);
+                lock.unlock();
+            }
+        }
+    }
+
+    private void awaitStateChange(DefaultResourceLockState resourceLockState) {
+        Condition condition;
+        if (resourceLockState.waitingFor != null) {
+            condition = lockReleased.get(resourceLockState.waitingFor);
+            if (condition == null) {
+                condition = lock.newCondition();
+                lockReleased.put(resourceLockState.waitingFor, condition);
             }
+        } else {
+            condition = stateChanged;
+        }
+        try {
+            condition.await();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
         }
     }
 
@@ -85,14 +111,29 @@ public ResourceLockState getCurrent() {
 
     private void maybeNotifyStateChange(DefaultResourceLockState resourceLockState) {
         if (resourceLockState.hasUnlockedResources()) {
-            notifyStateChange();
+            stateChanged.signalAll();
+            if (!lockReleased.isEmpty()) {
+                for (ResourceLock unlockedResource : resourceLockState.unlockedResources) {
+                    Condition condition = lockReleased.remove(unlockedResource);
+                    if (condition != null) {
+                        condition.signalAll();
+                    }
+                }
+            }
         }
     }
 
     @Override
     public void notifyStateChange() {
-        synchronized (lock) {
-            lock.notifyAll();
+        lock.lock();
+        try {
+            stateChanged.signalAll();
+            for (Condition condition : lockReleased.values()) {
+                condition.signalAll();
+            }
+            lockReleased.clear();
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -100,6 +141,10 @@ private static class DefaultResourceLockState implements ResourceLockState {
         private Set<ResourceLock> lockedResources;
         private Set<ResourceLock> unlockedResources;
         boolean rollback;
+        /**
+         * The only lock that has to be released before the transform can make progress, if known.
+         */
+        ResourceLock waitingFor;
 
         @Override
         public void registerLocked(ResourceLock resourceLock) {
@@ -196,7 +241,14 @@ private static class AcquireLocks implements Transformer<ResourceLockState.Dispo
         public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
             for (ResourceLock resourceLock : resourceLocks) {
                 if (!resourceLock.tryLock()) {
-                    return blocking ? ResourceLockState.Disposition.RETRY : ResourceLockState.Disposition.FAILED;
+                    if (!blocking) {
+                        return ResourceLockState.Disposition.FAILED;
+                    }
+                    if (resourceLock instanceof ExclusiveAccessResourceLock && resourceLockState instanceof DefaultResourceLockState) {
+                        // Whether an exclusive lock can be acquired does not depend on any other lock, so only wait for it to be released
+                        ((DefaultResourceLockState) resourceLockState).waitingFor = resourceLock;
+                    }
+                    return ResourceLockState.Disposition.RETRY;
                 }
             }
             return ResourceLockState.Disposition.FINISHED;
@@ -108,6 +108,38 @@ class DefaultResourceLockCoordinationServiceTest extends ConcurrentSpec {
         lock2.lockedState
     }
 
+    def "a thread waiting for an exclusive lock is only woken up when that lock is released"() {
+        def exclusiveLock = new ExclusiveAccessResourceLock("exclusive", coordinationService, Mock(Action), Mock(Action))
+        def otherLock = resourceLock("other", true, true)
+        def attempts = 0
+
+        when:
+        async {
+            coordinationService.withStateLock(tryLock(exclusiveLock))
+            start {
+                coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+                    @Override
+                    ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                        attempts++
+                        instant."attempt${attempts}"
+                        return lock(exclusiveLock).transform(resourceLockState)
+                    }
+                })
+                instant.acquired
+                coordinationService.withStateLock(unlock(exclusiveLock))
+            }
+
+            thread.blockUntil.attempt1
+            coordinationService.withStateLock(unlock(otherLock))
+            coordinationService.withStateLock(unlock(exclusiveLock))
+            thread.blockUntil.acquired
+        }
+
+        then:
+        attempts == 2
+        !otherLock.lockedState
+    }
+
     def "can nest multiple calls to withStateLock"() {
         def lock = [
             resourceLock("lock1"),
@@ -19,6 +19,8 @@ plugins {
 }
 
 dependencies {
+    api(project(":hashing"))
+
     implementation(project(":baseAnnotations"))
     implementation(project(":files"))
     implementation(library("slf4j_api")) { version { require(libraryVersion("slf4j_api")) } }
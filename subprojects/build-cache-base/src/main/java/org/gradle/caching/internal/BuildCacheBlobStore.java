@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.caching.internal;
+
+import org.gradle.internal.hash.HashCode;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Stores file contents by their content hash, so that build cache entries can share identical output files.
+ */
+public interface BuildCacheBlobStore {
+
+    /**
+     * Returns whether content with the given hash is available, marking it as recently used if it is.
+     */
+    boolean contains(HashCode contentHash);
+
+    /**
+     * Stores the content of the given file under the given hash, unless content with that hash is already present.
+     */
+    void store(HashCode contentHash, File source) throws IOException;
+
+    /**
+     * Copies the content with the given hash to the target file.
+     *
+     * @throws MissingBuildCacheBlobException if no content with the given hash is present.
+     */
+    void restore(HashCode contentHash, File target) throws IOException;
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.caching.internal;
+
+import org.gradle.internal.hash.HashCode;
+
+/**
+ * Thrown when a build cache entry refers to content that is no longer present in the {@link BuildCacheBlobStore}.
+ *
+ * This is raised before any output is touched, so the entry can be treated as a cache miss.
+ */
+public class MissingBuildCacheBlobException extends RuntimeException {
+    public MissingBuildCacheBlobException(HashCode contentHash) {
+        super("Build cache content " + contentHash + " is missing");
+    }
+}
@@ -19,12 +19,14 @@ package org.gradle.caching.http.internal
 import org.apache.http.HttpHeaders
 import org.apache.http.HttpStatus
 import org.gradle.api.UncheckedIOException
+import org.gradle.caching.BuildCacheEntryReader
 import org.gradle.caching.BuildCacheEntryWriter
 import org.gradle.caching.BuildCacheException
 import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheService
 import org.gradle.caching.BuildCacheServiceFactory
 import org.gradle.caching.http.HttpBuildCache
+import org.gradle.caching.internal.BatchingBuildCacheService
 import org.gradle.internal.hash.HashCode
 import org.gradle.internal.resource.transport.http.DefaultSslContextFactory
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
@@ -268,6 +270,89 @@ class HttpBuildCacheServiceTest extends Specification {
         cache.store(key, writer("".bytes))
     }
 
+    def "does not batch loads until the server advertises support"() {
+        def otherKey = key("abcdef01234567")
+        server.expectGetMissing("/cache/${key.hashCode}")
+        server.expectGetMissing("/cache/${otherKey.hashCode}")
+
+        when:
+        def batching = cache as BatchingBuildCacheService
+        def loaded = []
+        batching.loadAll([key, otherKey]) { k -> { input -> loaded << k } as BuildCacheEntryReader }
+
+        then:
+        !batching.batchingSupported
+        loaded.empty
+    }
+
+    def "loads multiple entries with a single request once the server advertises support"() {
+        def otherKey = key("abcdef01234567")
+        def missingKey = key("fedcba76543210")
+        server.expect("/cache/${key.hashCode}", ["GET"], new HttpServer.ActionSupport("advertise batch support") {
+            void handle(HttpServletRequest request, HttpServletResponse response) {
+                response.setHeader(HttpBuildCacheService.BATCH_LOAD_HEADER, "100")
+                response.setStatus(HttpStatus.SC_NOT_FOUND)
+            }
+        })
+        server.expect("/cache/${HttpBuildCacheService.BATCH_LOAD_PATH}", ["POST"], new HttpServer.ActionSupport("batch load") {
+            void handle(HttpServletRequest request, HttpServletResponse response) {
+                assert request.getHeader(HttpHeaders.ACCEPT) == HttpBuildCacheService.MULTIPART_CONTENT_TYPE
+                assert request.inputStream.text.readLines() == [key.hashCode, otherKey.hashCode, missingKey.hashCode]
+                response.setStatus(200)
+                response.setContentType("${HttpBuildCacheService.MULTIPART_CONTENT_TYPE}; boundary=entry-boundary")
+                response.outputStream << multipart("entry-boundary", [(key.hashCode): "Data", (otherKey.hashCode): "Other data"])
+            }
+        })
+
+        when:
+        cache.load(key) { input -> }
+
+        then:
+        (cache as BatchingBuildCacheService).batchingSupported
+
+        when:
+        def loaded = [:]
+        (cache as BatchingBuildCacheService).loadAll([key, otherKey, missingKey]) { k -> { input -> loaded[k.hashCode] = input.text } as BuildCacheEntryReader }
+
+        then:
+        loaded == [(key.hashCode): "Data", (otherKey.hashCode): "Other data"]
+    }
+
+    private static String multipart(String boundary, Map<String, String> entries) {
+        def body = new StringBuilder("preamble\r\n")
+        entries.each { hash, content ->
+            body << "--${boundary}\r\n"
+            body << "Content-Type: ${HttpBuildCacheService.BUILD_CACHE_CONTENT_TYPE}\r\n"
+            body << "${MultipartBuildCacheEntryReader.KEY_HEADER}: ${hash}\r\n"
+            body << "Content-Length: ${content.length()}\r\n"
+            body << "\r\n"
+            body << content
+            body << "\r\n"
+        }
+        body << "--${boundary}--\r\n"
+        return body.toString()
+    }
+
+    private static BuildCacheKey key(String hash) {
+        def hashCode = HashCode.fromString(hash)
+        return new BuildCacheKey() {
+            @Override
+            String getHashCode() {
+                return hashCode.toString()
+            }
+
+            @Override
+            byte[] toByteArray() {
+                return hashCode.toByteArray()
+            }
+
+            @Override
+            String getDisplayName() {
+                return getHashCode()
+            }
+        }
+    }
+
     def "does preemptive authentication"() {
         def configuration = new HttpBuildCache()
         configuration.url = server.uri.resolve("/cache/")
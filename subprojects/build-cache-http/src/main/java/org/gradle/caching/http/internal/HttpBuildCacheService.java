@@ -17,20 +17,25 @@
 package org.gradle.caching.http.internal;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.NonRepeatableRequestException;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.caching.BuildCacheEntryReader;
 import org.gradle.caching.BuildCacheEntryWriter;
 import org.gradle.caching.BuildCacheException;
 import org.gradle.caching.BuildCacheKey;
-import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.internal.BatchingBuildCacheService;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.resource.transport.http.HttpClientHelper;
 import org.gradle.internal.resource.transport.http.HttpClientResponse;
@@ -42,14 +47,31 @@
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Build cache implementation that delegates to a service accessible via HTTP.
+ *
+ * <p>
+ * Servers can advertise support for multi-key loads by sending the {@value #BATCH_LOAD_HEADER} header with any response,
+ * its value being the maximum number of keys accepted per request.
+ * Once advertised, entries are requested with a {@code POST} to {@value #BATCH_LOAD_PATH} relative to the cache root,
+ * with the requested cache keys as the body, one per line.
+ * The server responds with a {@code multipart/mixed} body containing one part for each found entry,
+ * see {@link MultipartBuildCacheEntryReader}.
+ * Entries missing from the response are cache misses.
+ * </p>
  */
-public class HttpBuildCacheService implements BuildCacheService {
+public class HttpBuildCacheService implements BatchingBuildCacheService {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpBuildCacheService.class);
     static final String BUILD_CACHE_CONTENT_TYPE = "application/vnd.gradle.build-cache-artifact.v1";
+    static final String BATCH_LOAD_HEADER = "X-Gradle-Build-Cache-Batch-Load";
+    static final String BATCH_LOAD_PATH = "batch";
+    static final String MULTIPART_CONTENT_TYPE = "multipart/mixed";
 
     private static final Set<Integer> FATAL_HTTP_ERROR_CODES = ImmutableSet.of(
         HttpStatus.SC_USE_PROXY,
@@ -65,6 +87,7 @@ public class HttpBuildCacheService implements BuildCacheService {
     private final URI root;
     private final HttpClientHelper httpClientHelper;
     private final HttpBuildCacheRequestCustomizer requestCustomizer;
+    private volatile int maxBatchSize;
 
     public HttpBuildCacheService(HttpClientHelper httpClientHelper, URI url, HttpBuildCacheRequestCustomizer requestCustomizer) {
         this.requestCustomizer = requestCustomizer;
@@ -87,6 +110,7 @@ public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws Buil
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Response for GET {}: {}", safeUri(uri), statusLine);
             }
+            recordBatchSupport(response);
             int statusCode = statusLine.getStatusCode();
             if (isHttpSuccess(statusCode)) {
                 reader.readFrom(response.getContent());
@@ -106,6 +130,88 @@ public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws Buil
         }
     }
 
+    @Override
+    public boolean isBatchingSupported() {
+        return maxBatchSize > 1;
+    }
+
+    @Override
+    public void loadAll(Collection<BuildCacheKey> keys, Function<BuildCacheKey, BuildCacheEntryReader> readers) throws BuildCacheException {
+        int batchSize = maxBatchSize;
+        if (batchSize <= 1) {
+            for (BuildCacheKey key : keys) {
+                load(key, readers.apply(key));
+            }
+            return;
+        }
+        for (List<BuildCacheKey> batch : Iterables.partition(keys, batchSize)) {
+            if (batch.size() == 1) {
+                BuildCacheKey key = batch.get(0);
+                load(key, readers.apply(key));
+            } else {
+                loadBatch(batch, readers);
+            }
+        }
+    }
+
+    private void loadBatch(List<BuildCacheKey> keys, Function<BuildCacheKey, BuildCacheEntryReader> readers) {
+        Map<String, BuildCacheKey> keysByHash = Maps.newHashMapWithExpectedSize(keys.size());
+        StringBuilder body = new StringBuilder();
+        for (BuildCacheKey key : keys) {
+            keysByHash.put(key.getHashCode(), key);
+            body.append(key.getHashCode()).append('\n');
+        }
+
+        final URI uri = root.resolve("./" + BATCH_LOAD_PATH);
+        HttpPost httpPost = new HttpPost(uri);
+        httpPost.addHeader(HttpHeaders.ACCEPT, MULTIPART_CONTENT_TYPE);
+        httpPost.setEntity(new StringEntity(body.toString(), ContentType.TEXT_PLAIN));
+        requestCustomizer.customize(httpPost);
+
+        try (HttpClientResponse response = httpClientHelper.performHttpRequest(httpPost)) {
+            StatusLine statusLine = response.getStatusLine();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Response for POST {} ({} keys): {}", safeUri(uri), keys.size(), statusLine);
+            }
+            recordBatchSupport(response);
+            int statusCode = statusLine.getStatusCode();
+            if (isHttpSuccess(statusCode)) {
+                MultipartBuildCacheEntryReader multipartReader = MultipartBuildCacheEntryReader.create(response.getHeader(HttpHeaders.CONTENT_TYPE), response.getContent());
+                if (multipartReader == null) {
+                    throw new BuildCacheException(String.format("Loading entries from '%s' returned unexpected content type: %s", safeUri(uri), response.getHeader(HttpHeaders.CONTENT_TYPE)));
+                }
+                multipartReader.readEntries(hash -> {
+                    BuildCacheKey key = keysByHash.get(hash);
+                    if (key == null) {
+                        throw new BuildCacheException(String.format("Loading entries from '%s' returned an entry for unexpected key %s", safeUri(uri), hash));
+                    }
+                    return readers.apply(key);
+                });
+            } else {
+                String defaultMessage = String.format("Loading entries from '%s' response status %d: %s", safeUri(uri), statusCode, statusLine.getReasonPhrase());
+                if (isRedirect(statusCode)) {
+                    handleRedirect(uri, response, statusCode, defaultMessage, "loading entries from");
+                } else {
+                    throwHttpStatusCodeException(statusCode, defaultMessage);
+                }
+            }
+        } catch (IOException e) {
+            throw wrap(e);
+        }
+    }
+
+    private void recordBatchSupport(HttpClientResponse response) {
+        String header = response.getHeader(BATCH_LOAD_HEADER);
+        if (header == null) {
+            return;
+        }
+        try {
+            maxBatchSize = Integer.parseInt(header.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.debug("Ignoring invalid {} header value '{}'", BATCH_LOAD_HEADER, header);
+        }
+    }
+
     private boolean handleRedirect(URI uri, HttpClientResponse response, int statusCode, String defaultMessage, String action) {
         String locationHeader = response.getHeader(HttpHeaders.LOCATION);
         if (locationHeader == null) {
@@ -161,6 +267,7 @@ public boolean isStreaming() {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Response for PUT {}: {}", safeUri(uri), statusLine);
             }
+            recordBatchSupport(response);
             int statusCode = statusLine.getStatusCode();
             if (!isHttpSuccess(statusCode)) {
                 String defaultMessage = String.format("Storing entry at '%s' response status %d: %s", safeUri(uri), statusCode, statusLine.getReasonPhrase());
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.http.internal;
+
+import com.google.common.io.ByteStreams;
+import org.apache.http.HttpHeaders;
+import org.apache.http.entity.ContentType;
+import org.gradle.caching.BuildCacheEntryReader;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Streams the build cache entries contained in a {@code multipart/mixed} response body.
+ *
+ * <p>
+ * Every part must carry the cache key of its entry in the {@value #KEY_HEADER} header and declare its size with a {@code Content-Length} header.
+ * Parts are handed to their readers as they are received, without buffering them.
+ * </p>
+ */
+class MultipartBuildCacheEntryReader {
+    static final String KEY_HEADER = "X-Gradle-Build-Cache-Key";
+
+    private static final int MAX_LINE_LENGTH = 8192;
+
+    private final InputStream input;
+    private final String delimiter;
+    private final String closeDelimiter;
+
+    private MultipartBuildCacheEntryReader(InputStream input, String boundary) {
+        this.input = new BufferedInputStream(input);
+        this.delimiter = "--" + boundary;
+        this.closeDelimiter = delimiter + "--";
+    }
+
+    /**
+     * Creates a reader for the given response body, or returns {@code null} when the content type is not {@code multipart/mixed}.
+     */
+    @Nullable
+    static MultipartBuildCacheEntryReader create(@Nullable String contentType, InputStream input) {
+        if (contentType == null) {
+            return null;
+        }
+        ContentType parsed = ContentType.parse(contentType);
+        String boundary = parsed.getParameter("boundary");
+        if (!HttpBuildCacheService.MULTIPART_CONTENT_TYPE.equalsIgnoreCase(parsed.getMimeType()) || boundary == null || boundary.isEmpty()) {
+            return null;
+        }
+        return new MultipartBuildCacheEntryReader(input, boundary);
+    }
+
+    /**
+     * Reads all entries, passing each to the reader for its cache key.
+     */
+    void readEntries(Function<String, BuildCacheEntryReader> readers) throws IOException {
+        if (!skipToFirstDelimiter()) {
+            return;
+        }
+        while (true) {
+            Map<String, String> headers = readHeaders();
+            String key = headers.get(KEY_HEADER.toLowerCase(Locale.ROOT));
+            if (key == null) {
+                throw new IOException("Multipart build cache response contains a part without " + KEY_HEADER + " header");
+            }
+            long length = parseContentLength(headers.get(HttpHeaders.CONTENT_LENGTH.toLowerCase(Locale.ROOT)), key);
+            InputStream part = new PartInputStream(ByteStreams.limit(input, length));
+            readers.apply(key).readFrom(part);
+            part.close();
+            if (!readDelimiterAfterPart()) {
+                return;
+            }
+        }
+    }
+
+    private boolean skipToFirstDelimiter() throws IOException {
+        while (true) {
+            String line = readLine();
+            if (line == null) {
+                throw new IOException("Unexpected end of multipart build cache response");
+            }
+            if (line.equals(delimiter)) {
+                return true;
+            }
+            if (line.equals(closeDelimiter)) {
+                return false;
+            }
+        }
+    }
+
+    private boolean readDelimiterAfterPart() throws IOException {
+        while (true) {
+            String line = readLine();
+            if (line == null) {
+                throw new IOException("Unexpected end of multipart build cache response");
+            }
+            if (line.equals(delimiter)) {
+                return true;
+            }
+            if (line.equals(closeDelimiter)) {
+                return false;
+            }
+            if (!line.isEmpty()) {
+                throw new IOException("Unexpected content after multipart build cache entry");
+            }
+        }
+    }
+
+    private Map<String, String> readHeaders() throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        while (true) {
+            String line = readLine();
+            if (line == null) {
+                throw new IOException("Unexpected end of multipart build cache response");
+            }
+            if (line.isEmpty()) {
+                return headers;
+            }
+            int separator = line.indexOf(':');
+            if (separator <= 0) {
+                throw new IOException("Malformed header in multipart build cache response: " + line);
+            }
+            headers.put(line.substring(0, separator).trim().toLowerCase(Locale.ROOT), line.substring(separator + 1).trim());
+        }
+    }
+
+    private static long parseContentLength(@Nullable String value, String key) throws IOException {
+        if (value == null) {
+            throw new IOException("Multipart build cache response contains no Content-Length for entry " + key);
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IOException("Multipart build cache response contains invalid Content-Length for entry " + key + ": " + value);
+        }
+    }
+
+    /**
+     * Reads a line terminated by LF or CRLF, without the terminator, or returns {@code null} at the end of the stream.
+     * Trailing whitespace is ignored, as it can be used as transport padding after delimiters.
+     */
+    @Nullable
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = input.read()) != -1) {
+            if (b == '\n') {
+                break;
+            }
+            if (line.size() >= MAX_LINE_LENGTH) {
+                throw new IOException("Line too long in multipart build cache response");
+            }
+            line.write(b);
+        }
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+        String result = new String(line.toByteArray(), StandardCharsets.ISO_8859_1);
+        int end = result.length();
+        while (end > 0 && Character.isWhitespace(result.charAt(end - 1))) {
+            end--;
+        }
+        return result.substring(0, end);
+    }
+
+    /**
+     * Bounded view of a single part. Closing it skips the unread remainder of the part, but leaves the response open.
+     */
+    private static class PartInputStream extends FilterInputStream {
+        private boolean closed;
+
+        PartInputStream(InputStream limited) {
+            super(limited);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                ByteStreams.exhaust(in);
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.gradle.caching.internal.packaging;
 
+import org.gradle.caching.internal.BuildCacheBlobStore;
 import org.gradle.caching.internal.CacheableEntity;
 import org.gradle.caching.internal.origin.OriginMetadata;
 import org.gradle.caching.internal.origin.OriginReader;
@@ -23,13 +24,24 @@
 import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Map;
 
 public interface BuildCacheEntryPacker {
-    PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException;
+    default PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
+        return pack(entity, snapshots, output, writeOrigin, null);
+    }
+
+    /**
+     * Packs the given snapshots.
+     *
+     * When a blob store is given, the contents of regular files are put into the blob store, and the entry only refers to them by their content hash.
+     * Such an entry can only be unpacked with access to the same blob store.
+     */
+    PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin, @Nullable BuildCacheBlobStore blobStore) throws IOException;
 
     class PackResult {
         private final long entries;
@@ -43,7 +55,22 @@ public long getEntries() {
         }
     }
 
-    UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException;
+    default UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+        return unpack(entity, input, readOrigin, null);
+    }
+
+    /**
+     * Unpacks an entry, restoring file contents referred to by their content hash from the given blob store.
+     *
+     * @throws org.gradle.caching.internal.MissingBuildCacheBlobException if the entry refers to content that is not in the blob store. Nothing is unpacked in this case.
+     */
+    UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin, @Nullable BuildCacheBlobStore blobStore) throws IOException;
+
+    /**
+     * Returns whether all file contents the entry refers to by their content hash are present in the given blob store, without unpacking anything.
+     * Entries that do not refer to any content are always complete.
+     */
+    boolean isComplete(InputStream input, BuildCacheBlobStore blobStore) throws IOException;
 
     class UnpackResult {
         private final OriginMetadata originMetadata;
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream;
+import org.apache.commons.compress.compressors.snappy.FramedSnappyCompressorInputStream;
+import org.apache.commons.compress.compressors.snappy.FramedSnappyCompressorOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The codecs build cache entries can be compressed with.
+ *
+ * The id of a codec is stored in the entry, and must never change.
+ */
+public enum BuildCacheEntryCompression {
+    /**
+     * Smallest entries, but slowest to pack and unpack. The default.
+     */
+    GZIP(0) {
+        @Override
+        OutputStream compress(OutputStream output) throws IOException {
+            return new GZIPOutputStream(output, BUFFER_SIZE);
+        }
+
+        @Override
+        InputStream decompress(InputStream input) throws IOException {
+            return new GZIPInputStream(input, BUFFER_SIZE);
+        }
+    },
+    /**
+     * Framed LZ4, considerably faster than gzip at a somewhat larger entry size.
+     */
+    LZ4(1) {
+        @Override
+        OutputStream compress(OutputStream output) throws IOException {
+            return new FramedLZ4CompressorOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+        }
+
+        @Override
+        InputStream decompress(InputStream input) throws IOException {
+            return new FramedLZ4CompressorInputStream(input);
+        }
+    },
+    /**
+     * Framed Snappy, the fastest option with the largest entries.
+     */
+    SNAPPY(2) {
+        @Override
+        OutputStream compress(OutputStream output) throws IOException {
+            return new FramedSnappyCompressorOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+        }
+
+        @Override
+        InputStream decompress(InputStream input) throws IOException {
+            return new FramedSnappyCompressorInputStream(input);
+        }
+    };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int id;
+
+    BuildCacheEntryCompression(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    abstract OutputStream compress(OutputStream output) throws IOException;
+
+    abstract InputStream decompress(InputStream input) throws IOException;
+
+    static BuildCacheEntryCompression forId(int id) throws IOException {
+        for (BuildCacheEntryCompression compression : values()) {
+            if (compression.id == id) {
+                return compression;
+            }
+        }
+        throw new IOException("Unsupported build cache entry compression: " + id);
+    }
+
+    /**
+     * Parses the name of a codec, case insensitively.
+     */
+    public static BuildCacheEntryCompression forName(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown build cache entry compression '" + name + "', supported values are gzip, lz4 and snappy.");
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import org.gradle.caching.internal.BuildCacheBlobStore;
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginReader;
+import org.gradle.caching.internal.origin.OriginWriter;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Map;
+
+/**
+ * Compresses the entries produced by the delegate packer.
+ *
+ * <p>
+ * Entries compressed with {@link BuildCacheEntryCompression#GZIP} are plain gzip streams, as produced by earlier Gradle versions.
+ * Entries compressed with any other codec start with a header consisting of the {@link #HEADER_MAGIC} bytes,
+ * the {@link #FORMAT_VERSION} and the {@link BuildCacheEntryCompression#getId() id} of the codec.
+ * Unpacking detects the codec from the entry itself, so entries packed with any codec can be unpacked regardless of the configured one.
+ * </p>
+ */
+public class CompressingBuildCacheEntryPacker implements BuildCacheEntryPacker {
+    static final byte[] HEADER_MAGIC = {'G', 'C'};
+    static final int FORMAT_VERSION = 1;
+    private static final int GZIP_MAGIC_FIRST_BYTE = 0x1f;
+
+    private final BuildCacheEntryPacker delegate;
+    private final BuildCacheEntryCompression compression;
+
+    public CompressingBuildCacheEntryPacker(BuildCacheEntryPacker delegate, BuildCacheEntryCompression compression) {
+        this.delegate = delegate;
+        this.compression = compression;
+    }
+
+    @Override
+    public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin, @Nullable BuildCacheBlobStore blobStore) throws IOException {
+        if (compression != BuildCacheEntryCompression.GZIP) {
+            output.write(HEADER_MAGIC);
+            output.write(FORMAT_VERSION);
+            output.write(compression.getId());
+        }
+        try (OutputStream compressedOutput = compression.compress(output)) {
+            return delegate.pack(entity, snapshots, compressedOutput, writeOrigin, blobStore);
+        }
+    }
+
+    @Override
+    public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin, @Nullable BuildCacheBlobStore blobStore) throws IOException {
+        PushbackInputStream headerInput = new PushbackInputStream(input, 1);
+        BuildCacheEntryCompression entryCompression = readCompression(headerInput);
+        try (InputStream decompressedInput = entryCompression.decompress(headerInput)) {
+            return delegate.unpack(entity, decompressedInput, readOrigin, blobStore);
+        }
+    }
+
+    @Override
+    public boolean isComplete(InputStream input, BuildCacheBlobStore blobStore) throws IOException {
+        PushbackInputStream headerInput = new PushbackInputStream(input, 1);
+        BuildCacheEntryCompression entryCompression = readCompression(headerInput);
+        try (InputStream decompressedInput = entryCompression.decompress(headerInput)) {
+            return delegate.isComplete(decompressedInput, blobStore);
+        }
+    }
+
+    private static BuildCacheEntryCompression readCompression(PushbackInputStream input) throws IOException {
+        int first = input.read();
+        if (first == GZIP_MAGIC_FIRST_BYTE || first == -1) {
+            if (first != -1) {
+                input.unread(first);
+            }
+            return BuildCacheEntryCompression.GZIP;
+        }
+        if (first != HEADER_MAGIC[0] || input.read() != HEADER_MAGIC[1]) {
+            throw new IOException("Unknown build cache entry format");
+        }
+        int version = input.read();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported build cache entry format version: " + version);
+        }
+        return BuildCacheEntryCompression.forId(input.read());
+    }
+}
@@ -17,6 +17,7 @@
 package org.gradle.caching.internal.packaging.impl;
 
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Interner;
 import com.google.common.io.CountingOutputStream;
@@ -26,7 +27,9 @@
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.CloseShieldInputStream;
+import org.gradle.caching.internal.BuildCacheBlobStore;
 import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.MissingBuildCacheBlobException;
 import org.gradle.caching.internal.origin.OriginMetadata;
 import org.gradle.caching.internal.origin.OriginReader;
 import org.gradle.caching.internal.origin.OriginWriter;
@@ -47,6 +50,7 @@
 
 import javax.annotation.Nullable;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -60,14 +64,35 @@
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Packages build cache entries to a POSIX TAR file.
+ *
+ * <p>
+ * When packing with a {@link BuildCacheBlobStore}, regular files are stored as empty entries with a {@value #BLOB_HASH_PAX_HEADER} PAX header
+ * referring to their content in the blob store. All referenced hashes are listed in a {@value #BLOBS_PATH} entry following the metadata,
+ * so that missing content is detected before any outputs are touched.
+ * </p>
+ *
+ * <p>
+ * When an unpack executor is given, the files of directory trees are written and hashed on the executor while the archive is still being read.
+ * Only files up to {@value #MAX_BUFFERED_FILE_SIZE} bytes are handed off, and at most {@value #MAX_BUFFERED_BYTES} bytes are buffered at any time.
+ * </p>
  */
 public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
 
@@ -82,29 +107,47 @@ private interface UnixPermissions {
 
     private static final Charset ENCODING = StandardCharsets.UTF_8;
     private static final String METADATA_PATH = "METADATA";
+    private static final String BLOBS_PATH = "BLOBS";
+    private static final String BLOB_HASH_PAX_HEADER = "GRADLE.blob.hash";
     private static final Pattern TREE_PATH = Pattern.compile("(missing-)?tree-([^/]+)(?:/(.*))?");
     private static final int BUFFER_SIZE = 64 * 1024;
     private static final ThreadLocal<byte[]> COPY_BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+    private static final int MAX_BUFFERED_FILE_SIZE = 1024 * 1024;
+    private static final int MAX_BUFFERED_BYTES = 64 * 1024 * 1024;
 
     private final TarPackerFileSystemSupport fileSystemSupport;
     private final FilePermissionAccess filePermissionAccess;
     private final StreamHasher streamHasher;
     private final Interner<String> stringInterner;
+    @Nullable
+    private final Executor unpackExecutor;
+    private final Semaphore bufferedBytes = new Semaphore(MAX_BUFFERED_BYTES);
 
     public TarBuildCacheEntryPacker(
         TarPackerFileSystemSupport fileSystemSupport,
         FilePermissionAccess filePermissionAccess,
         StreamHasher streamHasher,
         Interner<String> stringInterner
+    ) {
+        this(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, null);
+    }
+
+    public TarBuildCacheEntryPacker(
+        TarPackerFileSystemSupport fileSystemSupport,
+        FilePermissionAccess filePermissionAccess,
+        StreamHasher streamHasher,
+        Interner<String> stringInterner,
+        @Nullable Executor unpackExecutor
     ) {
         this.fileSystemSupport = fileSystemSupport;
         this.filePermissionAccess = filePermissionAccess;
         this.streamHasher = streamHasher;
         this.stringInterner = stringInterner;
+        this.unpackExecutor = unpackExecutor;
     }
 
     @Override
-    public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
+    public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin, @Nullable BuildCacheBlobStore blobStore) throws IOException {
         BufferedOutputStream bufferedOutput;
         if (output instanceof BufferedOutputStream) {
             bufferedOutput = (BufferedOutputStream) output;
@@ -116,11 +159,51 @@ public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemS
             tarOutput.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
             tarOutput.setAddPaxHeadersForNonAsciiNames(true);
             packMetadata(writeOrigin, tarOutput);
-            long entryCount = pack(entity, snapshots, tarOutput);
-            return new PackResult(entryCount + 1);
+            long entryCount = 1;
+            if (blobStore != null) {
+                packBlobs(entity, snapshots, tarOutput, blobStore);
+                entryCount++;
+            }
+            entryCount += pack(entity, snapshots, tarOutput, blobStore);
+            return new PackResult(entryCount);
         }
     }
 
+    private static void packBlobs(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, TarArchiveOutputStream tarOutput, BuildCacheBlobStore blobStore) throws IOException {
+        SortedSet<String> hashes = new TreeSet<>();
+        entity.visitOutputTrees((treeName, type, root) -> {
+            FileSystemSnapshot treeSnapshots = snapshots.get(treeName);
+            treeSnapshots.accept(new FileSystemSnapshotVisitor() {
+                @Override
+                public boolean preVisitDirectory(CompleteDirectorySnapshot directorySnapshot) {
+                    return true;
+                }
+
+                @Override
+                public void visitFile(CompleteFileSystemLocationSnapshot fileSnapshot) {
+                    if (fileSnapshot.getType() == FileType.RegularFile) {
+                        HashCode hash = fileSnapshot.getHash();
+                        if (hashes.add(hash.toString())) {
+                            try {
+                                blobStore.store(hash, new File(fileSnapshot.getAbsolutePath()));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }
+                    }
+                }
+
+                @Override
+                public void postVisitDirectory(CompleteDirectorySnapshot directorySnapshot) {
+                }
+            });
+        });
+        byte[] content = String.join("\n", hashes).getBytes(ENCODING);
+        createTarEntry(BLOBS_PATH, content.length, UnixPermissions.FILE_FLAG | UnixPermissions.DEFAULT_FILE_PERM, tarOutput);
+        tarOutput.write(content);
+        tarOutput.closeArchiveEntry();
+    }
+
     private void packMetadata(OriginWriter writeMetadata, TarArchiveOutputStream tarOutput) throws IOException {
         ByteArrayOutputStream output = new ByteArrayOutputStream();
         writeMetadata.execute(output);
@@ -129,12 +212,12 @@ private void packMetadata(OriginWriter writeMetadata, TarArchiveOutputStream tar
         tarOutput.closeArchiveEntry();
     }
 
-    private long pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, TarArchiveOutputStream tarOutput) {
+    private long pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, TarArchiveOutputStream tarOutput, @Nullable BuildCacheBlobStore blobStore) {
         AtomicLong entries = new AtomicLong();
         entity.visitOutputTrees((treeName, type, root) -> {
             FileSystemSnapshot treeSnapshots = snapshots.get(treeName);
             try {
-                entries.addAndGet(packTree(treeName, type, treeSnapshots, tarOutput));
+                entries.addAndGet(packTree(treeName, type, treeSnapshots, tarOutput, blobStore != null));
             } catch (Exception ex) {
                 throw new RuntimeException(String.format("Could not pack tree '%s': %s", treeName, ex.getMessage()), ex);
             }
@@ -142,8 +225,8 @@ private long pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapsh
         return entries.get();
     }
 
-    private long packTree(String name, TreeType type, FileSystemSnapshot snapshots, TarArchiveOutputStream tarOutput) {
-        PackingVisitor packingVisitor = new PackingVisitor(tarOutput, name, type, filePermissionAccess);
+    private long packTree(String name, TreeType type, FileSystemSnapshot snapshots, TarArchiveOutputStream tarOutput, boolean referenceBlobs) {
+        PackingVisitor packingVisitor = new PackingVisitor(tarOutput, name, type, filePermissionAccess, referenceBlobs);
         snapshots.accept(packingVisitor);
         return packingVisitor.finish();
     }
@@ -156,13 +239,13 @@ private static void createTarEntry(String path, long size, int mode, TarArchiveO
     }
 
     @Override
-    public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+    public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin, @Nullable BuildCacheBlobStore blobStore) throws IOException {
         try (TarArchiveInputStream tarInput = new TarArchiveInputStream(input, ENCODING.name())) {
-            return unpack(entity, tarInput, readOrigin);
+            return unpack(entity, tarInput, readOrigin, blobStore);
         }
     }
 
-    private UnpackResult unpack(CacheableEntity entity, TarArchiveInputStream tarInput, OriginReader readOriginAction) throws IOException {
+    private UnpackResult unpack(CacheableEntity entity, TarArchiveInputStream tarInput, OriginReader readOriginAction, @Nullable BuildCacheBlobStore blobStore) throws IOException {
         ImmutableMap.Builder<String, CacheableTree> treesBuilder = ImmutableMap.builder();
         entity.visitOutputTrees((name, type, root) -> treesBuilder.put(name, new CacheableTree(type, root)));
         ImmutableMap<String, CacheableTree> treesByName = treesBuilder.build();
@@ -181,6 +264,9 @@ private UnpackResult unpack(CacheableEntity entity, TarArchiveInputStream tarInp
                 // handle origin metadata
                 originMetadata = readOriginAction.execute(new CloseShieldInputStream(tarInput));
                 tarEntry = tarInput.getNextTarEntry();
+            } else if (path.equals(BLOBS_PATH)) {
+                checkBlobsPresent(tarInput, blobStore);
+                tarEntry = tarInput.getNextTarEntry();
             } else {
                 // handle tree
                 Matcher matcher = TREE_PATH.matcher(path);
@@ -196,7 +282,7 @@ private UnpackResult unpack(CacheableEntity entity, TarArchiveInputStream tarInp
 
                 boolean missing = matcher.group(1) != null;
                 String childPath = matcher.group(3);
-                tarEntry = unpackTree(treeName, tree.getType(), tree.getRoot(), tarInput, tarEntry, childPath, missing, snapshots, entries);
+                tarEntry = unpackTree(treeName, tree.getType(), tree.getRoot(), tarInput, tarEntry, childPath, missing, snapshots, entries, blobStore);
             }
         }
         if (originMetadata == null) {
@@ -206,6 +292,42 @@ private UnpackResult unpack(CacheableEntity entity, TarArchiveInputStream tarInp
         return new UnpackResult(originMetadata, entries.get(), snapshots);
     }
 
+    @Override
+    public boolean isComplete(InputStream input, BuildCacheBlobStore blobStore) throws IOException {
+        try (TarArchiveInputStream tarInput = new TarArchiveInputStream(input, ENCODING.name())) {
+            // The list of referenced content follows the metadata, so only the start of the entry needs to be read
+            TarArchiveEntry tarEntry = tarInput.getNextTarEntry();
+            while (tarEntry != null && tarEntry.getName().equals(METADATA_PATH)) {
+                tarEntry = tarInput.getNextTarEntry();
+            }
+            return tarEntry == null || !tarEntry.getName().equals(BLOBS_PATH) || findMissingBlob(tarInput, blobStore) == null;
+        }
+    }
+
+    private static void checkBlobsPresent(TarArchiveInputStream tarInput, @Nullable BuildCacheBlobStore blobStore) throws IOException {
+        if (blobStore == null) {
+            throw new IllegalStateException("Cached entry refers to stored content, but no blob store is available.");
+        }
+        HashCode missingBlob = findMissingBlob(tarInput, blobStore);
+        if (missingBlob != null) {
+            throw new MissingBuildCacheBlobException(missingBlob);
+        }
+    }
+
+    @Nullable
+    private static HashCode findMissingBlob(TarArchiveInputStream tarInput, BuildCacheBlobStore blobStore) throws IOException {
+        String content = IOUtils.toString(new CloseShieldInputStream(tarInput), ENCODING);
+        for (String hash : content.split("\n")) {
+            if (!hash.isEmpty()) {
+                HashCode contentHash = HashCode.fromString(hash);
+                if (!blobStore.contains(contentHash)) {
+                    return contentHash;
+                }
+            }
+        }
+        return null;
+    }
+
     private static class CacheableTree {
         private final TreeType type;
         private final File root;
@@ -225,7 +347,7 @@ public File getRoot() {
     }
 
     @Nullable
-    private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File treeRoot, TarArchiveInputStream input, TarArchiveEntry rootEntry, String childPath, boolean missing, Map<String, CompleteFileSystemLocationSnapshot> snapshots, AtomicLong entries) throws IOException {
+    private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File treeRoot, TarArchiveInputStream input, TarArchiveEntry rootEntry, String childPath, boolean missing, Map<String, CompleteFileSystemLocationSnapshot> snapshots, AtomicLong entries, @Nullable BuildCacheBlobStore blobStore) throws IOException {
         boolean isDirEntry = rootEntry.isDirectory();
         boolean root = Strings.isNullOrEmpty(childPath);
         if (!root) {
@@ -242,7 +364,7 @@ private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File tree
             if (isDirEntry) {
                 throw new IllegalStateException("Should be a file: " + treeName);
             }
-            RegularFileSnapshot fileSnapshot = unpackFile(input, rootEntry, treeRoot, treeRoot.getName());
+            RegularFileSnapshot fileSnapshot = unpackFile(input, rootEntry, treeRoot, treeRoot.getName(), blobStore);
             snapshots.put(treeName, fileSnapshot);
             return input.getNextTarEntry();
         }
@@ -252,10 +374,39 @@ private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File tree
         }
         chmodUnpackedFile(rootEntry, treeRoot);
 
-        return unpackDirectoryTree(input, rootEntry, snapshots, entries, treeRoot, treeName);
+        return unpackDirectoryTree(input, rootEntry, snapshots, entries, treeRoot, treeName, blobStore);
     }
 
-    private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+    private CompletableFuture<RegularFileSnapshot> unpackFileAsync(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName, @Nullable BuildCacheBlobStore blobStore) throws IOException {
+        long size = entry.getSize();
+        if (unpackExecutor == null || size > MAX_BUFFERED_FILE_SIZE) {
+            return CompletableFuture.completedFuture(unpackFile(input, entry, file, fileName, blobStore));
+        }
+        int bufferSize = (int) size;
+        bufferedBytes.acquireUninterruptibly(bufferSize);
+        try {
+            byte[] content = new byte[bufferSize];
+            IOUtils.readFully(input, content);
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return unpackFile(new ByteArrayInputStream(content), entry, file, fileName, blobStore);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    bufferedBytes.release(bufferSize);
+                }
+            }, unpackExecutor);
+        } catch (IOException | RejectedExecutionException e) {
+            bufferedBytes.release(bufferSize);
+            throw e;
+        }
+    }
+
+    private RegularFileSnapshot unpackFile(InputStream input, TarArchiveEntry entry, File file, String fileName, @Nullable BuildCacheBlobStore blobStore) throws IOException {
+        String blobHash = entry.getExtraPaxHeader(BLOB_HASH_PAX_HEADER);
+        if (blobHash != null) {
+            return restoreBlob(entry, file, fileName, HashCode.fromString(blobHash), blobStore);
+        }
         try (CountingOutputStream output = new CountingOutputStream(new FileOutputStream(file))) {
             HashCode hash = streamHasher.hashCopy(input, output);
             chmodUnpackedFile(entry, file);
@@ -265,50 +416,118 @@ private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEn
         }
     }
 
+    private RegularFileSnapshot restoreBlob(TarArchiveEntry entry, File file, String fileName, HashCode hash, @Nullable BuildCacheBlobStore blobStore) throws IOException {
+        if (blobStore == null) {
+            throw new IllegalStateException("Cached entry refers to stored content, but no blob store is available.");
+        }
+        blobStore.restore(hash, file);
+        chmodUnpackedFile(entry, file);
+        String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
+        String internedFileName = stringInterner.intern(fileName);
+        return new RegularFileSnapshot(internedAbsolutePath, internedFileName, hash, DefaultFileMetadata.file(file.length(), file.lastModified(), AccessType.DIRECT));
+    }
+
     @Nullable
-    private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArchiveEntry rootEntry, Map<String, CompleteFileSystemLocationSnapshot> snapshots, AtomicLong entries, File treeRoot, String treeName) throws IOException {
+    private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArchiveEntry rootEntry, Map<String, CompleteFileSystemLocationSnapshot> snapshots, AtomicLong entries, File treeRoot, String treeName, @Nullable BuildCacheBlobStore blobStore) throws IOException {
         RelativePathParser parser = new RelativePathParser();
         parser.rootPath(rootEntry.getName());
 
-        MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+        DeferredDirectorySnapshotBuilder builder = new DeferredDirectorySnapshotBuilder();
         String rootPath = stringInterner.intern(treeRoot.getAbsolutePath());
         String rootDirName = stringInterner.intern(treeRoot.getName());
         builder.preVisitDirectory(rootPath, rootDirName);
 
         TarArchiveEntry entry;
 
-        while ((entry = input.getNextTarEntry()) != null) {
-            boolean isDir = entry.isDirectory();
-            int directoriesLeft = parser.nextPath(entry.getName(), isDir);
-            for (int i = 0; i < directoriesLeft; i++) {
-                builder.postVisitDirectory(AccessType.DIRECT);
-            }
-            if (parser.getDepth() == 0) {
-                break;
-            }
-            entries.incrementAndGet();
-
-            File file = new File(treeRoot, parser.getRelativePath());
-            if (isDir) {
-                FileUtils.forceMkdir(file);
-                chmodUnpackedFile(entry, file);
-                String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
-                String internedDirName = stringInterner.intern(parser.getName());
-                builder.preVisitDirectory(internedAbsolutePath, internedDirName);
-            } else {
-                RegularFileSnapshot fileSnapshot = unpackFile(input, entry, file, parser.getName());
-                builder.visitFile(fileSnapshot);
+        try {
+            while ((entry = input.getNextTarEntry()) != null) {
+                boolean isDir = entry.isDirectory();
+                int directoriesLeft = parser.nextPath(entry.getName(), isDir);
+                for (int i = 0; i < directoriesLeft; i++) {
+                    builder.postVisitDirectory();
+                }
+                if (parser.getDepth() == 0) {
+                    break;
+                }
+                entries.incrementAndGet();
+
+                File file = new File(treeRoot, parser.getRelativePath());
+                if (isDir) {
+                    FileUtils.forceMkdir(file);
+                    chmodUnpackedFile(entry, file);
+                    String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
+                    String internedDirName = stringInterner.intern(parser.getName());
+                    builder.preVisitDirectory(internedAbsolutePath, internedDirName);
+                } else {
+                    builder.visitFile(unpackFileAsync(input, entry, file, parser.getName(), blobStore));
+                }
             }
+        } catch (IOException | RuntimeException e) {
+            // Don't leave files being written behind
+            builder.awaitPendingFiles(e);
+            throw e;
         }
 
         for (int i = 0; i < parser.getDepth(); i++) {
-            builder.postVisitDirectory(AccessType.DIRECT);
+            builder.postVisitDirectory();
         }
 
         snapshots.put(treeName, builder.getResult());
         return entry;
     }
 
+    /**
+     * Records the structure of a directory tree while its files are still being unpacked, and builds its snapshot once all files are done.
+     */
+    private static class DeferredDirectorySnapshotBuilder {
+        private final List<Consumer<MerkleDirectorySnapshotBuilder>> events = new ArrayList<>();
+        private final List<CompletableFuture<RegularFileSnapshot>> pendingFiles = new ArrayList<>();
+
+        public void preVisitDirectory(String absolutePath, String name) {
+            events.add(builder -> builder.preVisitDirectory(absolutePath, name));
+        }
+
+        public void visitFile(CompletableFuture<RegularFileSnapshot> fileSnapshot) {
+            pendingFiles.add(fileSnapshot);
+            events.add(builder -> builder.visitFile(fileSnapshot.join()));
+        }
+
+        public void postVisitDirectory() {
+            events.add(builder -> builder.postVisitDirectory(AccessType.DIRECT));
+        }
+
+        public CompleteFileSystemLocationSnapshot getResult() throws IOException {
+            Throwable failure = awaitPendingFiles(null);
+            if (failure != null) {
+                Throwables.propagateIfPossible(failure, IOException.class);
+                throw new RuntimeException(failure);
+            }
+            MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+            events.forEach(event -> event.accept(builder));
+            return builder.getResult();
+        }
+
+        /**
+         * Waits for all files to be unpacked, returning the first failure. Failures are added as suppressed to the given exception, if any.
+         */
+        @Nullable
+        public Throwable awaitPendingFiles(@Nullable Throwable failure) {
+            for (CompletableFuture<RegularFileSnapshot> pendingFile : pendingFiles) {
+                try {
+                    pendingFile.join();
+                } catch (CompletionException e) {
+                    Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+                    if (failure == null) {
+                        failure = cause;
+                    } else if (failure != cause) {
+                        failure.addSuppressed(cause);
+                    }
+                }
+            }
+            return failure;
+        }
+    }
+
     private void chmodUnpackedFile(TarArchiveEntry entry, File file) {
         filePermissionAccess.chmod(file, entry.getMode() & UnixPermissions.PERM_MASK);
     }
@@ -336,15 +555,17 @@ private static class PackingVisitor implements FileSystemSnapshotVisitor {
         private final String treeRoot;
         private final FilePermissionAccess filePermissionAccess;
         private final TreeType type;
+        private final boolean referenceBlobs;
 
         private long entries;
 
-        public PackingVisitor(TarArchiveOutputStream tarOutput, String treeName, TreeType type, FilePermissionAccess filePermissionAccess) {
+        public PackingVisitor(TarArchiveOutputStream tarOutput, String treeName, TreeType type, FilePermissionAccess filePermissionAccess, boolean referenceBlobs) {
             this.tarOutput = tarOutput;
             this.treePath = "tree-" + escape(treeName);
             this.treeRoot = treePath + "/";
             this.type = type;
             this.filePermissionAccess = filePermissionAccess;
+            this.referenceBlobs = referenceBlobs;
             this.relativePathStringTracker = new RelativePathStringTracker();
         }
 
@@ -374,7 +595,11 @@ public void visitFile(CompleteFileSystemLocationSnapshot fileSnapshot) {
                 assertCorrectType(isRoot, fileSnapshot);
                 File file = new File(fileSnapshot.getAbsolutePath());
                 int mode = filePermissionAccess.getUnixMode(file);
-                storeFileEntry(file, targetPath, file.length(), mode, tarOutput);
+                if (referenceBlobs) {
+                    storeBlobReferenceEntry(fileSnapshot.getHash(), targetPath, mode, tarOutput);
+                } else {
+                    storeFileEntry(file, targetPath, file.length(), mode, tarOutput);
+                }
             }
             relativePathStringTracker.leave();
             entries++;
@@ -437,6 +662,19 @@ private void storeDirectoryEntry(String path, int mode, TarArchiveOutputStream t
             }
         }
 
+        private void storeBlobReferenceEntry(HashCode hash, String path, int mode, TarArchiveOutputStream tarOutput) {
+            try {
+                TarArchiveEntry entry = new TarArchiveEntry(path, true);
+                entry.setSize(0);
+                entry.setMode(UnixPermissions.FILE_FLAG | mode);
+                entry.addPaxHeader(BLOB_HASH_PAX_HEADER, hash.toString());
+                tarOutput.putArchiveEntry(entry);
+                tarOutput.closeArchiveEntry();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
         private void storeFileEntry(File inputFile, String path, long size, int mode, TarArchiveOutputStream tarOutput) {
             try {
                 createTarEntry(path, size, UnixPermissions.FILE_FLAG | mode, tarOutput);
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import org.gradle.caching.internal.BuildCacheBlobStore
+import org.gradle.caching.internal.CacheableEntity
+import org.gradle.caching.internal.origin.OriginReader
+import org.gradle.caching.internal.origin.OriginWriter
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.zip.GZIPOutputStream
+
+class CompressingBuildCacheEntryPackerTest extends Specification {
+
+    def entity = Stub(CacheableEntity)
+    def content = ("Some content that compresses well. " * 100).bytes
+
+    def delegate = new BuildCacheEntryPacker() {
+        @Override
+        PackResult pack(CacheableEntity entity, Map snapshots, OutputStream output, OriginWriter writeOrigin, BuildCacheBlobStore blobStore) {
+            output.write(content)
+            return new PackResult(1)
+        }
+
+        @Override
+        UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin, BuildCacheBlobStore blobStore) {
+            assert input.bytes == content
+            return new UnpackResult(null, 1, [:])
+        }
+
+        @Override
+        boolean isComplete(InputStream input, BuildCacheBlobStore blobStore) {
+            assert input.bytes == content
+            return true
+        }
+    }
+
+    @Unroll
+    def "can unpack entry packed with #packedWith when configured with #configured"() {
+        def packed = new ByteArrayOutputStream()
+
+        when:
+        new CompressingBuildCacheEntryPacker(delegate, packedWith).pack(entity, [:], packed, Stub(OriginWriter))
+        def result = new CompressingBuildCacheEntryPacker(delegate, configured).unpack(entity, new ByteArrayInputStream(packed.toByteArray()), Stub(OriginReader))
+
+        then:
+        result.entries == 1
+        packed.size() < content.length
+
+        where:
+        [packedWith, configured] << [BuildCacheEntryCompression.values().toList(), BuildCacheEntryCompression.values().toList()].combinations()
+    }
+
+    def "gzip entries have no header"() {
+        def packed = new ByteArrayOutputStream()
+
+        when:
+        new CompressingBuildCacheEntryPacker(delegate, BuildCacheEntryCompression.GZIP).pack(entity, [:], packed, Stub(OriginWriter))
+
+        then:
+        packed.toByteArray()[0] == (byte) 0x1f
+        packed.toByteArray()[1] == (byte) 0x8b
+    }
+
+    def "can unpack plain gzip entries"() {
+        def packed = new ByteArrayOutputStream()
+        new GZIPOutputStream(packed).withStream { it.write(content) }
+
+        when:
+        def result = new CompressingBuildCacheEntryPacker(delegate, BuildCacheEntryCompression.LZ4).unpack(entity, new ByteArrayInputStream(packed.toByteArray()), Stub(OriginReader))
+
+        then:
+        result.entries == 1
+    }
+
+    def "fails on unknown entry format"() {
+        when:
+        new CompressingBuildCacheEntryPacker(delegate, BuildCacheEntryCompression.GZIP).unpack(entity, new ByteArrayInputStream("unknown".bytes), Stub(OriginReader))
+
+        then:
+        def e = thrown IOException
+        e.message == "Unknown build cache entry format"
+    }
+
+    def "fails on unsupported format version"() {
+        def packed = new ByteArrayOutputStream()
+        packed.write(CompressingBuildCacheEntryPacker.HEADER_MAGIC)
+        packed.write(CompressingBuildCacheEntryPacker.FORMAT_VERSION + 1)
+
+        when:
+        new CompressingBuildCacheEntryPacker(delegate, BuildCacheEntryCompression.GZIP).unpack(entity, new ByteArrayInputStream(packed.toByteArray()), Stub(OriginReader))
+
+        then:
+        def e = thrown IOException
+        e.message == "Unsupported build cache entry format version: ${CompressingBuildCacheEntryPacker.FORMAT_VERSION + 1}"
+    }
+}
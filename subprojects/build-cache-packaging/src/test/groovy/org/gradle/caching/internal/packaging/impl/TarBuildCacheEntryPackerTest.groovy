@@ -17,7 +17,9 @@
 package org.gradle.caching.internal.packaging.impl
 
 import org.gradle.api.internal.file.TestFiles
+import org.gradle.caching.internal.BuildCacheBlobStore
 import org.gradle.caching.internal.CacheableEntity
+import org.gradle.caching.internal.MissingBuildCacheBlobException
 import org.gradle.caching.internal.origin.OriginReader
 import org.gradle.caching.internal.origin.OriginWriter
 import org.gradle.internal.file.Deleter
@@ -25,11 +27,14 @@ import org.gradle.internal.file.TreeType
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint
 import org.gradle.internal.fingerprint.FingerprintingStrategy
 import org.gradle.internal.fingerprint.impl.AbsolutePathFingerprintingStrategy
+import org.gradle.internal.hash.HashCode
 import org.gradle.internal.nativeintegration.filesystem.FileSystem
 import org.gradle.util.Requires
 import org.gradle.util.TestPrecondition
 import spock.lang.Unroll
 
+import java.util.concurrent.Executors
+
 import static org.gradle.caching.internal.packaging.impl.AbstractTarBuildCacheEntryPackerSpec.TestCacheableTree
 import static org.gradle.internal.file.TreeType.DIRECTORY
 import static org.gradle.internal.file.TreeType.FILE
@@ -251,6 +256,140 @@ class TarBuildCacheEntryPackerTest extends AbstractTarBuildCacheEntryPackerSpec
         targetDir.assertIsEmptyDir()
     }
 
+    def "can pack directory with contents in blob store"() {
+        def blobStore = new InMemoryBlobStore()
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        sourceOutputDir.file("first.txt") << "output"
+        sourceOutputDir.file("second.txt") << "output"
+        sourceOutputDir.file("third.txt") << "other"
+        def targetOutputDir = temporaryFolder.file("target").createDir()
+        def output = new ByteArrayOutputStream()
+        def treeDef = prop(DIRECTORY, sourceOutputDir)
+
+        when:
+        def packResult = packer.pack(entity(treeDef), [test: treeDef.fingerprint()], output, writeOrigin, blobStore)
+
+        then:
+        packResult.entries == 6
+        blobStore.blobs.size() == 2
+        !new String(output.toByteArray(), "UTF-8").contains("output")
+
+        when:
+        def target = prop(DIRECTORY, targetOutputDir)
+        def result = packer.unpack(entity(target), new ByteArrayInputStream(output.toByteArray()), readOrigin, blobStore)
+
+        then:
+        targetOutputDir.file("first.txt").text == "output"
+        targetOutputDir.file("second.txt").text == "output"
+        targetOutputDir.file("third.txt").text == "other"
+        result.entries == 6
+    }
+
+    def "does not unpack anything when blob is missing"() {
+        def blobStore = new InMemoryBlobStore()
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        sourceOutputDir.file("data.txt") << "output"
+        def targetOutputDir = temporaryFolder.file("target").createDir()
+        def existingFile = targetOutputDir.file("existing.txt")
+        existingFile << "existing"
+        def output = new ByteArrayOutputStream()
+        def treeDef = prop(DIRECTORY, sourceOutputDir)
+        packer.pack(entity(treeDef), [test: treeDef.fingerprint()], output, writeOrigin, blobStore)
+        blobStore.blobs.clear()
+
+        when:
+        def target = prop(DIRECTORY, targetOutputDir)
+        packer.unpack(entity(target), new ByteArrayInputStream(output.toByteArray()), readOrigin, blobStore)
+
+        then:
+        thrown MissingBuildCacheBlobException
+        existingFile.text == "existing"
+        !targetOutputDir.file("data.txt").exists()
+    }
+
+    def "detects missing blob without unpacking the entry"() {
+        def blobStore = new InMemoryBlobStore()
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        sourceOutputDir.file("first.txt") << "output"
+        sourceOutputDir.file("second.txt") << "other"
+        def output = new ByteArrayOutputStream()
+        def treeDef = prop(DIRECTORY, sourceOutputDir)
+        packer.pack(entity(treeDef), [test: treeDef.fingerprint()], output, writeOrigin, blobStore)
+
+        when:
+        def complete = packer.isComplete(new ByteArrayInputStream(output.toByteArray()), blobStore)
+
+        then:
+        complete
+
+        when:
+        blobStore.blobs.remove(blobStore.blobs.keySet().first())
+
+        then:
+        !packer.isComplete(new ByteArrayInputStream(output.toByteArray()), blobStore)
+    }
+
+    def "entry without blob references is complete"() {
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        sourceOutputDir.file("data.txt") << "output"
+        def output = new ByteArrayOutputStream()
+        def treeDef = prop(DIRECTORY, sourceOutputDir)
+        packer.pack(entity(treeDef), [test: treeDef.fingerprint()], output, writeOrigin)
+
+        expect:
+        packer.isComplete(new ByteArrayInputStream(output.toByteArray()), new InMemoryBlobStore())
+    }
+
+    def "can unpack directory in parallel"() {
+        def executor = Executors.newFixedThreadPool(4)
+        def parallelPacker = new TarBuildCacheEntryPacker(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, executor)
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        100.times { index ->
+            sourceOutputDir.file("dir-${index % 10}/file-${index}.txt") << "output ${index}"
+        }
+        sourceOutputDir.file("large.bin").bytes = new byte[2 * 1024 * 1024]
+        def output = new ByteArrayOutputStream()
+        pack output, prop(DIRECTORY, sourceOutputDir)
+
+        when:
+        def sequentialResult = unpack new ByteArrayInputStream(output.toByteArray()), prop(DIRECTORY, temporaryFolder.file("sequential"))
+        def target = prop(DIRECTORY, temporaryFolder.file("parallel"))
+        def parallelResult = parallelPacker.unpack(entity(target), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        100.times { index ->
+            assert temporaryFolder.file("parallel/dir-${index % 10}/file-${index}.txt").text == "output ${index}"
+        }
+        temporaryFolder.file("parallel/large.bin").length() == 2 * 1024 * 1024
+        parallelResult.entries == sequentialResult.entries
+        parallelResult.snapshots["test"].hash == sequentialResult.snapshots["test"].hash
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    private static class InMemoryBlobStore implements BuildCacheBlobStore {
+        final Map<HashCode, byte[]> blobs = [:]
+
+        @Override
+        boolean contains(HashCode contentHash) {
+            blobs.containsKey(contentHash)
+        }
+
+        @Override
+        void store(HashCode contentHash, File source) {
+            blobs.putIfAbsent(contentHash, source.bytes)
+        }
+
+        @Override
+        void restore(HashCode contentHash, File target) {
+            if (!blobs.containsKey(contentHash)) {
+                throw new MissingBuildCacheBlobException(contentHash)
+            }
+            target.bytes = blobs[contentHash]
+        }
+    }
+
     def pack(OutputStream output, OriginWriter writeOrigin = this.writeOrigin, TreeDefinition... treeDefs) {
         Map<String, CurrentFileCollectionFingerprint> fingerprints = treeDefs.collectEntries { treeDef ->
             return [(treeDef.tree.name): treeDef.fingerprint()]
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+
+import java.util.Collection;
+import java.util.function.Function;
+
+/**
+ * A {@link BuildCacheService} that can load the entries for several cache keys with a single request.
+ */
+public interface BatchingBuildCacheService extends BuildCacheService {
+
+    /**
+     * Whether multi-key loads are currently supported by the backend.
+     *
+     * When this returns {@code false}, callers should use {@link #load(BuildCacheKey, BuildCacheEntryReader)} instead.
+     */
+    boolean isBatchingSupported();
+
+    /**
+     * Load the cached entries corresponding to the given cache keys.
+     *
+     * The reader returned for a key will be called if an entry is found for that key.
+     * Readers are called one at a time, on the calling thread, in the order the entries are received.
+     *
+     * @param keys the cache keys.
+     * @param readers provides the reader for each found cache key.
+     * @throws BuildCacheException if the cache fails to load the cache entries
+     */
+    void loadAll(Collection<BuildCacheKey> keys, Function<BuildCacheKey, BuildCacheEntryReader> readers) throws BuildCacheException;
+}
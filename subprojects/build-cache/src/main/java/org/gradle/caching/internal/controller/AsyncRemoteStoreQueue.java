@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.service.BuildCacheServiceHandle;
+import org.gradle.caching.local.internal.BuildCacheTempFileStore;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads packed entries to the remote build cache in the background, so that storing does not wait for the upload.
+ *
+ * Each submitted entry is linked (or copied, if linking is not possible) next to the packed file,
+ * so that the local build cache can still take ownership of the packed file itself.
+ * At most {@link #MAX_PENDING_UPLOADS} entries can be waiting for upload; further submissions block until an upload finishes.
+ * Closing the queue waits for the pending uploads to finish, abandoning them after a timeout.
+ * Uploads run without a parent build operation, as the operation that submitted an entry has usually finished by the time it is uploaded.
+ */
+class AsyncRemoteStoreQueue implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncRemoteStoreQueue.class);
+
+    static final int MAX_CONCURRENT_UPLOADS = 4;
+    static final int MAX_PENDING_UPLOADS = 32;
+    static final int MAX_ATTEMPTS = 3;
+    private static final int FLUSH_TIMEOUT_SECONDS = Integer.getInteger("org.gradle.caching.remote.async.flushTimeoutSeconds", 300);
+
+    private final BuildCacheServiceHandle remote;
+    private final ManagedExecutor executor;
+    private final Semaphore pendingUploads = new Semaphore(MAX_PENDING_UPLOADS);
+    private final Set<File> pendingFiles = ConcurrentHashMap.newKeySet();
+
+    AsyncRemoteStoreQueue(BuildCacheServiceHandle remote, ExecutorFactory executorFactory) {
+        this.remote = remote;
+        this.executor = executorFactory.create("Build cache remote store", MAX_CONCURRENT_UPLOADS);
+    }
+
+    /**
+     * Schedules the upload of the given packed entry. Blocks while too many uploads are pending.
+     */
+    public void submit(BuildCacheKey key, File packedEntry) {
+        pendingUploads.acquireUninterruptibly();
+        File uploadFile;
+        try {
+            uploadFile = linkOrCopy(key, packedEntry);
+        } catch (RuntimeException e) {
+            pendingUploads.release();
+            throw e;
+        }
+        pendingFiles.add(uploadFile);
+        try {
+            executor.execute(() -> {
+                try {
+                    if (remote.canStore()) {
+                        remote.storeWithRetries(key, uploadFile, MAX_ATTEMPTS);
+                    }
+                } finally {
+                    discard(uploadFile);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            discard(uploadFile);
+            throw e;
+        }
+    }
+
+    private static File linkOrCopy(BuildCacheKey key, File packedEntry) {
+        try {
+            File uploadFile = File.createTempFile(key.getHashCode() + "-", "-upload" + BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX, packedEntry.getParentFile());
+            Files.delete(uploadFile.toPath());
+            try {
+                Files.createLink(uploadFile.toPath(), packedEntry.toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(packedEntry.toPath(), uploadFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return uploadFile;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void discard(File uploadFile) {
+        if (pendingFiles.remove(uploadFile)) {
+            GFileUtils.deleteQuietly(uploadFile);
+            pendingUploads.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        int pending = MAX_PENDING_UPLOADS - pendingUploads.availablePermits();
+        if (pending > 0) {
+            LOGGER.info("Waiting for {} pending uploads to the remote build cache", pending);
+        }
+        try {
+            executor.stop(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (IllegalStateException e) {
+            LOGGER.warn("Timed out after {} seconds waiting for uploads to the remote build cache, {} entries were not stored.", FLUSH_TIMEOUT_SECONDS, pendingFiles.size());
+        } finally {
+            for (File uploadFile : pendingFiles) {
+                discard(uploadFile);
+            }
+        }
+    }
+}
@@ -17,7 +17,9 @@
 package org.gradle.caching.internal.controller;
 
 import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.BuildCacheBlobStore;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -28,9 +30,18 @@
     /**
      * Called at-most-once to initiate loading the artifact from the input stream.
      *
+     * File contents the artifact refers to are restored from the given blob store.
+     *
+     * The input stream will be closed by this method.
+     */
+    Result<T> load(InputStream inputStream, @Nullable BuildCacheBlobStore blobStore) throws IOException;
+
+    /**
+     * Returns whether all file contents the artifact refers to are present in the given blob store, without loading the artifact.
+     *
      * The input stream will be closed by this method.
      */
-    Result<T> load(InputStream inputStream) throws IOException;
+    boolean isComplete(InputStream inputStream, BuildCacheBlobStore blobStore) throws IOException;
 
     interface Result<T> {
 
@@ -17,7 +17,9 @@
 package org.gradle.caching.internal.controller;
 
 import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.BuildCacheBlobStore;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.OutputStream;
 
@@ -26,11 +28,13 @@ public interface BuildCacheStoreCommand {
     BuildCacheKey getKey();
 
     /**
-     * Called at-most-once to initiate writing the artifact to the output stream.
+     * Called once for each artifact to write to an output stream.
+     *
+     * When a blob store is given, file contents are put into the blob store and the artifact only refers to them.
      *
      * The output stream will be closed by this method.
      */
-    Result store(OutputStream outputStream) throws IOException;
+    Result store(OutputStream outputStream, @Nullable BuildCacheBlobStore blobStore) throws IOException;
 
     interface Result {
 
@@ -22,6 +22,7 @@
 import org.gradle.api.GradleException;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.internal.BuildCacheBlobStore;
 import org.gradle.caching.internal.controller.operations.PackOperationDetails;
 import org.gradle.caching.internal.controller.operations.PackOperationResult;
 import org.gradle.caching.internal.controller.operations.UnpackOperationDetails;
@@ -40,10 +41,13 @@
 import org.gradle.caching.local.internal.DefaultBuildCacheTempFileStore;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.RunnableBuildOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.io.File;
@@ -56,6 +60,8 @@
 
 public class DefaultBuildCacheController implements BuildCacheController {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultBuildCacheController.class);
+
     @VisibleForTesting
     final BuildCacheServiceHandle remote;
 
@@ -63,6 +69,8 @@ public class DefaultBuildCacheController implements BuildCacheController {
     final LocalBuildCacheServiceHandle local;
 
     private final BuildCacheTempFileStore tmp;
+    @Nullable
+    private final AsyncRemoteStoreQueue remoteStoreQueue;
     private final BuildOperationExecutor buildOperationExecutor;
     private final boolean emitDebugLogging;
 
@@ -74,12 +82,29 @@ public DefaultBuildCacheController(
         File gradleUserHomeDir,
         boolean logStackTraces,
         boolean emitDebugLogging
+    ) {
+        this(config, buildOperationExecutor, gradleUserHomeDir, logStackTraces, emitDebugLogging, null);
+    }
+
+    /**
+     * Creates a controller that uploads entries to the remote cache in the background when an executor factory is given.
+     */
+    public DefaultBuildCacheController(
+        BuildCacheServicesConfiguration config,
+        BuildOperationExecutor buildOperationExecutor,
+        File gradleUserHomeDir,
+        boolean logStackTraces,
+        boolean emitDebugLogging,
+        @Nullable ExecutorFactory asyncRemoteStoreExecutorFactory
     ) {
         this.buildOperationExecutor = buildOperationExecutor;
         this.emitDebugLogging = emitDebugLogging;
         this.local = toLocalHandle(config.getLocal(), config.isLocalPush());
         this.remote = toRemoteHandle(config.getRemote(), config.isRemotePush(), buildOperationExecutor, logStackTraces);
         this.tmp = toTempFileStore(config.getLocal(), gradleUserHomeDir);
+        this.remoteStoreQueue = asyncRemoteStoreExecutorFactory != null && remote.canStore()
+            ? new AsyncRemoteStoreQueue(remote, asyncRemoteStoreExecutorFactory)
+            : null;
     }
 
     @Override
@@ -94,20 +119,20 @@ public boolean isEmitDebugLogging() {
 
     @Override
     public <T> Optional<T> load(BuildCacheLoadCommand<T> command) {
-        final Unpack<T> unpack = new Unpack<>(command);
-
         if (local.canLoad()) {
+            Unpack<T> localUnpack = new Unpack<>(command, local.getBlobStore());
             try {
-                local.load(command.getKey(), unpack);
+                local.load(command.getKey(), localUnpack);
             } catch (Exception e) {
                 throw new GradleException("Build cache entry " + command.getKey().getHashCode() + " from local build cache is invalid", e);
             }
 
-            if (unpack.result != null) {
-                return Optional.of(unpack.result.getMetadata());
+            if (localUnpack.result != null) {
+                return Optional.of(localUnpack.result.getMetadata());
             }
         }
 
+        Unpack<T> unpack = new Unpack<>(command, null);
         if (remote.canLoad()) {
             tmp.withTempFile(command.getKey(), file -> {
                 LoadTarget loadTarget = new LoadTarget(file);
@@ -134,20 +159,28 @@ public <T> Optional<T> load(BuildCacheLoadCommand<T> command) {
 
     private class Unpack<T> implements Action<File> {
         private final BuildCacheLoadCommand<T> command;
+        @Nullable
+        private final BuildCacheBlobStore blobStore;
 
         private BuildCacheLoadCommand.Result<T> result;
 
-        private Unpack(BuildCacheLoadCommand<T> command) {
+        private Unpack(BuildCacheLoadCommand<T> command, @Nullable BuildCacheBlobStore blobStore) {
             this.command = command;
+            this.blobStore = blobStore;
         }
 
         @Override
         public void execute(File file) {
+            if (blobStore != null && !isComplete(file)) {
+                // Some of the content was cleaned up, so treat the entry as a miss before touching any outputs
+                LOGGER.info("Build cache entry {} from local build cache is incomplete, ignoring it", command.getKey().getHashCode());
+                return;
+            }
             buildOperationExecutor.run(new RunnableBuildOperation() {
                 @Override
                 public void run(BuildOperationContext context) {
                     try (InputStream input = new FileInputStream(file)) {
-                        result = command.load(input);
+                        result = command.load(input, blobStore);
                     } catch (IOException e) {
                         throw new UncheckedIOException(e);
                     }
@@ -164,6 +197,14 @@ public BuildOperationDescriptor.Builder description() {
                 }
             });
         }
+
+        private boolean isComplete(File file) {
+            try (InputStream input = new FileInputStream(file)) {
+                return command.isComplete(input, blobStore);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
 
     @Override
@@ -173,27 +214,47 @@ public void store(BuildCacheStoreCommand command) {
         }
 
         BuildCacheKey key = command.getKey();
-        Pack pack = new Pack(command);
-
-        tmp.withTempFile(command.getKey(), file -> {
-            pack.execute(file);
+        BuildCacheBlobStore localBlobStore = local.isDeduplicating() ? local.getBlobStore() : null;
+        boolean storeLocalEntry = local.canStore() && localBlobStore == null;
+
+        if (remote.canStore() || storeLocalEntry) {
+            Pack pack = new Pack(command, null);
+            tmp.withTempFile(key, file -> {
+                pack.execute(file);
+
+                if (remote.canStore()) {
+                    if (remoteStoreQueue != null) {
+                        remoteStoreQueue.submit(key, file);
+                    } else {
+                        remote.store(key, new StoreTarget(file));
+                    }
+                }
 
-            if (remote.canStore()) {
-                remote.store(key, new StoreTarget(file));
-            }
+                if (storeLocalEntry) {
+                    local.store(key, file);
+                }
+            });
+        }
 
-            if (local.canStore()) {
+        if (localBlobStore != null) {
+            // The local entry only refers to the contents of the outputs, which are kept in the blob store
+            Pack pack = new Pack(command, localBlobStore);
+            tmp.withTempFile(key, file -> {
+                pack.execute(file);
                 local.store(key, file);
-            }
-        });
+            });
+        }
     }
 
     private class Pack implements Action<File> {
 
         private final BuildCacheStoreCommand command;
+        @Nullable
+        private final BuildCacheBlobStore blobStore;
 
-        private Pack(BuildCacheStoreCommand command) {
+        private Pack(BuildCacheStoreCommand command, @Nullable BuildCacheBlobStore blobStore) {
             this.command = command;
+            this.blobStore = blobStore;
         }
 
         @Override
@@ -202,7 +263,7 @@ public void execute(final File file) {
                 @Override
                 public void run(BuildOperationContext context) {
                     try (FileOutputStream fileOutputStream = new FileOutputStream(file)) {
-                        BuildCacheStoreCommand.Result result = command.store(fileOutputStream);
+                        BuildCacheStoreCommand.Result result = command.store(fileOutputStream, blobStore);
                         context.setResult(new PackOperationResult(
                             result.getArtifactEntryCount(),
                             file.length()
@@ -229,6 +290,10 @@ public void close() throws IOException {
             Closer closer = Closer.create();
             closer.register(local);
             closer.register(remote);
+            if (remoteStoreQueue != null) {
+                // Registered last, so that pending uploads are flushed before the remote service is closed
+                closer.register(remoteStoreQueue);
+            }
             closer.close();
         }
     }
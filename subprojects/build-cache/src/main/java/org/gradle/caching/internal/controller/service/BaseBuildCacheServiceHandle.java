@@ -17,30 +17,39 @@
 package org.gradle.caching.internal.controller.service;
 
 import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheException;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.internal.BatchingBuildCacheService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.io.File;
 
 public class BaseBuildCacheServiceHandle implements BuildCacheServiceHandle {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(OpFiringBuildCacheServiceHandle.class);
+    private static final long RETRY_DELAY_MILLIS = 500;
 
     protected final BuildCacheService service;
 
     protected final BuildCacheServiceRole role;
     private final boolean pushEnabled;
     private final boolean logStackTraces;
+    @Nullable
+    private final BatchingLoadCoordinator batchingLoadCoordinator;
 
-    private boolean disabled;
+    private volatile boolean disabled;
 
     public BaseBuildCacheServiceHandle(BuildCacheService service, boolean push, BuildCacheServiceRole role, boolean logStackTraces) {
         this.role = role;
         this.service = service;
         this.pushEnabled = push;
         this.logStackTraces = logStackTraces;
+        this.batchingLoadCoordinator = service instanceof BatchingBuildCacheService
+            ? new BatchingLoadCoordinator((BatchingBuildCacheService) service)
+            : null;
     }
 
     @Nullable
@@ -70,7 +79,11 @@ protected void loadInner(String description, BuildCacheKey key, LoadTarget loadT
     }
 
     protected void loadInner(BuildCacheKey key, BuildCacheEntryReader entryReader) {
-        service.load(key, entryReader);
+        if (batchingLoadCoordinator != null) {
+            batchingLoadCoordinator.load(key, entryReader);
+        } else {
+            service.load(key, entryReader);
+        }
     }
 
     @Override
@@ -89,6 +102,34 @@ public final void store(BuildCacheKey key, StoreTarget storeTarget) {
         }
     }
 
+    @Override
+    public final void storeWithRetries(BuildCacheKey key, File file, int maxAttempts) {
+        String description = "Store entry " + key.getDisplayName() + " in " + role.getDisplayName() + " build cache";
+        LOGGER.debug(description);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                storeInner(description, key, new StoreTarget(file));
+                return;
+            } catch (BuildCacheException e) {
+                if (attempt >= maxAttempts || disabled) {
+                    failure("store", "in", key, e);
+                    return;
+                }
+                LOGGER.debug("Attempt {} to store entry {} in {} build cache failed, retrying: {}", attempt, key.getDisplayName(), role.getDisplayName(), e.getMessage());
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    failure("store", "in", key, e);
+                    return;
+                }
+            } catch (Exception e) {
+                failure("store", "in", key, e);
+                return;
+            }
+        }
+    }
+
     protected void storeInner(String description, BuildCacheKey key, StoreTarget storeTarget) {
         service.store(key, storeTarget);
     }
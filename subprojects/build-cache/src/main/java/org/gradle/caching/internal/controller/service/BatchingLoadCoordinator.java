@@ -0,0 +1,207 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.service;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.BatchingBuildCacheService;
+import org.gradle.internal.UncheckedException;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Coalesces loads requested concurrently by different threads into multi-key requests.
+ *
+ * The first thread asking for an entry while no request is in flight issues a request for all keys queued at that point.
+ * Threads arriving while a request is in flight queue up for the next one.
+ * Each found entry is handed over to the thread that asked for it, so that entries are read on their own thread.
+ * A key is only requested once per batch. When several threads ask for the same key, a found entry is handed over to the first of them,
+ * and the others queue up again for the next request, as the entry can only be read once.
+ */
+class BatchingLoadCoordinator {
+
+    private final BatchingBuildCacheService service;
+
+    private final Object lock = new Object();
+    private final Deque<PendingLoad> queue = new ArrayDeque<>();
+    private boolean batchInFlight;
+
+    BatchingLoadCoordinator(BatchingBuildCacheService service) {
+        this.service = service;
+    }
+
+    public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) {
+        if (!service.isBatchingSupported()) {
+            return service.load(key, reader);
+        }
+
+        PendingLoad pending = new PendingLoad(key, reader);
+        synchronized (lock) {
+            queue.add(pending);
+        }
+        while (true) {
+            List<PendingLoad> batch = null;
+            synchronized (lock) {
+                while (batch == null && pending.input == null) {
+                    if (pending.done) {
+                        return pending.getResult();
+                    }
+                    if (!batchInFlight) {
+                        batch = takeBatch();
+                        batchInFlight = true;
+                    } else {
+                        waitForStateChange();
+                    }
+                }
+            }
+            if (batch != null) {
+                loadBatch(batch);
+            } else {
+                consumeHandedOverInput(pending);
+            }
+        }
+    }
+
+    private List<PendingLoad> takeBatch() {
+        List<PendingLoad> batch = ImmutableList.copyOf(queue);
+        queue.clear();
+        return batch;
+    }
+
+    private void loadBatch(List<PendingLoad> batch) {
+        ListMultimap<String, PendingLoad> pendingByHash = LinkedListMultimap.create();
+        ImmutableList.Builder<BuildCacheKey> keys = ImmutableList.builder();
+        for (PendingLoad pending : batch) {
+            if (!pendingByHash.containsKey(pending.key.getHashCode())) {
+                keys.add(pending.key);
+            }
+            pendingByHash.put(pending.key.getHashCode(), pending);
+        }
+        Throwable failure = null;
+        try {
+            service.loadAll(keys.build(), key -> input -> handOver(pendingByHash.get(key.getHashCode()).get(0), input));
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            synchronized (lock) {
+                for (String hash : pendingByHash.keySet()) {
+                    List<PendingLoad> pendingLoads = pendingByHash.get(hash);
+                    PendingLoad first = pendingLoads.get(0);
+                    List<PendingLoad> duplicates = pendingLoads.subList(1, pendingLoads.size());
+                    complete(first, failure);
+                    if (first.received && failure == null) {
+                        // The entry has been consumed by the first load, so request it again for the others
+                        queue.addAll(duplicates);
+                    } else {
+                        for (PendingLoad duplicate : duplicates) {
+                            complete(duplicate, failure);
+                        }
+                    }
+                }
+                batchInFlight = false;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private static void complete(PendingLoad pending, @Nullable Throwable failure) {
+        if (failure != null && pending.failure == null && !pending.found) {
+            pending.failure = failure;
+        }
+        pending.done = true;
+    }
+
+    private void handOver(PendingLoad pending, InputStream input) {
+        if (pending.owner == Thread.currentThread()) {
+            pending.read(input);
+            return;
+        }
+        synchronized (lock) {
+            pending.input = input;
+            lock.notifyAll();
+            while (pending.input != null) {
+                waitForStateChange();
+            }
+        }
+    }
+
+    private void consumeHandedOverInput(PendingLoad pending) {
+        pending.read(pending.input);
+        synchronized (lock) {
+            pending.input = null;
+            lock.notifyAll();
+        }
+    }
+
+    private void waitForStateChange() {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private static class PendingLoad {
+        private final BuildCacheKey key;
+        private final BuildCacheEntryReader reader;
+        private final Thread owner = Thread.currentThread();
+
+        // Guarded by the coordinator lock
+        private InputStream input;
+        private boolean done;
+        private boolean received;
+        private boolean found;
+        private Throwable failure;
+
+        PendingLoad(BuildCacheKey key, BuildCacheEntryReader reader) {
+            this.key = key;
+            this.reader = reader;
+        }
+
+        void read(InputStream input) {
+            boolean found = false;
+            Throwable failure = null;
+            try {
+                reader.readFrom(input);
+                found = true;
+            } catch (IOException e) {
+                failure = new BuildCacheException(e.getMessage(), e);
+            } catch (Throwable t) {
+                failure = t;
+            }
+            this.received = true;
+            this.found = found;
+            this.failure = failure;
+        }
+
+        boolean getResult() {
+            if (failure != null) {
+                throw UncheckedException.throwAsUncheckedException(failure);
+            }
+            return found;
+        }
+    }
+}
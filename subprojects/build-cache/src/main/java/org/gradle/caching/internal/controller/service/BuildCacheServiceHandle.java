@@ -22,6 +22,7 @@
 
 import javax.annotation.Nullable;
 import java.io.Closeable;
+import java.io.File;
 
 public interface BuildCacheServiceHandle extends Closeable {
 
@@ -37,6 +38,11 @@ public interface BuildCacheServiceHandle extends Closeable {
 
     void store(BuildCacheKey key, StoreTarget storeTarget);
 
+    /**
+     * Stores the given packed entry, retrying recoverable failures up to the given number of attempts before giving up.
+     */
+    void storeWithRetries(BuildCacheKey key, File file, int maxAttempts);
+
     @Override
     void close();
 }
@@ -18,6 +18,7 @@
 
 import org.gradle.api.Action;
 import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.BuildCacheBlobStore;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
 
 import javax.annotation.Nullable;
@@ -59,6 +60,17 @@ public void store(BuildCacheKey key, File file) {
         service.storeLocally(key, file);
     }
 
+    @Nullable
+    @Override
+    public BuildCacheBlobStore getBlobStore() {
+        return service.getBlobStore();
+    }
+
+    @Override
+    public boolean isDeduplicating() {
+        return pushEnabled && service.isDeduplicating();
+    }
+
     @Override
     public void close() {
         service.close();
@@ -19,6 +19,7 @@
 import com.google.common.annotations.VisibleForTesting;
 import org.gradle.api.Action;
 import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.BuildCacheBlobStore;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
 
 import javax.annotation.Nullable;
@@ -41,6 +42,11 @@ public interface LocalBuildCacheServiceHandle extends Closeable {
     // TODO: what if this errors?
     void store(BuildCacheKey key, File file);
 
+    @Nullable
+    BuildCacheBlobStore getBlobStore();
+
+    boolean isDeduplicating();
+
     @Override
     void close();
 
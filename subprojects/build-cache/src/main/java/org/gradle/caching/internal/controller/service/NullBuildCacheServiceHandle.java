@@ -20,6 +20,7 @@
 import org.gradle.caching.BuildCacheService;
 
 import javax.annotation.Nullable;
+import java.io.File;
 
 public class NullBuildCacheServiceHandle implements BuildCacheServiceHandle {
 
@@ -51,6 +52,11 @@ public void store(BuildCacheKey key, StoreTarget storeTarget) {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void storeWithRetries(BuildCacheKey key, File file, int maxAttempts) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public void close() {
 
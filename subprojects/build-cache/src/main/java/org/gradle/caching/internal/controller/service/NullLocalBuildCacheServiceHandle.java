@@ -18,6 +18,7 @@
 
 import org.gradle.api.Action;
 import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.BuildCacheBlobStore;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
 
 import javax.annotation.Nullable;
@@ -56,6 +57,17 @@ public void store(BuildCacheKey key, File file) {
         throw new UnsupportedOperationException();
     }
 
+    @Nullable
+    @Override
+    public BuildCacheBlobStore getBlobStore() {
+        return null;
+    }
+
+    @Override
+    public boolean isDeduplicating() {
+        return false;
+    }
+
     @Override
     public void close() {
 
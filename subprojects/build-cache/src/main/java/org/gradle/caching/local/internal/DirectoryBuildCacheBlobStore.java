@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.caching.local.internal;
+
+import org.gradle.caching.internal.BuildCacheBlobStore;
+import org.gradle.caching.internal.MissingBuildCacheBlobException;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.resource.local.FileAccessTracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Stores build cache blobs as {@code <dir>/<first two hex digits>/<hash>}.
+ *
+ * Blobs are written to a temporary file first and then moved into place, so concurrent stores of the same content are harmless.
+ * Restoring copies the blob, as the restored outputs may be modified in place afterwards.
+ */
+public class DirectoryBuildCacheBlobStore implements BuildCacheBlobStore {
+    public static final int FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP = 2;
+
+    private final File dir;
+    private final FileAccessTracker fileAccessTracker;
+
+    public DirectoryBuildCacheBlobStore(File dir, FileAccessTracker fileAccessTracker) {
+        this.dir = dir;
+        this.fileAccessTracker = fileAccessTracker;
+    }
+
+    @Override
+    public boolean contains(HashCode contentHash) {
+        File blob = blobFile(contentHash);
+        if (blob.isFile()) {
+            fileAccessTracker.markAccessed(blob);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void store(HashCode contentHash, File source) throws IOException {
+        File blob = blobFile(contentHash);
+        if (blob.isFile()) {
+            fileAccessTracker.markAccessed(blob);
+            return;
+        }
+        File blobDir = blob.getParentFile();
+        Files.createDirectories(blobDir.toPath());
+        File tempFile = File.createTempFile(contentHash + "-", BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX, blobDir);
+        try {
+            Files.copy(source.toPath(), tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            try {
+                Files.move(tempFile.toPath(), blob.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException ignored) {
+                // Stored concurrently
+            }
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+        fileAccessTracker.markAccessed(blob);
+    }
+
+    @Override
+    public void restore(HashCode contentHash, File target) throws IOException {
+        File blob = blobFile(contentHash);
+        try {
+            Files.copy(blob.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchFileException e) {
+            if (!blob.exists()) {
+                throw new MissingBuildCacheBlobException(contentHash);
+            }
+            throw e;
+        }
+        fileAccessTracker.markAccessed(blob);
+    }
+
+    private File blobFile(HashCode contentHash) {
+        String hash = contentHash.toString();
+        return new File(new File(dir, hash.substring(0, 2)), hash);
+    }
+}
@@ -25,6 +25,7 @@
 import org.gradle.caching.BuildCacheException;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.internal.BuildCacheBlobStore;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.resource.local.FileAccessTracker;
 import org.gradle.internal.resource.local.LocallyAvailableResource;
@@ -32,6 +33,7 @@
 import org.gradle.util.GFileUtils;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -46,14 +48,23 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
     private final BuildCacheTempFileStore tempFileStore;
     private final FileAccessTracker fileAccessTracker;
     private final String failedFileSuffix;
+    @Nullable
+    private final BuildCacheBlobStore blobStore;
+    private final boolean deduplicating;
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
     public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix) {
+        this(fileStore, persistentCache, tempFileStore, fileAccessTracker, failedFileSuffix, null, false);
+    }
+
+    public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix, @Nullable BuildCacheBlobStore blobStore, boolean deduplicating) {
         this.fileStore = fileStore;
         this.persistentCache = persistentCache;
         this.tempFileStore = tempFileStore;
         this.fileAccessTracker = fileAccessTracker;
         this.failedFileSuffix = failedFileSuffix;
+        this.blobStore = blobStore;
+        this.deduplicating = blobStore != null && deduplicating;
     }
 
     private static class LoadAction implements Action<File> {
@@ -170,6 +181,17 @@ private void storeInsideLock(BuildCacheKey key, File file) {
         fileAccessTracker.markAccessed(resource.getFile());
     }
 
+    @Nullable
+    @Override
+    public BuildCacheBlobStore getBlobStore() {
+        return blobStore;
+    }
+
+    @Override
+    public boolean isDeduplicating() {
+        return deduplicating;
+    }
+
     @Override
     public void withTempFile(final BuildCacheKey key, final Action<? super File> action) {
         persistentCache.withFileLock(new Runnable() {
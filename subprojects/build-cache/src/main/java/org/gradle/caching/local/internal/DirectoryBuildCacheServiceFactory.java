@@ -22,6 +22,8 @@
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.internal.CacheScopeMapping;
 import org.gradle.cache.internal.CleanupActionFactory;
+import org.gradle.cache.internal.CompositeCleanupAction;
+import org.gradle.cache.internal.FilesFinder;
 import org.gradle.cache.internal.LeastRecentlyUsedCacheCleanup;
 import org.gradle.cache.internal.SingleDepthFilesFinder;
 import org.gradle.cache.internal.VersionStrategy;
@@ -36,12 +38,18 @@
 
 import javax.inject.Inject;
 import java.io.File;
+import java.io.FileFilter;
 
 import static org.gradle.cache.FileLockManager.LockMode.OnDemand;
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFactory<DirectoryBuildCache> {
     public static final String FAILED_READ_SUFFIX = ".failed";
+    /**
+     * When set, new local cache entries refer to output file contents in a shared blob store instead of containing them.
+     */
+    public static final String DEDUPLICATE_PROPERTY = "org.gradle.caching.local.deduplicate";
+    private static final String BLOBS_DIRECTORY = "blobs";
 
     private static final String BUILD_CACHE_VERSION = "1";
     private static final String BUILD_CACHE_KEY = "build-cache-" + BUILD_CACHE_VERSION;
@@ -83,17 +91,42 @@ public BuildCacheService createBuildCacheService(DirectoryBuildCache configurati
             config("removeUnusedEntriesAfter", String.valueOf(removeUnusedEntriesAfterDays) + " days");
 
         PathKeyFileStore fileStore = fileStoreFactory.createFileStore(target);
+        File blobsDir = new File(target, BLOBS_DIRECTORY);
+        CompositeCleanupAction cleanup = CompositeCleanupAction.builder()
+            .add(new LeastRecentlyUsedCacheCleanup(new ExcludingFilesFinder(new SingleDepthFilesFinder(FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP), BLOBS_DIRECTORY), fileAccessTimeJournal, removeUnusedEntriesAfterDays))
+            .add(blobsDir, new LeastRecentlyUsedCacheCleanup(new SingleDepthFilesFinder(DirectoryBuildCacheBlobStore.FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP), fileAccessTimeJournal, removeUnusedEntriesAfterDays))
+            .build();
         PersistentCache persistentCache = cacheRepository
             .cache(target)
-            .withCleanup(cleanupActionFactory.create(new LeastRecentlyUsedCacheCleanup(new SingleDepthFilesFinder(FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP), fileAccessTimeJournal, removeUnusedEntriesAfterDays)))
+            .withCleanup(cleanupActionFactory.create(cleanup))
             .withDisplayName("Build cache")
             .withLockOptions(mode(OnDemand))
             .withCrossVersionCache(CacheBuilder.LockTarget.DefaultTarget)
             .open();
         BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(target);
         FileAccessTracker fileAccessTracker = new SingleDepthFileAccessTracker(fileAccessTimeJournal, target, FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP);
+        FileAccessTracker blobAccessTracker = new SingleDepthFileAccessTracker(fileAccessTimeJournal, blobsDir, DirectoryBuildCacheBlobStore.FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP);
+        DirectoryBuildCacheBlobStore blobStore = new DirectoryBuildCacheBlobStore(blobsDir, blobAccessTracker);
 
-        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX);
+        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX, blobStore, Boolean.getBoolean(DEDUPLICATE_PROPERTY));
+    }
+
+    /**
+     * Keeps the blob store out of the cleanup of cache entries, as it is cleaned up separately.
+     */
+    private static class ExcludingFilesFinder implements FilesFinder {
+        private final FilesFinder delegate;
+        private final String excludedName;
+
+        ExcludingFilesFinder(FilesFinder delegate, String excludedName) {
+            this.delegate = delegate;
+            this.excludedName = excludedName;
+        }
+
+        @Override
+        public Iterable<File> find(File baseDir, FileFilter filter) {
+            return delegate.find(baseDir, file -> !file.getName().equals(excludedName) && filter.accept(file));
+        }
     }
 
     private static void checkDirectory(File directory) {
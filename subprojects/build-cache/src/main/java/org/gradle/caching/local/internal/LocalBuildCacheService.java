@@ -18,7 +18,9 @@
 
 import org.gradle.api.Action;
 import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.BuildCacheBlobStore;
 
+import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.File;
 
@@ -39,6 +41,21 @@ public interface LocalBuildCacheService extends BuildCacheTempFileStore, Closeab
      */
     void storeLocally(BuildCacheKey key, File file);
 
+    /**
+     * The store that file contents of cache artifacts may refer to, or {@code null} if all artifacts are self-contained.
+     */
+    @Nullable
+    default BuildCacheBlobStore getBlobStore() {
+        return null;
+    }
+
+    /**
+     * Whether artifacts stored in this cache should refer to file contents in the {@link #getBlobStore() blob store} instead of containing them.
+     */
+    default boolean isDeduplicating() {
+        return false;
+    }
+
     @Override
     void close();
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller
+
+import org.gradle.caching.BuildCacheEntryWriter
+import org.gradle.caching.BuildCacheKey
+import org.gradle.caching.BuildCacheService
+import org.gradle.caching.internal.controller.service.BuildCacheServiceHandle
+import org.gradle.caching.internal.controller.service.BuildCacheServiceRole
+import org.gradle.caching.internal.controller.service.OpFiringBuildCacheServiceHandle
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration
+import org.gradle.internal.operations.BuildOperationContext
+import org.gradle.internal.operations.BuildOperationDescriptor
+import org.gradle.internal.operations.BuildOperationListener
+import org.gradle.internal.operations.BuildOperationQueueFactory
+import org.gradle.internal.operations.DefaultBuildOperationExecutor
+import org.gradle.internal.operations.DefaultBuildOperationIdFactory
+import org.gradle.internal.operations.RunnableBuildOperation
+import org.gradle.internal.progress.NoOpProgressLoggerFactory
+import org.gradle.internal.time.Clock
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+
+class AsyncRemoteStoreQueueTest extends Specification {
+
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+
+    def remote = Mock(BuildCacheServiceHandle)
+    def queue = new AsyncRemoteStoreQueue(remote, new DefaultExecutorFactory())
+    def key = Stub(BuildCacheKey) {
+        getHashCode() >> "0123456789abcdef"
+        getDisplayName() >> "0123456789abcdef"
+    }
+
+    def "uploads a copy of the packed entry and deletes it afterwards"() {
+        def packed = tmpDir.file("entry.part") << "Data"
+        def uploaded = null
+
+        when:
+        queue.submit(key, packed)
+        queue.close()
+
+        then:
+        1 * remote.canStore() >> true
+        1 * remote.storeWithRetries(key, _ as File, AsyncRemoteStoreQueue.MAX_ATTEMPTS) >> { k, File file, int attempts ->
+            assert file != packed
+            uploaded = file.text
+        }
+        uploaded == "Data"
+        packed.text == "Data"
+        tmpDir.testDirectory.listFiles() as List == [packed]
+    }
+
+    def "packed entry can be moved away while the upload is pending"() {
+        def packed = tmpDir.file("entry.part") << "Data"
+        def moved = tmpDir.file("moved")
+        def uploaded = null
+
+        when:
+        queue.submit(key, packed)
+        packed.renameTo(moved)
+        queue.close()
+
+        then:
+        1 * remote.canStore() >> true
+        1 * remote.storeWithRetries(key, _ as File, _) >> { k, File file, int attempts ->
+            uploaded = file.text
+        }
+        uploaded == "Data"
+        moved.text == "Data"
+    }
+
+    def "skips upload when remote was disabled in the meantime"() {
+        def packed = tmpDir.file("entry.part") << "Data"
+
+        when:
+        queue.submit(key, packed)
+        queue.close()
+
+        then:
+        1 * remote.canStore() >> false
+        0 * remote.storeWithRetries(_, _, _)
+        tmpDir.testDirectory.listFiles() as List == [packed]
+    }
+
+    def "uploads entries after the operation that submitted them has finished"() {
+        def buildOperationExecutor = new DefaultBuildOperationExecutor(
+            Mock(BuildOperationListener), Mock(Clock), new NoOpProgressLoggerFactory(),
+            Mock(BuildOperationQueueFactory), new DefaultExecutorFactory(), new DefaultParallelismConfiguration(true, 1), new DefaultBuildOperationIdFactory())
+        def submittingOperationFinished = new CountDownLatch(1)
+        def uploaded = new ByteArrayOutputStream()
+        def service = [
+            store: { BuildCacheKey k, BuildCacheEntryWriter writer ->
+                submittingOperationFinished.await()
+                writer.writeTo(uploaded)
+            },
+            close: {}
+        ] as BuildCacheService
+        def remote = new OpFiringBuildCacheServiceHandle(service, true, BuildCacheServiceRole.REMOTE, buildOperationExecutor, false)
+        def queue = new AsyncRemoteStoreQueue(remote, new DefaultExecutorFactory())
+        def packed = tmpDir.file("entry.part") << "Data"
+
+        when:
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            void run(BuildOperationContext context) {
+                queue.submit(key, packed)
+            }
+
+            @Override
+            BuildOperationDescriptor.Builder description() {
+                BuildOperationDescriptor.displayName("Store entry")
+            }
+        })
+        submittingOperationFinished.countDown()
+        queue.close()
+
+        then:
+        uploaded.toString() == "Data"
+        remote.canStore()
+    }
+}
@@ -21,6 +21,7 @@ import org.gradle.caching.BuildCacheEntryReader
 import org.gradle.caching.BuildCacheEntryWriter
 import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheService
+import org.gradle.caching.internal.BuildCacheBlobStore
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration
 import org.gradle.caching.local.internal.LocalBuildCacheService
 import org.gradle.internal.operations.TestBuildOperationExecutor
@@ -47,7 +48,7 @@ class DefaultBuildCacheControllerTest extends Specification {
 
     def storeCommand = Stub(BuildCacheStoreCommand) {
         getKey() >> key
-        store(_ as OutputStream) >> { OutputStream output ->
+        store(_ as OutputStream, _) >> { OutputStream output, blobStore ->
             output.close()
             new BuildCacheStoreCommand.Result() {
                 @Override
@@ -60,7 +61,7 @@ class DefaultBuildCacheControllerTest extends Specification {
 
     def loadCommand = Stub(BuildCacheLoadCommand) {
         getKey() >> key
-        load(_ as InputStream) >> { InputStream input ->
+        load(_ as InputStream, _) >> { InputStream input, blobStore ->
             input.close()
             new BuildCacheLoadCommand.Result() {
                 @Override
@@ -207,6 +208,99 @@ class DefaultBuildCacheControllerTest extends Specification {
         0 * local.storeLocally(key, _)
     }
 
+    def "loads from remote when local entry refers to missing content"() {
+        given:
+        def blobStore = Stub(BuildCacheBlobStore)
+        local.getBlobStore() >> blobStore
+        1 * local.loadLocally(key, _) >> { BuildCacheKey key, Action<File> action ->
+            def file = tmpDir.file("file")
+            file.text = "manifest"
+            action.execute(file)
+        }
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            true
+        }
+        def command = Mock(BuildCacheLoadCommand) {
+            getKey() >> key
+        }
+
+        when:
+        def result = controller.load(command)
+
+        then:
+        1 * command.isComplete(_, blobStore) >> { InputStream input, store ->
+            input.close()
+            false
+        }
+        0 * command.load(_, blobStore)
+        1 * command.load(_, null) >> { InputStream input, store ->
+            input.close()
+            Stub(BuildCacheLoadCommand.Result) {
+                getMetadata() >> loadmetadata
+            }
+        }
+        result.get() == loadmetadata
+    }
+
+    def "loads local entry when all referenced content is present"() {
+        given:
+        def blobStore = Stub(BuildCacheBlobStore)
+        local.getBlobStore() >> blobStore
+        1 * local.loadLocally(key, _) >> { BuildCacheKey key, Action<File> action ->
+            def file = tmpDir.file("file")
+            file.text = "manifest"
+            action.execute(file)
+        }
+        def command = Mock(BuildCacheLoadCommand) {
+            getKey() >> key
+        }
+
+        when:
+        def result = controller.load(command)
+
+        then:
+        1 * command.isComplete(_, blobStore) >> { InputStream input, store ->
+            input.close()
+            true
+        }
+        1 * command.load(_, blobStore) >> { InputStream input, store ->
+            input.close()
+            Stub(BuildCacheLoadCommand.Result) {
+                getMetadata() >> loadmetadata
+            }
+        }
+        0 * remote.load(_, _)
+        result.get() == loadmetadata
+    }
+
+    def "stores deduplicated local entry separately from remote entry"() {
+        given:
+        def blobStore = Stub(BuildCacheBlobStore)
+        local.getBlobStore() >> blobStore
+        local.isDeduplicating() >> true
+        def command = Mock(BuildCacheStoreCommand) {
+            getKey() >> key
+        }
+
+        when:
+        controller.store(command)
+
+        then:
+        1 * command.store(_, null) >> { OutputStream output, store ->
+            output.close()
+            Stub(BuildCacheStoreCommand.Result)
+        }
+        1 * remote.store(key, _)
+
+        then:
+        1 * command.store(_, blobStore) >> { OutputStream output, store ->
+            output.close()
+            Stub(BuildCacheStoreCommand.Result)
+        }
+        1 * local.storeLocally(key, _)
+    }
+
     def "stops calling through after read error"() {
         local = null
 
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.service
+
+import org.gradle.caching.BuildCacheEntryReader
+import org.gradle.caching.BuildCacheException
+import org.gradle.caching.BuildCacheKey
+import org.gradle.caching.internal.BatchingBuildCacheService
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+
+import java.util.concurrent.CopyOnWriteArrayList
+
+class BatchingLoadCoordinatorTest extends ConcurrentSpec {
+
+    def service = Mock(BatchingBuildCacheService)
+    def coordinator = new BatchingLoadCoordinator(service)
+    def key = Stub(BuildCacheKey) {
+        getHashCode() >> "0123456789abcdef"
+    }
+
+    def "loads single entries when batching is not supported"() {
+        def reader = Mock(BuildCacheEntryReader)
+
+        when:
+        def found = coordinator.load(key, reader)
+
+        then:
+        found
+        1 * service.isBatchingSupported() >> false
+        1 * service.load(key, reader) >> true
+        0 * service._
+    }
+
+    def "loads entry with multi-key request when batching is supported"() {
+        def loaded = null
+        def reader = { input -> loaded = input.text } as BuildCacheEntryReader
+
+        when:
+        def found = coordinator.load(key, reader)
+
+        then:
+        found
+        loaded == "Data"
+        1 * service.isBatchingSupported() >> true
+        1 * service.loadAll([key], _) >> { keys, readers ->
+            readers.apply(key).readFrom(new ByteArrayInputStream("Data".bytes))
+        }
+        0 * service._
+    }
+
+    def "reports miss when entry is not part of the response"() {
+        def reader = Mock(BuildCacheEntryReader)
+
+        when:
+        def found = coordinator.load(key, reader)
+
+        then:
+        !found
+        1 * service.isBatchingSupported() >> true
+        1 * service.loadAll([key], _)
+        0 * reader._
+    }
+
+    def "rethrows failure of multi-key request"() {
+        def failure = new BuildCacheException("broken")
+
+        when:
+        coordinator.load(key, Mock(BuildCacheEntryReader))
+
+        then:
+        def e = thrown BuildCacheException
+        e.is(failure)
+        1 * service.isBatchingSupported() >> true
+        1 * service.loadAll([key], _) >> { throw failure }
+    }
+
+    def "wraps IO failure of reader"() {
+        def reader = { input -> throw new IOException("bang!") } as BuildCacheEntryReader
+
+        when:
+        coordinator.load(key, reader)
+
+        then:
+        def e = thrown BuildCacheException
+        e.cause instanceof IOException
+        1 * service.isBatchingSupported() >> true
+        1 * service.loadAll([key], _) >> { keys, readers ->
+            readers.apply(key).readFrom(new ByteArrayInputStream("Data".bytes))
+        }
+    }
+
+    def "requests a key once per batch and hands the entry to each thread asking for it"() {
+        def otherKey = Stub(BuildCacheKey) {
+            getHashCode() >> "fedcba9876543210"
+        }
+        def batches = new CopyOnWriteArrayList<List<String>>()
+        def loaded = new CopyOnWriteArrayList<String>()
+        def found = new CopyOnWriteArrayList<Boolean>()
+        def service = [
+            isBatchingSupported: { true },
+            loadAll: { Collection<BuildCacheKey> keys, readers ->
+                batches << keys.collect { it.getHashCode() }
+                if (keys.contains(otherKey)) {
+                    instant.firstBatchStarted
+                    thread.blockUntil.secondLoadStarted
+                    thread.block()
+                }
+                if (keys.contains(key)) {
+                    readers.apply(key).readFrom(new ByteArrayInputStream("Data".bytes))
+                }
+            }
+        ] as BatchingBuildCacheService
+        def coordinator = new BatchingLoadCoordinator(service)
+        def reader = { input -> loaded << input.text } as BuildCacheEntryReader
+
+        when:
+        async {
+            start {
+                found << coordinator.load(otherKey, reader)
+            }
+            thread.blockUntil.firstBatchStarted
+            start {
+                instant.firstLoadStarted
+                found << coordinator.load(key, reader)
+            }
+            start {
+                thread.blockUntil.firstLoadStarted
+                instant.secondLoadStarted
+                found << coordinator.load(key, reader)
+            }
+        }
+
+        then:
+        batches == [["fedcba9876543210"], ["0123456789abcdef"], ["0123456789abcdef"]]
+        loaded == ["Data", "Data"]
+        found == [false, true, true]
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.caching.local.internal
+
+import org.gradle.caching.internal.MissingBuildCacheBlobException
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.resource.local.FileAccessTracker
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+@CleanupTestDirectory
+class DirectoryBuildCacheBlobStoreTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+    def blobsDir = temporaryFolder.createDir("blobs")
+    def fileAccessTracker = Mock(FileAccessTracker)
+    def blobStore = new DirectoryBuildCacheBlobStore(blobsDir, fileAccessTracker)
+    def hash = HashCode.fromString("1234abcd")
+
+    def "stores and restores content by hash"() {
+        def source = temporaryFolder.file("source") << "content"
+        def target = temporaryFolder.file("target")
+
+        when:
+        blobStore.store(hash, source)
+
+        then:
+        blobStore.contains(hash)
+        blobsDir.file("12/1234abcd").text == "content"
+        blobsDir.file("12").list() as List == ["1234abcd"]
+
+        when:
+        blobStore.restore(hash, target)
+
+        then:
+        target.text == "content"
+        1 * fileAccessTracker.markAccessed(blobsDir.file("12/1234abcd"))
+    }
+
+    def "does not store content that is already present"() {
+        def source = temporaryFolder.file("source") << "content"
+        def other = temporaryFolder.file("other") << "other"
+        blobStore.store(hash, source)
+
+        when:
+        blobStore.store(hash, other)
+
+        then:
+        blobsDir.file("12/1234abcd").text == "content"
+        1 * fileAccessTracker.markAccessed(blobsDir.file("12/1234abcd"))
+    }
+
+    def "fails to restore missing content"() {
+        when:
+        blobStore.restore(hash, temporaryFolder.file("target"))
+
+        then:
+        !blobStore.contains(hash)
+        thrown MissingBuildCacheBlobException
+    }
+}
@@ -76,6 +76,14 @@ public void setSearchUpwardsWithoutDeprecationWarning(boolean searchUpwards) {
         super.searchUpwards = searchUpwards;
     }
 
+    /**
+     * Whether the given system property is set to a value other than {@code false}, either for this build or for the process running it.
+     */
+    public boolean isSystemPropertyEnabled(String systemProperty) {
+        String value = getSystemPropertiesArgs().getOrDefault(systemProperty, System.getProperty(systemProperty));
+        return value != null && !"false".equalsIgnoreCase(value);
+    }
+
     public boolean isWatchFileSystem() {
         return watchFileSystem;
     }
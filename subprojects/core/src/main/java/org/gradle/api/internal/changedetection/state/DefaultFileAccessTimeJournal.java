@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import org.gradle.api.internal.GradleInternal;
 import org.gradle.cache.CacheBuilder;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.FileLockManager;
@@ -23,28 +24,45 @@
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
+import org.gradle.initialization.RootBuildLifecycleListener;
 import org.gradle.internal.Factory;
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.file.FileAccessTimeJournal;
 import org.gradle.util.GUtil;
 
 import java.io.File;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 import static org.gradle.internal.serialize.BaseSerializerFactory.FILE_SERIALIZER;
 import static org.gradle.internal.serialize.BaseSerializerFactory.LONG_SERIALIZER;
 
-public class DefaultFileAccessTimeJournal implements FileAccessTimeJournal, Stoppable {
+/**
+ * Keeps the access times recorded during a build in memory, keeping only the latest one per file, and persists them at the end of the build.
+ * A persisted access time is only updated when it is older than the new one by at least {@link #PERSISTED_ACCESS_TIME_GRANULARITY_MILLIS},
+ * as it's only used to decide whether a file has been unused for some days. The granularity is a small fraction of the shortest time unused files are kept for,
+ * so that a file is never considered unused much earlier than it actually is.
+ */
+public class DefaultFileAccessTimeJournal implements FileAccessTimeJournal, RootBuildLifecycleListener, Stoppable {
 
     public static final String CACHE_KEY = "journal-1";
     public static final String FILE_ACCESS_CACHE_NAME = "file-access";
     public static final String FILE_ACCESS_PROPERTIES_FILE_NAME = FILE_ACCESS_CACHE_NAME + ".properties";
     public static final String INCEPTION_TIMESTAMP_KEY = "inceptionTimestamp";
+    /**
+     * The shortest time unused files are kept for by any cache cleanup, see {@link org.gradle.caching.local.DirectoryBuildCache#setRemoveUnusedEntriesAfterDays(int)}.
+     */
+    private static final long SHORTEST_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(1);
+    public static final long PERSISTED_ACCESS_TIME_GRANULARITY_MILLIS = SHORTEST_RETENTION_MILLIS / 24;
 
     private final PersistentCache cache;
     private final PersistentIndexedCache<File, Long> store;
     private final long inceptionTimestamp;
+    private final ConcurrentMap<File, Long> pendingAccessTimes = new ConcurrentHashMap<>();
 
     public DefaultFileAccessTimeJournal(CacheRepository cacheRepository, InMemoryCacheDecoratorFactory cacheDecoratorFactory) {
         cache = cacheRepository
@@ -79,19 +97,55 @@ public Long create() {
         });
     }
 
+    @Override
+    public void afterStart(GradleInternal gradle) {
+    }
+
+    @Override
+    public void beforeComplete(GradleInternal gradle) {
+        flush();
+    }
+
     @Override
     public void stop() {
-        cache.close();
+        try {
+            flush();
+        } finally {
+            cache.close();
+        }
+    }
+
+    /**
+     * Persists the access times recorded since the last flush.
+     */
+    public void flush() {
+        if (pendingAccessTimes.isEmpty()) {
+            return;
+        }
+        cache.useCache(() -> {
+            for (Map.Entry<File, Long> entry : pendingAccessTimes.entrySet()) {
+                File file = entry.getKey();
+                Long accessTime = entry.getValue();
+                Long persistedAccessTime = store.get(file);
+                if (persistedAccessTime == null || accessTime - persistedAccessTime >= PERSISTED_ACCESS_TIME_GRANULARITY_MILLIS) {
+                    store.put(file, accessTime);
+                }
+                pendingAccessTimes.remove(file, accessTime);
+            }
+        });
     }
 
     @Override
     public void setLastAccessTime(File file, long millis) {
-        store.put(file, millis);
+        pendingAccessTimes.merge(file, millis, Math::max);
     }
 
     @Override
     public long getLastAccessTime(File file) {
-        Long value = store.get(file);
+        Long value = pendingAccessTimes.get(file);
+        if (value == null) {
+            value = store.get(file);
+        }
         if (value == null) {
             return Math.max(inceptionTimestamp, file.lastModified());
         }
@@ -100,6 +154,7 @@ public long getLastAccessTime(File file) {
 
     @Override
     public void deleteLastAccessTime(File file) {
+        pendingAccessTimes.remove(file);
         store.remove(file);
     }
 }
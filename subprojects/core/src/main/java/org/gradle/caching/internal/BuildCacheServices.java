@@ -32,7 +32,9 @@
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.DefaultTarPackerFileSystemSupport;
 import org.gradle.caching.internal.packaging.impl.FilePermissionAccess;
-import org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.BuildCacheEntryCompression;
+import org.gradle.caching.internal.packaging.impl.BuildCacheUnpackExecutor;
+import org.gradle.caching.internal.packaging.impl.CompressingBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarPackerFileSystemSupport;
 import org.gradle.caching.internal.services.BuildCacheControllerFactory;
@@ -40,6 +42,7 @@
 import org.gradle.caching.local.internal.DirectoryBuildCacheFileStoreFactory;
 import org.gradle.caching.local.internal.DirectoryBuildCacheServiceFactory;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.file.FileException;
 import org.gradle.internal.hash.ChecksumService;
@@ -68,6 +71,22 @@
  */
 public final class BuildCacheServices extends AbstractPluginServiceRegistry {
 
+    /**
+     * When set, entries are uploaded to the remote build cache in the background instead of on the worker thread.
+     */
+    private static final String ASYNC_REMOTE_STORE_PROPERTY = "org.gradle.caching.remote.async";
+
+    /**
+     * The codec to compress new build cache entries with, one of {@code gzip} (the default), {@code lz4} or {@code snappy}.
+     * Entries compressed with another codec than gzip are stored under different keys, so they are not shared with builds using gzip.
+     */
+    private static final String ENTRY_COMPRESSION_PROPERTY = "org.gradle.caching.compression";
+
+    /**
+     * The number of threads to write the files of a build cache entry with when unpacking it, defaults to 1.
+     */
+    private static final String UNPACK_THREADS_PROPERTY = "org.gradle.caching.unpack.threads";
+
     @Override
     public void registerBuildTreeServices(ServiceRegistration registration) {
         registration.addProvider(new Object() {
@@ -114,14 +133,25 @@ TarPackerFileSystemSupport createPackerFileSystemSupport(Deleter deleter) {
                 return new DefaultTarPackerFileSystemSupport(deleter);
             }
 
+            BuildCacheUnpackExecutor createBuildCacheUnpackExecutor(ExecutorFactory executorFactory) {
+                return new BuildCacheUnpackExecutor(executorFactory, Integer.getInteger(UNPACK_THREADS_PROPERTY, 1));
+            }
+
+            BuildCacheEntryCompression createBuildCacheEntryCompression() {
+                return BuildCacheEntryCompression.forName(System.getProperty(ENTRY_COMPRESSION_PROPERTY, "gzip"));
+            }
+
             BuildCacheEntryPacker createResultPacker(
                 TarPackerFileSystemSupport fileSystemSupport,
                 FileSystem fileSystem,
                 StreamHasher fileHasher,
-                StringInterner stringInterner
+                StringInterner stringInterner,
+                BuildCacheUnpackExecutor unpackExecutor,
+                BuildCacheEntryCompression compression
             ) {
-                return new GZipBuildCacheEntryPacker(
-                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner));
+                return new CompressingBuildCacheEntryPacker(
+                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner, unpackExecutor.isParallel() ? unpackExecutor : null),
+                    compression);
             }
 
             OriginMetadataFactory createOriginMetadataFactory(
@@ -144,9 +174,10 @@ BuildCacheCommandFactory createBuildCacheCommandFactory(
                 BuildCacheEntryPacker packer,
                 OriginMetadataFactory originMetadataFactory,
                 VirtualFileSystem virtualFileSystem,
-                StringInterner stringInterner
+                StringInterner stringInterner,
+                BuildCacheEntryCompression compression
             ) {
-                return new DefaultBuildCacheCommandFactory(packer, originMetadataFactory, virtualFileSystem, stringInterner);
+                return new DefaultBuildCacheCommandFactory(packer, originMetadataFactory, virtualFileSystem, stringInterner, compression);
             }
 
             BuildCacheController createBuildCacheController(
@@ -184,6 +215,7 @@ private BuildCacheController doCreateBuildCacheController(ServiceRegistry servic
                 File gradleUserHomeDir = gradle.getGradleUserHomeDir();
                 BuildCacheControllerFactory.BuildCacheMode buildCacheMode = startParameter.isBuildCacheEnabled() ? BuildCacheControllerFactory.BuildCacheMode.ENABLED : BuildCacheControllerFactory.BuildCacheMode.DISABLED;
                 BuildCacheControllerFactory.RemoteAccessMode remoteAccessMode = startParameter.isOffline() ? BuildCacheControllerFactory.RemoteAccessMode.OFFLINE : BuildCacheControllerFactory.RemoteAccessMode.ONLINE;
+                BuildCacheControllerFactory.RemoteStoreMode remoteStoreMode = Boolean.getBoolean(ASYNC_REMOTE_STORE_PROPERTY) ? BuildCacheControllerFactory.RemoteStoreMode.ASYNC : BuildCacheControllerFactory.RemoteStoreMode.SYNC;
                 boolean logStackTraces = startParameter.getShowStacktrace() != ShowStacktrace.INTERNAL_EXCEPTIONS;
                 boolean emitDebugLogging = startParameter.isBuildCacheDebugLogging();
 
@@ -194,9 +226,11 @@ private BuildCacheController doCreateBuildCacheController(ServiceRegistry servic
                     buildCacheConfiguration,
                     buildCacheMode,
                     remoteAccessMode,
+                    remoteStoreMode,
                     logStackTraces,
                     emitDebugLogging,
-                    instantiatorFactory.inject(serviceRegistry)
+                    instantiatorFactory.inject(serviceRegistry),
+                    serviceRegistry.get(ExecutorFactory.class)
                 );
             }
         });
@@ -20,6 +20,7 @@
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Interner;
 import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.BuildCacheBlobStore;
 import org.gradle.caching.internal.CacheableEntity;
 import org.gradle.caching.internal.controller.BuildCacheCommandFactory;
 import org.gradle.caching.internal.controller.BuildCacheLoadCommand;
@@ -27,17 +28,22 @@
 import org.gradle.caching.internal.origin.OriginMetadata;
 import org.gradle.caching.internal.origin.OriginMetadataFactory;
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.BuildCacheEntryCompression;
 import org.gradle.internal.file.FileMetadata.AccessType;
 import org.gradle.internal.file.FileType;
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
 import org.gradle.internal.fingerprint.FingerprintingStrategy;
 import org.gradle.internal.fingerprint.impl.AbsolutePathFingerprintingStrategy;
 import org.gradle.internal.fingerprint.impl.DefaultCurrentFileCollectionFingerprint;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 import org.gradle.internal.snapshot.MissingFileSnapshot;
 import org.gradle.internal.vfs.VirtualFileSystem;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -51,22 +57,45 @@ public class DefaultBuildCacheCommandFactory implements BuildCacheCommandFactory
     private final OriginMetadataFactory originMetadataFactory;
     private final VirtualFileSystem virtualFileSystem;
     private final Interner<String> stringInterner;
+    private final BuildCacheEntryCompression compression;
 
     public DefaultBuildCacheCommandFactory(BuildCacheEntryPacker packer, OriginMetadataFactory originMetadataFactory, VirtualFileSystem virtualFileSystem, Interner<String> stringInterner) {
+        this(packer, originMetadataFactory, virtualFileSystem, stringInterner, BuildCacheEntryCompression.GZIP);
+    }
+
+    /**
+     * Creates a factory for entries packed with the given compression, which has to be the compression the packer uses.
+     */
+    public DefaultBuildCacheCommandFactory(BuildCacheEntryPacker packer, OriginMetadataFactory originMetadataFactory, VirtualFileSystem virtualFileSystem, Interner<String> stringInterner, BuildCacheEntryCompression compression) {
         this.packer = packer;
         this.originMetadataFactory = originMetadataFactory;
         this.virtualFileSystem = virtualFileSystem;
         this.stringInterner = stringInterner;
+        this.compression = compression;
     }
 
     @Override
     public BuildCacheLoadCommand<LoadMetadata> createLoad(BuildCacheKey cacheKey, CacheableEntity entity) {
-        return new LoadCommand(cacheKey, entity);
+        return new LoadCommand(entryKey(cacheKey), entity);
     }
 
     @Override
     public BuildCacheStoreCommand createStore(BuildCacheKey cacheKey, CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, long executionTime) {
-        return new StoreCommand(cacheKey, entity, snapshots, executionTime);
+        return new StoreCommand(entryKey(cacheKey), entity, snapshots, executionTime);
+    }
+
+    /**
+     * Entries compressed with another codec than gzip can't be unpacked by Gradle versions that only know gzip entries,
+     * so they are kept apart in a key space of their own, derived from the key of the entity and the codec.
+     */
+    private BuildCacheKey entryKey(BuildCacheKey cacheKey) {
+        if (compression == BuildCacheEntryCompression.GZIP) {
+            return cacheKey;
+        }
+        Hasher hasher = Hashing.newHasher();
+        hasher.putString(cacheKey.getHashCode());
+        hasher.putString(compression.name());
+        return new CompressionSpecificBuildCacheKey(hasher.hash());
     }
 
     private class LoadCommand implements BuildCacheLoadCommand<LoadMetadata> {
@@ -85,12 +114,12 @@ public BuildCacheKey getKey() {
         }
 
         @Override
-        public BuildCacheLoadCommand.Result<LoadMetadata> load(InputStream input) throws IOException {
+        public BuildCacheLoadCommand.Result<LoadMetadata> load(InputStream input, @Nullable BuildCacheBlobStore blobStore) throws IOException {
             ImmutableList.Builder<String> roots = ImmutableList.builder();
             entity.visitOutputTrees((name, type, root) -> roots.add(root.getAbsolutePath()));
             // TODO: Actually unpack the roots inside of the action
             virtualFileSystem.update(roots.build(), () -> {});
-            BuildCacheEntryPacker.UnpackResult unpackResult = packer.unpack(entity, input, originMetadataFactory.createReader(entity));
+            BuildCacheEntryPacker.UnpackResult unpackResult = packer.unpack(entity, input, originMetadataFactory.createReader(entity), blobStore);
             // TODO: Update the snapshots from the action
             ImmutableSortedMap<String, CurrentFileCollectionFingerprint> snapshots = snapshotUnpackedData(unpackResult.getSnapshots());
             return new Result<LoadMetadata>() {
@@ -116,9 +145,15 @@ public ImmutableSortedMap<String, CurrentFileCollectionFingerprint> getResulting
             };
         }
 
+        @Override
+        public boolean isComplete(InputStream input, BuildCacheBlobStore blobStore) throws IOException {
+            return packer.isComplete(input, blobStore);
+        }
+
         private ImmutableSortedMap<String, CurrentFileCollectionFingerprint> snapshotUnpackedData(Map<String, ? extends CompleteFileSystemLocationSnapshot> treeSnapshots) {
             ImmutableSortedMap.Builder<String, CurrentFileCollectionFingerprint> builder = ImmutableSortedMap.naturalOrder();
             FingerprintingStrategy fingerprintingStrategy = AbsolutePathFingerprintingStrategy.IGNORE_MISSING;
+            List<CompleteFileSystemLocationSnapshot> unpackedSnapshots = new ArrayList<>();
             entity.visitOutputTrees((treeName, type, root) -> {
                 CompleteFileSystemLocationSnapshot treeSnapshot = treeSnapshots.get(treeName);
                 String internedAbsolutePath = stringInterner.intern(root.getAbsolutePath());
@@ -126,7 +161,7 @@ private ImmutableSortedMap<String, CurrentFileCollectionFingerprint> snapshotUnp
 
                 if (treeSnapshot == null) {
                     MissingFileSnapshot missingFileSnapshot = new MissingFileSnapshot(internedAbsolutePath, AccessType.DIRECT);
-                    virtualFileSystem.updateWithKnownSnapshot(missingFileSnapshot);
+                    unpackedSnapshots.add(missingFileSnapshot);
                     builder.put(treeName, fingerprintingStrategy.getEmptyFingerprint());
                     return;
                 }
@@ -137,17 +172,18 @@ private ImmutableSortedMap<String, CurrentFileCollectionFingerprint> snapshotUnp
                             throw new IllegalStateException(String.format("Only a regular file should be produced by unpacking tree '%s', but saw a %s", treeName, treeSnapshot.getType()));
                         }
                         roots.add(treeSnapshot);
-                        virtualFileSystem.updateWithKnownSnapshot(treeSnapshot);
+                        unpackedSnapshots.add(treeSnapshot);
                         break;
                     case DIRECTORY:
                         roots.add(treeSnapshot);
-                        virtualFileSystem.updateWithKnownSnapshot(treeSnapshot);
+                        unpackedSnapshots.add(treeSnapshot);
                         break;
                     default:
                         throw new AssertionError();
                 }
                 builder.put(treeName, DefaultCurrentFileCollectionFingerprint.from(roots, fingerprintingStrategy));
             });
+            virtualFileSystem.updateWithKnownSnapshots(unpackedSnapshots);
             return builder.build();
         }
     }
@@ -172,9 +208,37 @@ public BuildCacheKey getKey() {
         }
 
         @Override
-        public BuildCacheStoreCommand.Result store(OutputStream output) throws IOException {
-            final BuildCacheEntryPacker.PackResult packResult = packer.pack(entity, fingerprints, output, originMetadataFactory.createWriter(entity, executionTime));
+        public BuildCacheStoreCommand.Result store(OutputStream output, @Nullable BuildCacheBlobStore blobStore) throws IOException {
+            final BuildCacheEntryPacker.PackResult packResult = packer.pack(entity, fingerprints, output, originMetadataFactory.createWriter(entity, executionTime), blobStore);
             return packResult::getEntries;
         }
     }
+
+    private static class CompressionSpecificBuildCacheKey implements BuildCacheKey {
+        private final HashCode hashCode;
+
+        private CompressionSpecificBuildCacheKey(HashCode hashCode) {
+            this.hashCode = hashCode;
+        }
+
+        @Override
+        public String getHashCode() {
+            return hashCode.toString();
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return hashCode.toByteArray();
+        }
+
+        @Override
+        public String getDisplayName() {
+            return getHashCode();
+        }
+
+        @Override
+        public String toString() {
+            return getHashCode();
+        }
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.caching.internal.packaging.impl;
+
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.Executor;
+
+/**
+ * The threads {@link TarBuildCacheEntryPacker} writes unpacked files on.
+ *
+ * No threads are created when files are not unpacked in parallel, and the files are written on the calling thread instead.
+ */
+public class BuildCacheUnpackExecutor implements Executor, Stoppable {
+    @Nullable
+    private final ManagedExecutor executor;
+    private final int threads;
+
+    public BuildCacheUnpackExecutor(ExecutorFactory executorFactory, int threads) {
+        this.threads = Math.max(threads, 1);
+        this.executor = isParallel() ? executorFactory.create("Build cache unpack", this.threads) : null;
+    }
+
+    /**
+     * Whether files should be unpacked in parallel at all.
+     */
+    public boolean isParallel() {
+        return threads > 1;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (executor == null) {
+            command.run();
+        } else {
+            executor.execute(command);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+}
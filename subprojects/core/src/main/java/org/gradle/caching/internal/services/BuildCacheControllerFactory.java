@@ -32,6 +32,7 @@
 import org.gradle.caching.local.DirectoryBuildCache;
 import org.gradle.caching.local.internal.DirectoryBuildCacheService;
 import org.gradle.internal.Cast;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -60,6 +61,10 @@ public enum RemoteAccessMode {
         ONLINE, OFFLINE
     }
 
+    public enum RemoteStoreMode {
+        SYNC, ASYNC
+    }
+
     public static BuildCacheController create(
         final BuildOperationExecutor buildOperationExecutor,
         final Path buildIdentityPath,
@@ -67,9 +72,11 @@ public static BuildCacheController create(
         final BuildCacheConfigurationInternal buildCacheConfiguration,
         final BuildCacheMode buildCacheState,
         final RemoteAccessMode remoteAccessMode,
+        final RemoteStoreMode remoteStoreMode,
         final boolean logStackTraces,
         final boolean emitDebugLogging,
-        final Instantiator instantiator
+        final Instantiator instantiator,
+        final ExecutorFactory executorFactory
     ) {
         return buildOperationExecutor.call(new CallableBuildOperation<BuildCacheController>() {
             @Override
@@ -120,7 +127,8 @@ public BuildCacheController call(BuildOperationContext context) {
                         buildOperationExecutor,
                         gradleUserHomeDir,
                         logStackTraces,
-                        emitDebugLogging
+                        emitDebugLogging,
+                        remoteStoreMode == RemoteStoreMode.ASYNC ? executorFactory : null
                     );
                 }
             }
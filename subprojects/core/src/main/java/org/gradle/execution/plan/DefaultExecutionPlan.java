@@ -43,7 +43,6 @@
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
-import java.io.File;
 import java.io.StringWriter;
 import java.util.AbstractCollection;
 import java.util.ArrayDeque;
@@ -56,7 +55,9 @@
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * A reusable implementation of ExecutionPlan. The {@link #addEntryTasks(java.util.Collection)} and {@link #clear()} methods are NOT threadsafe, and callers must synchronize access to these methods.
@@ -67,11 +68,25 @@ public class DefaultExecutionPlan implements ExecutionPlan {
 
     private final Set<Node> entryNodes = new LinkedHashSet<>();
     private final NodeMapping nodeMapping = new NodeMapping();
-    private final List<Node> executionQueue = Lists.newLinkedList();
+    private final Set<Node> executionQueue = new LinkedHashSet<>();
+    private final Map<Node, Integer> executionOrder = Maps.newIdentityHashMap();
+    /**
+     * The estimated time it takes to execute a node and everything that has to run after it, used to start nodes on the critical path first.
+     */
+    private final Map<Node, Long> remainingExecutionTimes = Maps.newIdentityHashMap();
+    /**
+     * Nodes whose dependencies are all complete and which are ready to run, by priority and then in execution plan order.
+     * Nodes are added as their dependencies complete, so that selecting the next node does not have to scan the whole plan.
+     */
+    private final NavigableSet<Node> readyNodes = new TreeSet<>(this::compareReadyNodes);
     private final Set<ResourceLock> projectLocks = Sets.newHashSet();
     private final FailureCollector failureCollector = new FailureCollector();
     private final TaskNodeFactory taskNodeFactory;
     private final TaskDependencyResolver dependencyResolver;
+    private final NodeExecutionTimeEstimator executionTimeEstimator;
+    @Nullable
+    private final ExecutionPlanOrderCache orderCache;
+    private final OutputSnapshotPrefetcher outputSnapshotPrefetcher;
     private Spec<? super Task> filter = Specs.satisfyAll();
 
     private boolean continueOnFailure;
@@ -79,17 +94,27 @@ public class DefaultExecutionPlan implements ExecutionPlan {
     private final Set<Node> runningNodes = Sets.newIdentityHashSet();
     private final Set<Node> filteredNodes = Sets.newIdentityHashSet();
     private final Set<Node> producedButNotYetConsumed = Sets.newIdentityHashSet();
+    private final PathTrie<Node> runningNodeMutations = new PathTrie<>();
+    private final PathTrie<Node> producedButNotYetConsumedOutputs = new PathTrie<>();
+    private final Set<Node> prefetchedNodes = Sets.newIdentityHashSet();
+    private final PathTrie<Node> prefetchingOutputs = new PathTrie<>();
     private final Map<Pair<Node, Node>, Boolean> reachableCache = Maps.newHashMap();
     private final List<Node> dependenciesWhichRequireMonitoring = Lists.newArrayList();
-    private boolean maybeNodesReady;
     private final GradleInternal gradle;
 
     private boolean buildCancelled;
 
     public DefaultExecutionPlan(GradleInternal gradle, TaskNodeFactory taskNodeFactory, TaskDependencyResolver dependencyResolver) {
+        this(gradle, taskNodeFactory, dependencyResolver, NodeExecutionTimeEstimator.NONE, null, OutputSnapshotPrefetcher.NONE);
+    }
+
+    public DefaultExecutionPlan(GradleInternal gradle, TaskNodeFactory taskNodeFactory, TaskDependencyResolver dependencyResolver, NodeExecutionTimeEstimator executionTimeEstimator, @Nullable ExecutionPlanOrderCache orderCache, OutputSnapshotPrefetcher outputSnapshotPrefetcher) {
         this.gradle = gradle;
         this.taskNodeFactory = taskNodeFactory;
         this.dependencyResolver = dependencyResolver;
+        this.executionTimeEstimator = executionTimeEstimator;
+        this.orderCache = orderCache;
+        this.outputSnapshotPrefetcher = outputSnapshotPrefetcher;
     }
 
     @Override
@@ -233,6 +258,40 @@ private void requireWithDependencies(Node node) {
     }
 
     public void determineExecutionPlan() {
+        ExecutionPlanOrderCache.TaskGraph taskGraph = orderCache != null && nodeMapping.isEmpty() ? orderCache.snapshot(entryNodes) : null;
+        ExecutionPlanOrderCache.CachedOrder cachedOrder = taskGraph != null ? orderCache.get(taskGraph) : null;
+        if (cachedOrder != null) {
+            LOGGER.debug("Reusing cached execution plan order for {}", getDisplayName());
+            Set<Node> dependenciesWhichRequireMonitoring = Sets.newHashSet();
+            for (Node node : taskGraph.apply(cachedOrder)) {
+                addToPlan(node, dependenciesWhichRequireMonitoring);
+            }
+            this.dependenciesWhichRequireMonitoring.addAll(dependenciesWhichRequireMonitoring);
+        } else {
+            walkGraph();
+            if (taskGraph != null) {
+                orderCache.put(taskGraph, nodeMapping);
+            }
+        }
+
+        executionQueue.clear();
+        readyNodes.clear();
+        executionOrder.clear();
+        remainingExecutionTimes.clear();
+        dependencyResolver.clear();
+        Iterables.addAll(executionQueue, nodeMapping);
+        for (Node node : executionQueue) {
+            executionOrder.put(node, executionOrder.size());
+        }
+        estimateRemainingExecutionTimes();
+        for (Node node : executionQueue) {
+            if (node.updateAllDependenciesComplete()) {
+                maybeNodeReady(node);
+            }
+        }
+    }
+
+    private void walkGraph() {
         LinkedList<NodeInVisitingSegment> nodeQueue = Lists.newLinkedList(Iterables.transform(entryNodes, new Function<Node, NodeInVisitingSegment>() {
             private int index;
 
@@ -301,19 +360,7 @@ public NodeInVisitingSegment apply(Node node) {
                 maybeRemoveProcessedShouldRunAfterEdge(walkedShouldRunAfterEdges, node);
                 visitingNodes.remove(node, currentSegment);
                 path.pop();
-                nodeMapping.add(node);
-                if (node.requiresMonitoring()) {
-                    dependenciesWhichRequireMonitoring.add(node);
-                }
-
-                for (Node dependency : node.getDependencySuccessors()) {
-                    dependency.getMutationInfo().consumingNodes.add(node);
-                }
-
-                ResourceLock projectLock = node.getProjectToLock();
-                if (projectLock != null) {
-                    projectLocks.add(projectLock);
-                }
+                addToPlan(node, dependenciesWhichRequireMonitoring);
 
                 // Add any finalizers to the queue
                 for (Node finalizer : node.getFinalizers()) {
@@ -324,15 +371,25 @@ public NodeInVisitingSegment apply(Node node) {
                 }
             }
         }
-        executionQueue.clear();
-        dependencyResolver.clear();
-        Iterables.addAll(executionQueue, nodeMapping);
-        for (Node node : executionQueue) {
-            maybeNodesReady |= node.updateAllDependenciesComplete() && node.isReady();
-        }
         this.dependenciesWhichRequireMonitoring.addAll(dependenciesWhichRequireMonitoring);
     }
 
+    private void addToPlan(Node node, Set<Node> dependenciesWhichRequireMonitoring) {
+        nodeMapping.add(node);
+        if (node.requiresMonitoring()) {
+            dependenciesWhichRequireMonitoring.add(node);
+        }
+
+        for (Node dependency : node.getDependencySuccessors()) {
+            dependency.getMutationInfo().consumingNodes.add(node);
+        }
+
+        ResourceLock projectLock = node.getProjectToLock();
+        if (projectLock != null) {
+            projectLocks.add(projectLock);
+        }
+    }
+
     private void maybeRemoveProcessedShouldRunAfterEdge(Deque<GraphEdge> walkedShouldRunAfterEdges, Node node) {
         GraphEdge edge = walkedShouldRunAfterEdges.peek();
         if (edge != null && edge.to.equals(node)) {
@@ -468,9 +525,16 @@ public void clear() {
         entryNodes.clear();
         nodeMapping.clear();
         executionQueue.clear();
+        readyNodes.clear();
+        executionOrder.clear();
+        remainingExecutionTimes.clear();
         projectLocks.clear();
         failureCollector.clearFailures();
         producedButNotYetConsumed.clear();
+        runningNodeMutations.clear();
+        producedButNotYetConsumedOutputs.clear();
+        prefetchedNodes.clear();
+        prefetchingOutputs.clear();
         reachableCache.clear();
         dependenciesWhichRequireMonitoring.clear();
         runningNodes.clear();
@@ -507,11 +571,6 @@ public void setContinueOnFailure(boolean continueOnFailure) {
     @Override
     @Nullable
     public Node selectNext(WorkerLeaseRegistry.WorkerLease workerLease, ResourceLockState resourceLockState) {
-        if (allProjectsLocked()) {
-            // TODO - this is incorrect. We can still run nodes that don't need a project lock
-            return null;
-        }
-
         for (Iterator<Node> iterator = dependenciesWhichRequireMonitoring.iterator(); iterator.hasNext();) {
             Node node = iterator.next();
             if (node.isComplete()) {
@@ -520,33 +579,39 @@ public Node selectNext(WorkerLeaseRegistry.WorkerLease workerLease, ResourceLock
                 iterator.remove();
             }
         }
-        if (!maybeNodesReady) {
-            return null;
-        }
-        Iterator<Node> iterator = executionQueue.iterator();
+        // When every project is locked, only nodes that do not need a project lock can be started
+        boolean allProjectsLocked = allProjectsLocked();
+        Iterator<Node> iterator = readyNodes.iterator();
         boolean foundReadyNode = false;
         while (iterator.hasNext()) {
             Node node = iterator.next();
-            if (node.isReady() && node.allDependenciesComplete()) {
-                foundReadyNode = true;
-                MutationInfo mutations = getResolvedMutationInfo(node);
+            if (!node.isReady() || !node.allDependenciesComplete()) {
+                // The node was skipped, aborted or has to wait for an enforced dependency
+                iterator.remove();
+                continue;
+            }
+            if (allProjectsLocked && node.getProjectToLock() != null) {
+                continue;
+            }
+            foundReadyNode = true;
+            MutationInfo mutations = getResolvedMutationInfo(node);
 
-                if (!tryAcquireLocksForNode(node, workerLease, mutations)) {
-                    resourceLockState.releaseLocks();
-                    continue;
-                }
+            if (!tryAcquireLocksForNode(node, workerLease, mutations)) {
+                resourceLockState.releaseLocks();
+                maybePrefetchOutputSnapshots(node, mutations);
+                continue;
+            }
 
-                if (node.allDependenciesSuccessful()) {
-                    node.startExecution(this::recordNodeExecutionStarted);
-                } else {
-                    node.skipExecution(this::recordNodeCompleted);
-                }
-                iterator.remove();
-                return node;
+            iterator.remove();
+            executionQueue.remove(node);
+            if (node.allDependenciesSuccessful()) {
+                node.startExecution(this::recordNodeExecutionStarted);
+            } else {
+                node.skipExecution(this::recordNodeCompleted);
             }
+            return node;
         }
         LOGGER.debug("No node could be selected, nodes ready: {}", foundReadyNode);
-        maybeNodesReady = foundReadyNode;
         return null;
     }
 
@@ -564,13 +629,92 @@ private boolean tryAcquireLocksForNode(Node node, WorkerLeaseRegistry.WorkerLeas
         } else if (!canRunWithCurrentlyExecutedNodes(node, mutations)) {
             LOGGER.debug("Node {} cannot run with currently running nodes {}", node, runningNodes);
             return false;
+        } else if (isPrefetchingOutputSnapshots(mutations)) {
+            LOGGER.debug("Cannot start node {} while output snapshots overlapping its outputs are being prefetched", node);
+            return false;
         }
         return true;
     }
 
+    /**
+     * A node which has to wait for a lock has its outputs snapshotted in the background, so that the snapshots are in the virtual file system when it starts.
+     * Locations which running nodes may be changing are not prefetched, and nodes mutating a location cannot start while it is being prefetched.
+     */
+    private void maybePrefetchOutputSnapshots(Node node, MutationInfo mutations) {
+        if (outputSnapshotPrefetcher == OutputSnapshotPrefetcher.NONE || mutations.outputPaths.isEmpty() || prefetchedNodes.contains(node)) {
+            return;
+        }
+        if (hasNodeWithOverlappingMutations(mutations.outputPaths)) {
+            // Try again once the overlapping nodes have completed
+            return;
+        }
+        prefetchedNodes.add(node);
+        Set<String> outputPaths = ImmutableSet.copyOf(mutations.outputPaths);
+        for (String outputPath : outputPaths) {
+            prefetchingOutputs.add(outputPath, node);
+        }
+        outputSnapshotPrefetcher.prefetch(outputPaths, () -> {
+            for (String outputPath : outputPaths) {
+                prefetchingOutputs.remove(outputPath, node);
+            }
+        });
+    }
+
+    private boolean isPrefetchingOutputSnapshots(MutationInfo mutations) {
+        if (prefetchingOutputs.isEmpty()) {
+            return false;
+        }
+        for (String outputPath : mutations.outputPaths) {
+            if (prefetchingOutputs.hasOverlap(outputPath)) {
+                return true;
+            }
+        }
+        for (String destroyablePath : mutations.destroyablePaths) {
+            if (prefetchingOutputs.hasOverlap(destroyablePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void updateAllDependenciesCompleteForPredecessors(Node node) {
         for (Node predecessor : node.getAllPredecessors()) {
-            maybeNodesReady |= predecessor.updateAllDependenciesComplete() && predecessor.isReady();
+            if (predecessor.updateAllDependenciesComplete()) {
+                maybeNodeReady(predecessor);
+            }
+        }
+    }
+
+    /**
+     * Nodes in the execution queue come after the nodes they depend on, so visiting them in reverse order
+     * sees every node only after all the nodes which have to run after it.
+     */
+    private void estimateRemainingExecutionTimes() {
+        if (executionTimeEstimator == NodeExecutionTimeEstimator.NONE) {
+            return;
+        }
+        List<Node> nodes = new ArrayList<>(executionQueue);
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            Node node = nodes.get(i);
+            long remainingAfterNode = 0;
+            for (Node predecessor : node.getAllPredecessors()) {
+                remainingAfterNode = Math.max(remainingAfterNode, remainingExecutionTimes.getOrDefault(predecessor, 0L));
+            }
+            remainingExecutionTimes.put(node, executionTimeEstimator.estimateExecutionTime(node) + remainingAfterNode);
+        }
+    }
+
+    private int compareReadyNodes(Node first, Node second) {
+        int result = Long.compare(remainingExecutionTimes.getOrDefault(second, 0L), remainingExecutionTimes.getOrDefault(first, 0L));
+        if (result != 0) {
+            return result;
+        }
+        return Integer.compare(executionOrder.get(first), executionOrder.get(second));
+    }
+
+    private void maybeNodeReady(Node node) {
+        if (node.isReady() && node.allDependenciesComplete() && executionOrder.containsKey(node)) {
+            readyNodes.add(node);
         }
     }
 
@@ -630,27 +774,24 @@ private boolean canRunWithCurrentlyExecutedNodes(Node node, MutationInfo mutatio
     }
 
     private boolean hasNodeWithOverlappingMutations(Set<String> candidateMutationPaths) {
-        if (!candidateMutationPaths.isEmpty()) {
-            for (Node runningNode : runningNodes) {
-                MutationInfo runningMutations = runningNode.getMutationInfo();
-                Iterable<String> runningMutationPaths = Iterables.concat(runningMutations.outputPaths, runningMutations.destroyablePaths);
-                if (hasOverlap(candidateMutationPaths, runningMutationPaths)) {
-                    return true;
-                }
+        for (String candidateMutationPath : candidateMutationPaths) {
+            if (runningNodeMutations.hasOverlap(candidateMutationPath)) {
+                return true;
             }
         }
         return false;
     }
 
     private boolean doesDestroyNotYetConsumedOutputOfAnotherNode(Node destroyer, Set<String> destroyablePaths) {
-        if (!destroyablePaths.isEmpty()) {
-            for (Node producingNode : producedButNotYetConsumed) {
+        if (!destroyablePaths.isEmpty() && !producedButNotYetConsumedOutputs.isEmpty()) {
+            // Only producers with outputs overlapping the destroyed paths are of interest - no overlap no cry
+            Set<Node> overlappingProducers = Sets.newIdentityHashSet();
+            for (String destroyablePath : destroyablePaths) {
+                producedButNotYetConsumedOutputs.visitOverlapping(destroyablePath, overlappingProducers::add);
+            }
+            for (Node producingNode : overlappingProducers) {
                 MutationInfo producingNodeMutations = producingNode.getMutationInfo();
                 assert !producingNodeMutations.consumingNodes.isEmpty();
-                if (!hasOverlap(destroyablePaths, producingNodeMutations.outputPaths)) {
-                    // No overlap no cry
-                    continue;
-                }
                 for (Node consumer : producingNodeMutations.consumingNodes) {
                     if (doesConsumerDependOnDestroyer(consumer, destroyer)) {
                         // If there's an explicit dependency from consuming node to destroyer,
@@ -687,62 +828,44 @@ private boolean doesConsumerDependOnDestroyer(Node consumer, Node destroyer) {
         return reachable;
     }
 
-    private static boolean hasOverlap(Iterable<String> paths1, Iterable<String> paths2) {
-        for (String path1 : paths1) {
-            for (String path2 : paths2) {
-                String overLappedPath = getOverLappedPath(path1, path2);
-                if (overLappedPath != null) {
-                    return true;
-                }
-            }
-        }
-
-        return false;
-    }
-
-    @Nullable
-    private static String getOverLappedPath(String firstPath, String secondPath) {
-        if (firstPath.equals(secondPath)) {
-            return firstPath;
+    private void recordNodeExecutionStarted(Node node) {
+        runningNodes.add(node);
+        MutationInfo mutations = node.getMutationInfo();
+        for (String outputPath : mutations.outputPaths) {
+            runningNodeMutations.add(outputPath, node);
         }
-        if (firstPath.length() == secondPath.length()) {
-            return null;
+        for (String destroyablePath : mutations.destroyablePaths) {
+            runningNodeMutations.add(destroyablePath, node);
         }
+    }
 
-        String shorter;
-        String longer;
-        if (firstPath.length() > secondPath.length()) {
-            shorter = secondPath;
-            longer = firstPath;
-        } else {
-            shorter = firstPath;
-            longer = secondPath;
+    private void recordNodeExecutionFinished(Node node) {
+        runningNodes.remove(node);
+        MutationInfo mutations = node.getMutationInfo();
+        for (String outputPath : mutations.outputPaths) {
+            runningNodeMutations.remove(outputPath, node);
         }
-
-        boolean isOverlapping = longer.startsWith(shorter) && longer.charAt(shorter.length()) == File.separatorChar;
-        if (isOverlapping) {
-            return shorter;
-        } else {
-            return null;
+        for (String destroyablePath : mutations.destroyablePaths) {
+            runningNodeMutations.remove(destroyablePath, node);
         }
     }
 
-    private void recordNodeExecutionStarted(Node node) {
-        runningNodes.add(node);
-    }
-
     private void recordNodeCompleted(Node node) {
         LOGGER.debug("Node {} completed, executed: {}", node, node.isExecuted());
         MutationInfo mutations = node.getMutationInfo();
         for (Node producer : node.getDependencySuccessors()) {
             MutationInfo producerMutations = producer.getMutationInfo();
-            if (producerMutations.consumingNodes.remove(node) && producerMutations.consumingNodes.isEmpty()) {
-                producedButNotYetConsumed.remove(producer);
+            if (producerMutations.consumingNodes.remove(node) && producerMutations.consumingNodes.isEmpty() && producedButNotYetConsumed.remove(producer)) {
+                for (String outputPath : producerMutations.outputPaths) {
+                    producedButNotYetConsumedOutputs.remove(outputPath, producer);
+                }
             }
         }
 
-        if (!mutations.consumingNodes.isEmpty() && !mutations.outputPaths.isEmpty()) {
-            producedButNotYetConsumed.add(node);
+        if (!mutations.consumingNodes.isEmpty() && !mutations.outputPaths.isEmpty() && producedButNotYetConsumed.add(node)) {
+            for (String outputPath : mutations.outputPaths) {
+                producedButNotYetConsumedOutputs.add(outputPath, node);
+            }
         }
 
         updateAllDependenciesCompleteForPredecessors(node);
@@ -753,7 +876,6 @@ public void finishedExecuting(Node node) {
         try {
             if (!node.isComplete()) {
                 enforceFinalizers(node);
-                maybeNodesReady = true;
                 if (node.isFailed()) {
                     LOGGER.debug("Node {} failed", node);
                     handleFailure(node);
@@ -761,7 +883,7 @@ public void finishedExecuting(Node node) {
                     LOGGER.debug("Node {} finished executing", node);
                 }
 
-                runningNodes.remove(node);
+                recordNodeExecutionFinished(node);
                 node.finishExecution(this::recordNodeCompleted);
             } else {
                 LOGGER.debug("Already completed node {} reported as finished executing", node);
@@ -772,7 +894,7 @@ public void finishedExecuting(Node node) {
         }
     }
 
-    private static void enforceFinalizers(Node node) {
+    private void enforceFinalizers(Node node) {
         for (Node finalizerNode : node.getFinalizers()) {
             if (finalizerNode.isRequired() || finalizerNode.isMustNotRun()) {
                 Set<Node> enforcedNodes = Sets.newHashSet();
@@ -781,7 +903,7 @@ private static void enforceFinalizers(Node node) {
         }
     }
 
-    private static void enforceWithDependencies(Node nodeInfo, Set<Node> enforcedNodes) {
+    private void enforceWithDependencies(Node nodeInfo, Set<Node> enforcedNodes) {
         Deque<Node> candidateNodes = new ArrayDeque<>();
         candidateNodes.add(nodeInfo);
 
@@ -794,9 +916,11 @@ private static void enforceWithDependencies(Node nodeInfo, Set<Node> enforcedNod
 
                 if (node.isMustNotRun() || node.isRequired()) {
                     node.enforceRun();
+                    maybeNodeReady(node);
                     // Completed changed from true to false - inform all nodes depending on this one.
                     for (Node predecessor : node.getAllPredecessors()) {
                         predecessor.forceAllDependenciesCompleteUpdate();
+                        maybeNodeReady(predecessor);
                     }
                 }
             }
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.execution.plan;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers the node order computed for execution plans, so that a later build in the same process can reuse the order
+ * for an identical task graph instead of walking the graph again.
+ *
+ * A task graph is identified by the paths, states and relationships of all the nodes reachable from the entry nodes.
+ * Only graphs consisting of tasks from the current build are cached, as other nodes have no stable identity.
+ */
+public class ExecutionPlanOrderCache {
+    private static final int MAX_CACHED_PLANS = 16;
+
+    private final Cache<HashCode, CachedOrder> cachedOrders = CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHED_PLANS)
+        .build();
+
+    /**
+     * Captures the task graph reachable from the given entry nodes, or returns null when the graph cannot be cached.
+     */
+    @Nullable
+    TaskGraph snapshot(Collection<Node> entryNodes) {
+        Map<Node, Integer> indices = Maps.newIdentityHashMap();
+        List<LocalTaskNode> nodes = new ArrayList<>();
+        Deque<Node> queue = new ArrayDeque<>(entryNodes);
+        while (!queue.isEmpty()) {
+            Node node = queue.removeFirst();
+            if (indices.containsKey(node)) {
+                continue;
+            }
+            if (!(node instanceof LocalTaskNode)) {
+                return null;
+            }
+            indices.put(node, nodes.size());
+            nodes.add((LocalTaskNode) node);
+            for (Node successor : node.getAllSuccessors()) {
+                queue.addLast(successor);
+            }
+            for (Node finalizer : node.getFinalizers()) {
+                queue.addLast(finalizer);
+            }
+        }
+
+        Hasher hasher = Hashing.newHasher();
+        hasher.putInt(entryNodes.size());
+        for (Node entryNode : entryNodes) {
+            hasher.putInt(indices.get(entryNode));
+        }
+        List<Set<Node>> shouldSuccessors = new ArrayList<>(nodes.size());
+        for (LocalTaskNode node : nodes) {
+            hasher.putString(node.getTask().getIdentityPath().getPath());
+            hasher.putBoolean(node.isIncludeInGraph());
+            hasher.putBoolean(node.isRequired());
+            hasher.putBoolean(node.isMustNotRun());
+            putNodes(hasher, node.getDependencySuccessors(), indices);
+            putNodes(hasher, node.getMustSuccessors(), indices);
+            putNodes(hasher, node.getFinalizingSuccessors(), indices);
+            putNodes(hasher, node.getShouldSuccessors(), indices);
+            putNodes(hasher, node.getFinalizers(), indices);
+            shouldSuccessors.add(new LinkedHashSet<>(node.getShouldSuccessors()));
+        }
+        return new TaskGraph(hasher.hash(), nodes, indices, shouldSuccessors);
+    }
+
+    private static void putNodes(Hasher hasher, Collection<Node> nodes, Map<Node, Integer> indices) {
+        hasher.putInt(nodes.size());
+        for (Node node : nodes) {
+            hasher.putInt(indices.get(node));
+        }
+    }
+
+    @Nullable
+    CachedOrder get(TaskGraph taskGraph) {
+        return cachedOrders.getIfPresent(taskGraph.fingerprint);
+    }
+
+    /**
+     * Records the order determined for the given task graph, along with the should run after edges which were removed to break cycles.
+     */
+    void put(TaskGraph taskGraph, Collection<Node> plan) {
+        int[] order = new int[plan.size()];
+        int position = 0;
+        for (Node node : plan) {
+            order[position++] = taskGraph.indices.get(node);
+        }
+        List<Integer> removedShouldSuccessors = new ArrayList<>();
+        for (int source = 0; source < taskGraph.nodes.size(); source++) {
+            Set<Node> currentShouldSuccessors = taskGraph.nodes.get(source).getShouldSuccessors();
+            for (Node target : taskGraph.shouldSuccessors.get(source)) {
+                if (!currentShouldSuccessors.contains(target)) {
+                    removedShouldSuccessors.add(source);
+                    removedShouldSuccessors.add(taskGraph.indices.get(target));
+                }
+            }
+        }
+        cachedOrders.put(taskGraph.fingerprint, new CachedOrder(order, removedShouldSuccessors.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    static class TaskGraph {
+        private final HashCode fingerprint;
+        private final List<LocalTaskNode> nodes;
+        private final Map<Node, Integer> indices;
+        private final List<Set<Node>> shouldSuccessors;
+
+        private TaskGraph(HashCode fingerprint, List<LocalTaskNode> nodes, Map<Node, Integer> indices, List<Set<Node>> shouldSuccessors) {
+            this.fingerprint = fingerprint;
+            this.nodes = nodes;
+            this.indices = indices;
+            this.shouldSuccessors = shouldSuccessors;
+        }
+
+        /**
+         * Removes the should run after edges that were removed when the cached order was determined, and returns the nodes in the cached order.
+         */
+        List<Node> apply(CachedOrder cachedOrder) {
+            int[] removedShouldSuccessors = cachedOrder.removedShouldSuccessors;
+            for (int i = 0; i < removedShouldSuccessors.length; i += 2) {
+                nodes.get(removedShouldSuccessors[i]).getShouldSuccessors().remove(nodes.get(removedShouldSuccessors[i + 1]));
+            }
+            ImmutableList.Builder<Node> plan = ImmutableList.builderWithExpectedSize(cachedOrder.order.length);
+            for (int index : cachedOrder.order) {
+                plan.add(nodes.get(index));
+            }
+            return plan.build();
+        }
+    }
+
+    static class CachedOrder {
+        private final int[] order;
+        private final int[] removedShouldSuccessors;
+
+        private CachedOrder(int[] order, int[] removedShouldSuccessors) {
+            this.order = order;
+            this.removedShouldSuccessors = removedShouldSuccessors;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.execution.plan;
+
+/**
+ * Estimates how long it takes to execute a node, so that nodes on the critical path of an execution plan can be started first.
+ */
+public interface NodeExecutionTimeEstimator {
+    /**
+     * Does not estimate any execution time, so nodes are selected in execution plan order.
+     */
+    NodeExecutionTimeEstimator NONE = node -> 0;
+
+    /**
+     * Returns the estimated execution time of the given node in milliseconds, or 0 when unknown.
+     */
+    long estimateExecutionTime(Node node);
+}
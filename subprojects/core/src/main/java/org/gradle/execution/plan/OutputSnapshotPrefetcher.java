@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.execution.plan;
+
+import java.util.Collection;
+
+/**
+ * Snapshots the outputs of nodes which are waiting to be started, so that capturing the state before their execution does not have to visit the file system.
+ */
+public interface OutputSnapshotPrefetcher {
+    /**
+     * Does not prefetch anything.
+     */
+    OutputSnapshotPrefetcher NONE = (locations, onCompletion) -> onCompletion.run();
+
+    /**
+     * Snapshots the given locations in the background.
+     *
+     * The completion callback is run while holding the resource lock coordination state lock, and other threads waiting for a state change are notified afterwards.
+     */
+    void prefetch(Collection<String> locations, Runnable onCompletion);
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.execution.plan;
+
+import com.google.common.collect.Sets;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Indexes absolute paths by their segments, so that the values registered for paths overlapping a given path can be found
+ * in time proportional to the depth of the path instead of the number of registered paths.
+ *
+ * Two paths overlap when they are equal or when one is an ancestor of the other.
+ */
+class PathTrie<T> {
+    private final Entry<T> root = new Entry<>();
+
+    public void add(String path, T value) {
+        List<Entry<T>> visited = new ArrayList<>();
+        Entry<T> entry = root;
+        for (String segment : segments(path)) {
+            visited.add(entry);
+            entry = entry.children.computeIfAbsent(segment, key -> new Entry<>());
+        }
+        if (entry.values.add(value)) {
+            entry.size++;
+            for (Entry<T> parent : visited) {
+                parent.size++;
+            }
+        }
+    }
+
+    public void remove(String path, T value) {
+        List<Entry<T>> visited = new ArrayList<>();
+        Entry<T> entry = root;
+        List<String> segments = segments(path);
+        for (String segment : segments) {
+            visited.add(entry);
+            entry = entry.children.get(segment);
+            if (entry == null) {
+                return;
+            }
+        }
+        if (!entry.values.remove(value)) {
+            return;
+        }
+        entry.size--;
+        for (int i = visited.size() - 1; i >= 0; i--) {
+            Entry<T> parent = visited.get(i);
+            parent.size--;
+            if (entry.size == 0) {
+                parent.children.remove(segments.get(i));
+            }
+            entry = parent;
+        }
+    }
+
+    public boolean isEmpty() {
+        return root.size == 0;
+    }
+
+    public void clear() {
+        root.children.clear();
+        root.values.clear();
+        root.size = 0;
+    }
+
+    /**
+     * Returns whether any value is registered for a path overlapping the given path.
+     */
+    public boolean hasOverlap(String path) {
+        Entry<T> entry = root;
+        for (String segment : segments(path)) {
+            if (!entry.values.isEmpty()) {
+                return true;
+            }
+            entry = entry.children.get(segment);
+            if (entry == null) {
+                return false;
+            }
+        }
+        return entry.size > 0;
+    }
+
+    /**
+     * Visits the values registered for paths overlapping the given path. A value registered for several overlapping paths is visited for each of them.
+     */
+    public void visitOverlapping(String path, Consumer<? super T> visitor) {
+        Entry<T> entry = root;
+        for (String segment : segments(path)) {
+            entry.values.forEach(visitor);
+            entry = entry.children.get(segment);
+            if (entry == null) {
+                return;
+            }
+        }
+        entry.visitAll(visitor);
+    }
+
+    private static List<String> segments(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int separator;
+        while ((separator = path.indexOf(File.separatorChar, start)) >= 0) {
+            segments.add(path.substring(start, separator));
+            start = separator + 1;
+        }
+        segments.add(path.substring(start));
+        return segments;
+    }
+
+    private static class Entry<T> {
+        private final Map<String, Entry<T>> children = new HashMap<>();
+        private final Set<T> values = Sets.newIdentityHashSet();
+        /**
+         * The number of values registered for this entry and all its descendants.
+         */
+        private int size;
+
+        void visitAll(Consumer<? super T> visitor) {
+            values.forEach(visitor);
+            for (Entry<T> child : children.values()) {
+                child.visitAll(visitor);
+            }
+        }
+    }
+}
@@ -24,6 +24,7 @@
 import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.internal.tasks.RunsWithoutProjectLock;
 import org.gradle.composite.internal.IncludedBuildTaskGraph;
 import org.gradle.composite.internal.IncludedBuildTaskResource.State;
 import org.gradle.internal.Actions;
@@ -59,7 +60,11 @@ public TaskNode getOrCreateNode(Task task) {
         TaskNode node = nodes.get(task);
         if (node == null) {
             if (task.getProject().getGradle() == thisBuild) {
-                node = new LocalTaskNode((TaskInternal) task, canonicalizedFileCache);
+                LocalTaskNode localTaskNode = new LocalTaskNode((TaskInternal) task, canonicalizedFileCache);
+                if (task.getClass().isAnnotationPresent(RunsWithoutProjectLock.class)) {
+                    localTaskNode.isolated();
+                }
+                node = localTaskNode;
             } else {
                 node = new TaskInAnotherBuild((TaskInternal) task, currentBuildId, taskGraph);
             }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.execution.plan;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.resources.ResourceLockCoordinationService;
+import org.gradle.internal.resources.ResourceLockState;
+import org.gradle.internal.vfs.VirtualFileSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Prefetches output snapshots into the virtual file system on a small pool of background threads.
+ */
+public class VirtualFileSystemOutputSnapshotPrefetcher implements OutputSnapshotPrefetcher, Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualFileSystemOutputSnapshotPrefetcher.class);
+
+    private final VirtualFileSystem virtualFileSystem;
+    private final ResourceLockCoordinationService coordinationService;
+    private final ManagedExecutor executor;
+
+    public VirtualFileSystemOutputSnapshotPrefetcher(VirtualFileSystem virtualFileSystem, ResourceLockCoordinationService coordinationService, ExecutorFactory executorFactory) {
+        this.virtualFileSystem = virtualFileSystem;
+        this.coordinationService = coordinationService;
+        this.executor = executorFactory.create("Output snapshot prefetcher", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    @Override
+    public void prefetch(Collection<String> locations, Runnable onCompletion) {
+        List<String> locationsToSnapshot = ImmutableList.copyOf(locations);
+        executor.execute(() -> {
+            try {
+                for (String location : locationsToSnapshot) {
+                    virtualFileSystem.read(location, snapshot -> snapshot);
+                }
+            } catch (Exception e) {
+                // The snapshots are taken again when the node is executed
+                LOGGER.debug("Could not prefetch output snapshots of {}", locationsToSnapshot, e);
+            } finally {
+                coordinationService.withStateLock(state -> {
+                    onCompletion.run();
+                    return ResourceLockState.Disposition.FINISHED;
+                });
+                coordinationService.notifyStateChange();
+            }
+        });
+    }
+
+    @Override
+    public void stop() {
+        executor.stop();
+    }
+}
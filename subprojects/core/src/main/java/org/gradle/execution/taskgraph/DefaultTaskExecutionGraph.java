@@ -37,8 +37,11 @@
 import org.gradle.configuration.internal.ListenerBuildOperationDecorator;
 import org.gradle.execution.ProjectExecutionServiceRegistry;
 import org.gradle.execution.plan.DefaultExecutionPlan;
+import org.gradle.execution.plan.ExecutionPlanOrderCache;
 import org.gradle.execution.plan.Node;
+import org.gradle.execution.plan.NodeExecutionTimeEstimator;
 import org.gradle.execution.plan.NodeExecutor;
+import org.gradle.execution.plan.OutputSnapshotPrefetcher;
 import org.gradle.execution.plan.PlanExecutor;
 import org.gradle.execution.plan.TaskDependencyResolver;
 import org.gradle.execution.plan.TaskNode;
@@ -60,6 +63,7 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -104,7 +108,10 @@ public DefaultTaskExecutionGraph(
         ListenerBroadcast<TaskExecutionListener> taskListeners,
         BuildScopeListenerRegistrationListener buildScopeListenerRegistrationListener,
         ProjectStateRegistry projectStateRegistry,
-        ServiceRegistry globalServices
+        ServiceRegistry globalServices,
+        NodeExecutionTimeEstimator executionTimeEstimator,
+        @Nullable ExecutionPlanOrderCache executionPlanOrderCache,
+        OutputSnapshotPrefetcher outputSnapshotPrefetcher
     ) {
         this.planExecutor = planExecutor;
         this.nodeExecutors = nodeExecutors;
@@ -117,7 +124,7 @@ public DefaultTaskExecutionGraph(
         this.buildScopeListenerRegistrationListener = buildScopeListenerRegistrationListener;
         this.projectStateRegistry = projectStateRegistry;
         this.globalServices = globalServices;
-        this.executionPlan = new DefaultExecutionPlan(gradleInternal, taskNodeFactory, dependencyResolver);
+        this.executionPlan = new DefaultExecutionPlan(gradleInternal, taskNodeFactory, dependencyResolver, executionTimeEstimator, executionPlanOrderCache, outputSnapshotPrefetcher);
     }
 
     @Override
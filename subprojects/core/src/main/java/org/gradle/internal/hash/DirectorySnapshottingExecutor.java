@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.internal.hash;
+
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * The threads the files found while walking a directory are hashed on, when parallel snapshotting is enabled for the current build session.
+ * It is kept separate from {@link FileContentHashingExecutor}, as hashing a large file on it waits for chunks hashed on that executor.
+ * The threads are only started once a build uses them.
+ */
+public class DirectorySnapshottingExecutor implements Supplier<Executor>, Stoppable {
+    private final ExecutorFactory executorFactory;
+    private final int threads;
+    private volatile boolean enabled;
+    private ManagedExecutor executor;
+
+    public DirectorySnapshottingExecutor(ExecutorFactory executorFactory, int threads) {
+        this.executorFactory = executorFactory;
+        this.threads = Math.max(threads, 1);
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the executor to hash files on, or {@code null} when files should be hashed on the walking thread.
+     */
+    @Nullable
+    @Override
+    public synchronized Executor get() {
+        if (!enabled) {
+            return null;
+        }
+        if (executor == null) {
+            executor = executorFactory.create("Directory snapshotting", threads);
+        }
+        return executor;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.stop();
+            executor = null;
+        }
+    }
+}
@@ -49,6 +49,7 @@
 import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
 import org.gradle.configuration.DefaultImportsReader;
 import org.gradle.configuration.ImportsReader;
+import org.gradle.execution.plan.ExecutionPlanOrderCache;
 import org.gradle.initialization.ClassLoaderRegistry;
 import org.gradle.initialization.ClassLoaderScopeListeners;
 import org.gradle.initialization.DefaultClassLoaderRegistry;
@@ -144,6 +145,10 @@ ResourceLockCoordinationService createWorkerLeaseCoordinationService() {
         return new DefaultResourceLockCoordinationService();
     }
 
+    ExecutionPlanOrderCache createExecutionPlanOrderCache() {
+        return new ExecutionPlanOrderCache();
+    }
+
     CurrentBuildOperationRef createCurrentBuildOperationRef() {
         return CurrentBuildOperationRef.instance();
     }
@@ -20,6 +20,7 @@
 import org.gradle.api.internal.BuildScopeListenerRegistrationListener;
 import org.gradle.api.internal.CollectionCallbackActionDecorator;
 import org.gradle.api.internal.GradleInternal;
+import org.gradle.api.internal.StartParameterInternal;
 import org.gradle.api.internal.artifacts.dsl.dependencies.ProjectFinder;
 import org.gradle.api.internal.collections.DomainObjectCollectionFactory;
 import org.gradle.api.internal.file.FileCollectionFactory;
@@ -63,12 +64,17 @@
 import org.gradle.execution.commandline.CommandLineTaskConfigurer;
 import org.gradle.execution.commandline.CommandLineTaskParser;
 import org.gradle.execution.plan.DependencyResolver;
+import org.gradle.execution.plan.ExecutionHistoryNodeExecutionTimeEstimator;
+import org.gradle.execution.plan.ExecutionPlanOrderCache;
 import org.gradle.execution.plan.LocalTaskNodeExecutor;
+import org.gradle.execution.plan.NodeExecutionTimeEstimator;
 import org.gradle.execution.plan.NodeExecutor;
+import org.gradle.execution.plan.OutputSnapshotPrefetcher;
 import org.gradle.execution.plan.PlanExecutor;
 import org.gradle.execution.plan.TaskDependencyResolver;
 import org.gradle.execution.plan.TaskNodeDependencyResolver;
 import org.gradle.execution.plan.TaskNodeFactory;
+import org.gradle.execution.plan.VirtualFileSystemOutputSnapshotPrefetcher;
 import org.gradle.execution.plan.WorkNodeDependencyResolver;
 import org.gradle.execution.plan.WorkNodeExecutor;
 import org.gradle.execution.taskgraph.DefaultTaskExecutionGraph;
@@ -82,8 +88,10 @@
 import org.gradle.internal.cleanup.BuildOutputCleanupRegistry;
 import org.gradle.internal.cleanup.DefaultBuildOutputCleanupRegistry;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.event.ListenerBroadcast;
 import org.gradle.internal.event.ListenerManager;
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
 import org.gradle.internal.id.UniqueId;
 import org.gradle.internal.instantiation.InstantiatorFactory;
 import org.gradle.internal.isolation.IsolatableFactory;
@@ -110,6 +118,21 @@
  */
 public class GradleScopeServices extends DefaultServiceRegistry {
 
+    /**
+     * When set, ready nodes on the longest estimated path through the execution plan are started first, based on the execution times recorded in the execution history.
+     */
+    public static final String CRITICAL_PATH_SCHEDULING_PROPERTY = "org.gradle.execution.critical-path-scheduling";
+
+    /**
+     * When set, the node order of execution plans is reused by later builds in the same process when the task graph has not changed.
+     */
+    public static final String EXECUTION_PLAN_CACHING_PROPERTY = "org.gradle.execution.plan-caching";
+
+    /**
+     * When set, the outputs of nodes waiting for a lock are snapshotted in the background before the nodes start.
+     */
+    public static final String OUTPUT_SNAPSHOT_PREFETCHING_PROPERTY = "org.gradle.execution.prefetch-output-snapshots";
+
     private final CompositeStoppable registries = new CompositeStoppable();
 
     public GradleScopeServices(final ServiceRegistry parent, final GradleInternal gradle) {
@@ -228,8 +251,11 @@ TaskExecutionGraphInternal createTaskExecutionGraph(
         ListenerBroadcast<TaskExecutionGraphListener> graphListeners,
         ListenerManager listenerManager,
         ProjectStateRegistry projectStateRegistry,
-        ServiceRegistry gradleScopedServices
+        ServiceRegistry gradleScopedServices,
+        ExecutionPlanOrderCache executionPlanOrderCache,
+        OutputSnapshotPrefetcher outputSnapshotPrefetcher
     ) {
+        StartParameterInternal startParameter = (StartParameterInternal) gradleInternal.getStartParameter();
         return new DefaultTaskExecutionGraph(
             planExecutor,
             nodeExecutors,
@@ -243,10 +269,27 @@ TaskExecutionGraphInternal createTaskExecutionGraph(
             taskListeners,
             listenerManager.getBroadcaster(BuildScopeListenerRegistrationListener.class),
             projectStateRegistry,
-            gradleScopedServices
+            gradleScopedServices,
+            createNodeExecutionTimeEstimator(gradleScopedServices, startParameter),
+            startParameter.isSystemPropertyEnabled(EXECUTION_PLAN_CACHING_PROPERTY) ? executionPlanOrderCache : null,
+            outputSnapshotPrefetcher
         );
     }
 
+    OutputSnapshotPrefetcher createOutputSnapshotPrefetcher(GradleInternal gradleInternal, VirtualFileSystem virtualFileSystem, ResourceLockCoordinationService coordinationService, ExecutorFactory executorFactory) {
+        if (((StartParameterInternal) gradleInternal.getStartParameter()).isSystemPropertyEnabled(OUTPUT_SNAPSHOT_PREFETCHING_PROPERTY)) {
+            return new VirtualFileSystemOutputSnapshotPrefetcher(virtualFileSystem, coordinationService, executorFactory);
+        }
+        return OutputSnapshotPrefetcher.NONE;
+    }
+
+    private static NodeExecutionTimeEstimator createNodeExecutionTimeEstimator(ServiceRegistry gradleScopedServices, StartParameterInternal startParameter) {
+        if (startParameter.isSystemPropertyEnabled(CRITICAL_PATH_SCHEDULING_PROPERTY)) {
+            return new ExecutionHistoryNodeExecutionTimeEstimator(gradleScopedServices.get(ExecutionHistoryStore.class));
+        }
+        return NodeExecutionTimeEstimator.NONE;
+    }
+
     ServiceRegistryFactory createServiceRegistryFactory(final ServiceRegistry services) {
         final Factory<LoggingManagerInternal> loggingManagerInternalFactory = getFactory(LoggingManagerInternal.class);
         return new ServiceRegistryFactory() {
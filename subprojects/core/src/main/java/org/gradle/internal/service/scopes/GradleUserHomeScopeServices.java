@@ -216,8 +216,10 @@ FileContentCacheFactory createFileContentCacheFactory(ListenerManager listenerMa
         return new DefaultFileContentCacheFactory(listenerManager, virtualFileSystem, cacheRepository, inMemoryCacheDecoratorFactory, null);
     }
 
-    FileAccessTimeJournal createFileAccessTimeJournal(CacheRepository cacheRepository, InMemoryCacheDecoratorFactory cacheDecoratorFactory) {
-        return new DefaultFileAccessTimeJournal(cacheRepository, cacheDecoratorFactory);
+    FileAccessTimeJournal createFileAccessTimeJournal(CacheRepository cacheRepository, InMemoryCacheDecoratorFactory cacheDecoratorFactory, ListenerManager listenerManager) {
+        DefaultFileAccessTimeJournal journal = new DefaultFileAccessTimeJournal(cacheRepository, cacheDecoratorFactory);
+        listenerManager.addListener(journal);
+        return journal;
     }
 
     TimeoutHandler createTimeoutHandler(ExecutorFactory executorFactory) {
@@ -43,10 +43,12 @@
 import org.gradle.cache.internal.CacheScopeMapping;
 import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
 import org.gradle.cache.internal.VersionStrategy;
+import org.gradle.initialization.GradleUserHomeDirProvider;
 import org.gradle.initialization.RootBuildLifecycleListener;
 import org.gradle.initialization.layout.ProjectCacheDir;
 import org.gradle.internal.build.BuildAddedListener;
 import org.gradle.internal.classloader.ClasspathHasher;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.OutputChangeListener;
 import org.gradle.internal.file.Stat;
@@ -66,7 +68,11 @@
 import org.gradle.internal.fingerprint.impl.NameOnlyFileCollectionFingerprinter;
 import org.gradle.internal.fingerprint.impl.OutputFileCollectionFingerprinter;
 import org.gradle.internal.fingerprint.impl.RelativePathFileCollectionFingerprinter;
+import org.gradle.internal.hash.ChunkedFileHasher;
+import org.gradle.internal.hash.ChunkedStreamHasher;
 import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.DirectorySnapshottingExecutor;
+import org.gradle.internal.hash.FileContentHashingExecutor;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.hash.StreamHasher;
@@ -86,7 +92,9 @@
 import org.gradle.internal.watch.vfs.WatchingAwareVirtualFileSystem;
 import org.gradle.internal.watch.vfs.impl.DelegatingDiffCapturingUpdateFunctionDecorator;
 import org.gradle.internal.watch.vfs.impl.NonWatchingVirtualFileSystem;
+import org.gradle.internal.watch.vfs.impl.SnapshotHierarchyStore;
 import org.gradle.internal.watch.vfs.impl.WatchingVirtualFileSystem;
+import org.gradle.util.GradleVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -124,6 +132,16 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
      */
     public static final String VFS_DROP_PROPERTY = "org.gradle.unsafe.vfs.drop";
 
+    /**
+     * Boolean system property to hash the files in a directory in parallel while snapshotting it.
+     */
+    public static final String VFS_PARALLEL_SNAPSHOTTING_PROPERTY = "org.gradle.vfs.parallel-snapshotting";
+
+    /**
+     * Boolean system property to store the state retained by file system watching when the daemon stops, and to load it in the next daemon.
+     */
+    public static final String VFS_PERSISTENCE_PROPERTY = "org.gradle.vfs.persistent";
+
     public static boolean isPartialInvalidationEnabled(StartParameterInternal startParameter) {
         return startParameter.isWatchFileSystem()
             || isSystemPropertyEnabled(VFS_PARTIAL_INVALIDATION_ENABLED_PROPERTY, startParameter.getSystemPropertiesArgs());
@@ -133,6 +151,10 @@ public static boolean isDropVfs(StartParameter startParameter) {
         return isSystemPropertyEnabled(VFS_DROP_PROPERTY, startParameter.getSystemPropertiesArgs());
     }
 
+    public static boolean isParallelSnapshottingEnabled(StartParameter startParameter) {
+        return isSystemPropertyEnabled(VFS_PARALLEL_SNAPSHOTTING_PROPERTY, startParameter.getSystemPropertiesArgs());
+    }
+
     public static boolean isDeprecatedVfsRetentionPropertyPresent(StartParameter startParameter) {
         return getSystemProperty(DEPRECATED_VFS_RETENTION_ENABLED_PROPERTY, startParameter.getSystemPropertiesArgs()) != null;
     }
@@ -147,6 +169,35 @@ private static String getSystemProperty(String systemProperty, Map<String, Strin
         return systemPropertiesArgs.getOrDefault(systemProperty, System.getProperty(systemProperty));
     }
 
+    @Nullable
+    private static SnapshotHierarchyStore createSnapshotHierarchyStore(GradleUserHomeDirProvider userHomeDirProvider, StreamHasher streamHasher, Stat stat, StringInterner stringInterner) {
+        if (!Boolean.getBoolean(VFS_PERSISTENCE_PROPERTY)) {
+            return null;
+        }
+        File storeFile = new File(userHomeDirProvider.getGradleUserHomeDirectory(), "vfs/retained-snapshots.bin");
+        // Snapshots from a different Gradle version, content hashing or set of default excludes cannot be reused
+        String compatibilityKey = GradleVersion.current().getVersion() + ":" + fileHashesCacheName(streamHasher) + ":" + String.join(",", DirectoryScanner.getDefaultExcludes());
+        return new SnapshotHierarchyStore(storeFile, compatibilityKey, stat, stringInterner);
+    }
+
+    private static FileHasher createContentHasher(StreamHasher streamHasher, FileContentHashingExecutor executor) {
+        if (streamHasher instanceof ChunkedStreamHasher) {
+            // Reading the chunks blocks on IO, so they are hashed on a dedicated pool instead of the common pool
+            return new ChunkedFileHasher((ChunkedStreamHasher) streamHasher, executor);
+        }
+        return new DefaultFileHasher(streamHasher);
+    }
+
+    /**
+     * Keeps the file hashes created by different content hashing in separate caches.
+     */
+    private static String fileHashesCacheName(StreamHasher streamHasher) {
+        if (streamHasher instanceof ChunkedStreamHasher) {
+            return "fileHashes-" + ((ChunkedStreamHasher) streamHasher).getName();
+        }
+        return "fileHashes";
+    }
+
     @Override
     public void registerGradleUserHomeServices(ServiceRegistration registration) {
         registration.addProvider(new GradleUserHomeServices());
@@ -164,8 +215,16 @@ CrossBuildFileHashCache createCrossBuildFileHashCache(CacheRepository cacheRepos
             return new CrossBuildFileHashCache(null, cacheRepository, inMemoryCacheDecoratorFactory, CrossBuildFileHashCache.Kind.FILE_HASHES);
         }
 
-        FileHasher createCachingFileHasher(StringInterner stringInterner, CrossBuildFileHashCache fileStore, FileSystem fileSystem, GradleUserHomeScopeFileTimeStampInspector fileTimeStampInspector, StreamHasher streamHasher) {
-            CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem);
+        FileContentHashingExecutor createFileContentHashingExecutor(ExecutorFactory executorFactory) {
+            return new FileContentHashingExecutor(executorFactory, Runtime.getRuntime().availableProcessors());
+        }
+
+        DirectorySnapshottingExecutor createDirectorySnapshottingExecutor(ExecutorFactory executorFactory) {
+            return new DirectorySnapshottingExecutor(executorFactory, Runtime.getRuntime().availableProcessors());
+        }
+
+        FileHasher createCachingFileHasher(StringInterner stringInterner, CrossBuildFileHashCache fileStore, FileSystem fileSystem, GradleUserHomeScopeFileTimeStampInspector fileTimeStampInspector, StreamHasher streamHasher, FileContentHashingExecutor contentHashingExecutor) {
+            CachingFileHasher fileHasher = new CachingFileHasher(createContentHasher(streamHasher, contentHashingExecutor), fileStore, stringInterner, fileTimeStampInspector, fileHashesCacheName(streamHasher), fileSystem);
             fileTimeStampInspector.attach(fileHasher);
             return fileHasher;
         }
@@ -178,7 +237,10 @@ WatchingAwareVirtualFileSystem createVirtualFileSystem(
             StringInterner stringInterner,
             ListenerManager listenerManager,
             DocumentationRegistry documentationRegistry,
-            NativeCapabilities nativeCapabilities
+            NativeCapabilities nativeCapabilities,
+            GradleUserHomeDirProvider userHomeDirProvider,
+            StreamHasher streamHasher,
+            DirectorySnapshottingExecutor directorySnapshottingExecutor
         ) {
             // All the changes in global caches should be done by Gradle itself, so in order
             // to minimize the number of watches we don't watch anything within the global caches.
@@ -190,6 +252,7 @@ WatchingAwareVirtualFileSystem createVirtualFileSystem(
                 stat,
                 fileSystem.isCaseSensitive() ? CASE_SENSITIVE : CASE_INSENSITIVE,
                 updateFunctionDecorator,
+                directorySnapshottingExecutor,
                 DirectoryScanner.getDefaultExcludes()
             );
             WatchingAwareVirtualFileSystem watchingAwareVirtualFileSystem = determineWatcherRegistryFactory(OperatingSystem.current(), nativeCapabilities)
@@ -198,7 +261,8 @@ WatchingAwareVirtualFileSystem createVirtualFileSystem(
                     delegate,
                     updateFunctionDecorator,
                     watchFilter,
-                    sectionId -> documentationRegistry.getDocumentationFor("gradle_daemon", sectionId)
+                    sectionId -> documentationRegistry.getDocumentationFor("gradle_daemon", sectionId),
+                    createSnapshotHierarchyStore(userHomeDirProvider, streamHasher, stat, stringInterner)
                 ))
                 .orElse(new NonWatchingVirtualFileSystem(delegate));
             listenerManager.addListener((BuildAddedListener) buildState ->
@@ -263,9 +327,10 @@ FileHasher createFileHasher(
             FileHasher globalHasher,
             FileSystem fileSystem,
             StreamHasher streamHasher,
-            StringInterner stringInterner
+            StringInterner stringInterner,
+            FileContentHashingExecutor contentHashingExecutor
         ) {
-            CachingFileHasher localHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), cacheAccess, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem);
+            CachingFileHasher localHasher = new CachingFileHasher(createContentHasher(streamHasher, contentHashingExecutor), cacheAccess, stringInterner, fileTimeStampInspector, fileHashesCacheName(streamHasher), fileSystem);
             return new SplitFileHasher(globalHasher, localHasher, globalCacheLocations);
         }
 
@@ -277,15 +342,19 @@ VirtualFileSystem createVirtualFileSystem(
             StartParameter startParameter,
             Stat stat,
             StringInterner stringInterner,
-            VirtualFileSystem gradleUserHomeVirtualFileSystem
+            VirtualFileSystem gradleUserHomeVirtualFileSystem,
+            DirectorySnapshottingExecutor directorySnapshottingExecutor
         ) {
             StartParameterInternal startParameterInternal = (StartParameterInternal) startParameter;
+            // The executor is shared with the file system of the Gradle user home, which outlives the build session
+            directorySnapshottingExecutor.setEnabled(isParallelSnapshottingEnabled(startParameter));
             VirtualFileSystem buildSessionsScopedVirtualFileSystem = new DefaultVirtualFileSystem(
                 hasher,
                 stringInterner,
                 stat,
                 fileSystem.isCaseSensitive() ? CASE_SENSITIVE : CASE_INSENSITIVE,
                 SnapshotHierarchy.DiffCapturingUpdateFunctionDecorator.NOOP,
+                directorySnapshottingExecutor,
                 DirectoryScanner.getDefaultExcludes()
             );
             RoutingVirtualFileSystem routingVirtualFileSystem = new RoutingVirtualFileSystem(
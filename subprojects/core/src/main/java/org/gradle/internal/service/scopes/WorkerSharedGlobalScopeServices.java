@@ -40,7 +40,9 @@
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.file.impl.DefaultDeleter;
+import org.gradle.internal.hash.ChunkedStreamHasher;
 import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.instantiation.InstantiatorFactory;
 import org.gradle.internal.logging.events.OutputEventListener;
@@ -68,6 +70,11 @@
 import static org.gradle.api.internal.provider.ManagedFactories.SetPropertyManagedFactory;
 
 public class WorkerSharedGlobalScopeServices extends BasicGlobalScopeServices {
+    /**
+     * Selects how file content is hashed. {@code chunked-md5} and {@code chunked-murmur3} hash content as a sequence of chunks,
+     * which are hashed in parallel for large files. By default, content is hashed as a single MD5 stream.
+     */
+    public static final String CONTENT_HASHING_PROPERTY = "org.gradle.hashing.content";
 
     protected CacheFactory createCacheFactory(FileLockManager fileLockManager, ExecutorFactory executorFactory, ProgressLoggerFactory progressLoggerFactory) {
         return new DefaultCacheFactory(fileLockManager, executorFactory, progressLoggerFactory);
@@ -106,7 +113,18 @@ DefaultFilePropertyFactory createFilePropertyFactory(PropertyHost propertyHost,
     }
 
     StreamHasher createStreamHasher() {
-        return new DefaultStreamHasher();
+        String contentHashing = System.getProperty(CONTENT_HASHING_PROPERTY);
+        if (contentHashing == null || contentHashing.equals("md5")) {
+            return new DefaultStreamHasher();
+        }
+        switch (contentHashing) {
+            case "chunked-md5":
+                return new ChunkedStreamHasher(Hashing.md5(), "md5");
+            case "chunked-murmur3":
+                return new ChunkedStreamHasher(Hashing.murmur3(), "murmur3");
+            default:
+                throw new IllegalArgumentException(String.format("Unknown content hashing '%s' specified by system property '%s'.", contentHashing, CONTENT_HASHING_PROPERTY));
+        }
     }
 
     TemporaryFileProvider createTemporaryFileProvider() {
@@ -24,10 +24,14 @@
 import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.SnapshottingFilter;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 @ServiceScope(Scopes.BuildSession)
 public class RoutingVirtualFileSystem implements VirtualFileSystem {
@@ -99,6 +103,24 @@ public void updateWithKnownSnapshot(CompleteFileSystemLocationSnapshot snapshot)
         getVirtualFileSystemFor(snapshot.getAbsolutePath()).updateWithKnownSnapshot(snapshot);
     }
 
+    @Override
+    public void updateWithKnownSnapshots(Iterable<? extends CompleteFileSystemLocationSnapshot> snapshots) {
+        if (vfsRetained.getAsBoolean()) {
+            gradleUserHomeVirtualFileSystem.updateWithKnownSnapshots(snapshots);
+        } else {
+            Map<Boolean, List<CompleteFileSystemLocationSnapshot>> snapshotsByImmutability = StreamSupport.stream(snapshots.spliterator(), false)
+                .collect(Collectors.partitioningBy(snapshot -> globalCacheLocations.isInsideGlobalCache(snapshot.getAbsolutePath())));
+            updateWithKnownSnapshots(gradleUserHomeVirtualFileSystem, snapshotsByImmutability.get(true));
+            updateWithKnownSnapshots(buildScopedVirtualFileSystem, snapshotsByImmutability.get(false));
+        }
+    }
+
+    private static void updateWithKnownSnapshots(VirtualFileSystem virtualFileSystem, List<CompleteFileSystemLocationSnapshot> snapshots) {
+        if (!snapshots.isEmpty()) {
+            virtualFileSystem.updateWithKnownSnapshots(snapshots);
+        }
+    }
+
     private VirtualFileSystem getVirtualFileSystemFor(String location) {
         return vfsRetained.getAsBoolean()
             ? gradleUserHomeVirtualFileSystem
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal
+
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
+import spock.lang.Specification
+
+class StartParameterInternalTest extends Specification {
+    @Rule
+    SetSystemProperties systemProperties = new SetSystemProperties()
+
+    def startParameter = new StartParameterInternal()
+
+    def "system property is enabled when set to a value other than false for the build"() {
+        when:
+        startParameter.systemPropertiesArgs["some.flag"] = value
+
+        then:
+        startParameter.isSystemPropertyEnabled("some.flag") == enabled
+
+        where:
+        value   | enabled
+        "true"  | true
+        ""      | true
+        "false" | false
+        "FALSE" | false
+    }
+
+    def "falls back to the system properties of the process"() {
+        expect:
+        !startParameter.isSystemPropertyEnabled("some.flag")
+
+        when:
+        System.setProperty("some.flag", "true")
+
+        then:
+        startParameter.isSystemPropertyEnabled("some.flag")
+
+        when:
+        startParameter.systemPropertiesArgs["some.flag"] = "false"
+
+        then:
+        !startParameter.isSystemPropertyEnabled("some.flag")
+    }
+}
@@ -29,9 +29,12 @@ import org.junit.Rule
 import spock.lang.Specification
 import spock.lang.Subject
 
+import java.util.concurrent.TimeUnit
+
 import static org.gradle.api.internal.changedetection.state.DefaultFileAccessTimeJournal.CACHE_KEY
 import static org.gradle.api.internal.changedetection.state.DefaultFileAccessTimeJournal.FILE_ACCESS_PROPERTIES_FILE_NAME
 import static org.gradle.api.internal.changedetection.state.DefaultFileAccessTimeJournal.INCEPTION_TIMESTAMP_KEY
+import static org.gradle.api.internal.changedetection.state.DefaultFileAccessTimeJournal.PERSISTED_ACCESS_TIME_GRANULARITY_MILLIS
 import static org.gradle.cache.internal.DefaultCacheScopeMapping.GLOBAL_CACHE_DIR_NAME
 import static org.gradle.util.GUtil.loadProperties
 
@@ -83,6 +86,60 @@ class DefaultFileAccessTimeJournalTest extends Specification {
         journal.getLastAccessTime(file) == inceptionTimestamp
     }
 
+    def "keeps latest access time and persists it when stopped"() {
+        when:
+        journal.setLastAccessTime(file, 42)
+        journal.setLastAccessTime(file, 23)
+
+        then:
+        journal.getLastAccessTime(file) == 42
+
+        when:
+        journal.stop()
+        journal = new DefaultFileAccessTimeJournal(cacheRepository, cacheDecoratorFactory)
+
+        then:
+        journal.getLastAccessTime(file) == 42
+    }
+
+    def "only updates persisted access time when it is older than the granularity"() {
+        def accessTime = System.currentTimeMillis()
+
+        given:
+        journal.setLastAccessTime(file, accessTime)
+        journal.flush()
+
+        when:
+        journal.setLastAccessTime(file, accessTime + PERSISTED_ACCESS_TIME_GRANULARITY_MILLIS - 1)
+        journal.flush()
+
+        then:
+        journal.getLastAccessTime(file) == accessTime
+
+        when:
+        journal.setLastAccessTime(file, accessTime + PERSISTED_ACCESS_TIME_GRANULARITY_MILLIS)
+        journal.flush()
+
+        then:
+        journal.getLastAccessTime(file) == accessTime + PERSISTED_ACCESS_TIME_GRANULARITY_MILLIS
+    }
+
+    def "records accesses that are recent compared to the shortest retention of unused files"() {
+        def accessTime = System.currentTimeMillis()
+        def laterAccessTime = accessTime + TimeUnit.HOURS.toMillis(2)
+
+        given:
+        journal.setLastAccessTime(file, accessTime)
+        journal.flush()
+
+        when:
+        journal.setLastAccessTime(file, laterAccessTime)
+        journal.flush()
+
+        then:
+        journal.getLastAccessTime(file) == laterAccessTime
+    }
+
     def "loads and uses previously stored inception time unless file has a later modification time"() {
         given:
         def inceptionTimestamp = System.currentTimeMillis() - 30_000
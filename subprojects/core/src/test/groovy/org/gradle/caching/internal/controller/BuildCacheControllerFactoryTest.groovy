@@ -30,6 +30,7 @@ import org.gradle.caching.internal.FinalizeBuildCacheConfigurationBuildOperation
 import org.gradle.caching.internal.services.BuildCacheControllerFactory
 import org.gradle.caching.local.DirectoryBuildCache
 import org.gradle.caching.local.internal.LocalBuildCacheService
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.util.Path
 import org.gradle.util.TestUtil
@@ -38,6 +39,7 @@ import spock.lang.Specification
 import static org.gradle.caching.internal.services.BuildCacheControllerFactory.BuildCacheMode.DISABLED
 import static org.gradle.caching.internal.services.BuildCacheControllerFactory.BuildCacheMode.ENABLED
 import static org.gradle.caching.internal.services.BuildCacheControllerFactory.RemoteAccessMode.ONLINE
+import static org.gradle.caching.internal.services.BuildCacheControllerFactory.RemoteStoreMode.SYNC
 
 class BuildCacheControllerFactoryTest extends Specification {
 
@@ -64,9 +66,11 @@ class BuildCacheControllerFactoryTest extends Specification {
             config,
             buildCacheEnabled ? ENABLED : DISABLED,
             ONLINE,
+            SYNC,
             logStacktraces,
             emitDebugLogging,
-            TestUtil.instantiatorFactory().inject()
+            TestUtil.instantiatorFactory().inject(),
+            new DefaultExecutorFactory()
         )
         assert controllerType.isInstance(controller)
         controllerType.cast(controller)
@@ -27,6 +27,7 @@ import org.gradle.caching.internal.origin.OriginMetadataFactory
 import org.gradle.caching.internal.origin.OriginReader
 import org.gradle.caching.internal.origin.OriginWriter
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
+import org.gradle.caching.internal.packaging.impl.BuildCacheEntryCompression
 import org.gradle.internal.file.FileMetadata.AccessType
 import org.gradle.internal.file.TreeType
 import org.gradle.internal.file.impl.DefaultFileMetadata
@@ -76,24 +77,26 @@ class DefaultBuildCacheCommandFactoryTest extends Specification {
             "outputFile", outputFileSnapshot)
 
         when:
-        def result = load.load(input)
+        def result = load.load(input, null)
 
         then:
         1 * originFactory.createReader(entity) >> originReader
         1 * virtualFileSystem.update([outputDir.absolutePath, outputFile.absolutePath], _)
 
         then:
-        1 * packer.unpack(entity, input, originReader) >> new BuildCacheEntryPacker.UnpackResult(originMetadata, 123L, fileSnapshots)
+        1 * packer.unpack(entity, input, originReader, null) >> new BuildCacheEntryPacker.UnpackResult(originMetadata, 123L, fileSnapshots)
 
         then:
-        1 * virtualFileSystem.updateWithKnownSnapshot(_ as CompleteDirectorySnapshot) >> { CompleteFileSystemLocationSnapshot snapshot  ->
-            assert snapshot.absolutePath == outputDir.absolutePath
-            assert snapshot.name == outputDir.name
-        }
-        1 * virtualFileSystem.updateWithKnownSnapshot(_ as RegularFileSnapshot) >> { CompleteFileSystemLocationSnapshot snapshot ->
-            assert snapshot.absolutePath == outputFileSnapshot.absolutePath
-            assert snapshot.name == outputFileSnapshot.name
-            assert snapshot.hash == outputFileSnapshot.hash
+        1 * virtualFileSystem.updateWithKnownSnapshots(_) >> { arguments ->
+            List<CompleteFileSystemLocationSnapshot> snapshots = arguments[0]
+            assert snapshots.size() == 2
+            def dirSnapshot = snapshots.find { it instanceof CompleteDirectorySnapshot }
+            assert dirSnapshot.absolutePath == outputDir.absolutePath
+            assert dirSnapshot.name == outputDir.name
+            def fileSnapshot = snapshots.find { it instanceof RegularFileSnapshot }
+            assert fileSnapshot.absolutePath == outputFileSnapshot.absolutePath
+            assert fileSnapshot.name == outputFileSnapshot.name
+            assert fileSnapshot.hash == outputFileSnapshot.hash
         }
 
         then:
@@ -112,14 +115,14 @@ class DefaultBuildCacheCommandFactoryTest extends Specification {
         def command = commandFactory.createLoad(key, entity)
 
         when:
-        command.load(input)
+        command.load(input, null)
 
         then:
         1 * originFactory.createReader(entity) >> originReader
         1 * virtualFileSystem.update([outputFile.absolutePath], _)
 
         then:
-        1 * packer.unpack(entity, input, originReader) >> {
+        1 * packer.unpack(entity, input, originReader, null) >> {
             outputFile << "partially extracted output fil..."
             throw new RuntimeException("unpacking error")
         }
@@ -138,19 +141,38 @@ class DefaultBuildCacheCommandFactoryTest extends Specification {
         def command = commandFactory.createStore(key, entity, outputFingerprints, 421L)
 
         when:
-        def result = command.store(output)
+        def result = command.store(output, null)
 
         then:
         1 * originFactory.createWriter(entity, 421L) >> originWriter
 
         then:
-        1 * packer.pack(entity, outputFingerprints, output, originWriter) >> new BuildCacheEntryPacker.PackResult(123)
+        1 * packer.pack(entity, outputFingerprints, output, originWriter, null) >> new BuildCacheEntryPacker.PackResult(123)
 
         then:
         result.artifactEntryCount == 123
         0 * _
     }
 
+    def "stores entries compressed with other codecs than gzip under a key of their own"() {
+        def entity = entity(prop("output"))
+        def cacheKey = Stub(BuildCacheKey) {
+            getHashCode() >> "0123456789abcdef"
+        }
+        def lz4CommandFactory = new DefaultBuildCacheCommandFactory(packer, originFactory, virtualFileSystem, stringInterner, BuildCacheEntryCompression.LZ4)
+        def snappyCommandFactory = new DefaultBuildCacheCommandFactory(packer, originFactory, virtualFileSystem, stringInterner, BuildCacheEntryCompression.SNAPPY)
+
+        when:
+        def lz4Key = lz4CommandFactory.createLoad(cacheKey, entity).key
+
+        then:
+        commandFactory.createLoad(cacheKey, entity).key.is(cacheKey)
+        commandFactory.createStore(cacheKey, entity, [:], 1L).key.is(cacheKey)
+        lz4Key.getHashCode() != cacheKey.getHashCode()
+        lz4CommandFactory.createStore(cacheKey, entity, [:], 1L).key.getHashCode() == lz4Key.getHashCode()
+        snappyCommandFactory.createLoad(cacheKey, entity).key.getHashCode() != lz4Key.getHashCode()
+    }
+
     def entity(TestCacheableTree... trees) {
         return Stub(CacheableEntity) {
             visitOutputTrees(_ as CacheableEntity.CacheableTreeVisitor) >> { CacheableEntity.CacheableTreeVisitor visitor ->
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.ManagedExecutor
+import spock.lang.Specification
+
+class BuildCacheUnpackExecutorTest extends Specification {
+    def executorFactory = Mock(ExecutorFactory)
+
+    def "runs commands on the calling thread without creating threads when unpacking on a single thread"() {
+        def command = Mock(Runnable)
+
+        when:
+        def executor = new BuildCacheUnpackExecutor(executorFactory, 1)
+        executor.execute(command)
+        executor.stop()
+
+        then:
+        !executor.parallel
+        1 * command.run()
+        0 * executorFactory._
+    }
+
+    def "runs commands on a managed executor when unpacking on several threads"() {
+        def managedExecutor = Mock(ManagedExecutor)
+        def command = Mock(Runnable)
+
+        when:
+        def executor = new BuildCacheUnpackExecutor(executorFactory, 4)
+
+        then:
+        executor.parallel
+        1 * executorFactory.create("Build cache unpack", 4) >> managedExecutor
+
+        when:
+        executor.execute(command)
+        executor.stop()
+
+        then:
+        1 * managedExecutor.execute(command)
+        1 * managedExecutor.stop()
+        0 * command.run()
+    }
+}
@@ -21,6 +21,7 @@ import org.gradle.api.Task
 import org.gradle.api.file.FileCollection
 import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.project.ProjectInternal
+import org.gradle.api.internal.tasks.RunsWithoutProjectLock
 import org.gradle.api.tasks.Destroys
 import org.gradle.api.tasks.InputDirectory
 import org.gradle.api.tasks.InputFile
@@ -148,6 +149,31 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
         lockedProjects.empty
     }
 
+    def "a task that runs without the project lock can start while all projects are locked"() {
+        given:
+        def a = task("a")
+        def b = task("b")
+        def c = task("c", type: WithoutProjectLock)
+
+        when:
+        addToGraphAndPopulate(a, b, c)
+        def nonAsyncTaskNode = selectNextTaskNode()
+        then:
+        nonAsyncTaskNode.task == a
+        lockedProjects.size() == 1
+
+        when:
+        def taskWithoutProjectLock = selectNextTask()
+        then:
+        taskWithoutProjectLock == c
+        selectNextTask() == null
+
+        when:
+        executionPlan.finishedExecuting(nonAsyncTaskNode)
+        then:
+        selectNextTask() == b
+    }
+
     @Unroll
     def "two tasks with #relation relationship are not executed in parallel"() {
         given:
@@ -215,6 +241,122 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
 
     }
 
+    def "tasks that become ready when their dependencies complete are selected in execution plan order"() {
+        given:
+        Task a = task("a", type: Async)
+        Task b = task("b", type: Async)
+        Task c = task("c", type: Async, dependsOn: [b])
+        Task d = task("d", type: Async, dependsOn: [a])
+
+        when:
+        addToGraphAndPopulate(c, d)
+        def firstTaskNode = selectNextTaskNode()
+        def secondTaskNode = selectNextTaskNode()
+        then:
+        firstTaskNode.task == b
+        secondTaskNode.task == a
+        selectNextTask() == null
+
+        when:
+        executionPlan.finishedExecuting(secondTaskNode)
+        executionPlan.finishedExecuting(firstTaskNode)
+        then:
+        selectNextTask() == c
+        selectNextTask() == d
+        selectNextTask() == null
+    }
+
+    def "ready tasks on the longest estimated path are selected first when execution times are estimated"() {
+        given:
+        def executionTimes = [a: 10L, b: 1L, c: 100L]
+        def estimator = { Node node -> executionTimes[((LocalTaskNode) node).task.name] ?: 0L } as NodeExecutionTimeEstimator
+        def taskNodeFactory = new TaskNodeFactory(project.gradle, Stub(IncludedBuildTaskGraph))
+        def dependencyResolver = new TaskDependencyResolver([new TaskNodeDependencyResolver(taskNodeFactory)])
+        executionPlan = new DefaultExecutionPlan(thisBuild, taskNodeFactory, dependencyResolver, estimator, null, OutputSnapshotPrefetcher.NONE)
+
+        Task a = task("a", type: Async)
+        Task b = task("b", type: Async)
+        Task c = task("c", type: Async, dependsOn: [b])
+
+        when:
+        addToGraphAndPopulate(a, c)
+
+        then:
+        selectNextTask() == b
+        selectNextTask() == a
+        selectNextTask() == null
+    }
+
+    def "outputs of a task waiting for a lock are prefetched and the task starts once prefetching completes"() {
+        given:
+        def prefetcher = Mock(OutputSnapshotPrefetcher)
+        def taskNodeFactory = new TaskNodeFactory(project.gradle, Stub(IncludedBuildTaskGraph))
+        def dependencyResolver = new TaskDependencyResolver([new TaskNodeDependencyResolver(taskNodeFactory)])
+        executionPlan = new DefaultExecutionPlan(thisBuild, taskNodeFactory, dependencyResolver, NodeExecutionTimeEstimator.NONE, null, prefetcher)
+        def busyLease = Stub(WorkerLeaseRegistry.WorkerLease) {
+            tryLock() >> false
+        }
+        Runnable onCompletion = null
+
+        Task a = task("a", type: AsyncWithOutputFile)
+        _ * a.outputFile >> file("output")
+
+        when:
+        addToGraphAndPopulate(a)
+        recordLocks {
+            assert executionPlan.selectNext(busyLease, resourceLockState) == null
+        }
+
+        then:
+        1 * prefetcher.prefetch({ it.size() == 1 }, _) >> { locations, Runnable callback -> onCompletion = callback }
+
+        when:
+        def whilePrefetching = selectNextTask()
+        onCompletion.run()
+
+        then:
+        whilePrefetching == null
+        0 * prefetcher._
+        selectNextTask() == a
+    }
+
+    def "outputs of a task waiting for a lock are prefetched once no running task changes them"() {
+        given:
+        def prefetcher = Mock(OutputSnapshotPrefetcher)
+        def taskNodeFactory = new TaskNodeFactory(project.gradle, Stub(IncludedBuildTaskGraph))
+        def dependencyResolver = new TaskDependencyResolver([new TaskNodeDependencyResolver(taskNodeFactory)])
+        executionPlan = new DefaultExecutionPlan(thisBuild, taskNodeFactory, dependencyResolver, NodeExecutionTimeEstimator.NONE, null, prefetcher)
+        def busyLease = Stub(WorkerLeaseRegistry.WorkerLease) {
+            tryLock() >> false
+        }
+        def sharedFile = file("output")
+
+        Task a = task("a", type: AsyncWithOutputFile)
+        _ * a.outputFile >> sharedFile
+        Task b = task("b", type: AsyncWithOutputFile)
+        _ * b.outputFile >> sharedFile
+
+        when:
+        addToGraphAndPopulate(a, b)
+        def first = selectNextTaskNode()
+        recordLocks {
+            assert executionPlan.selectNext(busyLease, resourceLockState) == null
+        }
+
+        then:
+        first.task == a
+        0 * prefetcher._
+
+        when:
+        executionPlan.finishedExecuting(first)
+        recordLocks {
+            assert executionPlan.selectNext(busyLease, resourceLockState) == null
+        }
+
+        then:
+        1 * prefetcher.prefetch({ it.size() == 1 }, _)
+    }
+
     def "two tasks that have the same file in outputs are not executed in parallel"() {
         def sharedFile = file("output")
 
@@ -766,6 +908,9 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
 
     static class Async extends DefaultTask {}
 
+    @RunsWithoutProjectLock
+    static class WithoutProjectLock extends DefaultTask {}
+
     static class AsyncWithOutputFile extends Async {
         @OutputFile
         File outputFile
@@ -228,6 +228,40 @@ class DefaultExecutionPlanTest extends AbstractExecutionPlanSpec {
         executes(e, x, a, b, c, f, d, build)
     }
 
+    def "reuses the cached order for an identical task graph"() {
+        given:
+        def orderCache = new ExecutionPlanOrderCache()
+        Task e = task("e")
+        Task x = task("x", dependsOn: [e])
+        Task f = task("f", dependsOn: [x])
+        Task a = task("a", shouldRunAfter: [x])
+        Task b = task("b", shouldRunAfter: [a])
+        Task c = task("c", shouldRunAfter: [b])
+        Task d = task("d", dependsOn: [f], shouldRunAfter: [c])
+        relationships(e, shouldRunAfter: [d])
+        Task build = task("build", dependsOn: [x, a, b, c, d, e])
+
+        when:
+        executionPlan = executionPlanWithOrderCache(orderCache)
+        addToGraphAndPopulate([build])
+
+        then:
+        executes(e, x, a, b, c, f, d, build)
+
+        when:
+        executionPlan = executionPlanWithOrderCache(orderCache)
+        executionPlan.addEntryTasks([build])
+
+        then:
+        orderCache.get(orderCache.snapshot([executionPlan.getNode(build)])) != null
+
+        when:
+        executionPlan.determineExecutionPlan()
+
+        then:
+        executes(e, x, a, b, c, f, d, build)
+    }
+
     @Unroll
     def "#orderingRule does not pull in tasks that are not in the graph"() {
         Task a = task("a")
@@ -862,6 +896,12 @@ class DefaultExecutionPlanTest extends AbstractExecutionPlanSpec {
         return node
     }
 
+    private DefaultExecutionPlan executionPlanWithOrderCache(ExecutionPlanOrderCache orderCache) {
+        def taskNodeFactory = new TaskNodeFactory(thisBuild, Stub(IncludedBuildTaskGraph))
+        def dependencyResolver = new TaskDependencyResolver([new TaskNodeDependencyResolver(taskNodeFactory)])
+        return new DefaultExecutionPlan(thisBuild, taskNodeFactory, dependencyResolver, NodeExecutionTimeEstimator.NONE, orderCache, OutputSnapshotPrefetcher.NONE)
+    }
+
     private void addToGraphAndPopulate(List tasks) {
         executionPlan.addEntryTasks(tasks)
         executionPlan.determineExecutionPlan()
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.execution.plan
+
+import spock.lang.Specification
+
+class PathTrieTest extends Specification {
+    def trie = new PathTrie<String>()
+
+    def "detects overlap with equal, ancestor and descendant paths"() {
+        given:
+        trie.add(path("a/b"), "ab")
+
+        expect:
+        trie.hasOverlap(path("a/b"))
+        trie.hasOverlap(path("a"))
+        trie.hasOverlap(path("a/b/c"))
+        !trie.hasOverlap(path("a/bc"))
+        !trie.hasOverlap(path("a/c"))
+        !trie.hasOverlap(path("b"))
+    }
+
+    def "visits values of all overlapping paths"() {
+        given:
+        trie.add(path("a"), "a")
+        trie.add(path("a/b"), "ab")
+        trie.add(path("a/b/c/d"), "abcd")
+        trie.add(path("a/e"), "ae")
+
+        expect:
+        overlapping(path("a/b/c")) == ["a", "ab", "abcd"] as Set
+        overlapping(path("a/e/f")) == ["a", "ae"] as Set
+        overlapping(path("x")).empty
+    }
+
+    def "removing the last value for a path removes the overlap"() {
+        given:
+        trie.add(path("a/b"), "first")
+        trie.add(path("a/b"), "second")
+
+        when:
+        trie.remove(path("a/b"), "first")
+        then:
+        trie.hasOverlap(path("a"))
+        overlapping(path("a")) == ["second"] as Set
+
+        when:
+        trie.remove(path("a/b"), "second")
+        then:
+        !trie.hasOverlap(path("a"))
+        trie.empty
+    }
+
+    private Set<String> overlapping(String path) {
+        def result = [] as Set
+        trie.visitOverlapping(path) { result.add(it) }
+        return result
+    }
+
+    private static String path(String relativePath) {
+        return new File(new File("root").absoluteFile, relativePath).absolutePath
+    }
+}
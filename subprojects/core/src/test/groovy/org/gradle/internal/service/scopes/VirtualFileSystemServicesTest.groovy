@@ -21,7 +21,10 @@ import org.gradle.api.internal.StartParameterInternal
 import org.gradle.api.internal.cache.StringInterner
 import org.gradle.cache.GlobalCacheLocations
 import org.gradle.initialization.RootBuildLifecycleListener
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.ManagedExecutor
 import org.gradle.internal.event.ListenerManager
+import org.gradle.internal.hash.DirectorySnapshottingExecutor
 import org.gradle.internal.hash.FileHasher
 import org.gradle.internal.nativeintegration.filesystem.FileSystem
 import org.gradle.internal.vfs.RoutingVirtualFileSystem
@@ -38,23 +41,17 @@ class VirtualFileSystemServicesTest extends Specification {
     def startParameter = Mock(StartParameterInternal)
     def stringInterner = Mock(StringInterner)
     def gradle = Mock(GradleInternal)
+    def executorFactory = Mock(ExecutorFactory)
+    def directorySnapshottingExecutor = new DirectorySnapshottingExecutor(executorFactory, 2)
 
     def "global virtual file system is not invalidated from the build session scope listener after the build completed (watch-fs enabled: #watchFsEnabled)"() {
         def gradleUserHomeVirtualFileSystem = Mock(VirtualFileSystem)
         RootBuildLifecycleListener rootBuildLifecycleListener
         _ * startParameter.isWatchFileSystem() >> watchFsEnabled
+        _ * startParameter.systemPropertiesArgs >> [:]
 
         when:
-        def buildSessionScopedVirtualFileSystem = new VirtualFileSystemServices.BuildSessionServices().createVirtualFileSystem(
-            globalCacheLocations,
-            fileHasher,
-            fileSystem,
-            listenerManager,
-            startParameter,
-            fileSystem,
-            stringInterner,
-            gradleUserHomeVirtualFileSystem
-        )
+        def buildSessionScopedVirtualFileSystem = createBuildSessionScopedVirtualFileSystem(gradleUserHomeVirtualFileSystem)
         then:
         buildSessionScopedVirtualFileSystem instanceof RoutingVirtualFileSystem
 
@@ -70,4 +67,41 @@ class VirtualFileSystemServicesTest extends Specification {
         where:
         watchFsEnabled << [true, false]
     }
+
+    def "parallel snapshotting is enabled by the system properties of the build session"() {
+        def executor = Mock(ManagedExecutor)
+        _ * startParameter.systemPropertiesArgs >> [(VirtualFileSystemServices.VFS_PARALLEL_SNAPSHOTTING_PROPERTY): "true"]
+
+        when:
+        createBuildSessionScopedVirtualFileSystem(Mock(VirtualFileSystem))
+
+        then:
+        directorySnapshottingExecutor.get() == executor
+        1 * executorFactory.create("Directory snapshotting", 2) >> executor
+    }
+
+    def "parallel snapshotting is disabled by default"() {
+        _ * startParameter.systemPropertiesArgs >> [:]
+
+        when:
+        createBuildSessionScopedVirtualFileSystem(Mock(VirtualFileSystem))
+
+        then:
+        directorySnapshottingExecutor.get() == null
+        0 * executorFactory._
+    }
+
+    private VirtualFileSystem createBuildSessionScopedVirtualFileSystem(VirtualFileSystem gradleUserHomeVirtualFileSystem) {
+        new VirtualFileSystemServices.BuildSessionServices().createVirtualFileSystem(
+            globalCacheLocations,
+            fileHasher,
+            fileSystem,
+            listenerManager,
+            startParameter,
+            fileSystem,
+            stringInterner,
+            gradleUserHomeVirtualFileSystem,
+            directorySnapshottingExecutor
+        )
+    }
 }
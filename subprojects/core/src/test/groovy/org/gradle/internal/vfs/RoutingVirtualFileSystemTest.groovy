@@ -134,6 +134,31 @@ class RoutingVirtualFileSystemTest extends Specification {
         0 * _
     }
 
+    def "routes known snapshots to the right underlying virtual file system in batches"() {
+        def userHomeSnapshot = Stub(RegularFileSnapshot) {
+            getAbsolutePath() >> cacheDir.file("some/dir/a").absolutePath
+        }
+        def projectSnapshot = Stub(RegularFileSnapshot) {
+            getAbsolutePath() >> tmpDir.file("build/some/file.txt").absolutePath
+        }
+        def otherProjectSnapshot = Stub(RegularFileSnapshot) {
+            getAbsolutePath() >> tmpDir.file("build/some/other.txt").absolutePath
+        }
+
+        when:
+        routingVirtualFileSystem.updateWithKnownSnapshots([projectSnapshot, otherProjectSnapshot])
+        then:
+        1 * buildSessionScopedVirtualFileSystem.updateWithKnownSnapshots([projectSnapshot, otherProjectSnapshot])
+        0 * _
+
+        when:
+        routingVirtualFileSystem.updateWithKnownSnapshots([userHomeSnapshot, projectSnapshot])
+        then:
+        1 * gradleUserHomeVirtualFileSystem.updateWithKnownSnapshots([userHomeSnapshot])
+        1 * buildSessionScopedVirtualFileSystem.updateWithKnownSnapshots([projectSnapshot])
+        0 * _
+    }
+
     def "routes to the Gradle user home virtual file system when retention is enabled"() {
         vfsRetained = true
 
@@ -26,6 +26,7 @@
 import org.gradle.api.internal.DocumentationRegistry;
 import org.gradle.api.internal.FeaturePreviews;
 import org.gradle.api.internal.GradleInternal;
+import org.gradle.api.internal.StartParameterInternal;
 import org.gradle.api.internal.artifacts.component.ComponentIdentifierFactory;
 import org.gradle.api.internal.artifacts.component.DefaultComponentIdentifierFactory;
 import org.gradle.api.internal.artifacts.dsl.CapabilityNotationParserFactory;
@@ -53,6 +54,7 @@
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.InMemoryModuleMetadataCache;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleComponentResolveMetadataSerializer;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleMetadataSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleMetadataStore;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleRepositoryCacheProvider;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleRepositoryCaches;
 import org.gradle.api.internal.artifacts.ivyservice.modulecache.ModuleSourcesSerializer;
@@ -138,6 +140,8 @@
 import org.gradle.internal.component.external.model.ModuleComponentArtifactMetadata;
 import org.gradle.internal.component.external.model.PreferJavaRuntimeVariant;
 import org.gradle.internal.component.model.PersistentModuleSource;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.file.FileAccessTimeJournal;
 import org.gradle.internal.file.RelativeFilePathResolver;
@@ -184,6 +188,13 @@
  * The set of dependency management services that are created per build.
  */
 class DependencyManagementBuildScopeServices {
+    /**
+     * Boolean system property to resolve the metadata of modules in the background as soon as they show up in the dependency graph.
+     */
+    static final String METADATA_PREFETCHING_PROPERTY = "org.gradle.dependency-resolution.metadata-prefetching";
+
+    private static final int MAX_CONCURRENT_METADATA_PREFETCHES = 8;
+
     DependencyManagementServices createDependencyManagementServices(ServiceRegistry parent) {
         return new DefaultDependencyManagementServices(parent);
     }
@@ -268,9 +279,11 @@ ModuleRepositoryCacheProvider createModuleRepositoryCacheProvider(BuildCommenced
                                                                       SimpleMapInterner stringInterner,
                                                                       FileStoreAndIndexProvider fileStoreAndIndexProvider,
                                                                       ModuleSourcesSerializer moduleSourcesSerializer,
-                                                                      ChecksumService checksumService) {
+                                                                      ChecksumService checksumService,
+                                                                      StartParameter startParameter) {
         ArtifactIdentifierFileStore artifactIdentifierFileStore = fileStoreAndIndexProvider.getArtifactIdentifierFileStore();
-        ModuleRepositoryCaches writableCaches = artifactCaches.withWritableCache((md, manager) -> prepareModuleRepositoryCaches(md, manager, timeProvider, moduleIdentifierFactory, attributeContainerSerializer, mavenMetadataFactory, ivyMetadataFactory, stringInterner, artifactIdentifierFileStore, moduleSourcesSerializer, checksumService));
+        boolean indexedModuleMetadata = ((StartParameterInternal) startParameter).isSystemPropertyEnabled(ModuleMetadataStore.INDEXED_FORMAT_PROPERTY);
+        ModuleRepositoryCaches writableCaches = artifactCaches.withWritableCache((md, manager) -> prepareModuleRepositoryCaches(md, manager, timeProvider, moduleIdentifierFactory, attributeContainerSerializer, mavenMetadataFactory, ivyMetadataFactory, stringInterner, artifactIdentifierFileStore, moduleSourcesSerializer, checksumService, indexedModuleMetadata));
         AtomicReference<Path> roCachePath = new AtomicReference<>();
         Optional<ModuleRepositoryCaches> readOnlyCaches = artifactCaches.withReadOnlyCache((ro, manager) -> {
             roCachePath.set(ro.getCacheDir().toPath());
@@ -295,7 +308,7 @@ ModuleRepositoryCacheProvider createModuleRepositoryCacheProvider(BuildCommenced
         return new ModuleRepositoryCacheProvider(persistentCaches, inMemoryOnlyCaches);
     }
 
-    private ModuleRepositoryCaches prepareModuleRepositoryCaches(ArtifactCacheMetadata artifactCacheMetadata, ArtifactCacheLockingManager artifactCacheLockingManager, BuildCommencedTimeProvider timeProvider, ImmutableModuleIdentifierFactory moduleIdentifierFactory, AttributeContainerSerializer attributeContainerSerializer, MavenMutableModuleMetadataFactory mavenMetadataFactory, IvyMutableModuleMetadataFactory ivyMetadataFactory, SimpleMapInterner stringInterner, ArtifactIdentifierFileStore artifactIdentifierFileStore, ModuleSourcesSerializer moduleSourcesSerializer, ChecksumService checksumService) {
+    private ModuleRepositoryCaches prepareModuleRepositoryCaches(ArtifactCacheMetadata artifactCacheMetadata, ArtifactCacheLockingManager artifactCacheLockingManager, BuildCommencedTimeProvider timeProvider, ImmutableModuleIdentifierFactory moduleIdentifierFactory, AttributeContainerSerializer attributeContainerSerializer, MavenMutableModuleMetadataFactory mavenMetadataFactory, IvyMutableModuleMetadataFactory ivyMetadataFactory, SimpleMapInterner stringInterner, ArtifactIdentifierFileStore artifactIdentifierFileStore, ModuleSourcesSerializer moduleSourcesSerializer, ChecksumService checksumService, boolean indexedModuleMetadata) {
         DefaultModuleVersionsCache moduleVersionsCache = new DefaultModuleVersionsCache(
             timeProvider,
             artifactCacheLockingManager,
@@ -310,7 +323,8 @@ private ModuleRepositoryCaches prepareModuleRepositoryCaches(ArtifactCacheMetada
             ivyMetadataFactory,
             stringInterner,
             moduleSourcesSerializer,
-            checksumService);
+            checksumService,
+            indexedModuleMetadata);
         DefaultModuleArtifactsCache moduleArtifactsCache = new DefaultModuleArtifactsCache(
             timeProvider,
             artifactCacheLockingManager
@@ -515,7 +529,12 @@ ArtifactDependencyResolver createArtifactDependencyResolver(ResolveIvyFactory re
                                                                 VersionSelectorScheme versionSelectorScheme,
                                                                 VersionParser versionParser,
                                                                 ComponentMetadataSupplierRuleExecutor componentMetadataSupplierRuleExecutor,
-                                                                InstantiatorFactory instantiatorFactory) {
+                                                                InstantiatorFactory instantiatorFactory,
+                                                                ExecutorFactory executorFactory,
+                                                                StartParameter startParameter) {
+        ManagedExecutor metadataPrefetchExecutor = ((StartParameterInternal) startParameter).isSystemPropertyEnabled(METADATA_PREFETCHING_PROPERTY)
+            ? executorFactory.create("Dependency metadata prefetcher", MAX_CONCURRENT_METADATA_PREFETCHES)
+            : null;
         return new DefaultArtifactDependencyResolver(
             buildOperationExecutor,
             resolverFactories,
@@ -529,7 +548,8 @@ ArtifactDependencyResolver createArtifactDependencyResolver(ResolveIvyFactory re
             versionSelectorScheme,
             versionParser,
             componentMetadataSupplierRuleExecutor,
-            instantiatorFactory);
+            instantiatorFactory,
+            metadataPrefetchExecutor);
     }
 
     ProjectPublicationRegistry createProjectPublicationRegistry() {
@@ -16,13 +16,43 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
 
+import org.w3c.dom.Comment;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.ARTIFACT_ID;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.CLASSIFIER;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.DEPENDENCIES;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.DEPENDENCY;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.DEPENDENCY_MGT;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.DISTRIBUTION_MGT;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.EXCLUSION;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.EXCLUSIONS;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.GROUP_ID;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.OPTIONAL;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PACKAGING;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PARENT;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PROFILE;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PROFILES;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PROFILE_ACTIVATION;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PROFILE_ACTIVATION_ACTIVE_BY_DEFAULT;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PROFILE_ACTIVATION_PROPERTY;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PROFILE_ACTIVATION_PROPERTY_NAME;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PROFILE_ID;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PROPERTIES;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.RELOCATION;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.SCOPE;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.TYPE;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.VERSION;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.isGradleMetadataMarker;
 
 public final class PomDomParser {
     private PomDomParser() {}
@@ -84,6 +114,98 @@ public static List<Element> getAllChilds(Element parent) {
         return r;
     }
 
+    /**
+     * Extracts the parts of a POM that are used by {@link PomReader} from its DOM.
+     */
+    public static PomModel toModel(Element projectElement) {
+        Element parentElement = getFirstChildElement(projectElement, PARENT);
+        Element relocationElement = getFirstChildElement(getFirstChildElement(projectElement, DISTRIBUTION_MGT), RELOCATION);
+        return new PomModel(
+            projectElement.getOwnerDocument().getDocumentURI(),
+            projectElement.getNodeName(),
+            toCoordinates(projectElement),
+            getFirstChildText(projectElement, PACKAGING),
+            parentElement == null ? null : toCoordinates(parentElement),
+            relocationElement == null ? null : toCoordinates(relocationElement),
+            hasGradleMetadataMarker(projectElement),
+            toProperties(projectElement),
+            toDependencies(getFirstChildElement(projectElement, DEPENDENCIES)),
+            toDependencies(getFirstChildElement(getFirstChildElement(projectElement, DEPENDENCY_MGT), DEPENDENCIES)),
+            toProfiles(getFirstChildElement(projectElement, PROFILES))
+        );
+    }
+
+    private static PomModel.Coordinates toCoordinates(Element element) {
+        return new PomModel.Coordinates(getFirstChildText(element, GROUP_ID), getFirstChildText(element, ARTIFACT_ID), getFirstChildText(element, VERSION));
+    }
+
+    private static boolean hasGradleMetadataMarker(Element projectElement) {
+        NodeList childNodes = projectElement.getChildNodes();
+        for (int i = 0; i < childNodes.getLength(); i++) {
+            Node node = childNodes.item(i);
+            if (node instanceof Comment && isGradleMetadataMarker(node.getNodeValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, String> toProperties(Element parentElement) {
+        Map<String, String> properties = new HashMap<>();
+        Element propsEl = getFirstChildElement(parentElement, PROPERTIES);
+        if (propsEl != null) {
+            propsEl.normalize();
+        }
+        for (Element prop : getAllChilds(propsEl)) {
+            properties.put(prop.getNodeName(), getTextContent(prop));
+        }
+        return properties;
+    }
+
+    private static List<PomModel.Dependency> toDependencies(Element dependenciesElement) {
+        List<PomModel.Dependency> dependencies = new ArrayList<>();
+        for (Element dependency : getAllChilds(dependenciesElement)) {
+            if (DEPENDENCY.equals(dependency.getNodeName())) {
+                List<PomModel.Coordinates> exclusions = new ArrayList<>();
+                for (Element exclusion : getAllChilds(getFirstChildElement(dependency, EXCLUSIONS))) {
+                    if (EXCLUSION.equals(exclusion.getNodeName())) {
+                        exclusions.add(new PomModel.Coordinates(getFirstChildText(exclusion, GROUP_ID), getFirstChildText(exclusion, ARTIFACT_ID), null));
+                    }
+                }
+                dependencies.add(new PomModel.Dependency(
+                    toCoordinates(dependency),
+                    getFirstChildText(dependency, SCOPE),
+                    getFirstChildText(dependency, TYPE),
+                    getFirstChildText(dependency, CLASSIFIER),
+                    getFirstChildText(dependency, OPTIONAL),
+                    exclusions
+                ));
+            }
+        }
+        return dependencies;
+    }
+
+    private static List<PomModel.Profile> toProfiles(Element profilesElement) {
+        List<PomModel.Profile> profiles = new ArrayList<>();
+        for (Element profile : getAllChilds(profilesElement)) {
+            if (PROFILE.equals(profile.getNodeName())) {
+                Element activation = getFirstChildElement(profile, PROFILE_ACTIVATION);
+                Element activationProperty = getFirstChildElement(activation, PROFILE_ACTIVATION_PROPERTY);
+                profiles.add(new PomModel.Profile(
+                    getFirstChildText(profile, PROFILE_ID),
+                    activation != null,
+                    getFirstChildText(activation, PROFILE_ACTIVATION_ACTIVE_BY_DEFAULT),
+                    activationProperty != null,
+                    getFirstChildText(activationProperty, PROFILE_ACTIVATION_PROPERTY_NAME),
+                    toProperties(profile),
+                    toDependencies(getFirstChildElement(profile, DEPENDENCIES)),
+                    toDependencies(getFirstChildElement(getFirstChildElement(profile, DEPENDENCY_MGT), DEPENDENCIES))
+                ));
+            }
+        }
+        return profiles;
+    }
+
     public static final class AddDTDFilterInputStream extends FilterInputStream {
         private static final int MARK = 10000;
         private static final String DOCTYPE = "<!DOCTYPE project SYSTEM \"m2-entities.ent\">\n";
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parts of a POM file that are used by {@link PomReader}, as they appear in the file, without any property substitution.
+ *
+ * <p>Where a POM element is only looked up by its first occurrence, only that occurrence is kept.
+ * Values are {@code null} when the element is absent.</p>
+ */
+public final class PomModel {
+    private final String systemId;
+    private final String rootElementName;
+    private final Coordinates coordinates;
+    private final String packaging;
+    private final Coordinates parent;
+    private final Coordinates relocation;
+    private final boolean gradleMetadataMarker;
+    private final Map<String, String> properties;
+    private final List<Dependency> dependencies;
+    private final List<Dependency> dependencyManagement;
+    private final List<Profile> profiles;
+
+    PomModel(String systemId, String rootElementName, Coordinates coordinates, @Nullable String packaging, @Nullable Coordinates parent, @Nullable Coordinates relocation, boolean gradleMetadataMarker,
+             Map<String, String> properties, List<Dependency> dependencies, List<Dependency> dependencyManagement, List<Profile> profiles) {
+        this.systemId = systemId;
+        this.rootElementName = rootElementName;
+        this.coordinates = coordinates;
+        this.packaging = packaging;
+        this.parent = parent;
+        this.relocation = relocation;
+        this.gradleMetadataMarker = gradleMetadataMarker;
+        this.properties = ImmutableMap.copyOf(properties);
+        this.dependencies = ImmutableList.copyOf(dependencies);
+        this.dependencyManagement = ImmutableList.copyOf(dependencyManagement);
+        this.profiles = ImmutableList.copyOf(profiles);
+    }
+
+    public String getSystemId() {
+        return systemId;
+    }
+
+    public String getRootElementName() {
+        return rootElementName;
+    }
+
+    public Coordinates getCoordinates() {
+        return coordinates;
+    }
+
+    @Nullable
+    public String getPackaging() {
+        return packaging;
+    }
+
+    @Nullable
+    public Coordinates getParent() {
+        return parent;
+    }
+
+    @Nullable
+    public Coordinates getRelocation() {
+        return relocation;
+    }
+
+    /**
+     * Whether a top level comment in the POM says that Gradle module metadata was published alongside it.
+     */
+    public boolean hasGradleMetadataMarker() {
+        return gradleMetadataMarker;
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    public List<Dependency> getDependencies() {
+        return dependencies;
+    }
+
+    public List<Dependency> getDependencyManagement() {
+        return dependencyManagement;
+    }
+
+    public List<Profile> getProfiles() {
+        return profiles;
+    }
+
+    public static final class Coordinates {
+        static final Coordinates NONE = new Coordinates(null, null, null);
+
+        private final String groupId;
+        private final String artifactId;
+        private final String version;
+
+        Coordinates(@Nullable String groupId, @Nullable String artifactId, @Nullable String version) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+        }
+
+        @Nullable
+        public String getGroupId() {
+            return groupId;
+        }
+
+        @Nullable
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        @Nullable
+        public String getVersion() {
+            return version;
+        }
+    }
+
+    public static final class Dependency {
+        private final Coordinates coordinates;
+        private final String scope;
+        private final String type;
+        private final String classifier;
+        private final String optional;
+        private final List<Coordinates> exclusions;
+
+        Dependency(Coordinates coordinates, @Nullable String scope, @Nullable String type, @Nullable String classifier, @Nullable String optional, List<Coordinates> exclusions) {
+            this.coordinates = coordinates;
+            this.scope = scope;
+            this.type = type;
+            this.classifier = classifier;
+            this.optional = optional;
+            this.exclusions = ImmutableList.copyOf(exclusions);
+        }
+
+        public Coordinates getCoordinates() {
+            return coordinates;
+        }
+
+        @Nullable
+        public String getScope() {
+            return scope;
+        }
+
+        @Nullable
+        public String getType() {
+            return type;
+        }
+
+        @Nullable
+        public String getClassifier() {
+            return classifier;
+        }
+
+        @Nullable
+        public String getOptional() {
+            return optional;
+        }
+
+        /**
+         * The excluded modules, with a {@code null} version.
+         */
+        public List<Coordinates> getExclusions() {
+            return exclusions;
+        }
+    }
+
+    public static final class Profile {
+        private final String id;
+        private final boolean activation;
+        private final String activeByDefault;
+        private final boolean activationProperty;
+        private final String activationPropertyName;
+        private final Map<String, String> properties;
+        private final List<Dependency> dependencies;
+        private final List<Dependency> dependencyManagement;
+
+        Profile(@Nullable String id, boolean activation, @Nullable String activeByDefault, boolean activationProperty, @Nullable String activationPropertyName,
+                Map<String, String> properties, List<Dependency> dependencies, List<Dependency> dependencyManagement) {
+            this.id = id;
+            this.activation = activation;
+            this.activeByDefault = activeByDefault;
+            this.activationProperty = activationProperty;
+            this.activationPropertyName = activationPropertyName;
+            this.properties = ImmutableMap.copyOf(properties);
+            this.dependencies = ImmutableList.copyOf(dependencies);
+            this.dependencyManagement = ImmutableList.copyOf(dependencyManagement);
+        }
+
+        @Nullable
+        public String getId() {
+            return id;
+        }
+
+        public boolean hasActivation() {
+            return activation;
+        }
+
+        @Nullable
+        public String getActiveByDefault() {
+            return activeByDefault;
+        }
+
+        public boolean hasActivationProperty() {
+            return activationProperty;
+        }
+
+        @Nullable
+        public String getActivationPropertyName() {
+            return activationPropertyName;
+        }
+
+        public Map<String, String> getProperties() {
+            return properties;
+        }
+
+        public List<Dependency> getDependencies() {
+            return dependencies;
+        }
+
+        public List<Dependency> getDependencyManagement() {
+            return dependencyManagement;
+        }
+    }
+}
@@ -28,19 +28,22 @@
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.classloader.ClassLoaderUtils;
 import org.gradle.internal.resource.local.LocallyAvailableExternalResource;
-import org.w3c.dom.Comment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
+import javax.annotation.Nullable;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -52,44 +55,49 @@
 import java.util.Map;
 
 import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomDomParser.AddDTDFilterInputStream;
-import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomDomParser.getAllChilds;
-import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomDomParser.getFirstChildElement;
-import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomDomParser.getFirstChildText;
-import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomDomParser.getTextContent;
 
 /**
  * Copied from org.apache.ivy.plugins.parser.m2.PomReader.
  */
 public class PomReader implements PomParent {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PomReader.class);
 
-    private static final String PACKAGING = "packaging";
-    private static final String DEPENDENCY = "dependency";
-    private static final String DEPENDENCIES = "dependencies";
-    private static final String DEPENDENCY_MGT = "dependencyManagement";
-    private static final String PROJECT = "project";
-    private static final String MODEL = "model";
-    private static final String GROUP_ID = "groupId";
-    private static final String ARTIFACT_ID = "artifactId";
-    private static final String VERSION = "version";
-    private static final String DESCRIPTION = "description";
-    private static final String PARENT = "parent";
-    private static final String SCOPE = "scope";
-    private static final String CLASSIFIER = "classifier";
-    private static final String OPTIONAL = "optional";
-    private static final String EXCLUSIONS = "exclusions";
-    private static final String EXCLUSION = "exclusion";
-    private static final String DISTRIBUTION_MGT = "distributionManagement";
-    private static final String RELOCATION = "relocation";
-    private static final String PROPERTIES = "properties";
-    private static final String TYPE = "type";
-    private static final String PROFILES = "profiles";
-    private static final String PROFILE = "profile";
-    private static final String PROFILE_ID = "id";
-    private static final String PROFILE_ACTIVATION = "activation";
-    private static final String PROFILE_ACTIVATION_ACTIVE_BY_DEFAULT = "activeByDefault";
-    private static final String PROFILE_ACTIVATION_PROPERTY = "property";
+    /**
+     * When set, POM files are read with {@link PomStaxParser} instead of being parsed into a DOM first. The DOM parser is still used
+     * for any POM the streaming parser cannot read. The property is resolved once per build, see {@link GradlePomModuleDescriptorParser}.
+     */
+    public static final String STREAMING_PARSER_PROPERTY = "org.gradle.dependency-resolution.streaming-pom-parser";
+
+    static final String PACKAGING = "packaging";
+    static final String DEPENDENCY = "dependency";
+    static final String DEPENDENCIES = "dependencies";
+    static final String DEPENDENCY_MGT = "dependencyManagement";
+    static final String PROJECT = "project";
+    static final String MODEL = "model";
+    static final String GROUP_ID = "groupId";
+    static final String ARTIFACT_ID = "artifactId";
+    static final String VERSION = "version";
+    static final String DESCRIPTION = "description";
+    static final String PARENT = "parent";
+    static final String SCOPE = "scope";
+    static final String CLASSIFIER = "classifier";
+    static final String OPTIONAL = "optional";
+    static final String EXCLUSIONS = "exclusions";
+    static final String EXCLUSION = "exclusion";
+    static final String DISTRIBUTION_MGT = "distributionManagement";
+    static final String RELOCATION = "relocation";
+    static final String PROPERTIES = "properties";
+    static final String TYPE = "type";
+    static final String PROFILES = "profiles";
+    static final String PROFILE = "profile";
+    static final String PROFILE_ID = "id";
+    static final String PROFILE_ACTIVATION = "activation";
+    static final String PROFILE_ACTIVATION_ACTIVE_BY_DEFAULT = "activeByDefault";
+    static final String PROFILE_ACTIVATION_PROPERTY = "property";
+    static final String PROFILE_ACTIVATION_PROPERTY_NAME = "name";
     private static final byte[] M2_ENTITIES_RESOURCE;
     private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY;
+    private static final XMLInputFactory XML_INPUT_FACTORY;
 
     static {
         byte[] bytes;
@@ -107,6 +115,14 @@ public class PomReader implements PomParent {
         try {
             DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
             DOCUMENT_BUILDER_FACTORY.setValidating(false);
+            XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_VALIDATING, false);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, true);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, true);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, true);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+            XML_INPUT_FACTORY.setXMLResolver(new M2XmlResolver());
         } finally {
             Thread.currentThread().setContextClassLoader(original);
         }
@@ -122,6 +138,16 @@ public InputSource resolveEntity(String publicId, String systemId) {
         }
     };
 
+    private static class M2XmlResolver implements XMLResolver {
+        @Override
+        public Object resolveEntity(String publicId, String systemId, String baseUri, String namespace) {
+            if ((systemId != null) && systemId.endsWith("m2-entities.ent")) {
+                return new ByteArrayInputStream(M2_ENTITIES_RESOURCE);
+            }
+            return null;
+        }
+    }
+
     private PomParent pomParent = new RootPomParent();
     private final Map<String, String> pomProperties = new HashMap<>();
     private final Map<String, String> effectiveProperties = new HashMap<>();
@@ -132,33 +158,44 @@ public InputSource resolveEntity(String publicId, String systemId) {
     private Map<MavenDependencyKey, PomDependencyData> resolvedDependencies;
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
 
-    private final Element projectElement;
-    private final Element parentElement;
+    private final PomModel model;
+    private final PomModel.Coordinates parent;
 
-    public PomReader(final LocallyAvailableExternalResource resource, ImmutableModuleIdentifierFactory moduleIdentifierFactory, Map<String, String> childPomProperties) throws SAXException {
+    public PomReader(final LocallyAvailableExternalResource resource, ImmutableModuleIdentifierFactory moduleIdentifierFactory, Map<String, String> childPomProperties, boolean streamingParser) throws SAXException {
         this.moduleIdentifierFactory = moduleIdentifierFactory;
         setPomProperties(childPomProperties);
         final String systemId = resource.getFile().toURI().toASCIIString();
-        Document pomDomDoc = resource.withContent(inputStream -> {
-            try {
-                return parseToDom(inputStream, systemId);
-            } catch (Exception e) {
-                throw new MetaDataParseException("POM", resource, e);
-            }
-        }).getResult();
-        projectElement = pomDomDoc.getDocumentElement();
-        if (!PROJECT.equals(projectElement.getNodeName()) && !MODEL.equals(projectElement.getNodeName())) {
+        PomModel pomModel = null;
+        if (streamingParser) {
+            pomModel = parseStreaming(resource, systemId);
+        }
+        if (pomModel == null) {
+            Document pomDomDoc = resource.withContent(inputStream -> {
+                try {
+                    return parseToDom(inputStream, systemId);
+                } catch (Exception e) {
+                    throw new MetaDataParseException("POM", resource, e);
+                }
+            }).getResult();
+            pomModel = PomDomParser.toModel(pomDomDoc.getDocumentElement());
+        }
+        model = pomModel;
+        if (!PROJECT.equals(model.getRootElementName()) && !MODEL.equals(model.getRootElementName())) {
             throw new SAXParseException("project must be the root tag", systemId, systemId, 0, 0);
         }
-        parentElement = getFirstChildElement(projectElement, PARENT);
+        parent = model.getParent() == null ? PomModel.Coordinates.NONE : model.getParent();
 
         setDefaultParentGavProperties();
-        setPomProperties(parseProperties(projectElement));
+        setPomProperties(model.getProperties());
         setActiveProfileProperties();
     }
 
+    public PomReader(final LocallyAvailableExternalResource resource, ImmutableModuleIdentifierFactory moduleIdentifierFactory, boolean streamingParser) throws SAXException {
+        this(resource, moduleIdentifierFactory, Collections.emptyMap(), streamingParser);
+    }
+
     public PomReader(final LocallyAvailableExternalResource resource, ImmutableModuleIdentifierFactory moduleIdentifierFactory) throws SAXException {
-        this(resource, moduleIdentifierFactory, Collections.emptyMap());
+        this(resource, moduleIdentifierFactory, false);
     }
 
     public void setPomParent(PomParent pomParent) {
@@ -232,7 +269,36 @@ public String[] getNames() {
 
     @Override
     public String toString() {
-        return projectElement.getOwnerDocument().getDocumentURI();
+        return model.getSystemId();
+    }
+
+    static boolean isGradleMetadataMarker(String comment) {
+        return comment.contains(MetaDataParser.GRADLE_6_METADATA_MARKER) || comment.contains(MetaDataParser.GRADLE_METADATA_MARKER);
+    }
+
+    /**
+     * Reads the POM without building a DOM, returning null when the streaming parser cannot handle it so that the DOM parser,
+     * which reports failures in full, is used instead.
+     */
+    @Nullable
+    private static PomModel parseStreaming(LocallyAvailableExternalResource resource, String systemId) {
+        try {
+            return resource.withContent(inputStream -> {
+                try {
+                    XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(systemId, new AddDTDFilterInputStream(inputStream));
+                    try {
+                        return PomStaxParser.parse(reader, systemId);
+                    } finally {
+                        reader.close();
+                    }
+                } catch (XMLStreamException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }).getResult();
+        } catch (RuntimeException e) {
+            LOGGER.debug("Could not read POM {} with the streaming parser, falling back to the DOM parser.", systemId, e);
+            return null;
+        }
     }
 
     private static DocumentBuilder getDocBuilder(EntityResolver entityResolver) {
@@ -261,7 +327,7 @@ private static Document parseToDom(InputStream stream, String systemId) throws I
     }
 
     public boolean hasParent() {
-        return parentElement != null;
+        return model.getParent() != null;
     }
 
     @Override
@@ -288,59 +354,59 @@ private void checkNotNull(String value, String name, String element) {
     }
 
     public String getGroupId() {
-        String groupId = getFirstChildText(projectElement, GROUP_ID);
+        String groupId = model.getCoordinates().getGroupId();
         if (groupId == null) {
-            groupId = getFirstChildText(parentElement, GROUP_ID);
+            groupId = parent.getGroupId();
         }
         checkNotNull(groupId, GROUP_ID);
         return replaceProps(groupId);
     }
 
     public String getParentGroupId() {
-        String groupId = getFirstChildText(parentElement, GROUP_ID);
+        String groupId = parent.getGroupId();
         if (groupId == null) {
-            groupId = getFirstChildText(projectElement, GROUP_ID);
+            groupId = model.getCoordinates().getGroupId();
         }
         checkNotNull(groupId, GROUP_ID);
         return replaceProps(groupId);
     }
 
     public String getArtifactId() {
-        String val = getFirstChildText(projectElement, ARTIFACT_ID);
+        String val = model.getCoordinates().getArtifactId();
         if (val == null) {
-            val = getFirstChildText(parentElement, ARTIFACT_ID);
+            val = parent.getArtifactId();
         }
         checkNotNull(val, ARTIFACT_ID);
         return replaceProps(val);
     }
 
     public String getParentArtifactId() {
-        String val = getFirstChildText(parentElement, ARTIFACT_ID);
+        String val = parent.getArtifactId();
         if (val == null) {
-            val = getFirstChildText(projectElement, ARTIFACT_ID);
+            val = model.getCoordinates().getArtifactId();
         }
         checkNotNull(val, ARTIFACT_ID);
         return replaceProps(val);
     }
 
     public String getVersion() {
-        String val = getFirstChildText(projectElement, VERSION);
+        String val = model.getCoordinates().getVersion();
         if (val == null) {
-            val = getFirstChildText(parentElement, VERSION);
+            val = parent.getVersion();
         }
         return replaceProps(val);
     }
 
     public String getParentVersion() {
-        String val = getFirstChildText(parentElement, VERSION);
+        String val = parent.getVersion();
         if (val == null) {
-            val = getFirstChildText(projectElement, VERSION);
+            val = model.getCoordinates().getVersion();
         }
         return replaceProps(val);
     }
 
     public String getPackaging() {
-        String val = getFirstChildText(projectElement, PACKAGING);
+        String val = model.getPackaging();
         if (val == null) {
             val = "jar";
         }
@@ -348,28 +414,17 @@ public String getPackaging() {
     }
 
     public boolean hasGradleMetadataMarker() {
-        NodeList childNodes = projectElement.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++) {
-            Node node = childNodes.item(i);
-            if (node instanceof Comment) {
-                String comment = node.getNodeValue();
-                if (comment.contains(MetaDataParser.GRADLE_6_METADATA_MARKER) || comment.contains(MetaDataParser.GRADLE_METADATA_MARKER)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return model.hasGradleMetadataMarker();
     }
 
     public ModuleVersionIdentifier getRelocation() {
-        Element distrMgt = getFirstChildElement(projectElement, DISTRIBUTION_MGT);
-        Element relocation = getFirstChildElement(distrMgt, RELOCATION);
+        PomModel.Coordinates relocation = model.getRelocation();
         if (relocation == null) {
             return null;
         } else {
-            String relocGroupId = getFirstChildText(relocation, GROUP_ID);
-            String relocArtId = getFirstChildText(relocation, ARTIFACT_ID);
-            String relocVersion = getFirstChildText(relocation, VERSION);
+            String relocGroupId = relocation.getGroupId();
+            String relocArtId = relocation.getArtifactId();
+            String relocVersion = relocation.getVersion();
             relocGroupId = relocGroupId == null ? getGroupId() : relocGroupId;
             relocArtId = relocArtId == null ? getArtifactId() : relocArtId;
             relocVersion = relocVersion == null ? getVersion() : relocVersion;
@@ -391,7 +446,7 @@ public Map<MavenDependencyKey, PomDependencyData> getDependencies() {
     private Map<MavenDependencyKey, PomDependencyData> resolveDependencies() {
         Map<MavenDependencyKey, PomDependencyData> dependencies = new LinkedHashMap<>();
 
-        for (PomDependencyData dependency : getDependencyData(projectElement)) {
+        for (PomDependencyData dependency : getDependencyData(model.getDependencies())) {
             dependencies.put(dependency.getId(), dependency);
         }
 
@@ -411,19 +466,11 @@ private Map<MavenDependencyKey, PomDependencyData> resolveDependencies() {
         return dependencies;
     }
 
-    private List<PomDependencyData> getDependencyData(Element parentElement) {
-        List<PomDependencyData> depElements = new ArrayList<>();
-        Element dependenciesElement = getFirstChildElement(parentElement, DEPENDENCIES);
-        if (dependenciesElement != null) {
-            NodeList childs = dependenciesElement.getChildNodes();
-            for (int i = 0; i < childs.getLength(); i++) {
-                Node node = childs.item(i);
-                if (node instanceof Element && DEPENDENCY.equals(node.getNodeName())) {
-                    depElements.add(new PomDependencyData((Element) node));
-                }
-            }
+    private List<PomDependencyData> getDependencyData(List<PomModel.Dependency> dependencies) {
+        List<PomDependencyData> depElements = new ArrayList<>(dependencies.size());
+        for (PomModel.Dependency dependency : dependencies) {
+            depElements.add(new PomDependencyData(dependency));
         }
-
         return depElements;
     }
 
@@ -455,7 +502,7 @@ private Map<MavenDependencyKey, PomDependencyMgt> resolveDependencyMgt() {
      */
     public List<PomDependencyMgt> parseDependencyMgt() {
         if (declaredDependencyMgts == null) {
-            List<PomDependencyMgt> dependencyMgts = getDependencyMgt(projectElement);
+            List<PomDependencyMgt> dependencyMgts = getDependencyMgt(model.getDependencyManagement());
 
             for (PomProfile pomProfile : parseActivePomProfiles()) {
                 dependencyMgts.addAll(pomProfile.getDependencyMgts());
@@ -467,21 +514,11 @@ public List<PomDependencyMgt> parseDependencyMgt() {
         return declaredDependencyMgts;
     }
 
-    private List<PomDependencyMgt> getDependencyMgt(Element parentElement) {
-        List<PomDependencyMgt> depMgmtElements = new ArrayList<>();
-        Element dependenciesElement = getFirstChildElement(parentElement, DEPENDENCY_MGT);
-        dependenciesElement = getFirstChildElement(dependenciesElement, DEPENDENCIES);
-
-        if (dependenciesElement != null) {
-            NodeList childs = dependenciesElement.getChildNodes();
-            for (int i = 0; i < childs.getLength(); i++) {
-                Node node = childs.item(i);
-                if (node instanceof Element && DEPENDENCY.equals(node.getNodeName())) {
-                    depMgmtElements.add(new PomDependencyMgtElement((Element) node));
-                }
-            }
+    private List<PomDependencyMgt> getDependencyMgt(List<PomModel.Dependency> dependencies) {
+        List<PomDependencyMgt> depMgmtElements = new ArrayList<>(dependencies.size());
+        for (PomModel.Dependency dependency : dependencies) {
+            depMgmtElements.add(new PomDependencyMgtElement(dependency));
         }
-
         return depMgmtElements;
     }
 
@@ -503,10 +540,10 @@ private void setGavPropertyValue(GavProperty gavProperty, String propertyValue)
     }
 
     public class PomDependencyMgtElement implements PomDependencyMgt {
-        private final Element depElement;
+        private final PomModel.Dependency dependency;
 
-        PomDependencyMgtElement(Element depElement) {
-            this.depElement = depElement;
+        PomDependencyMgtElement(PomModel.Dependency dependency) {
+            this.dependency = dependency;
         }
 
         @Override
@@ -519,7 +556,7 @@ public MavenDependencyKey getId() {
          */
         @Override
         public String getGroupId() {
-            String val = getFirstChildText(depElement, GROUP_ID);
+            String val = dependency.getCoordinates().getGroupId();
             checkNotNull(val, GROUP_ID, DEPENDENCY);
             return replaceProps(val);
         }
@@ -529,7 +566,7 @@ public String getGroupId() {
          */
         @Override
         public String getArtifactId() {
-            String val = getFirstChildText(depElement, ARTIFACT_ID);
+            String val = dependency.getCoordinates().getArtifactId();
             checkNotNull(val, ARTIFACT_ID, DEPENDENCY);
             return replaceProps(val);
         }
@@ -539,19 +576,19 @@ public String getArtifactId() {
          */
         @Override
         public String getVersion() {
-            String val = getFirstChildText(depElement, VERSION);
+            String val = dependency.getCoordinates().getVersion();
             return replaceProps(val);
         }
 
         @Override
         public String getScope() {
-            String val = getFirstChildText(depElement, SCOPE);
+            String val = dependency.getScope();
             return replaceProps(val);
         }
 
         @Override
         public String getType() {
-            String val = getFirstChildText(depElement, TYPE);
+            String val = dependency.getType();
             val = replaceProps(val);
 
             if (val == null) {
@@ -563,69 +600,63 @@ public String getType() {
 
         @Override
         public String getClassifier() {
-            String val = getFirstChildText(depElement, CLASSIFIER);
+            String val = dependency.getClassifier();
             return replaceProps(val);
         }
 
         @Override
         public List<ModuleIdentifier> getExcludedModules() {
-            Element exclusionsElement = getFirstChildElement(depElement, EXCLUSIONS);
-            if (exclusionsElement != null) {
-                NodeList childs = exclusionsElement.getChildNodes();
-                List<ModuleIdentifier> exclusions = Lists.newArrayList();
-                for (int i = 0; i < childs.getLength(); i++) {
-                    Node node = childs.item(i);
-                    if (node instanceof Element && EXCLUSION.equals(node.getNodeName())) {
-                        String groupId = getFirstChildText((Element) node, GROUP_ID);
-                        String artifactId = getFirstChildText((Element) node, ARTIFACT_ID);
-                        if ((groupId != null) || (artifactId != null)) {
-                            exclusions.add(moduleIdentifierFactory.module(groupId != null ? groupId : "*", artifactId != null ? artifactId : "*"));
-                        }
-                    }
+            if (dependency.getExclusions().isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<ModuleIdentifier> exclusions = Lists.newArrayList();
+            for (PomModel.Coordinates exclusion : dependency.getExclusions()) {
+                String groupId = exclusion.getGroupId();
+                String artifactId = exclusion.getArtifactId();
+                if ((groupId != null) || (artifactId != null)) {
+                    exclusions.add(moduleIdentifierFactory.module(groupId != null ? groupId : "*", artifactId != null ? artifactId : "*"));
                 }
-                return exclusions;
             }
-            return Collections.emptyList();
+            return exclusions;
         }
     }
 
     public class PomDependencyData extends PomDependencyMgtElement {
-        private final Element depElement;
+        private final PomModel.Dependency dependency;
 
-        PomDependencyData(Element depElement) {
-            super(depElement);
-            this.depElement = depElement;
+        PomDependencyData(PomModel.Dependency dependency) {
+            super(dependency);
+            this.dependency = dependency;
         }
 
         public boolean isOptional() {
-            Element e = getFirstChildElement(depElement, OPTIONAL);
-            return (e != null) && "true".equalsIgnoreCase(getTextContent(e));
+            return "true".equalsIgnoreCase(dependency.getOptional());
         }
     }
 
     public class PomProfileElement implements PomProfile {
-        private final Element element;
+        private final PomModel.Profile profile;
         private List<PomDependencyMgt> declaredDependencyMgts;
         private List<PomDependencyData> declaredDependencies;
 
-        PomProfileElement(Element element) {
-            this.element = element;
+        PomProfileElement(PomModel.Profile profile) {
+            this.profile = profile;
         }
 
         @Override
         public String getId() {
-            return getFirstChildText(element, PROFILE_ID);
+            return profile.getId();
         }
 
         @Override
         public Map<String, String> getProperties() {
-            return parseProperties(element);
+            return profile.getProperties();
         }
 
         @Override
         public List<PomDependencyMgt> getDependencyMgts() {
             if (declaredDependencyMgts == null) {
-                declaredDependencyMgts = getDependencyMgt(element);
+                declaredDependencyMgts = getDependencyMgt(profile.getDependencyManagement());
             }
 
             return declaredDependencyMgts;
@@ -634,7 +665,7 @@ public List<PomDependencyMgt> getDependencyMgts() {
         @Override
         public List<PomDependencyData> getDependencies() {
             if (declaredDependencies == null) {
-                declaredDependencies = getDependencyData(element);
+                declaredDependencies = getDependencyData(profile.getDependencies());
             }
 
             return declaredDependencies;
@@ -650,28 +681,13 @@ private List<PomProfile> parseActivePomProfiles() {
         if (declaredActivePomProfiles == null) {
             List<PomProfile> activeByDefaultPomProfiles = new ArrayList<>();
             List<PomProfile> activeByAbsenceOfPropertyPomProfiles = new ArrayList<>();
-            Element profilesElement = getFirstChildElement(projectElement, PROFILES);
-
-            if (profilesElement != null) {
-                for (Element profileElement : getAllChilds(profilesElement)) {
-                    if (PROFILE.equals(profileElement.getNodeName())) {
-                        Element activationElement = getFirstChildElement(profileElement, PROFILE_ACTIVATION);
-
-                        if (activationElement != null) {
-                            String activeByDefault = getFirstChildText(activationElement, PROFILE_ACTIVATION_ACTIVE_BY_DEFAULT);
-
-                            if ("true".equals(activeByDefault)) {
-                                activeByDefaultPomProfiles.add(new PomProfileElement(profileElement));
-                            } else {
-                                Element propertyElement = getFirstChildElement(activationElement, PROFILE_ACTIVATION_PROPERTY);
-
-                                if (propertyElement != null) {
-                                    if (isActivationPropertyActivated(propertyElement)) {
-                                        activeByAbsenceOfPropertyPomProfiles.add(new PomProfileElement(profileElement));
-                                    }
-                                }
-                            }
-                        }
+
+            for (PomModel.Profile profile : model.getProfiles()) {
+                if (profile.hasActivation()) {
+                    if ("true".equals(profile.getActiveByDefault())) {
+                        activeByDefaultPomProfiles.add(new PomProfileElement(profile));
+                    } else if (profile.hasActivationProperty() && isActivationPropertyActivated(profile)) {
+                        activeByAbsenceOfPropertyPomProfiles.add(new PomProfileElement(profile));
                     }
                 }
             }
@@ -697,12 +713,12 @@ private List<PomProfile> determineActiveProfiles(List<PomProfile> activeByDefaul
     /**
      * Checks if activation property is active through absence of system property.
      *
-     * @param propertyElement Property element
+     * @param profile Profile with an activation property
      * @return Activation indicator
      * @see <a href="http://books.sonatype.com/mvnref-book/reference/profiles-sect-activation.html#profiles-sect-activation-config">Maven documentation</a>
      */
-    private boolean isActivationPropertyActivated(Element propertyElement) {
-        String propertyName = getFirstChildText(propertyElement, "name");
+    private boolean isActivationPropertyActivated(PomModel.Profile profile) {
+        String propertyName = profile.getActivationPropertyName();
         return propertyName.startsWith("!");
     }
 
@@ -713,18 +729,6 @@ Map<String, String> getAllPomProperties() {
         return pomProperties;
     }
 
-    private Map<String, String> parseProperties(Element parentElement) {
-        Map<String, String> pomProperties = new HashMap<>();
-        Element propsEl = getFirstChildElement(parentElement, PROPERTIES);
-        if (propsEl != null) {
-            propsEl.normalize();
-        }
-        for (Element prop : getAllChilds(propsEl)) {
-            pomProperties.put(prop.getNodeName(), getTextContent(prop));
-        }
-        return pomProperties;
-    }
-
     private String replaceProps(String val) {
         if (val == null) {
             return null;
@@ -0,0 +1,482 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.ARTIFACT_ID;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.CLASSIFIER;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.DEPENDENCIES;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.DEPENDENCY;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.DEPENDENCY_MGT;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.DISTRIBUTION_MGT;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.EXCLUSION;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.EXCLUSIONS;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.GROUP_ID;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.OPTIONAL;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PACKAGING;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PARENT;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PROFILE;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PROFILES;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PROFILE_ACTIVATION;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PROFILE_ACTIVATION_ACTIVE_BY_DEFAULT;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PROFILE_ACTIVATION_PROPERTY;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PROFILE_ACTIVATION_PROPERTY_NAME;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PROFILE_ID;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.PROPERTIES;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.RELOCATION;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.SCOPE;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.TYPE;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.VERSION;
+import static org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomReader.isGradleMetadataMarker;
+
+/**
+ * Extracts the parts of a POM that are used by {@link PomReader} in a single pass over an XML stream, skipping everything else.
+ *
+ * <p>Produces the same {@link PomModel} as {@link PomDomParser#toModel(org.w3c.dom.Element)}: element text is the text directly
+ * contained by the element, and only the first occurrence of an element is used where the DOM based reader looks up the first child.</p>
+ */
+public final class PomStaxParser {
+    private PomStaxParser() {}
+
+    public static PomModel parse(XMLStreamReader reader, String systemId) throws XMLStreamException {
+        while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+            if (!reader.hasNext()) {
+                throw new XMLStreamException("POM has no root element: " + systemId);
+            }
+        }
+        String rootElementName = reader.getLocalName();
+
+        String groupId = null;
+        String artifactId = null;
+        String version = null;
+        String packaging = null;
+        PomModel.Coordinates parent = null;
+        PomModel.Coordinates relocation = null;
+        boolean seenDistributionManagement = false;
+        boolean gradleMetadataMarker = false;
+        Map<String, String> properties = null;
+        List<PomModel.Dependency> dependencies = null;
+        List<PomModel.Dependency> dependencyManagement = null;
+        List<PomModel.Profile> profiles = null;
+
+        int event;
+        while ((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+            if (event == XMLStreamConstants.COMMENT) {
+                gradleMetadataMarker |= isGradleMetadataMarker(reader.getText());
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (reader.getLocalName()) {
+                    case GROUP_ID:
+                        groupId = readFirstText(reader, groupId);
+                        break;
+                    case ARTIFACT_ID:
+                        artifactId = readFirstText(reader, artifactId);
+                        break;
+                    case VERSION:
+                        version = readFirstText(reader, version);
+                        break;
+                    case PACKAGING:
+                        packaging = readFirstText(reader, packaging);
+                        break;
+                    case PARENT:
+                        if (parent == null) {
+                            parent = readCoordinates(reader);
+                        } else {
+                            skipElement(reader);
+                        }
+                        break;
+                    case DISTRIBUTION_MGT:
+                        if (!seenDistributionManagement) {
+                            seenDistributionManagement = true;
+                            relocation = readRelocation(reader);
+                        } else {
+                            skipElement(reader);
+                        }
+                        break;
+                    case PROPERTIES:
+                        if (properties == null) {
+                            properties = readProperties(reader);
+                        } else {
+                            skipElement(reader);
+                        }
+                        break;
+                    case DEPENDENCIES:
+                        if (dependencies == null) {
+                            dependencies = readDependencies(reader);
+                        } else {
+                            skipElement(reader);
+                        }
+                        break;
+                    case DEPENDENCY_MGT:
+                        if (dependencyManagement == null) {
+                            dependencyManagement = readDependencyManagement(reader);
+                        } else {
+                            skipElement(reader);
+                        }
+                        break;
+                    case PROFILES:
+                        if (profiles == null) {
+                            profiles = readProfiles(reader);
+                        } else {
+                            skipElement(reader);
+                        }
+                        break;
+                    default:
+                        skipElement(reader);
+                }
+            }
+        }
+
+        return new PomModel(
+            systemId,
+            rootElementName,
+            new PomModel.Coordinates(groupId, artifactId, version),
+            packaging,
+            parent,
+            relocation,
+            gradleMetadataMarker,
+            orEmpty(properties),
+            orEmpty(dependencies),
+            orEmpty(dependencyManagement),
+            orEmpty(profiles)
+        );
+    }
+
+    private static PomModel.Coordinates readCoordinates(XMLStreamReader reader) throws XMLStreamException {
+        String groupId = null;
+        String artifactId = null;
+        String version = null;
+        while (nextChildElement(reader)) {
+            switch (reader.getLocalName()) {
+                case GROUP_ID:
+                    groupId = readFirstText(reader, groupId);
+                    break;
+                case ARTIFACT_ID:
+                    artifactId = readFirstText(reader, artifactId);
+                    break;
+                case VERSION:
+                    version = readFirstText(reader, version);
+                    break;
+                default:
+                    skipElement(reader);
+            }
+        }
+        return new PomModel.Coordinates(groupId, artifactId, version);
+    }
+
+    private static PomModel.Coordinates readRelocation(XMLStreamReader reader) throws XMLStreamException {
+        PomModel.Coordinates relocation = null;
+        while (nextChildElement(reader)) {
+            if (relocation == null && RELOCATION.equals(reader.getLocalName())) {
+                relocation = readCoordinates(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return relocation;
+    }
+
+    private static Map<String, String> readProperties(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, String> properties = new HashMap<>();
+        while (nextChildElement(reader)) {
+            String name = reader.getLocalName();
+            properties.put(name, readText(reader));
+        }
+        return properties;
+    }
+
+    private static List<PomModel.Dependency> readDependencyManagement(XMLStreamReader reader) throws XMLStreamException {
+        List<PomModel.Dependency> dependencies = null;
+        while (nextChildElement(reader)) {
+            if (dependencies == null && DEPENDENCIES.equals(reader.getLocalName())) {
+                dependencies = readDependencies(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return orEmpty(dependencies);
+    }
+
+    private static List<PomModel.Dependency> readDependencies(XMLStreamReader reader) throws XMLStreamException {
+        List<PomModel.Dependency> dependencies = new ArrayList<>();
+        while (nextChildElement(reader)) {
+            if (DEPENDENCY.equals(reader.getLocalName())) {
+                dependencies.add(readDependency(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return dependencies;
+    }
+
+    private static PomModel.Dependency readDependency(XMLStreamReader reader) throws XMLStreamException {
+        String groupId = null;
+        String artifactId = null;
+        String version = null;
+        String scope = null;
+        String type = null;
+        String classifier = null;
+        String optional = null;
+        List<PomModel.Coordinates> exclusions = null;
+        while (nextChildElement(reader)) {
+            switch (reader.getLocalName()) {
+                case GROUP_ID:
+                    groupId = readFirstText(reader, groupId);
+                    break;
+                case ARTIFACT_ID:
+                    artifactId = readFirstText(reader, artifactId);
+                    break;
+                case VERSION:
+                    version = readFirstText(reader, version);
+                    break;
+                case SCOPE:
+                    scope = readFirstText(reader, scope);
+                    break;
+                case TYPE:
+                    type = readFirstText(reader, type);
+                    break;
+                case CLASSIFIER:
+                    classifier = readFirstText(reader, classifier);
+                    break;
+                case OPTIONAL:
+                    optional = readFirstText(reader, optional);
+                    break;
+                case EXCLUSIONS:
+                    if (exclusions == null) {
+                        exclusions = readExclusions(reader);
+                    } else {
+                        skipElement(reader);
+                    }
+                    break;
+                default:
+                    skipElement(reader);
+            }
+        }
+        return new PomModel.Dependency(new PomModel.Coordinates(groupId, artifactId, version), scope, type, classifier, optional, orEmpty(exclusions));
+    }
+
+    private static List<PomModel.Coordinates> readExclusions(XMLStreamReader reader) throws XMLStreamException {
+        List<PomModel.Coordinates> exclusions = new ArrayList<>();
+        while (nextChildElement(reader)) {
+            if (EXCLUSION.equals(reader.getLocalName())) {
+                PomModel.Coordinates exclusion = readCoordinates(reader);
+                exclusions.add(new PomModel.Coordinates(exclusion.getGroupId(), exclusion.getArtifactId(), null));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return exclusions;
+    }
+
+    private static List<PomModel.Profile> readProfiles(XMLStreamReader reader) throws XMLStreamException {
+        List<PomModel.Profile> profiles = new ArrayList<>();
+        while (nextChildElement(reader)) {
+            if (PROFILE.equals(reader.getLocalName())) {
+                profiles.add(readProfile(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return profiles;
+    }
+
+    private static PomModel.Profile readProfile(XMLStreamReader reader) throws XMLStreamException {
+        String id = null;
+        Activation activation = null;
+        Map<String, String> properties = null;
+        List<PomModel.Dependency> dependencies = null;
+        List<PomModel.Dependency> dependencyManagement = null;
+        while (nextChildElement(reader)) {
+            switch (reader.getLocalName()) {
+                case PROFILE_ID:
+                    id = readFirstText(reader, id);
+                    break;
+                case PROFILE_ACTIVATION:
+                    if (activation == null) {
+                        activation = readActivation(reader);
+                    } else {
+                        skipElement(reader);
+                    }
+                    break;
+                case PROPERTIES:
+                    if (properties == null) {
+                        properties = readProperties(reader);
+                    } else {
+                        skipElement(reader);
+                    }
+                    break;
+                case DEPENDENCIES:
+                    if (dependencies == null) {
+                        dependencies = readDependencies(reader);
+                    } else {
+                        skipElement(reader);
+                    }
+                    break;
+                case DEPENDENCY_MGT:
+                    if (dependencyManagement == null) {
+                        dependencyManagement = readDependencyManagement(reader);
+                    } else {
+                        skipElement(reader);
+                    }
+                    break;
+                default:
+                    skipElement(reader);
+            }
+        }
+        if (activation == null) {
+            activation = Activation.NONE;
+        }
+        return new PomModel.Profile(
+            id,
+            activation != Activation.NONE,
+            activation.activeByDefault,
+            activation.property,
+            activation.propertyName,
+            orEmpty(properties),
+            orEmpty(dependencies),
+            orEmpty(dependencyManagement)
+        );
+    }
+
+    private static Activation readActivation(XMLStreamReader reader) throws XMLStreamException {
+        Activation activation = new Activation();
+        while (nextChildElement(reader)) {
+            switch (reader.getLocalName()) {
+                case PROFILE_ACTIVATION_ACTIVE_BY_DEFAULT:
+                    activation.activeByDefault = readFirstText(reader, activation.activeByDefault);
+                    break;
+                case PROFILE_ACTIVATION_PROPERTY:
+                    if (!activation.property) {
+                        activation.property = true;
+                        activation.propertyName = readPropertyName(reader);
+                    } else {
+                        skipElement(reader);
+                    }
+                    break;
+                default:
+                    skipElement(reader);
+            }
+        }
+        return activation;
+    }
+
+    private static String readPropertyName(XMLStreamReader reader) throws XMLStreamException {
+        String name = null;
+        while (nextChildElement(reader)) {
+            if (PROFILE_ACTIVATION_PROPERTY_NAME.equals(reader.getLocalName())) {
+                name = readFirstText(reader, name);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Moves to the next child element of the current element, returning false when the end of the current element is reached instead.
+     */
+    private static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Reads the text of the current element, unless a previous occurrence of the element has already been read.
+     */
+    private static String readFirstText(XMLStreamReader reader, String previous) throws XMLStreamException {
+        if (previous != null) {
+            skipElement(reader);
+            return previous;
+        }
+        return readText(reader);
+    }
+
+    /**
+     * Reads the text directly contained by the current element, ignoring the content of nested elements, and moves to its end.
+     */
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 0;
+        while (true) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (depth == 0) {
+                        return text.toString();
+                    }
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (depth == 0) {
+                        text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 0;
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 0) {
+                    return;
+                }
+                depth--;
+            }
+        }
+    }
+
+    private static <T> List<T> orEmpty(List<T> list) {
+        return list == null ? Collections.emptyList() : list;
+    }
+
+    private static <K, V> Map<K, V> orEmpty(Map<K, V> map) {
+        return map == null ? Collections.emptyMap() : map;
+    }
+
+    private static final class Activation {
+        private static final Activation NONE = new Activation();
+
+        private String activeByDefault;
+        private boolean property;
+        private String propertyName;
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Maps;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
+import org.gradle.internal.component.external.model.MutableModuleComponentResolveMetadata;
+import org.gradle.internal.os.OperatingSystem;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Reads and writes module metadata in an indexed binary format, which is read through a memory mapped file.
+ *
+ * <p>The file starts with a table of all the strings used by the metadata, preceded by the offset of each string so that a string
+ * is only decoded and interned once, when the metadata first refers to it. The rest of the file is the metadata as written
+ * by {@link ModuleMetadataSerializer}, with each string replaced by its index in the table.</p>
+ *
+ * <p>The file is written next to a descriptor in the default format, and records the length and modification time of that descriptor.
+ * It is only read while the default descriptor is unchanged, so that a build that does not use this format can keep replacing
+ * the default descriptor without leaving a stale indexed file behind.</p>
+ *
+ * <pre>
+ * int       magic number
+ * byte      format version
+ * long      length of the default descriptor
+ * long      last modified time of the default descriptor
+ * int       string count (n)
+ * int[n]    end offset of each string, relative to the start of the string data
+ * byte[]    string data, UTF-8 encoded
+ * byte[]    metadata
+ * </pre>
+ */
+class IndexedModuleMetadataFile {
+    private static final int MAGIC = 0x474d4d44;
+    private static final byte VERSION = 2;
+    private static final int HEADER_SIZE = 25;
+    // Mapping a file costs more than reading it for the few KB that most descriptors take up
+    private static final long MAPPING_THRESHOLD = 64 * 1024;
+
+    private final ModuleMetadataSerializer moduleMetadataSerializer;
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    private final Interner<String> stringInterner;
+
+    IndexedModuleMetadataFile(ModuleMetadataSerializer moduleMetadataSerializer, ImmutableModuleIdentifierFactory moduleIdentifierFactory, Interner<String> stringInterner) {
+        this.moduleMetadataSerializer = moduleMetadataSerializer;
+        this.moduleIdentifierFactory = moduleIdentifierFactory;
+        this.stringInterner = stringInterner;
+    }
+
+    void write(File file, ModuleComponentResolveMetadata metadata, File defaultDescriptor) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        List<String> strings;
+        try (StringTableEncoder encoder = new StringTableEncoder(new KryoBackedEncoder(body))) {
+            moduleMetadataSerializer.write(encoder, metadata, Maps.newHashMap());
+            strings = encoder.getStrings();
+        }
+
+        byte[][] encodedStrings = new byte[strings.size()][];
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.writeLong(defaultDescriptor.length());
+            output.writeLong(defaultDescriptor.lastModified());
+            output.writeInt(strings.size());
+            int end = 0;
+            for (int i = 0; i < encodedStrings.length; i++) {
+                encodedStrings[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                end += encodedStrings[i].length;
+                output.writeInt(end);
+            }
+            for (byte[] encodedString : encodedStrings) {
+                output.write(encodedString);
+            }
+            body.writeTo(output);
+        }
+    }
+
+    /**
+     * Returns null when the file was not written from the given default descriptor, or uses an older version of this format.
+     */
+    @Nullable
+    MutableModuleComponentResolveMetadata read(File file, File defaultDescriptor) throws Exception {
+        ByteBuffer buffer = map(file);
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Unexpected module metadata format.");
+        }
+        if (buffer.get(4) != VERSION || buffer.getLong(5) != defaultDescriptor.length() || buffer.getLong(13) != defaultDescriptor.lastModified()) {
+            return null;
+        }
+        int stringCount = buffer.getInt(21);
+        int dataStart = HEADER_SIZE + 4 * stringCount;
+        int dataLength = stringCount == 0 ? 0 : buffer.getInt(dataStart - 4);
+        StringTable strings = new StringTable(buffer, stringCount, dataStart, stringInterner);
+        try (StringTableDecoder decoder = new StringTableDecoder(new KryoBackedDecoder(new ByteBufferInputStream(buffer, dataStart + dataLength)), strings)) {
+            return moduleMetadataSerializer.read(decoder, moduleIdentifierFactory, Maps.newHashMap());
+        }
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            // A mapped file cannot be deleted on Windows until the mapping has been garbage collected, which would get in the way of cache cleanup
+            if (size >= MAPPING_THRESHOLD && !OperatingSystem.current().isWindows()) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Module metadata file is too large.");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException();
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    private static class StringTable implements IntFunction<String> {
+        private final ByteBuffer buffer;
+        private final int dataStart;
+        private final Interner<String> stringInterner;
+        private final String[] strings;
+
+        StringTable(ByteBuffer buffer, int stringCount, int dataStart, Interner<String> stringInterner) {
+            this.buffer = buffer;
+            this.dataStart = dataStart;
+            this.stringInterner = stringInterner;
+            this.strings = new String[stringCount];
+        }
+
+        @Override
+        public String apply(int index) {
+            String string = strings[index - 1];
+            if (string == null) {
+                int start = index == 1 ? 0 : buffer.getInt(HEADER_SIZE + 4 * (index - 2));
+                int end = buffer.getInt(HEADER_SIZE + 4 * (index - 1));
+                byte[] bytes = new byte[end - start];
+                ByteBuffer view = buffer.duplicate();
+                view.position(dataStart + start);
+                view.get(bytes);
+                string = stringInterner.intern(new String(bytes, StandardCharsets.UTF_8));
+                strings[index - 1] = string;
+            }
+            return string;
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer, int position) {
+            // Use a view of the buffer, so that reads can use the buffer's own position and bulk get
+            this.buffer = buffer.duplicate();
+            this.buffer.position(position);
+        }
+
+        @Override
+        public int read() {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            return buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            int count = Math.min(length, buffer.remaining());
+            if (count <= 0) {
+                return length == 0 ? 0 : -1;
+            }
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
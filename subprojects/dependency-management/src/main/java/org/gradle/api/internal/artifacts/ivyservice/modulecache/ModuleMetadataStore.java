@@ -28,45 +28,78 @@
 import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
 import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 
+import javax.annotation.Nullable;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 
 public class ModuleMetadataStore {
 
+    /**
+     * When set, module metadata is also written in the format of {@link IndexedModuleMetadataFile}, and read from that file while the descriptor
+     * in the default format is unchanged. The default descriptor is always written, so that builds sharing the cache without this property see the same metadata.
+     */
+    public static final String INDEXED_FORMAT_PROPERTY = "org.gradle.dependency-resolution.indexed-module-metadata";
+
     private static final Joiner PATH_JOINER = Joiner.on("/");
+    private static final String DESCRIPTOR_FILE_NAME = "descriptor.bin";
+    private static final String INDEXED_DESCRIPTOR_FILE_NAME = "descriptor.idx";
     private final PathKeyFileStore metaDataStore;
     private final ModuleMetadataSerializer moduleMetadataSerializer;
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
     private final Interner<String> stringInterner;
+    @Nullable
+    private final IndexedModuleMetadataFile indexedFormat;
 
     public ModuleMetadataStore(PathKeyFileStore metaDataStore,
                                ModuleMetadataSerializer moduleMetadataSerializer,
                                ImmutableModuleIdentifierFactory moduleIdentifierFactory,
                                Interner<String> stringInterner) {
+        this(metaDataStore, moduleMetadataSerializer, moduleIdentifierFactory, stringInterner, false);
+    }
+
+    public ModuleMetadataStore(PathKeyFileStore metaDataStore,
+                               ModuleMetadataSerializer moduleMetadataSerializer,
+                               ImmutableModuleIdentifierFactory moduleIdentifierFactory,
+                               Interner<String> stringInterner,
+                               boolean useIndexedFormat) {
         this.metaDataStore = metaDataStore;
         this.moduleMetadataSerializer = moduleMetadataSerializer;
         this.moduleIdentifierFactory = moduleIdentifierFactory;
         this.stringInterner = stringInterner;
+        this.indexedFormat = useIndexedFormat ? new IndexedModuleMetadataFile(moduleMetadataSerializer, moduleIdentifierFactory, stringInterner) : null;
     }
 
     public MutableModuleComponentResolveMetadata getModuleDescriptor(ModuleComponentAtRepositoryKey component) {
-        String[] filePath = getFilePath(component);
+        String[] filePath = getFilePath(component, DESCRIPTOR_FILE_NAME);
         LocallyAvailableResource resource = metaDataStore.get(filePath);
-        if (resource != null) {
-            try {
-                try (StringDeduplicatingDecoder decoder = new StringDeduplicatingDecoder(new KryoBackedDecoder(new FileInputStream(resource.getFile())), stringInterner)) {
-                    return moduleMetadataSerializer.read(decoder, moduleIdentifierFactory, Maps.newHashMap());
+        if (resource == null) {
+            return null;
+        }
+        if (indexedFormat != null) {
+            LocallyAvailableResource indexedResource = metaDataStore.get(getFilePath(component, INDEXED_DESCRIPTOR_FILE_NAME));
+            if (indexedResource != null) {
+                try {
+                    MutableModuleComponentResolveMetadata metadata = indexedFormat.read(indexedResource.getFile(), resource.getFile());
+                    if (metadata != null) {
+                        return metadata;
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException("Could not load module metadata from " + indexedResource.getDisplayName(), e);
                 }
-            } catch (Exception e) {
-                throw new RuntimeException("Could not load module metadata from " + resource.getDisplayName(), e);
             }
         }
-        return null;
+        try {
+            try (StringDeduplicatingDecoder decoder = new StringDeduplicatingDecoder(new KryoBackedDecoder(new FileInputStream(resource.getFile())), stringInterner)) {
+                return moduleMetadataSerializer.read(decoder, moduleIdentifierFactory, Maps.newHashMap());
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Could not load module metadata from " + resource.getDisplayName(), e);
+        }
     }
 
     public LocallyAvailableResource putModuleDescriptor(ModuleComponentAtRepositoryKey component, final ModuleComponentResolveMetadata metadata) {
-        String[] filePath = getFilePath(component);
-        return metaDataStore.add(PATH_JOINER.join(filePath), moduleDescriptorFile -> {
+        String[] filePath = getFilePath(component, DESCRIPTOR_FILE_NAME);
+        LocallyAvailableResource resource = metaDataStore.add(PATH_JOINER.join(filePath), moduleDescriptorFile -> {
             try {
                 try (KryoBackedEncoder encoder = new KryoBackedEncoder(new FileOutputStream(moduleDescriptorFile))) {
                     moduleMetadataSerializer.write(encoder, metadata, Maps.newHashMap());
@@ -75,16 +108,27 @@ public LocallyAvailableResource putModuleDescriptor(ModuleComponentAtRepositoryK
                 throw UncheckedException.throwAsUncheckedException(e);
             }
         });
+        if (indexedFormat != null) {
+            String[] indexedFilePath = getFilePath(component, INDEXED_DESCRIPTOR_FILE_NAME);
+            metaDataStore.add(PATH_JOINER.join(indexedFilePath), indexedDescriptorFile -> {
+                try {
+                    indexedFormat.write(indexedDescriptorFile, metadata, resource.getFile());
+                } catch (Exception e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            });
+        }
+        return resource;
     }
 
-    private String[] getFilePath(ModuleComponentAtRepositoryKey componentId) {
+    private String[] getFilePath(ModuleComponentAtRepositoryKey componentId, String fileName) {
         ModuleComponentIdentifier moduleComponentIdentifier = componentId.getComponentId();
         return new String[] {
             moduleComponentIdentifier.getGroup(),
             moduleComponentIdentifier.getModule(),
             moduleComponentIdentifier.getVersion(),
             componentId.getRepositoryId(),
-            "descriptor.bin"
+            fileName
         };
     }
 
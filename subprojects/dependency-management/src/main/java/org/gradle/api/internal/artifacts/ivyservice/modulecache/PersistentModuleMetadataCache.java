@@ -50,9 +50,10 @@ public PersistentModuleMetadataCache(BuildCommencedTimeProvider timeProvider,
                                          IvyMutableModuleMetadataFactory ivyMetadataFactory,
                                          Interner<String> stringInterner,
                                          ModuleSourcesSerializer moduleSourcesSerializer,
-                                         ChecksumService checksumService) {
+                                         ChecksumService checksumService,
+                                         boolean indexedFormat) {
         super(timeProvider);
-        moduleMetadataStore = new ModuleMetadataStore(new DefaultPathKeyFileStore(checksumService, artifactCacheMetadata.getMetaDataStoreDirectory()), new ModuleMetadataSerializer(attributeContainerSerializer, mavenMetadataFactory, ivyMetadataFactory, moduleSourcesSerializer), moduleIdentifierFactory, stringInterner);
+        moduleMetadataStore = new ModuleMetadataStore(new DefaultPathKeyFileStore(checksumService, artifactCacheMetadata.getMetaDataStoreDirectory()), new ModuleMetadataSerializer(attributeContainerSerializer, mavenMetadataFactory, ivyMetadataFactory, moduleSourcesSerializer), moduleIdentifierFactory, stringInterner, indexedFormat);
         this.artifactCacheLockingManager = artifactCacheLockingManager;
     }
 
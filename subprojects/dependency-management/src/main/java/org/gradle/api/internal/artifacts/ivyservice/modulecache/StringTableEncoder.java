@@ -0,0 +1,143 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.gradle.internal.serialize.Encoder;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An encoder which collects the strings it is given into a table, and only writes their index in the table to the delegate.
+ * The index 0 stands for a null string.
+ */
+class StringTableEncoder implements Encoder, Closeable {
+    private final Encoder delegate;
+    private final Map<String, Integer> indexes = Maps.newHashMap();
+    private final List<String> strings = Lists.newArrayList();
+
+    StringTableEncoder(Encoder delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * The strings written so far, in index order, starting from index 1.
+     */
+    List<String> getStrings() {
+        return strings;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return delegate.getOutputStream();
+    }
+
+    @Override
+    public void writeByte(byte value) throws IOException {
+        delegate.writeByte(value);
+    }
+
+    @Override
+    public void writeBytes(byte[] bytes) throws IOException {
+        delegate.writeBytes(bytes);
+    }
+
+    @Override
+    public void writeBytes(byte[] bytes, int offset, int count) throws IOException {
+        delegate.writeBytes(bytes, offset, count);
+    }
+
+    @Override
+    public void writeBinary(byte[] bytes) throws IOException {
+        delegate.writeBinary(bytes);
+    }
+
+    @Override
+    public void writeBinary(byte[] bytes, int offset, int count) throws IOException {
+        delegate.writeBinary(bytes, offset, count);
+    }
+
+    @Override
+    public void encodeChunked(EncodeAction<Encoder> writeAction) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeLong(long value) throws IOException {
+        delegate.writeLong(value);
+    }
+
+    @Override
+    public void writeSmallLong(long value) throws IOException {
+        delegate.writeSmallLong(value);
+    }
+
+    @Override
+    public void writeInt(int value) throws IOException {
+        delegate.writeInt(value);
+    }
+
+    @Override
+    public void writeSmallInt(int value) throws IOException {
+        delegate.writeSmallInt(value);
+    }
+
+    @Override
+    public void writeNullableSmallInt(@Nullable Integer value) throws IOException {
+        delegate.writeNullableSmallInt(value);
+    }
+
+    @Override
+    public void writeBoolean(boolean value) throws IOException {
+        delegate.writeBoolean(value);
+    }
+
+    @Override
+    public void writeString(CharSequence value) throws IOException {
+        if (value == null) {
+            throw new IllegalArgumentException("Cannot encode a null string.");
+        }
+        writeNullableString(value);
+    }
+
+    @Override
+    public void writeNullableString(@Nullable CharSequence value) throws IOException {
+        if (value == null) {
+            delegate.writeSmallInt(0);
+            return;
+        }
+        String key = value.toString();
+        Integer index = indexes.get(key);
+        if (index == null) {
+            strings.add(key);
+            index = strings.size();
+            indexes.put(key, index);
+        }
+        delegate.writeSmallInt(index);
+    }
+
+    @Override
+    public void close() throws IOException {
+        ((Closeable) delegate).close();
+    }
+}
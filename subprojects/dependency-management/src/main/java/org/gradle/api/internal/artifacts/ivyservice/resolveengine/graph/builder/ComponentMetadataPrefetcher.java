@@ -0,0 +1,204 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.VersionConstraint;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.specs.Spec;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.operations.BuildOperationRef;
+import org.gradle.internal.operations.CurrentBuildOperationRef;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Speculatively resolves the metadata of modules as soon as a selector for them shows up in the dependencies of a selected node,
+ * instead of waiting for the traversal to reach the node.
+ *
+ * The metadata is resolved through the same resolver as during the traversal, and handed over to the component when the traversal reaches it.
+ * Only modules seen for the first time with a static version are prefetched, and only when the traversal would not pass any override metadata for them.
+ * Graphs with dependency substitution rules are not prefetched at all, as a selector may not end up referring to the module it names.
+ * All methods are called by the thread traversing the graph.
+ */
+class ComponentMetadataPrefetcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ComponentMetadataPrefetcher.class);
+
+    private final ComponentMetaDataResolver metaDataResolver;
+    private final Spec<? super DependencyMetadata> edgeFilter;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final Executor executor;
+    private final Map<ModuleIdentifier, Prefetch> prefetches = new HashMap<>();
+    private final Set<NodeState> visitedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    ComponentMetadataPrefetcher(ComponentMetaDataResolver metaDataResolver, Spec<? super DependencyMetadata> edgeFilter, VersionSelectorScheme versionSelectorScheme, Executor executor) {
+        this.metaDataResolver = metaDataResolver;
+        this.edgeFilter = edgeFilter;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts resolving the metadata of the modules the given node depends on.
+     */
+    void prefetchDependenciesOf(NodeState node) {
+        if (visitedNodes.add(node)) {
+            for (DependencyMetadata dependency : node.getMetadata().getDependencies()) {
+                maybePrefetch(dependency);
+            }
+        }
+    }
+
+    private void maybePrefetch(DependencyMetadata dependency) {
+        if (dependency.isConstraint() || dependency.isChanging() || !dependency.getArtifacts().isEmpty() || !edgeFilter.isSatisfiedBy(dependency)) {
+            return;
+        }
+        if (DefaultComponentOverrideMetadata.extractClientModule(dependency) != null) {
+            return;
+        }
+        ComponentSelector selector = dependency.getSelector();
+        if (!(selector instanceof ModuleComponentSelector)) {
+            return;
+        }
+        ModuleComponentSelector moduleSelector = (ModuleComponentSelector) selector;
+        if (prefetches.containsKey(moduleSelector.getModuleIdentifier())) {
+            return;
+        }
+        VersionConstraint versionConstraint = moduleSelector.getVersionConstraint();
+        String version = versionConstraint.getStrictVersion().isEmpty() ? versionConstraint.getRequiredVersion() : versionConstraint.getStrictVersion();
+        if (version.isEmpty() || versionSelectorScheme.parseSelector(version).isDynamic()) {
+            return;
+        }
+        ModuleComponentIdentifier id = DefaultModuleComponentIdentifier.newId(moduleSelector.getModuleIdentifier(), version);
+        if (metaDataResolver.isFetchingMetadataCheap(id)) {
+            return;
+        }
+        Prefetch prefetch = new Prefetch(id, CurrentBuildOperationRef.instance().get());
+        prefetches.put(moduleSelector.getModuleIdentifier(), prefetch);
+        executor.execute(prefetch);
+    }
+
+    /**
+     * Joins the prefetch of the component, so that the traversal does not resolve its metadata a second time.
+     * Waits for the prefetch if it is running, and then sets the prefetched metadata on the component.
+     * A prefetch that has not started yet is cancelled, leaving the component to be resolved by the traversal along with its siblings.
+     * When the prefetch failed, the component is left unresolved, so that the traversal reports the failure.
+     */
+    void joinPrefetch(ComponentState component) {
+        Prefetch prefetch = prefetches.get(component.getModule().getId());
+        if (prefetch == null || !prefetch.id.equals(component.getComponentId())) {
+            return;
+        }
+        prefetch.await();
+        if (prefetch.resolved && component.getOverrideMetadata() == DefaultComponentOverrideMetadata.EMPTY && !component.getModule().isVirtualPlatform()) {
+            component.setMetadata(prefetch.result.getMetadata());
+        }
+    }
+
+    /**
+     * Cancels the prefetch for the module, unless it prefetches the given selected component.
+     */
+    void cancelUnlessSelected(ModuleIdentifier module, ComponentState selected) {
+        Prefetch prefetch = prefetches.get(module);
+        if (prefetch != null && !prefetch.id.equals(selected.getComponentId())) {
+            prefetch.cancel();
+        }
+    }
+
+    /**
+     * Cancels all pending prefetches and waits for the running ones, so that no resolution outlives the graph traversal.
+     */
+    void stop() {
+        for (Prefetch prefetch : prefetches.values()) {
+            prefetch.await();
+        }
+        prefetches.clear();
+        visitedNodes.clear();
+    }
+
+    private class Prefetch implements Runnable {
+        private static final int PENDING = 0;
+        private static final int RUNNING = 1;
+        private static final int CANCELLED = 2;
+
+        private final ModuleComponentIdentifier id;
+        private final BuildOperationRef parentOperation;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+        // Only read after waiting for the prefetch to finish
+        private boolean resolved;
+
+        Prefetch(ModuleComponentIdentifier id, BuildOperationRef parentOperation) {
+            this.id = id;
+            this.parentOperation = parentOperation;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(PENDING, RUNNING)) {
+                return;
+            }
+            CurrentBuildOperationRef.instance().set(parentOperation);
+            try {
+                resolveMetadata();
+            } finally {
+                CurrentBuildOperationRef.instance().clear();
+            }
+        }
+
+        private void resolveMetadata() {
+            try {
+                metaDataResolver.resolve(id, DefaultComponentOverrideMetadata.EMPTY, result);
+                resolved = result.hasResult() && result.getFailure() == null;
+            } catch (Exception e) {
+                // The traversal resolves the component again and reports the failure if the component is selected
+                LOGGER.debug("Could not prefetch metadata of {}", id, e);
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        boolean cancel() {
+            return state.compareAndSet(PENDING, CANCELLED);
+        }
+
+        void await() {
+            if (!cancel() && state.get() == RUNNING) {
+                Uninterruptibles.awaitUninterruptibly(finished);
+            }
+        }
+    }
+}
@@ -41,6 +41,7 @@
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.CapabilitiesConflictHandler;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.ConflictResolutionResult;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultCapabilitiesConflictHandler;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.ModuleConflictHandler;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.PotentialConflict;
@@ -75,6 +76,7 @@
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 public class DependencyGraphBuilder {
@@ -94,6 +96,7 @@ public class DependencyGraphBuilder {
     private final VersionSelectorScheme versionSelectorScheme;
     private final Comparator<Version> versionComparator;
     private final VersionParser versionParser;
+    private final Executor metadataPrefetchExecutor;
 
     final static Spec<EdgeState> ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC = dependencyState -> dependencyState.getDependencyState().getDependency().isEndorsingStrictVersions();
     final static Spec<EdgeState> NOT_ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC = dependencyState -> !dependencyState.getDependencyState().getDependency().isEndorsingStrictVersions();
@@ -112,7 +115,8 @@ public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolve
                                   ImmutableAttributesFactory attributesFactory,
                                   VersionSelectorScheme versionSelectorScheme,
                                   Comparator<Version> versionComparator,
-                                  VersionParser versionParser) {
+                                  VersionParser versionParser,
+                                  @Nullable Executor metadataPrefetchExecutor) {
         this.idResolver = componentIdResolver;
         this.metaDataResolver = componentMetaDataResolver;
         this.moduleResolver = resolveContextToComponentResolver;
@@ -128,6 +132,7 @@ public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolve
         this.versionSelectorScheme = versionSelectorScheme;
         this.versionComparator = versionComparator;
         this.versionParser = versionParser;
+        this.metadataPrefetchExecutor = metadataPrefetchExecutor;
     }
 
     public void resolve(final ResolveContext resolveContext, final DependencyGraphVisitor modelVisitor) {
@@ -142,7 +147,15 @@ public void resolve(final ResolveContext resolveContext, final DependencyGraphVi
         final ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, metaDataResolver, edgeFilter, attributesSchema, moduleExclusions, componentSelectorConverter, attributesFactory, dependencySubstitutionApplicator, versionSelectorScheme, versionComparator, versionParser, moduleConflictHandler.getResolver(), graphSize);
 
         Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache = Maps.newHashMapWithExpectedSize(graphSize / 2);
-        traverseGraph(resolveState, componentIdentifierCache);
+        // A selector may not end up referring to the module it names when there are substitution rules, so do not speculate on it
+        ComponentMetadataPrefetcher prefetcher = metadataPrefetchExecutor == null || dependencySubstitutionApplicator != DependencySubstitutionApplicator.NO_OP ? null : new ComponentMetadataPrefetcher(metaDataResolver, edgeFilter, versionSelectorScheme, metadataPrefetchExecutor);
+        try {
+            traverseGraph(resolveState, componentIdentifierCache, prefetcher);
+        } finally {
+            if (prefetcher != null) {
+                prefetcher.stop();
+            }
+        }
 
         validateGraph(resolveState, resolutionStrategy.isFailingOnDynamicVersions(), resolutionStrategy.isFailingOnChangingVersions());
 
@@ -166,9 +179,16 @@ private static int estimateSize(ResolveContext resolveContext) {
     /**
      * Traverses the dependency graph, resolving conflicts and building the paths from the root configuration.
      */
-    private void traverseGraph(final ResolveState resolveState, final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+    private void traverseGraph(final ResolveState resolveState, final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache, @Nullable ComponentMetadataPrefetcher prefetcher) {
         resolveState.onMoreSelected(resolveState.getRoot());
         final List<EdgeState> dependencies = Lists.newArrayList();
+        final Action<ConflictResolutionResult> conflictResultAction = prefetcher == null ? resolveState.getReplaceSelectionWithConflictResultAction() : result -> {
+            resolveState.getReplaceSelectionWithConflictResultAction().execute(result);
+            result.withParticipatingModules(module -> prefetcher.cancelUnlessSelected(module, result.getSelected()));
+        };
+        if (prefetcher != null) {
+            prefetcher.prefetchDependenciesOf(resolveState.getRoot());
+        }
 
         while (resolveState.peek() != null || moduleConflictHandler.hasConflicts() || capabilitiesConflictHandler.hasConflicts()) {
             if (resolveState.peek() != null) {
@@ -181,15 +201,15 @@ private void traverseGraph(final ResolveState resolveState, final Map<ModuleVers
                 // Initialize and collect any new outgoing edges of this node
                 dependencies.clear();
                 node.visitOutgoingDependencies(dependencies);
-                boolean edgeWasProcessed = resolveEdges(node, dependencies, ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC, false, resolveState, componentIdentifierCache);
+                boolean edgeWasProcessed = resolveEdges(node, dependencies, ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC, false, resolveState, componentIdentifierCache, prefetcher);
                 node.collectEndorsedStrictVersions(dependencies);
-                resolveEdges(node, dependencies, NOT_ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC, edgeWasProcessed, resolveState, componentIdentifierCache);
+                resolveEdges(node, dependencies, NOT_ENDORSE_STRICT_VERSIONS_DEPENDENCY_SPEC, edgeWasProcessed, resolveState, componentIdentifierCache, prefetcher);
             } else {
                 // We have some batched up conflicts. Resolve the first, and continue traversing the graph
                 if (moduleConflictHandler.hasConflicts()) {
-                    moduleConflictHandler.resolveNextConflict(resolveState.getReplaceSelectionWithConflictResultAction());
+                    moduleConflictHandler.resolveNextConflict(conflictResultAction);
                 } else {
-                    capabilitiesConflictHandler.resolveNextConflict(resolveState.getReplaceSelectionWithConflictResultAction());
+                    capabilitiesConflictHandler.resolveNextConflict(conflictResultAction);
                 }
             }
 
@@ -240,13 +260,20 @@ private boolean resolveEdges(final NodeState node,
                                  final Spec<EdgeState> dependencyFilter,
                                  final boolean recomputeSelectors,
                                  final ResolveState resolveState,
-                                 final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+                                 final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache,
+                                 @Nullable final ComponentMetadataPrefetcher prefetcher) {
         if (dependencies.isEmpty()) {
             return false;
         }
         if (performSelectionSerially(dependencies, dependencyFilter, resolveState, recomputeSelectors)) {
+            if (prefetcher != null) {
+                joinPrefetchedMetadata(dependencies, dependencyFilter, prefetcher);
+            }
             maybeDownloadMetadataInParallel(node, componentIdentifierCache, dependencies, dependencyFilter);
             attachToTargetRevisionsSerially(dependencies, dependencyFilter);
+            if (prefetcher != null) {
+                prefetchDependenciesOfTargets(dependencies, dependencyFilter, prefetcher);
+            }
             return true;
         } else {
             return false;
@@ -346,6 +373,37 @@ private void maybeDownloadMetadataInParallel(NodeState node, Map<ModuleVersionId
         }
     }
 
+    private static void joinPrefetchedMetadata(List<EdgeState> dependencies, Spec<EdgeState> dependencyFilter, ComponentMetadataPrefetcher prefetcher) {
+        for (EdgeState dependency : dependencies) {
+            if (!dependencyFilter.isSatisfiedBy(dependency)) {
+                continue;
+            }
+            ComponentState targetComponent = dependency.getTargetComponent();
+            if (targetComponent != null && targetComponent.isSelected() && !targetComponent.alreadyResolved()) {
+                prefetcher.joinPrefetch(targetComponent);
+            }
+        }
+    }
+
+    /**
+     * Starts resolving the metadata of the next level of the graph as soon as the target nodes are known, rather than when they are visited.
+     */
+    private static void prefetchDependenciesOfTargets(List<EdgeState> dependencies, Spec<EdgeState> dependencyFilter, ComponentMetadataPrefetcher prefetcher) {
+        for (EdgeState dependency : dependencies) {
+            if (!dependencyFilter.isSatisfiedBy(dependency)) {
+                continue;
+            }
+            ComponentState targetComponent = dependency.getTargetComponent();
+            if (targetComponent != null && targetComponent.isSelected()) {
+                for (NodeState targetNode : targetComponent.getNodes()) {
+                    if (targetNode.isSelected()) {
+                        prefetcher.prefetchDependenciesOf(targetNode);
+                    }
+                }
+            }
+        }
+    }
+
     private ComponentIdentifier toComponentId(ModuleVersionIdentifier id, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
         ComponentIdentifier identifier = componentIdentifierCache.get(id);
         if (identifier == null) {
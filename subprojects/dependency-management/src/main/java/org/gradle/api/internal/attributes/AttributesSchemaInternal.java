@@ -33,4 +33,9 @@ public interface AttributesSchemaInternal extends DescribableAttributesSchema {
     CompatibilityRule<Object> compatibilityRules(Attribute<?> attribute);
 
     DisambiguationRule<Object> disambiguationRules(Attribute<?> attribute);
+
+    /**
+     * Returns a count that changes whenever an attribute or a rule is added to this schema.
+     */
+    int getModificationCount();
 }
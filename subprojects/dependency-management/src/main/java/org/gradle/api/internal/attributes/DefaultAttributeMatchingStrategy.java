@@ -25,8 +25,8 @@
 import java.util.Comparator;
 
 public class DefaultAttributeMatchingStrategy<T> implements AttributeMatchingStrategy<T> {
-    private final CompatibilityRuleChain<T> compatibilityRules;
-    private final DisambiguationRuleChain<T> disambiguationRules;
+    private final DefaultCompatibilityRuleChain<T> compatibilityRules;
+    private final DefaultDisambiguationRuleChain<T> disambiguationRules;
 
     public DefaultAttributeMatchingStrategy(InstantiatorFactory instantiatorFactory, IsolatableFactory isolatableFactory) {
         compatibilityRules = Cast.uncheckedCast(instantiatorFactory.decorateLenient().newInstance(DefaultCompatibilityRuleChain.class, instantiatorFactory.inject(), isolatableFactory));
@@ -43,6 +43,10 @@ public DisambiguationRuleChain<T> getDisambiguationRules() {
         return disambiguationRules;
     }
 
+    int getRuleCount() {
+        return compatibilityRules.getRuleCount() + disambiguationRules.getRuleCount();
+    }
+
     @Override
     public void ordered(Comparator<T> comparator) {
         ordered(true, comparator);
@@ -17,6 +17,7 @@
 package org.gradle.api.internal.attributes;
 
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.gradle.api.Action;
@@ -49,15 +50,16 @@ public class DefaultAttributesSchema implements AttributesSchemaInternal, Attrib
     private final Map<Attribute<?>, AttributeMatchingStrategy<?>> strategies = Maps.newHashMap();
     private final Map<String, Attribute<?>> attributesByName = Maps.newHashMap();
 
-    private final DefaultAttributeMatcher matcher;
     private final IsolatableFactory isolatableFactory;
     private final Map<ExtraAttributesEntry, Attribute<?>[]> extraAttributesCache = Maps.newHashMap();
+    // The matchers, and the results of the rules they evaluate, are shared by all the configurations resolved against this schema.
+    // Rules can still be added to either schema after a matcher was created, so a matcher is only reused while neither schema has changed
+    private final Map<AttributesSchemaInternal, DefaultAttributeMatcher> matchersByProducer = Maps.newConcurrentMap();
     private final List<AttributeDescriber> consumerAttributeDescribers = Lists.newArrayList();
 
     public DefaultAttributesSchema(ComponentAttributeMatcher componentAttributeMatcher, InstantiatorFactory instantiatorFactory, IsolatableFactory isolatableFactory) {
         this.componentAttributeMatcher = componentAttributeMatcher;
         this.instantiatorFactory = instantiatorFactory;
-        matcher = new DefaultAttributeMatcher(componentAttributeMatcher, mergeWith(EmptySchema.INSTANCE));
         this.isolatableFactory = isolatableFactory;
     }
 
@@ -99,18 +101,34 @@ public boolean hasAttribute(Attribute<?> key) {
         return strategies.containsKey(key);
     }
 
+    @Override
+    public int getModificationCount() {
+        int count = strategies.size();
+        for (AttributeMatchingStrategy<?> strategy : strategies.values()) {
+            count += ((DefaultAttributeMatchingStrategy<?>) strategy).getRuleCount();
+        }
+        return count;
+    }
+
     AttributeSelectionSchema mergeWith(AttributesSchemaInternal producerSchema) {
         return new MergedSchema(producerSchema);
     }
 
     @Override
     public AttributeMatcher withProducer(AttributesSchemaInternal producerSchema) {
-        return new DefaultAttributeMatcher(componentAttributeMatcher, mergeWith(producerSchema));
+        int consumerModificationCount = getModificationCount();
+        int producerModificationCount = producerSchema.getModificationCount();
+        DefaultAttributeMatcher matcher = matchersByProducer.get(producerSchema);
+        if (matcher == null || matcher.consumerModificationCount != consumerModificationCount || matcher.producerModificationCount != producerModificationCount) {
+            matcher = new DefaultAttributeMatcher(componentAttributeMatcher, mergeWith(producerSchema), consumerModificationCount, producerModificationCount);
+            matchersByProducer.put(producerSchema, matcher);
+        }
+        return matcher;
     }
 
     @Override
     public AttributeMatcher matcher() {
-        return matcher;
+        return withProducer(EmptySchema.INSTANCE);
     }
 
     @Override
@@ -144,10 +162,14 @@ public void addConsumerDescriber(AttributeDescriber describer) {
     private static class DefaultAttributeMatcher implements AttributeMatcher {
         private final ComponentAttributeMatcher componentAttributeMatcher;
         private final AttributeSelectionSchema effectiveSchema;
+        private final int consumerModificationCount;
+        private final int producerModificationCount;
 
-        DefaultAttributeMatcher(ComponentAttributeMatcher componentAttributeMatcher, AttributeSelectionSchema effectiveSchema) {
+        DefaultAttributeMatcher(ComponentAttributeMatcher componentAttributeMatcher, AttributeSelectionSchema effectiveSchema, int consumerModificationCount, int producerModificationCount) {
             this.componentAttributeMatcher = componentAttributeMatcher;
             this.effectiveSchema = effectiveSchema;
+            this.consumerModificationCount = consumerModificationCount;
+            this.producerModificationCount = producerModificationCount;
         }
 
         @Override
@@ -178,6 +200,10 @@ public List<MatchingDescription<?>> describeMatching(AttributeContainerInternal
 
     private class MergedSchema implements AttributeSelectionSchema {
         private final AttributesSchemaInternal producerSchema;
+        // The same values are compared over and over again, for every candidate of every component, so we remember
+        // the outcome of the rules rather than evaluating them, and instantiating the rule classes, each time
+        private final Map<ValuesQuery, Boolean> compatibilityCache = Maps.newConcurrentMap();
+        private final Map<ValuesQuery, Set<Object>> disambiguationCache = Maps.newConcurrentMap();
 
         MergedSchema(AttributesSchemaInternal producerSchema) {
             this.producerSchema = producerSchema;
@@ -190,6 +216,15 @@ public boolean hasAttribute(Attribute<?> attribute) {
 
         @Override
         public Set<Object> disambiguate(Attribute<?> attribute, @Nullable Object requested, Set<Object> candidates) {
+            Set<Object> matches = disambiguationCache.get(new ValuesQuery(attribute, requested, candidates));
+            if (matches == null) {
+                matches = ImmutableSet.copyOf(evaluateDisambiguationRules(attribute, requested, candidates));
+                disambiguationCache.put(new ValuesQuery(attribute, requested, ImmutableSet.copyOf(candidates)), matches);
+            }
+            return matches;
+        }
+
+        private Set<Object> evaluateDisambiguationRules(Attribute<?> attribute, @Nullable Object requested, Set<Object> candidates) {
             DefaultMultipleCandidateResult<Object> result = null;
 
             DisambiguationRule<Object> rules = disambiguationRules(attribute);
@@ -225,6 +260,16 @@ public boolean matchValue(Attribute<?> attribute, Object requested, Object candi
                 return true;
             }
 
+            ValuesQuery query = new ValuesQuery(attribute, requested, candidate);
+            Boolean compatible = compatibilityCache.get(query);
+            if (compatible == null) {
+                compatible = evaluateCompatibilityRules(attribute, requested, candidate);
+                compatibilityCache.put(query, compatible);
+            }
+            return compatible;
+        }
+
+        private boolean evaluateCompatibilityRules(Attribute<?> attribute, Object requested, Object candidate) {
             CompatibilityCheckResult<Object> result = null;
 
             CompatibilityRule<Object> rules = compatibilityRules(attribute);
@@ -298,6 +343,43 @@ public int hashCode() {
         }
     }
 
+    /**
+     * A cache entry key for the evaluation of the rules of an attribute, for a requested value and either a candidate value or a set of candidate values.
+     */
+    private static class ValuesQuery {
+        private final Attribute<?> attribute;
+        private final Object requested;
+        private final Object candidates;
+        private final int hashCode;
+
+        private ValuesQuery(Attribute<?> attribute, @Nullable Object requested, Object candidates) {
+            this.attribute = attribute;
+            this.requested = requested;
+            this.candidates = candidates;
+            this.hashCode = Objects.hashCode(attribute, requested, candidates);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ValuesQuery that = (ValuesQuery) o;
+            return hashCode == that.hashCode
+                && attribute.equals(that.attribute)
+                && Objects.equal(requested, that.requested)
+                && candidates.equals(that.candidates);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
     /**
      * A cache entry key, leveraging _identity_ as the key, because we do interning.
      * This is a performance optimization.
@@ -44,6 +44,11 @@ public DisambiguationRule<Object> disambiguationRules(Attribute<?> attribute) {
         return disambiguationRule;
     }
 
+    @Override
+    public int getModificationCount() {
+        return 0;
+    }
+
     @Override
     public List<AttributeDescriber> getConsumerDescribers() {
         return Collections.emptyList();
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser
+
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.data.MavenDependencyKey
+
+import javax.xml.parsers.DocumentBuilderFactory
+import javax.xml.stream.XMLInputFactory
+
+class PomStaxParserTest extends AbstractPomReaderTest {
+    final ImmutableModuleIdentifierFactory moduleIdentifierFactory = Mock() {
+        module(_, _) >> { args -> DefaultModuleIdentifier.newId(*args) }
+    }
+
+    static final String POM = """<?xml version="1.0" encoding="UTF-8"?>
+<project>
+    <!-- do_not_remove: published-with-gradle-metadata -->
+    <modelVersion>4.0.0</modelVersion>
+    <parent>
+        <groupId>group-parent</groupId>
+        <artifactId>artifact-parent</artifactId>
+        <version>version-parent</version>
+    </parent>
+    <groupId>group-one</groupId>
+    <artifactId>artifact-one</artifactId>
+    <version>\${some.version}</version>
+    <packaging>pom</packaging>
+    <description>Some <![CDATA[description]]> with &amp; entities</description>
+    <properties>
+        <some.version>version-one</some.version>
+        <nested.text>outer <inner>ignored</inner> text</nested.text>
+    </properties>
+    <dependencies>
+        <dependency>
+            <groupId>group-two</groupId>
+            <artifactId>artifact-two</artifactId>
+            <version>version-two</version>
+            <scope>test</scope>
+            <optional>true</optional>
+            <exclusions>
+                <exclusion>
+                    <groupId>group-three</groupId>
+                </exclusion>
+                <exclusion>
+                    <artifactId>artifact-four</artifactId>
+                </exclusion>
+                <exclusion/>
+            </exclusions>
+        </dependency>
+        <notADependency>
+            <groupId>ignored</groupId>
+        </notADependency>
+    </dependencies>
+    <dependencyManagement>
+        <dependencies>
+            <dependency>
+                <groupId>group-five</groupId>
+                <artifactId>artifact-five</artifactId>
+                <version>version-five</version>
+                <type>test-jar</type>
+                <classifier>tests</classifier>
+            </dependency>
+        </dependencies>
+    </dependencyManagement>
+    <distributionManagement>
+        <relocation>
+            <groupId>group-relocated</groupId>
+        </relocation>
+    </distributionManagement>
+    <profiles>
+        <profile>
+            <id>profile-one</id>
+            <activation>
+                <property>
+                    <name>!some.property</name>
+                </property>
+            </activation>
+            <properties>
+                <profile.property>profile-value</profile.property>
+            </properties>
+            <dependencies>
+                <dependency>
+                    <groupId>group-six</groupId>
+                    <artifactId>artifact-six</artifactId>
+                </dependency>
+            </dependencies>
+        </profile>
+        <profile>
+            <id>profile-two</id>
+            <activation>
+                <activeByDefault>true</activeByDefault>
+            </activation>
+        </profile>
+    </profiles>
+</project>
+"""
+
+    def "streaming parser produces the same model as the DOM parser"() {
+        when:
+        def streamed = parseStreaming(POM)
+        def dom = parseDom(POM)
+
+        then:
+        describe(streamed) == describe(dom)
+        streamed.rootElementName == 'project'
+        streamed.hasGradleMetadataMarker()
+        streamed.coordinates.version == '${some.version}'
+        streamed.parent.groupId == 'group-parent'
+        streamed.relocation.groupId == 'group-relocated'
+        streamed.relocation.artifactId == null
+        streamed.properties == ['some.version': 'version-one', 'nested.text': 'outer  text']
+        streamed.dependencies.size() == 1
+        streamed.dependencies[0].exclusions.collect { [it.groupId, it.artifactId] } == [['group-three', null], [null, 'artifact-four'], [null, null]]
+        streamed.profiles*.id == ['profile-one', 'profile-two']
+        streamed.profiles[0].activationPropertyName == '!some.property'
+        streamed.profiles[1].activeByDefault == 'true'
+    }
+
+    def "only the first occurrence of an element is used"() {
+        given:
+        def pom = """
+<project>
+    <groupId>group-one</groupId>
+    <groupId>group-two</groupId>
+    <artifactId>artifact-one</artifactId>
+    <version>version-one</version>
+    <dependencies>
+        <dependency>
+            <groupId>group-three</groupId>
+            <artifactId>artifact-three</artifactId>
+        </dependency>
+    </dependencies>
+    <dependencies>
+        <dependency>
+            <groupId>group-four</groupId>
+            <artifactId>artifact-four</artifactId>
+        </dependency>
+    </dependencies>
+</project>
+"""
+
+        when:
+        def streamed = parseStreaming(pom)
+
+        then:
+        describe(streamed) == describe(parseDom(pom))
+        streamed.coordinates.groupId == 'group-one'
+        streamed.dependencies*.coordinates*.groupId == ['group-three']
+    }
+
+    def "reads POM with the streaming parser"() {
+        when:
+        pomFile << POM
+        pomReader = new PomReader(locallyAvailableExternalResource, moduleIdentifierFactory, true)
+        pomReader.resolveGAV()
+
+        then:
+        pomReader.groupId == 'group-one'
+        pomReader.version == 'version-one'
+        pomReader.packaging == 'pom'
+        pomReader.hasParent()
+        pomReader.hasGradleMetadataMarker()
+        pomReader.relocation.toString() == 'group-relocated:artifact-one:version-one'
+        pomReader.properties['profile.property'] == 'profile-value'
+
+        def key = new MavenDependencyKey('group-two', 'artifact-two', 'jar', null)
+        def dependency = pomReader.dependencies[key]
+        dependency.optional
+        dependency.scope == 'test'
+        dependency.excludedModules == [DefaultModuleIdentifier.newId('group-three', '*'), DefaultModuleIdentifier.newId('*', 'artifact-four')]
+        pomReader.dependencies.containsKey(new MavenDependencyKey('group-six', 'artifact-six', 'jar', null))
+        pomReader.dependencyMgt.containsKey(new MavenDependencyKey('group-five', 'artifact-five', 'test-jar', 'tests'))
+    }
+
+    def "falls back to the DOM parser for POM the streaming parser cannot read"() {
+        when:
+        pomFile << """
+<projectx>
+    <groupId>group-one</groupId>
+</project>
+"""
+        new PomReader(locallyAvailableExternalResource, moduleIdentifierFactory, true)
+
+        then:
+        thrown(MetaDataParseException)
+    }
+
+    private static PomModel parseStreaming(String pom) {
+        def factory = XMLInputFactory.newInstance()
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false)
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true)
+        def reader = factory.createXMLStreamReader(new StringReader(pom))
+        try {
+            return PomStaxParser.parse(reader, 'pom.xml')
+        } finally {
+            reader.close()
+        }
+    }
+
+    private static PomModel parseDom(String pom) {
+        def document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(pom.getBytes('UTF-8')), 'pom.xml')
+        return PomDomParser.toModel(document.documentElement)
+    }
+
+    private static String describe(PomModel model) {
+        def coordinates = { PomModel.Coordinates c -> c == null ? null : [c.groupId, c.artifactId, c.version] }
+        def dependencies = { List<PomModel.Dependency> deps ->
+            deps.collect { [coordinates(it.coordinates), it.scope, it.type, it.classifier, it.optional, it.exclusions.collect(coordinates)] }
+        }
+        return [
+            model.rootElementName,
+            coordinates(model.coordinates),
+            model.packaging,
+            coordinates(model.parent),
+            coordinates(model.relocation),
+            model.hasGradleMetadataMarker(),
+            model.properties,
+            dependencies(model.dependencies),
+            dependencies(model.dependencyManagement),
+            model.profiles.collect {
+                [it.id, it.hasActivation(), it.activeByDefault, it.hasActivationProperty(), it.activationPropertyName, it.properties, dependencies(it.dependencies), dependencies(it.dependencyManagement)]
+            }
+        ].toString()
+    }
+}
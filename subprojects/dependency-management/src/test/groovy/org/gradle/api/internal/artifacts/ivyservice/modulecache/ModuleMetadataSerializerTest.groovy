@@ -48,12 +48,17 @@ import org.gradle.internal.resource.local.LocalFileStandInExternalResource
 import org.gradle.internal.resource.local.LocallyAvailableExternalResource
 import org.gradle.internal.serialize.InputStreamBackedDecoder
 import org.gradle.internal.serialize.OutputStreamBackedEncoder
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.util.AttributeTestUtil
 import org.gradle.util.TestUtil
+import org.gradle.util.internal.SimpleMapInterner
+import org.junit.Rule
 import spock.lang.Specification
 import spock.lang.Unroll
 
 class ModuleMetadataSerializerTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
 
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory = new DefaultImmutableModuleIdentifierFactory()
     private final MavenMutableModuleMetadataFactory mavenMetadataFactory = DependencyManagementTestUtil.mavenMetadataFactory()
@@ -97,6 +102,25 @@ class ModuleMetadataSerializerTest extends Specification {
 
     }
 
+    @Unroll
+    def "can write and re-read sample #sample.parentFile.name metadata file #sample.name in the indexed format"() {
+        given:
+        def metadata = parse(sample)
+        def indexedFormat = new IndexedModuleMetadataFile(serializer, moduleIdentifierFactory, SimpleMapInterner.notThreadSafe())
+        def file = tmpDir.file("descriptor.idx")
+        indexedFormat.write(file, metadata.asImmutable())
+
+        when:
+        def deserializedMetadata = indexedFormat.read(file).asImmutable()
+        def originMetadata = metadata.asImmutable()
+
+        then:
+        deserializedMetadata == originMetadata
+
+        where:
+        sample << sampleFiles()
+    }
+
     private MutableModuleComponentResolveMetadata deserialize(byte[] serializedForm) {
         serializer.read(new InputStreamBackedDecoder(new ByteArrayInputStream(serializedForm)), moduleIdentifierFactory, Maps.newHashMap())
     }
@@ -170,7 +194,8 @@ class ModuleMetadataSerializerTest extends Specification {
             new MavenVersionSelectorScheme(new DefaultVersionSelectorScheme(new DefaultVersionComparator(new FeaturePreviews()), new VersionParser())),
             moduleIdentifierFactory,
             Stub(FileResourceRepository),
-            mavenMetadataFactory
+            mavenMetadataFactory,
+            false
         )
     }
 
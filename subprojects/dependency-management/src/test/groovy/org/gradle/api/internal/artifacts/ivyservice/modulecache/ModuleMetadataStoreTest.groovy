@@ -69,4 +69,83 @@ class ModuleMetadataStoreTest extends Specification {
         };
         1 * serializer.write(_, descriptor, _)
     }
+
+    def "does not look for the indexed descriptor when there is no default descriptor"() {
+        given:
+        def indexedStore = new ModuleMetadataStore(pathKeyFileStore, serializer, moduleIdentifierFactory, SimpleMapInterner.notThreadSafe(), true)
+
+        when:
+        def result = indexedStore.getModuleDescriptor(new ModuleComponentAtRepositoryKey(repository, moduleComponentIdentifier))
+
+        then:
+        result == null
+        1 * pathKeyFileStore.get("org.test", "testArtifact", "1.0", "repositoryId", "descriptor.bin") >> null
+        0 * pathKeyFileStore._
+    }
+
+    def "putModuleDescriptor writes the indexed descriptor alongside the default descriptor"() {
+        setup:
+        def indexedStore = new ModuleMetadataStore(pathKeyFileStore, serializer, moduleIdentifierFactory, SimpleMapInterner.notThreadSafe(), true)
+        File defaultDescriptorFile = temporaryFolder.file("descriptor.bin")
+        File indexedDescriptorFile = temporaryFolder.file("descriptor.idx")
+        def descriptor = mavenMetadataFactory.create(moduleComponentIdentifier, []).asImmutable()
+
+        when:
+        def result = indexedStore.putModuleDescriptor(new ModuleComponentAtRepositoryKey(repository, moduleComponentIdentifier), descriptor)
+
+        then:
+        1 * pathKeyFileStore.add("org.test/testArtifact/1.0/repositoryId/descriptor.bin", _) >> { path, action ->
+            action.execute(defaultDescriptorFile); entry(defaultDescriptorFile)
+        }
+        1 * pathKeyFileStore.add("org.test/testArtifact/1.0/repositoryId/descriptor.idx", _) >> { path, action ->
+            action.execute(indexedDescriptorFile); entry(indexedDescriptorFile)
+        }
+        2 * serializer.write(_, descriptor, _)
+        0 * pathKeyFileStore._
+        result.file == defaultDescriptorFile
+        defaultDescriptorFile.exists()
+        indexedDescriptorFile.exists()
+    }
+
+    def "reads the indexed descriptor while the default descriptor is unchanged"() {
+        setup:
+        def indexedStore = new ModuleMetadataStore(pathKeyFileStore, serializer, moduleIdentifierFactory, SimpleMapInterner.notThreadSafe(), true)
+        def key = new ModuleComponentAtRepositoryKey(repository, moduleComponentIdentifier)
+        File defaultDescriptorFile = temporaryFolder.file("descriptor.bin")
+        File indexedDescriptorFile = temporaryFolder.file("descriptor.idx")
+        def descriptor = mavenMetadataFactory.create(moduleComponentIdentifier, []).asImmutable()
+        def indexedMetadata = mavenMetadataFactory.create(moduleComponentIdentifier, [])
+        def defaultMetadata = mavenMetadataFactory.create(moduleComponentIdentifier, [])
+        pathKeyFileStore.add("org.test/testArtifact/1.0/repositoryId/descriptor.bin", _) >> { path, action ->
+            action.execute(defaultDescriptorFile); entry(defaultDescriptorFile)
+        }
+        pathKeyFileStore.add("org.test/testArtifact/1.0/repositoryId/descriptor.idx", _) >> { path, action ->
+            action.execute(indexedDescriptorFile); entry(indexedDescriptorFile)
+        }
+        pathKeyFileStore.get("org.test", "testArtifact", "1.0", "repositoryId", "descriptor.bin") >> entry(defaultDescriptorFile)
+        pathKeyFileStore.get("org.test", "testArtifact", "1.0", "repositoryId", "descriptor.idx") >> entry(indexedDescriptorFile)
+        serializer.write(_, descriptor, _) >> { encoder, metadata, deduplication -> encoder.writeString("content") }
+        serializer.read(_ as StringTableDecoder, _, _) >> indexedMetadata
+        serializer.read(_ as StringDeduplicatingDecoder, _, _) >> defaultMetadata
+
+        when:
+        indexedStore.putModuleDescriptor(key, descriptor)
+
+        then:
+        indexedStore.getModuleDescriptor(key).is(indexedMetadata)
+
+        when: "another build replaces the default descriptor"
+        defaultDescriptorFile.text = "some other content"
+        defaultDescriptorFile.lastModified = defaultDescriptorFile.lastModified() + 2000
+
+        then:
+        indexedStore.getModuleDescriptor(key).is(defaultMetadata)
+        indexedDescriptorFile.exists()
+    }
+
+    private LocallyAvailableResource entry(File file) {
+        return Stub(LocallyAvailableResource) {
+            getFile() >> file
+        }
+    }
 }
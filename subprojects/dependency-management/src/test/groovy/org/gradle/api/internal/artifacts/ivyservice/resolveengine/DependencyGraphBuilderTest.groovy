@@ -33,6 +33,7 @@ import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyIntern
 import org.gradle.api.internal.artifacts.dependencies.DefaultMutableVersionConstraint
 import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData
 import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DefaultDependencySubstitutionApplicator
+import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DependencySubstitutionApplicator
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser
@@ -76,6 +77,8 @@ import org.gradle.util.AttributeTestUtil
 import org.gradle.util.TestUtil
 import spock.lang.Specification
 
+import java.util.concurrent.Executor
+
 import static org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier.newId
 import static org.gradle.internal.component.external.model.DefaultModuleComponentSelector.newSelector
 import static org.gradle.internal.component.local.model.TestComponentIdentifiers.newProjectId
@@ -128,7 +131,7 @@ class DependencyGraphBuilderTest extends Specification {
         _ * configuration.allDependencies >> Stub(DependencySet)
         _ * moduleResolver.resolve(_, _) >> { it[1].resolved(root) }
 
-        builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, moduleConflictHandler, capabilitiesConflictHandler, Specs.satisfyAll(), attributesSchema, moduleExclusions, buildOperationProcessor, dependencySubstitutionApplicator, componentSelectorConverter, AttributeTestUtil.attributesFactory(), versionSelectorScheme, versionComparator.asVersionComparator(), new VersionParser())
+        builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, moduleConflictHandler, capabilitiesConflictHandler, Specs.satisfyAll(), attributesSchema, moduleExclusions, buildOperationProcessor, dependencySubstitutionApplicator, componentSelectorConverter, AttributeTestUtil.attributesFactory(), versionSelectorScheme, versionComparator.asVersionComparator(), new VersionParser(), null)
     }
 
     private TestGraphVisitor resolve(DependencyGraphBuilder builder = this.builder) {
@@ -579,7 +582,7 @@ class DependencyGraphBuilderTest extends Specification {
     def "does not include filtered dependencies"() {
         given:
         def spec = { DependencyMetadata dep -> dep.selector.module != 'c' }
-        builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, moduleConflictHandler, capabilitiesConflictHandler, spec, attributesSchema, moduleExclusions, buildOperationProcessor, dependencySubstitutionApplicator, componentSelectorConverter, AttributeTestUtil.attributesFactory(), versionSelectorScheme, Stub(Comparator), new VersionParser())
+        builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, moduleConflictHandler, capabilitiesConflictHandler, spec, attributesSchema, moduleExclusions, buildOperationProcessor, dependencySubstitutionApplicator, componentSelectorConverter, AttributeTestUtil.attributesFactory(), versionSelectorScheme, Stub(Comparator), new VersionParser(), null)
 
         def a = revision('a')
         def b = revision('b')
@@ -1022,6 +1025,78 @@ class DependencyGraphBuilderTest extends Specification {
         result.components == ids(root, forced, b)
     }
 
+    def "prefetches metadata of dependencies as soon as their dependent is selected"() {
+        given:
+        def a = revision("a")
+        def b = revision("b")
+        selectorResolvesTo(dependsOn(root, a.moduleVersionId), a.id, a.moduleVersionId)
+        selectorResolvesTo(dependsOn(a, b.moduleVersionId), b.id, b.moduleVersionId)
+        def resolvedIds = recordResolvedMetadata(a, b)
+        def prefetchingBuilder = prefetchingBuilder({ Runnable action -> action.run() } as Executor)
+
+        when:
+        def result = resolve(prefetchingBuilder)
+        result.rethrowFailure()
+
+        then:
+        result.components == ids(root, a, b)
+        // the traversal uses the prefetched metadata instead of resolving it again
+        resolvedIds == [a.id, b.id]
+    }
+
+    def "does not wait for a prefetch that has not started yet"() {
+        given:
+        def a = revision("a")
+        def b = revision("b")
+        selectorResolvesTo(dependsOn(root, a.moduleVersionId), a.id, a.moduleVersionId)
+        selectorResolvesTo(dependsOn(a, b.moduleVersionId), b.id, b.moduleVersionId)
+        def resolvedIds = recordResolvedMetadata(a, b)
+        def queued = []
+        def prefetchingBuilder = prefetchingBuilder({ Runnable action -> queued << action } as Executor)
+
+        when:
+        def result = resolve(prefetchingBuilder)
+        result.rethrowFailure()
+        queued*.run()
+
+        then:
+        queued.size() == 2
+        result.components == ids(root, a, b)
+        // the pending prefetches are cancelled and the traversal resolves the metadata itself
+        resolvedIds == [a.id, b.id]
+    }
+
+    def "does not prefetch metadata when there are dependency substitution rules"() {
+        given:
+        def a = revision("a")
+        selectorResolvesTo(dependsOn(root, a.moduleVersionId), a.id, a.moduleVersionId)
+        def resolvedIds = recordResolvedMetadata(a)
+        def queued = []
+        def prefetchingBuilder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, moduleConflictHandler, capabilitiesConflictHandler, Specs.satisfyAll(), attributesSchema, moduleExclusions, buildOperationProcessor, dependencySubstitutionApplicator, componentSelectorConverter, AttributeTestUtil.attributesFactory(), versionSelectorScheme, versionComparator.asVersionComparator(), new VersionParser(), { Runnable action -> queued << action } as Executor)
+
+        when:
+        def result = resolve(prefetchingBuilder)
+        result.rethrowFailure()
+
+        then:
+        queued.empty
+        result.components == ids(root, a)
+        resolvedIds == [a.id]
+    }
+
+    private DependencyGraphBuilder prefetchingBuilder(Executor executor) {
+        return new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, moduleConflictHandler, capabilitiesConflictHandler, Specs.satisfyAll(), attributesSchema, moduleExclusions, buildOperationProcessor, DependencySubstitutionApplicator.NO_OP, componentSelectorConverter, AttributeTestUtil.attributesFactory(), versionSelectorScheme, versionComparator.asVersionComparator(), new VersionParser(), executor)
+    }
+
+    private List<ComponentIdentifier> recordResolvedMetadata(ComponentResolveMetadata... components) {
+        def resolvedIds = []
+        _ * metaDataResolver.resolve(_, _, _) >> { ComponentIdentifier id, ComponentOverrideMetadata requestMetaData, BuildableComponentResolveResult result ->
+            resolvedIds << id
+            result.resolved(components.find { it.id == id })
+        }
+        return resolvedIds
+    }
+
     def revision(String name, String revision = '1.0') {
         // TODO Shouldn't really be using the local component implementation here
         def id = newId("group", name, revision)
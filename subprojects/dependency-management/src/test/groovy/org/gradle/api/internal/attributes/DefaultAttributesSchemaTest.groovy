@@ -342,6 +342,112 @@ class DefaultAttributesSchemaTest extends Specification {
         best == [value1] as Set
     }
 
+    static class CountingCompatibilityRule implements AttributeCompatibilityRule<String> {
+        static int executions
+
+        @Override
+        void execute(CompatibilityCheckDetails<String> details) {
+            executions++
+            if (details.producerValue.startsWith(details.consumerValue)) {
+                details.compatible()
+            }
+        }
+    }
+
+    static class CountingSelectionRule implements AttributeDisambiguationRule<String> {
+        static int executions
+
+        @Override
+        void execute(MultipleCandidatesDetails<String> details) {
+            executions++
+            details.closestMatch(details.candidateValues.min())
+        }
+    }
+
+    def "remembers the outcome of compatibility rules for a pair of values"() {
+        def attr = Attribute.of(String)
+        CountingCompatibilityRule.executions = 0
+
+        given:
+        schema.attribute(attr).compatibilityRules.add(CountingCompatibilityRule)
+        def matcher = schema.withProducer(EmptySchema.INSTANCE)
+
+        expect:
+        matcher.isMatching(attr, "ab", "a")
+        matcher.isMatching(attr, "ab", "a")
+        !matcher.isMatching(attr, "b", "a")
+        !matcher.isMatching(attr, "b", "a")
+        CountingCompatibilityRule.executions == 2
+    }
+
+    def "remembers the outcome of disambiguation rules for a set of candidate values"() {
+        def attr = Attribute.of(String)
+        CountingSelectionRule.executions = 0
+
+        given:
+        schema.attribute(attr).disambiguationRules.add(CountingSelectionRule)
+        def mergedSchema = schema.mergeWith(EmptySchema.INSTANCE)
+
+        expect:
+        mergedSchema.disambiguate(attr, "a", ["c", "b"] as Set) == ["b"] as Set
+        mergedSchema.disambiguate(attr, "a", ["b", "c"] as Set) == ["b"] as Set
+        mergedSchema.disambiguate(attr, "a", ["c", "d"] as Set) == ["c"] as Set
+        CountingSelectionRule.executions == 2
+    }
+
+    def "reuses the matcher for a producer schema until the rules change"() {
+        def producer = new DefaultAttributesSchema(new ComponentAttributeMatcher(), TestUtil.instantiatorFactory(), SnapshotTestUtil.valueSnapshotter())
+        def attr = Attribute.of(String)
+
+        given:
+        schema.attribute(attr)
+        def matcher = schema.withProducer(producer)
+
+        expect:
+        schema.withProducer(producer).is(matcher)
+        schema.matcher().is(schema.withProducer(EmptySchema.INSTANCE))
+        !matcher.isMatching(attr, "ab", "a")
+
+        when:
+        schema.attribute(attr) {
+            it.compatibilityRules.add(CountingCompatibilityRule)
+        }
+
+        then:
+        !schema.withProducer(producer).is(matcher)
+        schema.withProducer(producer).isMatching(attr, "ab", "a")
+    }
+
+    def "evaluates the rules again when a rule is added to the consumer schema after a match"() {
+        def attr = Attribute.of(String)
+        def strategy = schema.attribute(attr)
+
+        given:
+        !schema.matcher().isMatching(attr, "ab", "a")
+
+        when:
+        strategy.compatibilityRules.add(CountingCompatibilityRule)
+
+        then:
+        schema.matcher().isMatching(attr, "ab", "a")
+    }
+
+    def "evaluates the rules again when a rule is added to the producer schema after a match"() {
+        def producer = new DefaultAttributesSchema(new ComponentAttributeMatcher(), TestUtil.instantiatorFactory(), SnapshotTestUtil.valueSnapshotter())
+        def attr = Attribute.of(String)
+        schema.attribute(attr)
+        def strategy = producer.attribute(attr)
+
+        given:
+        !schema.withProducer(producer).isMatching(attr, "ab", "a")
+
+        when:
+        strategy.compatibilityRules.add(CountingCompatibilityRule)
+
+        then:
+        schema.withProducer(producer).isMatching(attr, "ab", "a")
+    }
+
     interface Flavor extends Named {}
 
     enum MyEnum {
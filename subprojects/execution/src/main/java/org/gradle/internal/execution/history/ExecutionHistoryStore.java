@@ -28,6 +28,13 @@
 public interface ExecutionHistoryStore {
     Optional<AfterPreviousExecutionState> load(String key);
 
+    /**
+     * Loads the execution time of the last recorded execution, without loading the rest of its history.
+     */
+    default Optional<Long> loadExecutionTime(String key) {
+        return load(key).map(state -> state.getOriginMetadata().getExecutionTime());
+    }
+
     void store(String key,
                OriginMetadata originMetadata,
                ImplementationSnapshot implementation,
@@ -27,6 +27,7 @@
 import org.gradle.internal.execution.history.ExecutionHistoryStore;
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
 import org.gradle.internal.fingerprint.FileCollectionFingerprint;
+import org.gradle.internal.serialize.BaseSerializerFactory;
 import org.gradle.internal.snapshot.ValueSnapshot;
 import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
 
@@ -38,6 +39,7 @@
 public class DefaultExecutionHistoryStore implements ExecutionHistoryStore {
 
     private final PersistentIndexedCache<String, AfterPreviousExecutionState> store;
+    private final PersistentIndexedCache<String, Long> executionTimes;
 
     public DefaultExecutionHistoryStore(ExecutionHistoryCacheAccess executionHistoryCacheAccess, StringInterner stringInterner) {
         DefaultPreviousExecutionStateSerializer serializer = new DefaultPreviousExecutionStateSerializer(
@@ -48,6 +50,12 @@ public DefaultExecutionHistoryStore(ExecutionHistoryCacheAccess executionHistory
             10000,
             false
         );
+        // Kept separately, so that estimating execution times does not have to deserialize the fingerprints of the whole history
+        this.executionTimes = executionHistoryCacheAccess.createCache(
+            PersistentIndexedCacheParameters.of("executionTimes", String.class, BaseSerializerFactory.LONG_SERIALIZER),
+            10000,
+            false
+        );
     }
 
     @Override
@@ -55,6 +63,11 @@ public Optional<AfterPreviousExecutionState> load(String key) {
         return Optional.ofNullable(store.get(key));
     }
 
+    @Override
+    public Optional<Long> loadExecutionTime(String key) {
+        return Optional.ofNullable(executionTimes.get(key));
+    }
+
     @Override
     public void store(
         String key,
@@ -75,11 +88,13 @@ public void store(
             prepareForSerialization(outputFileProperties),
             successful
         ));
+        executionTimes.put(key, originMetadata.getExecutionTime());
     }
 
     @Override
     public void remove(String key) {
         store.remove(key);
+        executionTimes.remove(key);
     }
 
     private static ImmutableSortedMap<String, FileCollectionFingerprint> prepareForSerialization(ImmutableSortedMap<String, CurrentFileCollectionFingerprint> fingerprints) {
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.internal.watch.vfs;
+
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.snapshot.CompleteDirectorySnapshot;
+import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.FileSystemSnapshotVisitor;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+
+/**
+ * Information about the state a virtual file system retains between builds.
+ */
+public class VirtualFileSystemStatistics {
+    public static final VirtualFileSystemStatistics EMPTY = new VirtualFileSystemStatistics(0, 0, 0, 0);
+
+    // Rough object sizes on a 64-bit JVM with compressed references
+    private static final int ARRAY_HEADER_SIZE = 16;
+    private static final int REFERENCE_SIZE = 4;
+    private static final int STRING_SIZE = 24;
+    private static final int HASH_CODE_SIZE = 24;
+    private static final int LIST_SIZE = 16;
+    private static final int MISSING_FILE_SNAPSHOT_SIZE = 32;
+    private static final int REGULAR_FILE_SNAPSHOT_SIZE = 48;
+    private static final int DIRECTORY_SNAPSHOT_SIZE = 40;
+
+    private final int retainedRegularFiles;
+    private final int retainedDirectories;
+    private final int retainedMissingFiles;
+    private final long estimatedRetainedSize;
+
+    public VirtualFileSystemStatistics(int retainedRegularFiles, int retainedDirectories, int retainedMissingFiles, long estimatedRetainedSize) {
+        this.retainedRegularFiles = retainedRegularFiles;
+        this.retainedDirectories = retainedDirectories;
+        this.retainedMissingFiles = retainedMissingFiles;
+        this.estimatedRetainedSize = estimatedRetainedSize;
+    }
+
+    /**
+     * Visits all the snapshots in the hierarchy to count them and to estimate the heap they occupy.
+     *
+     * The estimate covers the snapshots, their absolute paths, hashes and child lists. Names are not counted, since they are interned and shared between snapshots.
+     */
+    public static VirtualFileSystemStatistics of(SnapshotHierarchy root) {
+        Collector collector = new Collector();
+        root.visitSnapshotRoots(snapshot -> snapshot.accept(collector));
+        return new VirtualFileSystemStatistics(collector.regularFiles, collector.directories, collector.missingFiles, collector.estimatedSize);
+    }
+
+    public int getRetainedRegularFiles() {
+        return retainedRegularFiles;
+    }
+
+    public int getRetainedDirectories() {
+        return retainedDirectories;
+    }
+
+    public int getRetainedMissingFiles() {
+        return retainedMissingFiles;
+    }
+
+    /**
+     * The estimated number of bytes of heap occupied by the retained snapshots.
+     */
+    public long getEstimatedRetainedSize() {
+        return estimatedRetainedSize;
+    }
+
+    private static class Collector implements FileSystemSnapshotVisitor {
+        private int regularFiles;
+        private int directories;
+        private int missingFiles;
+        private long estimatedSize;
+
+        @Override
+        public boolean preVisitDirectory(CompleteDirectorySnapshot directorySnapshot) {
+            directories++;
+            estimatedSize += DIRECTORY_SNAPSHOT_SIZE
+                + estimateStringSize(directorySnapshot.getAbsolutePath())
+                + estimateHashSize(directorySnapshot.getHash())
+                + LIST_SIZE
+                + alignedSize(ARRAY_HEADER_SIZE + REFERENCE_SIZE * directorySnapshot.getChildren().size());
+            return true;
+        }
+
+        @Override
+        public void visitFile(CompleteFileSystemLocationSnapshot fileSnapshot) {
+            if (fileSnapshot.getType() == FileType.RegularFile) {
+                regularFiles++;
+                estimatedSize += REGULAR_FILE_SNAPSHOT_SIZE + estimateHashSize(fileSnapshot.getHash());
+            } else {
+                missingFiles++;
+                estimatedSize += MISSING_FILE_SNAPSHOT_SIZE;
+            }
+            estimatedSize += estimateStringSize(fileSnapshot.getAbsolutePath());
+        }
+
+        @Override
+        public void postVisitDirectory(CompleteDirectorySnapshot directorySnapshot) {
+        }
+
+        private static long estimateStringSize(String string) {
+            return STRING_SIZE + alignedSize(ARRAY_HEADER_SIZE + string.length());
+        }
+
+        private static long estimateHashSize(HashCode hash) {
+            return HASH_CODE_SIZE + alignedSize(ARRAY_HEADER_SIZE + hash.length());
+        }
+
+        private static long alignedSize(long size) {
+            return (size + 7) & ~7L;
+        }
+    }
+}
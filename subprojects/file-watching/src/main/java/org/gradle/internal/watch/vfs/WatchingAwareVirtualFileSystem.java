@@ -41,6 +41,8 @@ public interface WatchingAwareVirtualFileSystem extends VirtualFileSystem {
 
     /**
      * Called when the build is finished.
+     *
+     * @return information about the state retained until the next build.
      */
-    void beforeBuildFinished(boolean watchingEnabled);
+    VirtualFileSystemStatistics beforeBuildFinished(boolean watchingEnabled);
 }
@@ -63,6 +63,11 @@ public void updateWithKnownSnapshot(CompleteFileSystemLocationSnapshot snapshot)
         delegate.updateWithKnownSnapshot(snapshot);
     }
 
+    @Override
+    public void updateWithKnownSnapshots(Iterable<? extends CompleteFileSystemLocationSnapshot> snapshots) {
+        delegate.updateWithKnownSnapshots(snapshots);
+    }
+
     @Override
     public AtomicSnapshotHierarchyReference getRoot() {
         return delegate.getRoot();
@@ -17,6 +17,7 @@
 package org.gradle.internal.watch.vfs.impl;
 
 import org.gradle.internal.vfs.impl.AbstractVirtualFileSystem;
+import org.gradle.internal.watch.vfs.VirtualFileSystemStatistics;
 import org.gradle.internal.watch.vfs.WatchingAwareVirtualFileSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,7 +48,8 @@ public void buildRootDirectoryAdded(File buildRootDirectory) {
     }
 
     @Override
-    public void beforeBuildFinished(boolean watchingEnabled) {
+    public VirtualFileSystemStatistics beforeBuildFinished(boolean watchingEnabled) {
         invalidateAll();
+        return VirtualFileSystemStatistics.EMPTY;
     }
 }
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import org.gradle.internal.file.FileException;
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.file.Stat;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.snapshot.CompleteDirectorySnapshot;
+import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.MissingFileSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores the snapshots retained by the virtual file system in a file when the daemon stops, so that the next daemon can start with them.
+ *
+ * Files may change while no daemon is watching them, so the snapshots need to be checked against the file system after they have been loaded.
+ * Regular files need to have the same length and modification time, missing files need to be still missing and directories need to have the same modification time.
+ * The modification time of a directory changes when entries are added to or removed from it, so that no directory listing is necessary.
+ * Snapshot roots with any change are dropped and snapshotted again when they are used.
+ */
+public class SnapshotHierarchyStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotHierarchyStore.class);
+
+    private static final int FORMAT_VERSION = 1;
+    private static final byte REGULAR_FILE = 0;
+    private static final byte DIRECTORY = 1;
+    private static final byte MISSING = 2;
+
+    private final File storeFile;
+    private final String compatibilityKey;
+    private final Stat stat;
+    private final Interner<String> stringInterner;
+
+    /**
+     * @param compatibilityKey Identifies the Gradle version and the hashing configuration. Snapshots stored with a different key are not loaded.
+     */
+    public SnapshotHierarchyStore(File storeFile, String compatibilityKey, Stat stat, Interner<String> stringInterner) {
+        this.storeFile = storeFile;
+        this.compatibilityKey = compatibilityKey;
+        this.stat = stat;
+        this.stringInterner = stringInterner;
+    }
+
+    /**
+     * Writes the snapshot roots of the hierarchy to the store, replacing any previously stored snapshots.
+     */
+    public void store(SnapshotHierarchy root) {
+        List<CompleteFileSystemLocationSnapshot> snapshotRoots = new ArrayList<>();
+        root.visitSnapshotRoots(snapshotRoots::add);
+        try {
+            File parentDir = storeFile.getParentFile();
+            Files.createDirectories(parentDir.toPath());
+            File tempFile = File.createTempFile(storeFile.getName(), ".tmp", parentDir);
+            int storedRoots = 0;
+            try {
+                try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+                    output.writeInt(FORMAT_VERSION);
+                    output.writeUTF(compatibilityKey);
+                    for (CompleteFileSystemLocationSnapshot snapshotRoot : snapshotRoots) {
+                        if (!isStorable(snapshotRoot)) {
+                            continue;
+                        }
+                        output.writeBoolean(true);
+                        write(output, snapshotRoot);
+                        storedRoots++;
+                    }
+                    output.writeBoolean(false);
+                }
+                Files.move(tempFile.toPath(), storeFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+            LOGGER.info("Stored {} virtual file system snapshot roots in {}", storedRoots, storeFile);
+        } catch (IOException e) {
+            LOGGER.warn("Could not store the virtual file system state in {}", storeFile, e);
+        }
+    }
+
+    /**
+     * Reads the stored snapshot roots, and removes the store.
+     *
+     * The snapshots are not checked against the file system yet, so that the caller can start watching them first. See {@link StoredSnapshot#isUpToDate()}.
+     */
+    public List<StoredSnapshot> load() {
+        if (!storeFile.isFile()) {
+            return ImmutableList.of();
+        }
+        List<StoredSnapshot> result = new ArrayList<>();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(storeFile.toPath())))) {
+            if (input.readInt() != FORMAT_VERSION || !input.readUTF().equals(compatibilityKey)) {
+                LOGGER.info("Ignoring virtual file system state stored by a different Gradle version in {}", storeFile);
+            } else {
+                while (input.readBoolean()) {
+                    Map<String, Long> directoriesLastModified = new HashMap<>();
+                    CompleteFileSystemLocationSnapshot snapshot = read(input, directoriesLastModified);
+                    result.add(new StoredSnapshot(snapshot, directoriesLastModified));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not load the virtual file system state from {}", storeFile, e);
+            result.clear();
+        } finally {
+            if (!storeFile.delete()) {
+                LOGGER.debug("Could not delete {}", storeFile);
+            }
+        }
+        LOGGER.info("Loaded {} virtual file system snapshot roots from {}", result.size(), storeFile);
+        return result;
+    }
+
+    private static boolean isStorable(CompleteFileSystemLocationSnapshot snapshot) {
+        if (snapshot.getAccessType() != AccessType.DIRECT) {
+            return false;
+        }
+        if (snapshot instanceof CompleteDirectorySnapshot) {
+            for (CompleteFileSystemLocationSnapshot child : ((CompleteDirectorySnapshot) snapshot).getChildren()) {
+                if (!isStorable(child)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void write(DataOutputStream output, CompleteFileSystemLocationSnapshot snapshot) throws IOException {
+        if (snapshot instanceof RegularFileSnapshot) {
+            RegularFileSnapshot fileSnapshot = (RegularFileSnapshot) snapshot;
+            output.writeByte(REGULAR_FILE);
+            writeLocation(output, snapshot);
+            writeHash(output, snapshot.getHash());
+            output.writeLong(fileSnapshot.getLength());
+            output.writeLong(fileSnapshot.getLastModified());
+        } else if (snapshot instanceof CompleteDirectorySnapshot) {
+            List<CompleteFileSystemLocationSnapshot> children = ((CompleteDirectorySnapshot) snapshot).getChildren();
+            output.writeByte(DIRECTORY);
+            writeLocation(output, snapshot);
+            writeHash(output, snapshot.getHash());
+            output.writeLong(directoryLastModified(snapshot.getAbsolutePath()));
+            output.writeInt(children.size());
+            for (CompleteFileSystemLocationSnapshot child : children) {
+                write(output, child);
+            }
+        } else if (snapshot instanceof MissingFileSnapshot) {
+            output.writeByte(MISSING);
+            writeLocation(output, snapshot);
+        } else {
+            throw new IllegalArgumentException("Unsupported snapshot " + snapshot);
+        }
+    }
+
+    private static void writeLocation(DataOutputStream output, CompleteFileSystemLocationSnapshot snapshot) throws IOException {
+        output.writeUTF(snapshot.getAbsolutePath());
+        output.writeUTF(snapshot.getName());
+    }
+
+    private static void writeHash(DataOutputStream output, HashCode hash) throws IOException {
+        byte[] bytes = hash.toByteArray();
+        output.writeByte(bytes.length);
+        output.write(bytes);
+    }
+
+    private CompleteFileSystemLocationSnapshot read(DataInputStream input, Map<String, Long> directoriesLastModified) throws IOException {
+        byte type = input.readByte();
+        String absolutePath = input.readUTF();
+        String name = stringInterner.intern(input.readUTF());
+        switch (type) {
+            case REGULAR_FILE:
+                HashCode contentHash = readHash(input);
+                long length = input.readLong();
+                long lastModified = input.readLong();
+                return new RegularFileSnapshot(absolutePath, name, contentHash, DefaultFileMetadata.file(lastModified, length, AccessType.DIRECT));
+            case DIRECTORY:
+                HashCode directoryHash = readHash(input);
+                directoriesLastModified.put(absolutePath, input.readLong());
+                int childCount = input.readInt();
+                ImmutableList.Builder<CompleteFileSystemLocationSnapshot> children = ImmutableList.builderWithExpectedSize(childCount);
+                for (int i = 0; i < childCount; i++) {
+                    children.add(read(input, directoriesLastModified));
+                }
+                return new CompleteDirectorySnapshot(absolutePath, name, children.build(), directoryHash, AccessType.DIRECT);
+            case MISSING:
+                return new MissingFileSnapshot(absolutePath, name, AccessType.DIRECT);
+            default:
+                throw new IOException("Unexpected snapshot type " + type);
+        }
+    }
+
+    @Nullable
+    private FileMetadata stat(String absolutePath) {
+        try {
+            return stat.stat(new File(absolutePath));
+        } catch (FileException e) {
+            return null;
+        }
+    }
+
+    private static HashCode readHash(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readUnsignedByte()];
+        input.readFully(bytes);
+        return HashCode.fromBytes(bytes);
+    }
+
+    /**
+     * Returns the modification time of the directory, or -1 when the location is not a directory.
+     */
+    private static long directoryLastModified(String absolutePath) {
+        Path path = new File(absolutePath).toPath();
+        try {
+            if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                return -1;
+            }
+            return Files.getLastModifiedTime(path, LinkOption.NOFOLLOW_LINKS).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * A snapshot root read from the store.
+     */
+    public class StoredSnapshot {
+        private final CompleteFileSystemLocationSnapshot snapshot;
+        private final Map<String, Long> directoriesLastModified;
+
+        private StoredSnapshot(CompleteFileSystemLocationSnapshot snapshot, Map<String, Long> directoriesLastModified) {
+            this.snapshot = snapshot;
+            this.directoriesLastModified = directoriesLastModified;
+        }
+
+        public CompleteFileSystemLocationSnapshot getSnapshot() {
+            return snapshot;
+        }
+
+        /**
+         * Checks whether the file system still matches the snapshot.
+         *
+         * Changes which happen after this check are only noticed when the location is watched, so watching needs to start before the check.
+         */
+        public boolean isUpToDate() {
+            return isUpToDate(snapshot);
+        }
+
+        private boolean isUpToDate(CompleteFileSystemLocationSnapshot snapshot) {
+            String absolutePath = snapshot.getAbsolutePath();
+            if (snapshot instanceof RegularFileSnapshot) {
+                RegularFileSnapshot fileSnapshot = (RegularFileSnapshot) snapshot;
+                FileMetadata metadata = stat(absolutePath);
+                return metadata != null
+                    && metadata.getType() == FileType.RegularFile
+                    && metadata.getAccessType() == AccessType.DIRECT
+                    && metadata.getLength() == fileSnapshot.getLength()
+                    && metadata.getLastModified() == fileSnapshot.getLastModified();
+            } else if (snapshot instanceof CompleteDirectorySnapshot) {
+                long lastModified = directoriesLastModified.get(absolutePath);
+                if (lastModified == -1 || directoryLastModified(absolutePath) != lastModified) {
+                    return false;
+                }
+                for (CompleteFileSystemLocationSnapshot child : ((CompleteDirectorySnapshot) snapshot).getChildren()) {
+                    if (!isUpToDate(child)) {
+                        return false;
+                    }
+                }
+                return true;
+            } else {
+                FileMetadata metadata = stat(absolutePath);
+                return metadata != null && metadata.getType() == FileType.Missing;
+            }
+        }
+    }
+}
@@ -16,14 +16,11 @@
 
 package org.gradle.internal.watch.vfs.impl;
 
-import com.google.common.collect.EnumMultiset;
-import com.google.common.collect.Multiset;
 import net.rubygrapefruit.platform.internal.jni.InotifyInstanceLimitTooLowException;
 import net.rubygrapefruit.platform.internal.jni.InotifyWatchesLimitTooLowException;
 import org.gradle.internal.file.DefaultFileHierarchySet;
 import org.gradle.internal.file.FileHierarchySet;
 import org.gradle.internal.file.FileMetadata.AccessType;
-import org.gradle.internal.file.FileType;
 import org.gradle.internal.snapshot.CompleteDirectorySnapshot;
 import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemSnapshotVisitor;
@@ -34,15 +31,18 @@
 import org.gradle.internal.watch.registry.FileWatcherRegistry;
 import org.gradle.internal.watch.registry.FileWatcherRegistryFactory;
 import org.gradle.internal.watch.registry.impl.DaemonDocumentationIndex;
+import org.gradle.internal.watch.vfs.VirtualFileSystemStatistics;
 import org.gradle.internal.watch.vfs.WatchingAwareVirtualFileSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
@@ -62,6 +62,7 @@ public class WatchingVirtualFileSystem extends AbstractDelegatingVirtualFileSyst
     private final AtomicReference<FileHierarchySet> producedByCurrentBuild = new AtomicReference<>(DefaultFileHierarchySet.of());
     private final Predicate<String> watchFilter;
     private final DaemonDocumentationIndex daemonDocumentationIndex;
+    private final SnapshotHierarchyStore snapshotHierarchyStore;
     private final Set<File> rootProjectDirectoriesForWatching = new HashSet<>();
 
     private FileWatcherRegistry watchRegistry;
@@ -80,13 +81,15 @@ public WatchingVirtualFileSystem(
         AbstractVirtualFileSystem delegate,
         DelegatingDiffCapturingUpdateFunctionDecorator delegatingUpdateFunctionDecorator,
         Predicate<String> watchFilter,
-        DaemonDocumentationIndex daemonDocumentationIndex
+        DaemonDocumentationIndex daemonDocumentationIndex,
+        @Nullable SnapshotHierarchyStore snapshotHierarchyStore
     ) {
         super(delegate);
         this.watcherRegistryFactory = watcherRegistryFactory;
         this.delegatingUpdateFunctionDecorator = delegatingUpdateFunctionDecorator;
         this.watchFilter = watchFilter;
         this.daemonDocumentationIndex = daemonDocumentationIndex;
+        this.snapshotHierarchyStore = snapshotHierarchyStore;
     }
 
     @Override
@@ -129,7 +132,7 @@ public void buildRootDirectoryAdded(File buildRootDirectory) {
     }
 
     @Override
-    public void beforeBuildFinished(boolean watchingEnabled) {
+    public VirtualFileSystemStatistics beforeBuildFinished(boolean watchingEnabled) {
         synchronized (rootProjectDirectoriesForWatching) {
             rootProjectDirectoriesForWatching.clear();
         }
@@ -139,6 +142,7 @@ public void beforeBuildFinished(boolean watchingEnabled) {
                 logWatchingError(reasonForNotWatchingFiles, FILE_WATCHING_ERROR_MESSAGE_AT_END_OF_BUILD);
                 reasonForNotWatchingFiles = null;
             }
+            AtomicReference<VirtualFileSystemStatistics> statistics = new AtomicReference<>(VirtualFileSystemStatistics.EMPTY);
             getRoot().update(currentRoot -> {
                 buildRunning = false;
                 producedByCurrentBuild.set(DefaultFileHierarchySet.of());
@@ -147,11 +151,13 @@ public void beforeBuildFinished(boolean watchingEnabled) {
                 if (watchRegistry != null) {
                     newRoot = withWatcherChangeErrorHandling(newRoot, () -> watchRegistry.getFileWatcherUpdater().buildFinished());
                 }
-                printStatistics(newRoot, "retains", "till next build");
+                statistics.set(printStatistics(newRoot, "retains", "till next build"));
                 return newRoot;
             });
+            return statistics.get();
         } else {
             invalidateAll();
+            return VirtualFileSystemStatistics.EMPTY;
         }
     }
 
@@ -211,7 +217,7 @@ public void handleLostState() {
             long endTime = System.currentTimeMillis() - startTime;
             LOGGER.warn("Spent {} ms registering watches for file system events", endTime);
             // TODO: Move start watching early enough so that the root is always empty
-            return currentRoot.empty();
+            return loadStoredSnapshots(currentRoot.empty());
         } catch (Exception ex) {
             logWatchingError(ex, FILE_WATCHING_ERROR_MESSAGE_DURING_BUILD);
             closeUnderLock();
@@ -219,6 +225,43 @@ public void handleLostState() {
         }
     }
 
+    /**
+     * Adds the snapshots stored by a previous daemon.
+     *
+     * The stored locations are watched before they are checked against the file system,
+     * so that a change is either found by the check or reported by the watcher afterwards.
+     */
+    private SnapshotHierarchy loadStoredSnapshots(SnapshotHierarchy currentRoot) {
+        if (snapshotHierarchyStore == null) {
+            return currentRoot;
+        }
+        List<SnapshotHierarchyStore.StoredSnapshot> storedSnapshots = snapshotHierarchyStore.load();
+        if (storedSnapshots.isEmpty()) {
+            return currentRoot;
+        }
+        SnapshotCollectingDiffListener addedListener = new SnapshotCollectingDiffListener(watchFilter);
+        SnapshotHierarchy newRoot = currentRoot;
+        for (SnapshotHierarchyStore.StoredSnapshot storedSnapshot : storedSnapshots) {
+            CompleteFileSystemLocationSnapshot snapshot = storedSnapshot.getSnapshot();
+            newRoot = newRoot.store(snapshot.getAbsolutePath(), snapshot, addedListener);
+        }
+        newRoot = withWatcherChangeErrorHandling(newRoot, () -> addedListener.publishSnapshotDiff(snapshotDiffListener));
+        if (watchRegistry == null) {
+            return newRoot;
+        }
+
+        SnapshotCollectingDiffListener droppedListener = new SnapshotCollectingDiffListener(watchFilter);
+        int droppedSnapshots = 0;
+        for (SnapshotHierarchyStore.StoredSnapshot storedSnapshot : storedSnapshots) {
+            if (!storedSnapshot.isUpToDate()) {
+                newRoot = newRoot.invalidate(storedSnapshot.getSnapshot().getAbsolutePath(), droppedListener);
+                droppedSnapshots++;
+            }
+        }
+        LOGGER.info("Dropped {} of {} stored virtual file system snapshot roots which changed", droppedSnapshots, storedSnapshots.size());
+        return withWatcherChangeErrorHandling(newRoot, () -> droppedListener.publishSnapshotDiff(snapshotDiffListener));
+    }
+
     private SnapshotHierarchy withWatcherChangeErrorHandling(SnapshotHierarchy currentRoot, Runnable runnable) {
         try {
             runnable.run();
@@ -285,49 +328,18 @@ private SnapshotHierarchy handleWatcherRegistryEvents(SnapshotHierarchy currentR
         return currentRoot;
     }
 
-    private static void printStatistics(SnapshotHierarchy root, String verb, String statisticsFor) {
-        VirtualFileSystemStatistics statistics = getStatistics(root);
+    private static VirtualFileSystemStatistics printStatistics(SnapshotHierarchy root, String verb, String statisticsFor) {
+        VirtualFileSystemStatistics statistics = VirtualFileSystemStatistics.of(root);
         LOGGER.warn(
-            "Virtual file system {} information about {} files, {} directories and {} missing files {}",
+            "Virtual file system {} information about {} files, {} directories and {} missing files {} (~{} KiB)",
             verb,
-            statistics.getRetained(FileType.RegularFile),
-            statistics.getRetained(FileType.Directory),
-            statistics.getRetained(FileType.Missing),
-            statisticsFor
+            statistics.getRetainedRegularFiles(),
+            statistics.getRetainedDirectories(),
+            statistics.getRetainedMissingFiles(),
+            statisticsFor,
+            statistics.getEstimatedRetainedSize() / 1024
         );
-    }
-
-    private static VirtualFileSystemStatistics getStatistics(SnapshotHierarchy root) {
-        EnumMultiset<FileType> retained = EnumMultiset.create(FileType.class);
-        root.visitSnapshotRoots(snapshot -> snapshot.accept(new FileSystemSnapshotVisitor() {
-            @Override
-            public boolean preVisitDirectory(CompleteDirectorySnapshot directorySnapshot) {
-                retained.add(directorySnapshot.getType());
-                return true;
-            }
-
-            @Override
-            public void visitFile(CompleteFileSystemLocationSnapshot fileSnapshot) {
-                retained.add(fileSnapshot.getType());
-            }
-
-            @Override
-            public void postVisitDirectory(CompleteDirectorySnapshot directorySnapshot) {
-            }
-        }));
-        return new VirtualFileSystemStatistics(retained);
-    }
-
-    private static class VirtualFileSystemStatistics {
-        private final Multiset<FileType> retained;
-
-        public VirtualFileSystemStatistics(Multiset<FileType> retained) {
-            this.retained = retained;
-        }
-
-        public int getRetained(FileType fileType) {
-            return retained.count(fileType);
-        }
+        return statistics;
     }
 
     @Override
@@ -347,6 +359,10 @@ public void update(Iterable<String> locations, Runnable action) {
     @Override
     public void close() {
         getRoot().update(currentRoot -> {
+            if (snapshotHierarchyStore != null && watchRegistry != null) {
+                // The retained state is only up-to-date while changes are being watched
+                snapshotHierarchyStore.store(currentRoot);
+            }
             closeUnderLock();
             return currentRoot.empty();
         });
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.internal.watch.vfs
+
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.CompleteDirectorySnapshot
+import org.gradle.internal.snapshot.MissingFileSnapshot
+import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.internal.snapshot.SnapshotHierarchy
+import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
+import spock.lang.Specification
+
+class VirtualFileSystemStatisticsTest extends Specification {
+
+    def "counts retained snapshots and estimates their size"() {
+        def file = new RegularFileSnapshot("/root/dir/file.txt", "file.txt", HashCode.fromInt(1), DefaultFileMetadata.file(1, 1, AccessType.DIRECT))
+        def directory = new CompleteDirectorySnapshot("/root/dir", "dir", [file], HashCode.fromInt(2), AccessType.DIRECT)
+        def missingFile = new MissingFileSnapshot("/root/missing", AccessType.DIRECT)
+        def root = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE)
+            .store(directory.absolutePath, directory, SnapshotHierarchy.NodeDiffListener.NOOP)
+            .store(missingFile.absolutePath, missingFile, SnapshotHierarchy.NodeDiffListener.NOOP)
+
+        when:
+        def statistics = VirtualFileSystemStatistics.of(root)
+
+        then:
+        statistics.retainedRegularFiles == 1
+        statistics.retainedDirectories == 1
+        statistics.retainedMissingFiles == 1
+        statistics.estimatedRetainedSize > VirtualFileSystemStatistics.of(DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE)).estimatedRetainedSize
+    }
+
+    def "empty hierarchy retains nothing"() {
+        expect:
+        with(VirtualFileSystemStatistics.of(DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE))) {
+            retainedRegularFiles == 0
+            retainedDirectories == 0
+            retainedMissingFiles == 0
+            estimatedRetainedSize == 0
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.CompleteDirectorySnapshot
+import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot
+import org.gradle.internal.snapshot.MissingFileSnapshot
+import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.internal.snapshot.SnapshotHierarchy
+import org.gradle.internal.snapshot.impl.DirectorySnapshotter
+import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicBoolean
+
+@CleanupTestDirectory
+class SnapshotHierarchyStoreTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def stringInterner = new StringInterner()
+    def directorySnapshotter = new DirectorySnapshotter(TestFiles.fileHasher(), stringInterner)
+    def storeFile = temporaryFolder.file("store/snapshots.bin")
+    def emptyRoot = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE)
+
+    def "loads stored snapshots which did not change"() {
+        def directory = temporaryFolder.createDir("dir")
+        directory.file("a.txt").text = "a"
+        directory.file("sub/b.txt").text = "b"
+        def missingFile = temporaryFolder.file("missing")
+        def directorySnapshot = snapshotDirectory(directory)
+        def root = emptyRoot
+            .store(directory.absolutePath, directorySnapshot, SnapshotHierarchy.NodeDiffListener.NOOP)
+            .store(missingFile.absolutePath, new MissingFileSnapshot(missingFile.absolutePath, missingFile.name, AccessType.DIRECT), SnapshotHierarchy.NodeDiffListener.NOOP)
+
+        when:
+        createStore().store(root)
+        def loaded = createStore().load()
+
+        then:
+        loaded.every { it.upToDate }
+        def loadedRoot = addToHierarchy(loaded)
+        loadedRoot.getSnapshot(directory.absolutePath).get().hash == directorySnapshot.hash
+        loadedRoot.getSnapshot(directory.file("sub/b.txt").absolutePath).get().hash == directorySnapshot.children.find { it.name == "sub" }.children[0].hash
+        loadedRoot.getSnapshot(missingFile.absolutePath).get() instanceof MissingFileSnapshot
+        !storeFile.exists()
+    }
+
+    def "drops stored snapshots which changed"() {
+        def changedDirectory = temporaryFolder.createDir("changed")
+        def changedFile = changedDirectory.file("a.txt")
+        changedFile.text = "a"
+        def unchangedDirectory = temporaryFolder.createDir("unchanged")
+        unchangedDirectory.file("b.txt").text = "b"
+        def createdFile = temporaryFolder.file("created")
+        def root = emptyRoot
+            .store(changedDirectory.absolutePath, snapshotDirectory(changedDirectory), SnapshotHierarchy.NodeDiffListener.NOOP)
+            .store(unchangedDirectory.absolutePath, snapshotDirectory(unchangedDirectory), SnapshotHierarchy.NodeDiffListener.NOOP)
+            .store(createdFile.absolutePath, new MissingFileSnapshot(createdFile.absolutePath, createdFile.name, AccessType.DIRECT), SnapshotHierarchy.NodeDiffListener.NOOP)
+        createStore().store(root)
+
+        when:
+        changedFile.text = "changed content"
+        changedFile.lastModified = changedFile.lastModified() + 2000
+        createdFile.text = "created"
+        def upToDate = upToDateByPath(createStore().load())
+
+        then:
+        upToDate == [(changedDirectory.absolutePath): false, (unchangedDirectory.absolutePath): true, (createdFile.absolutePath): false]
+    }
+
+    def "checks stored snapshots against the file system when asked to"() {
+        def file = temporaryFolder.file("a.txt")
+        file.text = "a"
+        createStore().store(emptyRoot.store(file.absolutePath, snapshotFile(file), SnapshotHierarchy.NodeDiffListener.NOOP))
+
+        when:
+        def loaded = createStore().load()
+
+        then:
+        loaded*.upToDate == [true]
+
+        when:
+        file.text = "changed content"
+
+        then:
+        loaded*.upToDate == [false]
+    }
+
+    def "ignores snapshots stored with a different compatibility key"() {
+        def directory = temporaryFolder.createDir("dir")
+        directory.file("a.txt").text = "a"
+        new SnapshotHierarchyStore(storeFile, "other", TestFiles.fileSystem(), stringInterner)
+            .store(emptyRoot.store(directory.absolutePath, snapshotDirectory(directory), SnapshotHierarchy.NodeDiffListener.NOOP))
+
+        when:
+        def loaded = createStore().load()
+
+        then:
+        loaded.empty
+        !storeFile.exists()
+    }
+
+    private SnapshotHierarchyStore createStore() {
+        new SnapshotHierarchyStore(storeFile, "key", TestFiles.fileSystem(), stringInterner)
+    }
+
+    private SnapshotHierarchy addToHierarchy(List<SnapshotHierarchyStore.StoredSnapshot> storedSnapshots) {
+        storedSnapshots.inject(emptyRoot) { SnapshotHierarchy root, storedSnapshot ->
+            root.store(storedSnapshot.snapshot.absolutePath, storedSnapshot.snapshot, SnapshotHierarchy.NodeDiffListener.NOOP)
+        }
+    }
+
+    private static Map<String, Boolean> upToDateByPath(List<SnapshotHierarchyStore.StoredSnapshot> storedSnapshots) {
+        storedSnapshots.collectEntries { [(it.snapshot.absolutePath): it.upToDate] }
+    }
+
+    private CompleteFileSystemLocationSnapshot snapshotFile(File file) {
+        new RegularFileSnapshot(file.absolutePath, file.name, TestFiles.fileHasher().hash(file), TestFiles.fileSystem().stat(file))
+    }
+
+    private CompleteDirectorySnapshot snapshotDirectory(File directory) {
+        directorySnapshotter.snapshot(directory.absolutePath, null, new AtomicBoolean(false)) as CompleteDirectorySnapshot
+    }
+}
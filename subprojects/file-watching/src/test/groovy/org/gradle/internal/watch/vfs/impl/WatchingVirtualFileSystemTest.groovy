@@ -42,7 +42,8 @@ class WatchingVirtualFileSystemTest extends Specification {
         delegate,
         capturingUpdateFunctionDecorator,
         { -> true },
-        daemonDocumentationIndex
+        daemonDocumentationIndex,
+        null
     )
     def snapshotHierarchy = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE)
 
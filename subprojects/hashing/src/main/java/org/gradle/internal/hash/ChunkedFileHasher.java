@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.internal.hash;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+
+/**
+ * Hashes files using a {@link ChunkedStreamHasher}, hashing the chunks of large files in parallel.
+ */
+public class ChunkedFileHasher implements FileHasher {
+    private final ChunkedStreamHasher streamHasher;
+    private final Executor executor;
+
+    public ChunkedFileHasher(ChunkedStreamHasher streamHasher, Executor executor) {
+        this.streamHasher = streamHasher;
+        this.executor = executor;
+    }
+
+    @Override
+    public HashCode hash(File file) {
+        return streamHasher.hash(file, executor);
+    }
+
+    @Override
+    public HashCode hash(File file, long length, long lastModified) {
+        return hash(file);
+    }
+}
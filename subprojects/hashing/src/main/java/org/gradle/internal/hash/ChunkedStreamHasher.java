@@ -0,0 +1,194 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.internal.hash;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Hashes content as a sequence of fixed size chunks. Each chunk is hashed on its own, and the result is the hash of the chunk hashes.
+ *
+ * <p>
+ * This allows the chunks of large files to be hashed in parallel, see {@link #hash(File, Executor)}, while hashing a stream
+ * with the same content gives the same result. The hashes are different from the ones created by {@link DefaultStreamHasher},
+ * and depend on the hash function and the chunk size, both of which are part of the signature mixed into every hash.
+ * </p>
+ */
+public class ChunkedStreamHasher implements StreamHasher {
+    public static final int CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final HashFunction hashFunction;
+    private final String name;
+    private final HashCode signature;
+    private final Queue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(16);
+
+    /**
+     * @param name Identifies the hash function. Must be changed whenever the hash function is.
+     */
+    public ChunkedStreamHasher(HashFunction hashFunction, String name) {
+        this.hashFunction = hashFunction;
+        this.name = name;
+        this.signature = Hashing.signature(ChunkedStreamHasher.class.getName() + ":" + name + ":" + CHUNK_SIZE);
+    }
+
+    /**
+     * Identifies the hashes created by this hasher.
+     */
+    public String getName() {
+        return "chunked-" + name;
+    }
+
+    @Override
+    public HashCode hash(InputStream inputStream) {
+        try {
+            return doHash(inputStream, ByteStreams.nullOutputStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create hash for content.", e);
+        }
+    }
+
+    @Override
+    public HashCode hashCopy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        return doHash(inputStream, outputStream);
+    }
+
+    /**
+     * Returns the hash of the given file, hashing its chunks in parallel using the given executor when the file consists of more than one chunk.
+     * The result is the same as for {@link #hash(InputStream)} with the content of the file.
+     */
+    public HashCode hash(File file, Executor executor) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length <= CHUNK_SIZE) {
+                return doHash(Channels.newInputStream(channel), ByteStreams.nullOutputStream());
+            }
+            List<CompletableFuture<HashCode>> chunkHashes = new ArrayList<>();
+            for (long position = 0; position < length; position += CHUNK_SIZE) {
+                long chunkStart = position;
+                int chunkLength = (int) Math.min(CHUNK_SIZE, length - position);
+                chunkHashes.add(CompletableFuture.supplyAsync(() -> hashChunk(channel, chunkStart, chunkLength), executor));
+            }
+            PrimitiveHasher hasher = hashFunction.newPrimitiveHasher();
+            hasher.putHash(signature);
+            for (CompletableFuture<HashCode> chunkHash : chunkHashes) {
+                hasher.putHash(chunkHash.join());
+            }
+            return hasher.hash();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw (UncheckedIOException) e.getCause();
+            }
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create hash for file '%s'.", file), e);
+        }
+    }
+
+    private HashCode hashChunk(FileChannel channel, long start, int length) {
+        byte[] buffer = takeBuffer();
+        try {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+            PrimitiveHasher hasher = hashFunction.newPrimitiveHasher();
+            long position = start;
+            long end = start + length;
+            while (position < end) {
+                byteBuffer.clear();
+                byteBuffer.limit((int) Math.min(buffer.length, end - position));
+                int nread = channel.read(byteBuffer, position);
+                if (nread < 0) {
+                    break;
+                }
+                hasher.putBytes(buffer, 0, nread);
+                position += nread;
+            }
+            return hasher.hash();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            returnBuffer(buffer);
+        }
+    }
+
+    private HashCode doHash(InputStream inputStream, OutputStream outputStream) throws IOException {
+        byte[] buffer = takeBuffer();
+        try {
+            PrimitiveHasher hasher = hashFunction.newPrimitiveHasher();
+            hasher.putHash(signature);
+            PrimitiveHasher chunkHasher = null;
+            int chunkRemaining = 0;
+            while (true) {
+                int nread = inputStream.read(buffer);
+                if (nread < 0) {
+                    break;
+                }
+                outputStream.write(buffer, 0, nread);
+                int offset = 0;
+                while (offset < nread) {
+                    if (chunkHasher == null) {
+                        chunkHasher = hashFunction.newPrimitiveHasher();
+                        chunkRemaining = CHUNK_SIZE;
+                    }
+                    int count = Math.min(nread - offset, chunkRemaining);
+                    chunkHasher.putBytes(buffer, offset, count);
+                    offset += count;
+                    chunkRemaining -= count;
+                    if (chunkRemaining == 0) {
+                        hasher.putHash(chunkHasher.hash());
+                        chunkHasher = null;
+                    }
+                }
+            }
+            if (chunkHasher != null) {
+                hasher.putHash(chunkHasher.hash());
+            }
+            return hasher.hash();
+        } finally {
+            returnBuffer(buffer);
+        }
+    }
+
+    private void returnBuffer(byte[] buffer) {
+        // Retain buffer if there is capacity in the queue, otherwise discard
+        buffers.offer(buffer);
+    }
+
+    private byte[] takeBuffer() {
+        byte[] buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = new byte[BUFFER_SIZE];
+        }
+        return buffer;
+    }
+}
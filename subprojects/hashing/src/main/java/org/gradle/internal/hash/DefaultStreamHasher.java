@@ -26,6 +26,7 @@
 
 public class DefaultStreamHasher implements StreamHasher {
     private static final HashCode SIGNATURE = Hashing.signature(DefaultStreamHasher.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     private final Queue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(16);
 
@@ -70,7 +71,7 @@ private void returnBuffer(byte[] buffer) {
     private byte[] takeBuffer() {
         byte[] buffer = buffers.poll();
         if (buffer == null) {
-            buffer = new byte[8192];
+            buffer = new byte[BUFFER_SIZE];
         }
         return buffer;
     }
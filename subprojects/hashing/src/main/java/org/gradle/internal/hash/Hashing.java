@@ -42,6 +42,8 @@ private Hashing() {}
 
     private static final HashFunction SHA512 = MessageDigestHashFunction.of("SHA-512");
 
+    private static final HashFunction MURMUR3 = new GuavaHashFunction(com.google.common.hash.Hashing.murmur3_128());
+
     private static final HashFunction DEFAULT = MD5;
 
     /**
@@ -138,6 +140,13 @@ public static HashFunction sha512() {
         return SHA512;
     }
 
+    /**
+     * 128 bit Murmur3 hashing function. This is much faster than the message digests, but not cryptographically secure.
+     */
+    public static HashFunction murmur3() {
+        return MURMUR3;
+    }
+
     private static abstract class MessageDigestHashFunction implements HashFunction {
         private final int hexDigits;
 
@@ -315,6 +324,110 @@ public HashCode hash() {
         }
     }
 
+    private static class GuavaHashFunction implements HashFunction {
+        private final com.google.common.hash.HashFunction delegate;
+
+        public GuavaHashFunction(com.google.common.hash.HashFunction delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public PrimitiveHasher newPrimitiveHasher() {
+            return new GuavaHasher(delegate.newHasher());
+        }
+
+        @Override
+        public Hasher newHasher() {
+            return new DefaultHasher(newPrimitiveHasher());
+        }
+
+        @Override
+        public HashCode hashBytes(byte[] bytes) {
+            PrimitiveHasher hasher = newPrimitiveHasher();
+            hasher.putBytes(bytes);
+            return hasher.hash();
+        }
+
+        @Override
+        public HashCode hashString(CharSequence string) {
+            PrimitiveHasher hasher = newPrimitiveHasher();
+            hasher.putString(string);
+            return hasher.hash();
+        }
+
+        @Override
+        public int getHexDigits() {
+            return delegate.bits() / 4;
+        }
+    }
+
+    private static class GuavaHasher implements PrimitiveHasher {
+        private com.google.common.hash.Hasher hasher;
+
+        public GuavaHasher(com.google.common.hash.Hasher hasher) {
+            this.hasher = hasher;
+        }
+
+        private com.google.common.hash.Hasher getHasher() {
+            if (hasher == null) {
+                throw new IllegalStateException("Cannot reuse hasher!");
+            }
+            return hasher;
+        }
+
+        @Override
+        public void putByte(byte b) {
+            getHasher().putByte(b);
+        }
+
+        @Override
+        public void putBytes(byte[] bytes) {
+            getHasher().putBytes(bytes);
+        }
+
+        @Override
+        public void putBytes(byte[] bytes, int off, int len) {
+            getHasher().putBytes(bytes, off, len);
+        }
+
+        @Override
+        public void putInt(int value) {
+            getHasher().putInt(value);
+        }
+
+        @Override
+        public void putLong(long value) {
+            getHasher().putLong(value);
+        }
+
+        @Override
+        public void putDouble(double value) {
+            getHasher().putDouble(value);
+        }
+
+        @Override
+        public void putBoolean(boolean value) {
+            putByte((byte) (value ? 1 : 0));
+        }
+
+        @Override
+        public void putString(CharSequence value) {
+            putBytes(value.toString().getBytes(Charsets.UTF_8));
+        }
+
+        @Override
+        public void putHash(HashCode hashCode) {
+            putBytes(hashCode.getBytes());
+        }
+
+        @Override
+        public HashCode hash() {
+            byte[] bytes = getHasher().hash().asBytes();
+            hasher = null;
+            return HashCode.fromBytesNoCopy(bytes);
+        }
+    }
+
     private static class DefaultHasher implements Hasher {
         private final PrimitiveHasher hasher;
         private String invalidReason;
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.internal.hash
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+
+import static org.gradle.internal.hash.ChunkedStreamHasher.CHUNK_SIZE
+
+class ChunkedStreamHasherTest extends Specification {
+    @Rule
+    TemporaryFolder tmpDir = new TemporaryFolder()
+
+    def hasher = new ChunkedStreamHasher(Hashing.murmur3(), "murmur3")
+
+    def "hashing file in parallel gives same result as hashing its content as stream"() {
+        def executor = Executors.newFixedThreadPool(4)
+        def content = new byte[length]
+        new Random(1234L).nextBytes(content)
+        def file = tmpDir.newFile()
+        file.bytes = content
+
+        expect:
+        hasher.hash(file, executor) == hasher.hash(new ByteArrayInputStream(content))
+
+        cleanup:
+        executor.shutdown()
+
+        where:
+        length << [0, 1, CHUNK_SIZE, CHUNK_SIZE + 1, 3 * CHUNK_SIZE + 17]
+    }
+
+    def "can hash input while copying it"() {
+        def output = new ByteArrayOutputStream()
+
+        when:
+        def hash = hasher.hashCopy(new ByteArrayInputStream("hello".bytes), output)
+
+        then:
+        hash == hasher.hash(new ByteArrayInputStream("hello".bytes))
+        output.toByteArray() == "hello".bytes
+    }
+
+    def "hash depends on the hash function"() {
+        def md5Hasher = new ChunkedStreamHasher(Hashing.md5(), "md5")
+
+        expect:
+        md5Hasher.hash(new ByteArrayInputStream("hello".bytes)) != hasher.hash(new ByteArrayInputStream("hello".bytes))
+        md5Hasher.hash(new ByteArrayInputStream("hello".bytes)) != new DefaultStreamHasher().hash(new ByteArrayInputStream("hello".bytes))
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.tooling.internal.provider;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+/**
+ * Updates the virtual file system at the end of a build, so that it retains the state which is still valid for the next build.
+ */
+public final class BuildFinishedFileSystemWatchingBuildOperationType implements BuildOperationType<BuildFinishedFileSystemWatchingBuildOperationType.Details, BuildFinishedFileSystemWatchingBuildOperationType.Result> {
+    public interface Details {
+        boolean isWatchingEnabled();
+    }
+
+    public interface Result {
+        int getRetainedRegularFiles();
+
+        int getRetainedDirectories();
+
+        int getRetainedMissingFiles();
+
+        /**
+         * The estimated number of bytes of heap occupied by the state retained until the next build.
+         */
+        long getEstimatedRetainedSize();
+    }
+
+    private BuildFinishedFileSystemWatchingBuildOperationType() {
+    }
+}
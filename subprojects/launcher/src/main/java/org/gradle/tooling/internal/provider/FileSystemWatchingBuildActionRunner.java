@@ -23,7 +23,12 @@
 import org.gradle.internal.invocation.BuildAction;
 import org.gradle.internal.invocation.BuildActionRunner;
 import org.gradle.internal.invocation.BuildController;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.RunnableBuildOperation;
 import org.gradle.internal.service.scopes.VirtualFileSystemServices;
+import org.gradle.internal.watch.vfs.VirtualFileSystemStatistics;
 import org.gradle.internal.watch.vfs.WatchingAwareVirtualFileSystem;
 import org.gradle.util.IncubationLogger;
 
@@ -51,7 +56,40 @@ public Result run(BuildAction action, BuildController buildController) {
         try {
             return delegate.run(action, buildController);
         } finally {
-            virtualFileSystem.beforeBuildFinished(watchFileSystem);
+            BuildOperationExecutor buildOperationExecutor = gradle.getServices().get(BuildOperationExecutor.class);
+            buildOperationExecutor.run(new RunnableBuildOperation() {
+                @Override
+                public void run(BuildOperationContext context) {
+                    VirtualFileSystemStatistics statistics = virtualFileSystem.beforeBuildFinished(watchFileSystem);
+                    context.setResult(new BuildFinishedFileSystemWatchingBuildOperationType.Result() {
+                        @Override
+                        public int getRetainedRegularFiles() {
+                            return statistics.getRetainedRegularFiles();
+                        }
+
+                        @Override
+                        public int getRetainedDirectories() {
+                            return statistics.getRetainedDirectories();
+                        }
+
+                        @Override
+                        public int getRetainedMissingFiles() {
+                            return statistics.getRetainedMissingFiles();
+                        }
+
+                        @Override
+                        public long getEstimatedRetainedSize() {
+                            return statistics.getEstimatedRetainedSize();
+                        }
+                    });
+                }
+
+                @Override
+                public BuildOperationDescriptor.Builder description() {
+                    BuildFinishedFileSystemWatchingBuildOperationType.Details details = () -> watchFileSystem;
+                    return BuildOperationDescriptor.displayName("Build finished for file system watching").details(details);
+                }
+            });
         }
     }
 
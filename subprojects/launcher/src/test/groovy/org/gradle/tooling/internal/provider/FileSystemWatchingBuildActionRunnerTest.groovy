@@ -21,7 +21,10 @@ import org.gradle.api.internal.StartParameterInternal
 import org.gradle.internal.invocation.BuildAction
 import org.gradle.internal.invocation.BuildActionRunner
 import org.gradle.internal.invocation.BuildController
+import org.gradle.internal.operations.BuildOperationExecutor
+import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.service.ServiceRegistry
+import org.gradle.internal.watch.vfs.VirtualFileSystemStatistics
 import org.gradle.internal.watch.vfs.WatchingAwareVirtualFileSystem
 import spock.lang.Specification
 import spock.lang.Unroll
@@ -30,12 +33,14 @@ import spock.lang.Unroll
 class FileSystemWatchingBuildActionRunnerTest extends Specification {
 
     def virtualFileSystem = Mock(WatchingAwareVirtualFileSystem)
+    def buildOperationExecutor = new TestBuildOperationExecutor()
     def startParameter = Mock(StartParameterInternal)
     def buildController = Stub(BuildController) {
         getGradle() >> Stub(GradleInternal) {
             getStartParameter() >> startParameter
             getServices() >> Stub(ServiceRegistry) {
                 get(WatchingAwareVirtualFileSystem) >> virtualFileSystem
+                get(BuildOperationExecutor) >> buildOperationExecutor
             }
         }
     }
@@ -57,7 +62,16 @@ class FileSystemWatchingBuildActionRunnerTest extends Specification {
         1 * delegate.run(buildAction, buildController)
 
         then:
-        1 * virtualFileSystem.beforeBuildFinished(watchFsEnabled)
+        1 * virtualFileSystem.beforeBuildFinished(watchFsEnabled) >> new VirtualFileSystemStatistics(3, 2, 1, 1024)
+
+        and:
+        buildOperationExecutor.log.mostRecentDetails(BuildFinishedFileSystemWatchingBuildOperationType).watchingEnabled == watchFsEnabled
+        with(buildOperationExecutor.log.mostRecentResult(BuildFinishedFileSystemWatchingBuildOperationType)) {
+            retainedRegularFiles == 3
+            retainedDirectories == 2
+            retainedMissingFiles == 1
+            estimatedRetainedSize == 1024
+        }
 
         where:
         watchFsEnabled << [true, false]
@@ -29,7 +29,9 @@ public interface AsyncCacheAccess {
     /**
      * Runs the given action, blocking until the result is available.
      *
-     * All actions submitted using {@link #enqueue(Runnable)} must complete before the action is executed.
+     * All actions submitted using {@link #enqueue(Runnable)} must complete before the action is executed, unless the implementation allows concurrent reads.
+     * In that case the action may run immediately on the calling thread, concurrently with other reads and with submitted actions, and the caller is responsible for
+     * observing its own pending updates.
      */
     <T> T read(Factory<T> task);
 
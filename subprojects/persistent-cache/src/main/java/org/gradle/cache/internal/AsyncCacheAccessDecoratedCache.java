@@ -23,10 +23,14 @@
 import org.gradle.internal.Factory;
 
 import javax.annotation.Nullable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsyncPersistentIndexedCache<K, V> {
     private final AsyncCacheAccess asyncCacheAccess;
     private final MultiProcessSafePersistentIndexedCache<K, V> persistentCache;
+    // Updates that have been submitted but not yet applied to the persistent cache, so that reads which don't wait for pending updates still see them
+    private final ConcurrentMap<K, PendingUpdate<V>> pendingUpdates = new ConcurrentHashMap<K, PendingUpdate<V>>();
 
     public AsyncCacheAccessDecoratedCache(AsyncCacheAccess asyncCacheAccess, MultiProcessSafePersistentIndexedCache<K, V> persistentCache) {
         this.asyncCacheAccess = asyncCacheAccess;
@@ -41,6 +45,10 @@ public String toString() {
     @Nullable
     @Override
     public V get(final K key) {
+        PendingUpdate<V> pendingUpdate = pendingUpdates.get(key);
+        if (pendingUpdate != null) {
+            return pendingUpdate.value;
+        }
         return asyncCacheAccess.read(new Factory<V>() {
             @Override
             public V create() {
@@ -56,6 +64,8 @@ public V get(K key, Transformer<? extends V, ? super K> producer, Runnable compl
 
     @Override
     public void putLater(final K key, final V value, final Runnable completion) {
+        final PendingUpdate<V> pendingUpdate = new PendingUpdate<V>(value);
+        pendingUpdates.put(key, pendingUpdate);
         try {
             asyncCacheAccess.enqueue(new Runnable() {
                 @Override
@@ -63,11 +73,13 @@ public void run() {
                     try {
                         persistentCache.put(key, value);
                     } finally {
+                        pendingUpdates.remove(key, pendingUpdate);
                         completion.run();
                     }
                 }
             });
         } catch (RuntimeException e) {
+            pendingUpdates.remove(key, pendingUpdate);
             completion.run();
             throw e;
         }
@@ -75,6 +87,8 @@ public void run() {
 
     @Override
     public void removeLater(final K key, final Runnable completion) {
+        final PendingUpdate<V> pendingUpdate = new PendingUpdate<V>(null);
+        pendingUpdates.put(key, pendingUpdate);
         try {
             asyncCacheAccess.enqueue(new Runnable() {
                 @Override
@@ -82,11 +96,13 @@ public void run() {
                     try {
                         persistentCache.remove(key);
                     } finally {
+                        pendingUpdates.remove(key, pendingUpdate);
                         completion.run();
                     }
                 }
             });
         } catch (RuntimeException e) {
+            pendingUpdates.remove(key, pendingUpdate);
             completion.run();
             throw e;
         }
@@ -106,4 +122,13 @@ public void finishWork() {
     public void beforeLockRelease(FileLock.State currentCacheState) {
         persistentCache.beforeLockRelease(currentCacheState);
     }
+
+    private static class PendingUpdate<V> {
+        @Nullable
+        final V value;
+
+        PendingUpdate(@Nullable V value) {
+            this.value = value;
+        }
+    }
 }
@@ -41,6 +41,7 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
     private final CacheAccess cacheAccess;
     private final long batchWindowMillis;
     private final long maximumLockingTimeMillis;
+    private final boolean concurrentReads;
     private boolean closed;
     private boolean workerCompleted;
     private boolean stopSeen;
@@ -48,8 +49,16 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
     private final ExecutorPolicy.CatchAndRecordFailures failureHandler = new ExecutorPolicy.CatchAndRecordFailures();
 
     CacheAccessWorker(String displayName, CacheAccess cacheAccess) {
+        this(displayName, cacheAccess, false);
+    }
+
+    /**
+     * @param concurrentReads When true, reads run immediately on the calling thread instead of being queued behind pending updates.
+     */
+    CacheAccessWorker(String displayName, CacheAccess cacheAccess, boolean concurrentReads) {
         this.displayName = displayName;
         this.cacheAccess = cacheAccess;
+        this.concurrentReads = concurrentReads;
         this.batchWindowMillis = 200;
         this.maximumLockingTimeMillis = 5000;
         HeapProportionalCacheSizer heapProportionalCacheSizer = new HeapProportionalCacheSizer();
@@ -75,6 +84,13 @@ private void addToQueue(Runnable task) {
 
     @Override
     public <T> T read(final Factory<T> task) {
+        if (concurrentReads) {
+            if (closed) {
+                throw new IllegalStateException("The worker has already been closed. Cannot read from cache.");
+            }
+            // Hold the cross-process file lock for the duration of the read, acquiring it if required, so that the read takes part in lock contention
+            return cacheAccess.withFileLock(task);
+        }
         FutureTask<T> futureTask = new FutureTask<T>(new Callable<T>() {
             @Override
             public T call() throws Exception {
@@ -19,6 +19,7 @@
 import com.google.common.base.Objects;
 import org.gradle.api.Action;
 import org.gradle.api.GradleException;
+import org.gradle.api.Transformer;
 import org.gradle.cache.AsyncCacheAccess;
 import org.gradle.cache.CacheDecorator;
 import org.gradle.cache.FileAccess;
@@ -32,6 +33,7 @@
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
+import org.gradle.cache.internal.mapped.MappedPersistentIndexedCache;
 import org.gradle.internal.Cast;
 import org.gradle.internal.Factories;
 import org.gradle.internal.Factory;
@@ -61,6 +63,16 @@
 @ThreadSafe
 public class DefaultCacheAccess implements CacheCoordinator {
     private final static Logger LOG = LoggerFactory.getLogger(DefaultCacheAccess.class);
+    /**
+     * When set to true, indexed caches are backed by {@link MappedPersistentIndexedCache} rather than {@link BTreePersistentIndexedCache}.
+     */
+    public static final String MAPPED_INDEXED_CACHES_PROPERTY = "org.gradle.cache.indexed.mapped";
+    /**
+     * When set to true, reads from decorated indexed caches run on the calling thread rather than being queued on the cache worker, so that they can run concurrently
+     * with each other and with pending writes. Writes are still applied by the cache worker, one at a time. As reads then need a thread-safe store, this implies
+     * {@link #MAPPED_INDEXED_CACHES_PROPERTY}.
+     */
+    public static final String CONCURRENT_READS_PROPERTY = "org.gradle.cache.indexed.concurrent-reads";
     private final static Runnable NO_OP = () -> {
         // Empty initial operation to trigger onStartWork calls
     };
@@ -70,9 +82,12 @@ public class DefaultCacheAccess implements CacheCoordinator {
     private final CacheCleanupAction cleanupAction;
     private final ExecutorFactory executorFactory;
     private final FileAccess fileAccess;
+    private final FileAccess concurrentFileAccess;
     private final Map<String, IndexedCacheEntry<?, ?>> caches = new HashMap<String, IndexedCacheEntry<?, ?>>();
     private final AbstractCrossProcessCacheAccess crossProcessCacheAccess;
     private final CacheAccessOperationsStack operations;
+    private final boolean concurrentReads = Boolean.getBoolean(CONCURRENT_READS_PROPERTY);
+    private final boolean mappedIndexedCaches = concurrentReads || Boolean.getBoolean(MAPPED_INDEXED_CACHES_PROPERTY);
 
     private ManagedExecutor cacheUpdateExecutor;
     private CacheAccessWorker cacheAccessWorker;
@@ -100,18 +115,22 @@ public DefaultCacheAccess(String cacheDisplayName, File lockTarget, LockOptions
             case Shared:
                 crossProcessCacheAccess = new FixedSharedModeCrossProcessCacheAccess(cacheDisplayName, lockTarget, lockOptions, lockManager, initializationAction, onFileLockAcquireAction, onFileLockReleaseAction);
                 fileAccess = new UnitOfWorkFileAccess();
+                concurrentFileAccess = new ConcurrentFileAccess();
                 break;
             case Exclusive:
                 crossProcessCacheAccess = new FixedExclusiveModeCrossProcessCacheAccess(cacheDisplayName, lockTarget, lockOptions, lockManager, initializationAction, onFileLockAcquireAction, onFileLockReleaseAction);
                 fileAccess = new UnitOfWorkFileAccess();
+                concurrentFileAccess = new ConcurrentFileAccess();
                 break;
             case OnDemand:
                 crossProcessCacheAccess = new LockOnDemandCrossProcessCacheAccess(cacheDisplayName, lockTarget, lockOptions.withMode(Exclusive), lockManager, stateLock, initializationAction, onFileLockAcquireAction, onFileLockReleaseAction);
                 fileAccess = new UnitOfWorkFileAccess();
+                concurrentFileAccess = new ConcurrentFileAccess();
                 break;
             case None:
                 crossProcessCacheAccess = new NoLockingCacheAccess(this::notifyFinish);
                 fileAccess = TransparentFileAccess.INSTANCE;
+                concurrentFileAccess = TransparentFileAccess.INSTANCE;
                 break;
             default:
                 throw new IllegalArgumentException();
@@ -120,7 +139,7 @@ public DefaultCacheAccess(String cacheDisplayName, File lockTarget, LockOptions
 
     private synchronized AsyncCacheAccess getCacheAccessWorker() {
         if (cacheAccessWorker == null) {
-            cacheAccessWorker = new CacheAccessWorker(cacheDisplayName, this);
+            cacheAccessWorker = new CacheAccessWorker(cacheDisplayName, this, concurrentReads);
             cacheUpdateExecutor = executorFactory.create("Cache worker for " + cacheDisplayName);
             cacheUpdateExecutor.execute(cacheAccessWorker);
         }
@@ -282,10 +301,12 @@ public <K, V> MultiProcessSafePersistentIndexedCache<K, V> newCache(final Persis
             if (entry == null) {
                 File cacheFile = findCacheFile(parameters);
                 LOG.debug("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
-                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                Factory<IndexedCacheStore<K, V>> indexedCacheFactory = new IndexedCacheStoreFactory<>(cacheFile, parameters);
 
-                MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
                 CacheDecorator decorator = parameters.getCacheDecorator();
+                // Only decorated caches apply their writes on the cache worker, so only those can be read concurrently
+                FileAccess indexedCacheFileAccess = decorator != null && concurrentReads ? concurrentFileAccess : fileAccess;
+                MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, indexedCacheFileAccess);
                 if (decorator != null) {
                     indexedCache = decorator.decorate(cacheFile.getAbsolutePath(), parameters.getCacheName(), indexedCache, crossProcessCacheAccess, getCacheAccessWorker());
                     if (fileLock == null) {
@@ -307,7 +328,8 @@ public <K, V> MultiProcessSafePersistentIndexedCache<K, V> newCache(final Persis
     }
 
     private <K, V> File findCacheFile(PersistentIndexedCacheParameters<K, V> parameters) {
-        return new File(baseDir, parameters.getCacheName() + ".bin");
+        // Both formats use their own file, so that switching between them doesn't require the other to recognize the file
+        return new File(baseDir, parameters.getCacheName() + (mappedIndexedCaches ? ".mapped.bin" : ".bin"));
     }
 
     @Override
@@ -315,7 +337,10 @@ public <K, V> boolean cacheExists(PersistentIndexedCacheParameters<K, V> paramet
         return findCacheFile(parameters).exists();
     }
 
-    <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+    <K, V> IndexedCacheStore<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        if (mappedIndexedCaches) {
+            return new MappedPersistentIndexedCache<>(cacheFile, keySerializer, valueSerializer);
+        }
         return new BTreePersistentIndexedCache<>(cacheFile, keySerializer, valueSerializer);
     }
 
@@ -441,12 +466,91 @@ public <T> T readFile(Factory<? extends T> action) throws LockTimeoutException {
 
         @Override
         public void updateFile(Runnable action) throws LockTimeoutException {
-            getFileLock().updateFile(action);
+            FileLock fileLock = getFileLock();
+            synchronized (fileLock) {
+                fileLock.updateFile(action);
+            }
         }
 
         @Override
         public void writeFile(Runnable action) throws LockTimeoutException {
-            getFileLock().writeFile(action);
+            FileLock fileLock = getFileLock();
+            synchronized (fileLock) {
+                fileLock.writeFile(action);
+            }
+        }
+    }
+
+    /**
+     * Allows any thread to access the files, rather than only the thread that owns the cache. Threads that do not own the cache acquire the file lock
+     * for each access, as for {@link #withFileLock(Factory)}, so that the lock is not released while the files are in use.
+     * Updates to the files are still made one at a time, as they also update the state of the file lock.
+     */
+    private class ConcurrentFileAccess extends AbstractFileAccess {
+        @Override
+        public String toString() {
+            return cacheDisplayName;
+        }
+
+        @Override
+        public <T> T readFile(Factory<? extends T> action) throws LockTimeoutException {
+            return withHeldFileLock(fileLock -> {
+                // Writes mark the file dirty while they run, so check integrity under the same monitor
+                synchronized (fileLock) {
+                    fileLock.readFile(Factories.constant(null));
+                }
+                return action.create();
+            });
+        }
+
+        @Override
+        public void updateFile(Runnable action) throws LockTimeoutException {
+            withHeldFileLock(fileLock -> {
+                synchronized (fileLock) {
+                    fileLock.updateFile(action);
+                }
+                return null;
+            });
+        }
+
+        @Override
+        public void writeFile(Runnable action) throws LockTimeoutException {
+            withHeldFileLock(fileLock -> {
+                synchronized (fileLock) {
+                    fileLock.writeFile(action);
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Runs the given action with the file lock held. The owner of the cache already holds the lock, including while the lock is being acquired or released;
+     * any other thread acquires it for the duration of the action.
+     */
+    private <T> T withHeldFileLock(Transformer<T, FileLock> action) {
+        boolean ownedByCurrentThread;
+        stateLock.lock();
+        try {
+            ownedByCurrentThread = owner == Thread.currentThread();
+        } finally {
+            stateLock.unlock();
+        }
+        if (ownedByCurrentThread) {
+            return action.transform(getHeldFileLock());
+        }
+        return crossProcessCacheAccess.withFileLock(() -> action.transform(getHeldFileLock()));
+    }
+
+    private FileLock getHeldFileLock() {
+        stateLock.lock();
+        try {
+            if (fileLock == null) {
+                throw new IllegalStateException(String.format("The %s has not been locked.", cacheDisplayName));
+            }
+            return fileLock;
+        } finally {
+            stateLock.unlock();
         }
     }
 
@@ -458,6 +562,33 @@ FileAccess getFileAccess() {
         return fileAccess;
     }
 
+    /**
+     * Creates the store of an indexed cache each time the cache is opened. A memory-mapped store is reopened instead, so that it keeps its index across lock cycles.
+     */
+    private class IndexedCacheStoreFactory<K, V> implements Factory<IndexedCacheStore<K, V>> {
+        private final File cacheFile;
+        private final PersistentIndexedCacheParameters<K, V> parameters;
+        private MappedPersistentIndexedCache<K, V> mappedStore;
+
+        IndexedCacheStoreFactory(File cacheFile, PersistentIndexedCacheParameters<K, V> parameters) {
+            this.cacheFile = cacheFile;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public IndexedCacheStore<K, V> create() {
+            if (mappedStore != null) {
+                mappedStore.reopen();
+                return mappedStore;
+            }
+            IndexedCacheStore<K, V> store = doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+            if (store instanceof MappedPersistentIndexedCache) {
+                mappedStore = (MappedPersistentIndexedCache<K, V>) store;
+            }
+            return store;
+        }
+    }
+
     private static class IndexedCacheEntry<K, V> {
         private final MultiProcessSafePersistentIndexedCache<K, V> cache;
         private final PersistentIndexedCacheParameters<K, V> parameters;
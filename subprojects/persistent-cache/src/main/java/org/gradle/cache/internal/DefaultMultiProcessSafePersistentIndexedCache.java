@@ -20,15 +20,20 @@
 import org.gradle.cache.FileIntegrityViolationException;
 import org.gradle.cache.FileLock;
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
-import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.internal.Factory;
 
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements MultiProcessSafePersistentIndexedCache<K, V> {
     private final FileAccess fileAccess;
-    private final Factory<BTreePersistentIndexedCache<K, V>> factory;
-    private BTreePersistentIndexedCache<K, V> cache;
+    private final Factory<IndexedCacheStore<K, V>> factory;
+    // Read by concurrent readers when the cache is opened for concurrent reads, see DefaultCacheAccess
+    private volatile IndexedCacheStore<K, V> cache;
+    // Held while using the store, so that it is not closed while other threads are still using it
+    private final ReadWriteLock storeLock = new ReentrantReadWriteLock();
 
-    public DefaultMultiProcessSafePersistentIndexedCache(Factory<BTreePersistentIndexedCache<K, V>> factory, FileAccess fileAccess) {
+    public DefaultMultiProcessSafePersistentIndexedCache(Factory<IndexedCacheStore<K, V>> factory, FileAccess fileAccess) {
         this.factory = factory;
         this.fileAccess = fileAccess;
     }
@@ -40,12 +45,17 @@ public String toString() {
 
     @Override
     public V get(final K key) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        getCache();
         try {
             return fileAccess.readFile(new Factory<V>() {
                 @Override
                 public V create() {
-                    return cache.get(key);
+                    return withStore(new Transformer<V, IndexedCacheStore<K, V>>() {
+                        @Override
+                        public V transform(IndexedCacheStore<K, V> store) {
+                            return store.get(key);
+                        }
+                    });
                 }
             });
         } catch (FileIntegrityViolationException e) {
@@ -65,26 +75,38 @@ public V get(K key, Transformer<? extends V, ? super K> producer) {
 
     @Override
     public void put(final K key, final V value) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        getCache();
         // Use writeFile because the cache can internally recover from datafile
         // corruption, so we don't care at this level if it's corrupt
         fileAccess.writeFile(new Runnable() {
             @Override
             public void run() {
-                cache.put(key, value);
+                withStore(new Transformer<Void, IndexedCacheStore<K, V>>() {
+                    @Override
+                    public Void transform(IndexedCacheStore<K, V> store) {
+                        store.put(key, value);
+                        return null;
+                    }
+                });
             }
         });
     }
 
     @Override
     public void remove(final K key) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        getCache();
         // Use writeFile because the cache can internally recover from datafile
         // corruption, so we don't care at this level if it's corrupt
         fileAccess.writeFile(new Runnable() {
             @Override
             public void run() {
-                cache.remove(key);
+                withStore(new Transformer<Void, IndexedCacheStore<K, V>>() {
+                    @Override
+                    public Void transform(IndexedCacheStore<K, V> store) {
+                        store.remove(key);
+                        return null;
+                    }
+                });
             }
         });
     }
@@ -96,16 +118,20 @@ public void afterLockAcquire(FileLock.State currentCacheState) {
     @Override
     public void finishWork() {
         if (cache != null) {
-            try {
-                fileAccess.writeFile(new Runnable() {
-                    @Override
-                    public void run() {
-                        cache.close();
+            fileAccess.writeFile(new Runnable() {
+                @Override
+                public void run() {
+                    storeLock.writeLock().lock();
+                    try {
+                        if (cache != null) {
+                            cache.close();
+                        }
+                    } finally {
+                        cache = null;
+                        storeLock.writeLock().unlock();
                     }
-                });
-            } finally {
-                cache = null;
-            }
+                }
+            });
         }
     }
 
@@ -113,7 +139,33 @@ public void run() {
     public void beforeLockRelease(FileLock.State currentCacheState) {
     }
 
-    private BTreePersistentIndexedCache<K, V> getCache() {
+    /**
+     * Runs the given action against the store, reopening the store if it has been closed in the meantime. The store is not closed while the action runs.
+     */
+    private <T> T withStore(Transformer<T, IndexedCacheStore<K, V>> action) {
+        while (true) {
+            storeLock.readLock().lock();
+            try {
+                IndexedCacheStore<K, V> cache = this.cache;
+                if (cache != null) {
+                    return action.transform(cache);
+                }
+            } finally {
+                storeLock.readLock().unlock();
+            }
+            createCache();
+        }
+    }
+
+    private IndexedCacheStore<K, V> getCache() {
+        IndexedCacheStore<K, V> cache = this.cache;
+        if (cache != null) {
+            return cache;
+        }
+        return createCache();
+    }
+
+    private synchronized IndexedCacheStore<K, V> createCache() {
         if (cache == null) {
             // Use writeFile because the cache can internally recover from datafile
             // corruption, so we don't care at this level if it's corrupt
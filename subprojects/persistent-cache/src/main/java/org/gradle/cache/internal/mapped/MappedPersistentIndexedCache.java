@@ -0,0 +1,573 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.cache.internal.mapped;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.IndexedCacheStore;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * An indexed cache that appends every update to a log file, which is accessed through memory-mapped segments.
+ *
+ * <p>
+ * The location of the latest record for each key is kept in an in-memory index, split into stripes with their own read/write lock,
+ * so that reads of different keys don't contend with each other or with appends. Records are checksummed, and a log that ends in a
+ * partially written record is cleared back to the last complete one when opened. When most of the log consists of overwritten or removed
+ * records, it is compacted into a new log when opened.
+ * </p>
+ *
+ * <p>
+ * The index is kept when the cache is closed, so that it can be {@link #reopen() reopened} without reading the whole log again.
+ * Each log has a random generation, which changes when the log is compacted or recreated. When the generation is still the same on reopening,
+ * only the records appended since the cache was closed are read, otherwise the log is read from the start.
+ * </p>
+ *
+ * <p>
+ * The log is only ever grown, never truncated, as a file can't be resized on Windows while any part of it is mapped, and a mapping is only
+ * released once its buffer is garbage collected. The unused part of the last segment is left zeroed, which reads as the end of the log.
+ * </p>
+ *
+ * <p>
+ * Like {@link org.gradle.cache.internal.btree.BTreePersistentIndexedCache}, keys are identified by a 64 bit hash of their serialized form.
+ * The serialized key is also stored with each record, so a hash collision results in a cache miss rather than a wrong value.
+ * </p>
+ */
+public class MappedPersistentIndexedCache<K, V> implements IndexedCacheStore<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedPersistentIndexedCache.class);
+
+    private static final int MAGIC = 0x474d4943;
+    private static final int VERSION = 2;
+    // magic, version, generation
+    private static final int FILE_HEADER_SIZE = 4 + 4 + 8;
+    private static final byte VALUE_RECORD = 1;
+    private static final byte REMOVE_RECORD = 2;
+    // type, key length, value length, checksum
+    private static final int RECORD_HEADER_SIZE = 1 + 4 + 4 + 4;
+    private static final int SEGMENT_SIZE = 1024 * 1024;
+    private static final int STRIPES = 16;
+    private static final long MIN_GARBAGE_TO_COMPACT = 1024 * 1024;
+    private static final ThreadLocal<MessageDigest> KEY_DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    });
+
+    private final File cacheFile;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final Object appendLock = new Object();
+    private final AtomicLong garbageBytes = new AtomicLong();
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private long end;
+    private long generation;
+
+    public MappedPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this.cacheFile = cacheFile;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        try {
+            open();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "cache " + cacheFile.getName() + " (" + cacheFile + ")";
+    }
+
+    private void open() throws IOException {
+        LOGGER.debug("Opening {}", this);
+        clearIndex();
+        long liveBytes = scan();
+        long garbage = end - FILE_HEADER_SIZE - liveBytes;
+        if (garbage > liveBytes && garbage > MIN_GARBAGE_TO_COMPACT && compact()) {
+            clearIndex();
+            liveBytes = scan();
+        }
+
+        file = new RandomAccessFile(cacheFile, "rw");
+        channel = file.getChannel();
+        long length = channel.size();
+        if (end == 0) {
+            end = FILE_HEADER_SIZE;
+            generation = newGeneration();
+            write(0, header(generation));
+        } else {
+            ensureMapped(end);
+        }
+        garbageBytes.set(end - FILE_HEADER_SIZE - liveBytes);
+        clearFrom(end, length);
+    }
+
+    /**
+     * Opens the cache again after it has been closed, keeping the index when the log has only been appended to in the meantime.
+     */
+    public void reopen() {
+        try {
+            if (!isCompactionDue() && cacheFile.length() >= end && readGeneration() == generation) {
+                LOGGER.debug("Reopening {}", this);
+                file = new RandomAccessFile(cacheFile, "rw");
+                channel = file.getChannel();
+                catchUp(channel.size());
+            } else {
+                open();
+            }
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    /**
+     * Reads the records appended to the log since the index was last updated.
+     */
+    private void catchUp(long length) throws IOException {
+        ensureMapped(length);
+        try (FileInputStream fileInput = new FileInputStream(cacheFile)) {
+            fileInput.getChannel().position(end);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(fileInput, 64 * 1024));
+            while (true) {
+                Record record = Record.read(input, length - end);
+                if (record == null) {
+                    break;
+                }
+                index(record, end);
+                end += record.size();
+            }
+        }
+        if (end < length) {
+            // Records are written front to back, so a partially written record starts with its type
+            if (read(end, 1)[0] != 0) {
+                clearFrom(end, length);
+            }
+        }
+    }
+
+    private boolean isCompactionDue() {
+        long garbage = garbageBytes.get();
+        long liveBytes = end - FILE_HEADER_SIZE - garbage;
+        return garbage > liveBytes && garbage > MIN_GARBAGE_TO_COMPACT;
+    }
+
+    private long readGeneration() throws IOException {
+        try (DataInputStream input = new DataInputStream(new FileInputStream(cacheFile))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return 0;
+            }
+            return input.readLong();
+        } catch (EOFException e) {
+            return 0;
+        }
+    }
+
+    private void clearIndex() {
+        for (Stripe stripe : stripes) {
+            stripe.offsets.clear();
+        }
+    }
+
+    private static byte[] header(long generation) {
+        return ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(generation).array();
+    }
+
+    private static long newGeneration() {
+        long generation;
+        do {
+            generation = ThreadLocalRandom.current().nextLong();
+        } while (generation == 0);
+        return generation;
+    }
+
+    /**
+     * Zeroes anything between the given position and the end of the file, so that stale records after the last complete one can't
+     * reappear behind new ones.
+     */
+    private void clearFrom(long pos, long length) throws IOException {
+        byte[] zeros = new byte[64 * 1024];
+        while (pos < length) {
+            int count = (int) Math.min(zeros.length, length - pos);
+            byte[] cleared = count == zeros.length ? zeros : new byte[count];
+            ensureMapped(pos + count);
+            if (!Arrays.equals(read(pos, count), cleared)) {
+                write(pos, cleared);
+            }
+            pos += count;
+        }
+    }
+
+    /**
+     * Reads the log, filling the index and setting the end position. Returns the number of bytes taken up by live records.
+     */
+    private long scan() throws IOException {
+        end = 0;
+        long length = cacheFile.length();
+        if (!cacheFile.isFile() || length < FILE_HEADER_SIZE) {
+            return 0;
+        }
+        long liveBytes = 0;
+        Map<Long, Integer> liveRecordSizes = new HashMap<>();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile), 64 * 1024))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                LOGGER.warn("{} has an unexpected format. Discarding.", this);
+                return 0;
+            }
+            generation = input.readLong();
+            long pos = FILE_HEADER_SIZE;
+            while (true) {
+                Record record = Record.read(input, length - pos);
+                if (record == null) {
+                    // End of the log, or a record that was not completely written
+                    break;
+                }
+                long hash = hash(record.key);
+                Stripe stripe = stripeFor(hash);
+                Integer previousSize = liveRecordSizes.remove(hash);
+                if (previousSize != null) {
+                    liveBytes -= previousSize;
+                }
+                if (record.type == VALUE_RECORD) {
+                    stripe.offsets.put(hash, pos);
+                    liveRecordSizes.put(hash, record.size());
+                    liveBytes += record.size();
+                } else {
+                    stripe.offsets.remove(hash);
+                }
+                pos += record.size();
+            }
+            end = pos;
+        }
+        return liveBytes;
+    }
+
+    /**
+     * Rewrites the live records into a new log. Returns false if the new log could not replace the current one.
+     */
+    private boolean compact() throws IOException {
+        LOGGER.debug("Compacting {}", this);
+        File compactedFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".compacting");
+        try (RandomAccessFile source = new RandomAccessFile(cacheFile, "r");
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(compactedFile), 64 * 1024))) {
+            output.write(header(newGeneration()));
+            for (Stripe stripe : stripes) {
+                for (long offset : stripe.offsets.values()) {
+                    source.seek(offset);
+                    byte[] header = new byte[RECORD_HEADER_SIZE];
+                    source.readFully(header);
+                    ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+                    headerBuffer.get();
+                    int recordSize = RECORD_HEADER_SIZE + headerBuffer.getInt() + headerBuffer.getInt();
+                    byte[] record = Arrays.copyOf(header, recordSize);
+                    source.readFully(record, RECORD_HEADER_SIZE, recordSize - RECORD_HEADER_SIZE);
+                    output.write(record);
+                }
+            }
+        }
+        try {
+            Files.move(compactedFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            // The log may still be mapped by a previous instance on some platforms, try again next time
+            LOGGER.debug("Could not replace {} with compacted log.", this, e);
+            Files.deleteIfExists(compactedFile.toPath());
+            return false;
+        }
+    }
+
+    @Nullable
+    @Override
+    public V get(K key) {
+        try {
+            byte[] keyBytes = serialize(keySerializer, key);
+            long hash = hash(keyBytes);
+            Stripe stripe = stripeFor(hash);
+            Long offset;
+            stripe.lock.readLock().lock();
+            try {
+                offset = stripe.offsets.get(hash);
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+            if (offset == null) {
+                return null;
+            }
+            ByteBuffer header = ByteBuffer.wrap(read(offset, RECORD_HEADER_SIZE));
+            header.get();
+            int keyLength = header.getInt();
+            int valueLength = header.getInt();
+            byte[] storedKey = read(offset + RECORD_HEADER_SIZE, keyLength);
+            if (!Arrays.equals(storedKey, keyBytes)) {
+                return null;
+            }
+            byte[] value = read(offset + RECORD_HEADER_SIZE + keyLength, valueLength);
+            return valueSerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(value)));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        try {
+            byte[] keyBytes = serialize(keySerializer, key);
+            append(new Record(VALUE_RECORD, keyBytes, serialize(valueSerializer, value)));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        try {
+            byte[] keyBytes = serialize(keySerializer, key);
+            append(new Record(REMOVE_RECORD, keyBytes, new byte[0]));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    private void append(Record record) throws IOException {
+        long pos;
+        synchronized (appendLock) {
+            pos = end;
+            write(pos, record.toBytes());
+            end = pos + record.size();
+        }
+        index(record, pos);
+    }
+
+    private void index(Record record, long pos) {
+        long hash = hash(record.key);
+        Stripe stripe = stripeFor(hash);
+        Long previous;
+        stripe.lock.writeLock().lock();
+        try {
+            if (record.type == VALUE_RECORD) {
+                previous = stripe.offsets.put(hash, pos);
+            } else {
+                previous = stripe.offsets.remove(hash);
+                garbageBytes.addAndGet(record.size());
+            }
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+        if (previous != null) {
+            garbageBytes.addAndGet(recordSizeAt(previous));
+        }
+    }
+
+    private int recordSizeAt(long offset) {
+        ByteBuffer header = ByteBuffer.wrap(read(offset, RECORD_HEADER_SIZE));
+        header.get();
+        return RECORD_HEADER_SIZE + header.getInt() + header.getInt();
+    }
+
+    /**
+     * The number of bytes in the log taken up by records that have been overwritten or removed.
+     */
+    public long getGarbageBytes() {
+        return garbageBytes.get();
+    }
+
+    private byte[] read(long pos, int length) {
+        MappedByteBuffer[] segments = this.segments;
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long current = pos + copied;
+            ByteBuffer segment = segments[(int) (current / SEGMENT_SIZE)].duplicate();
+            segment.position((int) (current % SEGMENT_SIZE));
+            int count = Math.min(length - copied, segment.remaining());
+            segment.get(bytes, copied, count);
+            copied += count;
+        }
+        return bytes;
+    }
+
+    // Must be called while holding the append lock or while opening
+    private void write(long pos, byte[] bytes) throws IOException {
+        ensureMapped(pos + bytes.length);
+        MappedByteBuffer[] segments = this.segments;
+        int written = 0;
+        while (written < bytes.length) {
+            long current = pos + written;
+            ByteBuffer segment = segments[(int) (current / SEGMENT_SIZE)].duplicate();
+            segment.position((int) (current % SEGMENT_SIZE));
+            int count = Math.min(bytes.length - written, segment.remaining());
+            segment.put(bytes, written, count);
+            written += count;
+        }
+    }
+
+    private void ensureMapped(long size) throws IOException {
+        MappedByteBuffer[] current = segments;
+        if ((long) current.length * SEGMENT_SIZE >= size) {
+            return;
+        }
+        int required = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        MappedByteBuffer[] grown = Arrays.copyOf(current, required);
+        for (int i = current.length; i < required; i++) {
+            grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i * SEGMENT_SIZE, SEGMENT_SIZE);
+        }
+        segments = grown;
+    }
+
+    @Override
+    public void close() {
+        LOGGER.debug("Closing {}", this);
+        try {
+            synchronized (appendLock) {
+                for (MappedByteBuffer segment : segments) {
+                    segment.force();
+                }
+                segments = new MappedByteBuffer[0];
+                file.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Stripe stripeFor(long hash) {
+        return stripes[(int) (hash & (STRIPES - 1))];
+    }
+
+    private static long hash(byte[] keyBytes) {
+        MessageDigest digest = KEY_DIGESTS.get();
+        byte[] md5 = digest.digest(keyBytes);
+        return ByteBuffer.wrap(md5).getLong();
+    }
+
+    private static <T> byte[] serialize(Serializer<T> serializer, T value) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(bytes);
+        serializer.write(encoder, value);
+        encoder.flush();
+        return bytes.toByteArray();
+    }
+
+    private static class Stripe {
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        final Map<Long, Long> offsets = new HashMap<>();
+    }
+
+    private static class Record {
+        final byte type;
+        final byte[] key;
+        final byte[] value;
+
+        Record(byte type, byte[] key, byte[] value) {
+            this.type = type;
+            this.key = key;
+            this.value = value;
+        }
+
+        int size() {
+            return RECORD_HEADER_SIZE + key.length + value.length;
+        }
+
+        byte[] toBytes() {
+            return ByteBuffer.allocate(size())
+                .put(type)
+                .putInt(key.length)
+                .putInt(value.length)
+                .putInt(checksum(type, key, value))
+                .put(key)
+                .put(value)
+                .array();
+        }
+
+        /**
+         * Reads the next complete record, or returns null at the end of the log or at a record that was not completely written.
+         */
+        @Nullable
+        static Record read(DataInputStream input, long remaining) throws IOException {
+            if (remaining < RECORD_HEADER_SIZE) {
+                return null;
+            }
+            int type = input.read();
+            if (type != VALUE_RECORD && type != REMOVE_RECORD) {
+                return null;
+            }
+            int keyLength = input.readInt();
+            int valueLength = input.readInt();
+            int checksum = input.readInt();
+            if (keyLength < 0 || valueLength < 0 || (long) keyLength + valueLength > remaining - RECORD_HEADER_SIZE) {
+                return null;
+            }
+            byte[] key = new byte[keyLength];
+            input.readFully(key);
+            byte[] value = new byte[valueLength];
+            input.readFully(value);
+            if (checksum(type, key, value) != checksum) {
+                return null;
+            }
+            return new Record((byte) type, key, value);
+        }
+
+        private static int checksum(int type, byte[] key, byte[] value) {
+            CRC32 crc = new CRC32();
+            crc.update(type);
+            crc.update(key);
+            crc.update(value);
+            return (int) crc.getValue();
+        }
+    }
+}
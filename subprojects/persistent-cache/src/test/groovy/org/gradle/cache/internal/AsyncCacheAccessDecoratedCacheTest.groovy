@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.cache.internal
+
+import org.gradle.cache.AsyncCacheAccess
+import org.gradle.cache.MultiProcessSafePersistentIndexedCache
+import org.gradle.internal.Factory
+import spock.lang.Specification
+
+class AsyncCacheAccessDecoratedCacheTest extends Specification {
+    def asyncCacheAccess = Mock(AsyncCacheAccess)
+    def persistentCache = Mock(MultiProcessSafePersistentIndexedCache)
+    def cache = new AsyncCacheAccessDecoratedCache<String, String>(asyncCacheAccess, persistentCache)
+    def completion = Mock(Runnable)
+
+    def "reads pending update without reading from the persistent cache"() {
+        Runnable update = null
+
+        when:
+        cache.putLater("key", "value", completion)
+
+        then:
+        1 * asyncCacheAccess.enqueue(_) >> { Runnable r -> update = r }
+
+        when:
+        def result = cache.get("key")
+
+        then:
+        result == "value"
+        0 * asyncCacheAccess.read(_)
+
+        when:
+        cache.removeLater("key", completion)
+        result = cache.get("key")
+
+        then:
+        1 * asyncCacheAccess.enqueue(_)
+        result == null
+        0 * asyncCacheAccess.read(_)
+
+        when:
+        update.run()
+        result = cache.get("key")
+
+        then:
+        1 * persistentCache.put("key", "value")
+        1 * completion.run()
+        result == null
+        0 * asyncCacheAccess.read(_)
+    }
+
+    def "reads from persistent cache once update has been applied"() {
+        Runnable update = null
+
+        given:
+        asyncCacheAccess.enqueue(_) >> { Runnable r -> update = r }
+        cache.putLater("key", "value", completion)
+        update.run()
+
+        when:
+        def result = cache.get("key")
+
+        then:
+        1 * asyncCacheAccess.read(_) >> { Factory f -> f.create() }
+        1 * persistentCache.get("key") >> "value"
+        result == "value"
+    }
+}
@@ -17,6 +17,7 @@
 package org.gradle.cache.internal
 
 import org.gradle.cache.CacheAccess
+import org.gradle.internal.Factory
 import org.gradle.test.fixtures.concurrent.ConcurrentSpec
 
 class CacheAccessWorkerTest extends ConcurrentSpec {
@@ -26,6 +27,7 @@ class CacheAccessWorkerTest extends ConcurrentSpec {
     def setup() {
         cacheAccess = Stub(CacheAccess) {
             useCache(_) >> { Runnable action -> action.run() }
+            withFileLock(_ as Factory) >> { Factory action -> action.create() }
         }
         cacheAccessWorker = new CacheAccessWorker("<cache>", cacheAccess)
     }
@@ -47,6 +49,40 @@ class CacheAccessWorkerTest extends ConcurrentSpec {
         cacheAccessWorker?.stop()
     }
 
+    def "read does not wait for queued writes when concurrent reads are enabled"() {
+        given:
+        def worker = new CacheAccessWorker("<cache>", cacheAccess, true)
+        def counter = 0
+        worker.enqueue {
+            thread.block()
+            counter++
+        }
+        start(worker)
+
+        when:
+        def result = worker.read { counter }
+
+        then:
+        result == 0
+
+        cleanup:
+        worker?.stop()
+    }
+
+    def "concurrent read holds the file lock"() {
+        given:
+        def cacheAccess = Mock(CacheAccess)
+        def worker = new CacheAccessWorker("<cache>", cacheAccess, true)
+
+        when:
+        def result = worker.read { "value" }
+
+        then:
+        result == "value"
+        1 * cacheAccess.withFileLock(_ as Factory) >> { Factory action -> action.create() }
+        0 * cacheAccess._
+    }
+
     def "read propagates failure"() {
         given:
         def failure = new RuntimeException()
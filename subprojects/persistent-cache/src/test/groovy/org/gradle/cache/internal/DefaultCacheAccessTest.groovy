@@ -19,6 +19,7 @@ import org.gradle.api.Action
 import org.gradle.cache.AsyncCacheAccess
 import org.gradle.cache.CacheDecorator
 import org.gradle.cache.CrossProcessCacheAccess
+import org.gradle.cache.FileIntegrityViolationException
 import org.gradle.cache.FileLock
 import org.gradle.cache.FileLockManager
 import org.gradle.cache.FileLockReleasedSignal
@@ -31,9 +32,12 @@ import org.gradle.internal.serialize.BaseSerializerFactory
 import org.gradle.internal.serialize.Serializer
 import org.gradle.test.fixtures.concurrent.ConcurrentSpec
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.SetSystemProperties
 import org.junit.Rule
 import spock.lang.Unroll
 
+import java.util.concurrent.Callable
+
 import static org.gradle.cache.FileLockManager.LockMode.*
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode
 
@@ -41,6 +45,7 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
     private static final BaseSerializerFactory SERIALIZER_FACTORY = new BaseSerializerFactory()
 
     @Rule final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+    @Rule final SetSystemProperties systemProperties = new SetSystemProperties()
     final FileLockManager lockManager = Mock()
     final CacheInitializationAction initializationAction = Mock()
     final CacheCleanupAction cleanupAction = Mock()
@@ -620,6 +625,82 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         access?.close()
     }
 
+    def "concurrent read acquires the file lock when the lock has been released"() {
+        System.setProperty(DefaultCacheAccess.CONCURRENT_READS_PROPERTY, "true")
+        def decorator = Mock(CacheDecorator)
+        def access = newAccess(OnDemand)
+        def contendedAction
+
+        given:
+        decorator.decorate(_, _, _, _, _) >> { String cacheId, String cacheName, MultiProcessSafePersistentIndexedCache persistentCache, CrossProcessCacheAccess crossProcessCacheAccess, AsyncCacheAccess asyncCacheAccess ->
+            persistentCache
+        }
+        _ * lock.state
+        _ * lock.readFile(_) >> { Factory action -> action.create() }
+        _ * lock.writeFile(_) >> { Runnable action -> action.run() }
+
+        access.open()
+
+        when:
+        def cache = access.newCache(PersistentIndexedCacheParameters.of('cache', String.class, Integer.class).withCacheDecorator(decorator))
+        contendedAction.execute({} as FileLockReleasedSignal)
+
+        then:
+        1 * lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "", _) >> {
+            File target, LockOptions options, String targetDisplayName, String operationDisplayName, Action<FileLockReleasedSignal> whenContended -> contendedAction = whenContended; return lock }
+        1 * lock.close()
+
+        when:
+        def result = cache.get("something")
+
+        then:
+        result == 12
+        1 * lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "", _) >> lock
+        1 * backingCache.get("something") >> 12
+
+        cleanup:
+        access?.close()
+    }
+
+    def "concurrent read does not fail while another thread is writing to the file"() {
+        System.setProperty(DefaultCacheAccess.CONCURRENT_READS_PROPERTY, "true")
+        def decorator = Mock(CacheDecorator)
+        def access = newAccess(OnDemand)
+        def fileLock = new DirtyWhileWritingFileLock({
+            instant.writing
+            thread.block()
+        })
+        def result = null
+
+        given:
+        decorator.decorate(_, _, _, _, _) >> { String cacheId, String cacheName, MultiProcessSafePersistentIndexedCache persistentCache, CrossProcessCacheAccess crossProcessCacheAccess, AsyncCacheAccess asyncCacheAccess ->
+            persistentCache
+        }
+        lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "", _) >> fileLock
+        backingCache.get("something") >> 12
+        access.open()
+        def cache = access.newCache(PersistentIndexedCacheParameters.of('cache', String.class, Integer.class).withCacheDecorator(decorator))
+
+        when:
+        async {
+            start {
+                access.useCache {
+                    cache.put("other", 1)
+                }
+            }
+            start {
+                thread.blockUntil.writing
+                result = cache.get("something")
+            }
+        }
+
+        then:
+        result == 12
+
+        cleanup:
+        access?.close()
+    }
+
     def "does not acquire file lock for cleanup"() {
         given:
         def access = newAccess(OnDemand)
@@ -765,4 +846,66 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         cleanup:
         access?.close()
     }
+
+    private static class DirtyWhileWritingFileLock implements FileLock {
+        private final Runnable whileDirty
+        private volatile boolean dirty
+
+        DirtyWhileWritingFileLock(Runnable whileDirty) {
+            this.whileDirty = whileDirty
+        }
+
+        @Override
+        <T> T readFile(Callable<? extends T> action) {
+            throw new UnsupportedOperationException()
+        }
+
+        @Override
+        <T> T readFile(Factory<? extends T> action) {
+            if (dirty) {
+                throw new FileIntegrityViolationException("The file is being written")
+            }
+            return action.create()
+        }
+
+        @Override
+        void updateFile(Runnable action) {
+            writeFile(action)
+        }
+
+        @Override
+        void writeFile(Runnable action) {
+            dirty = true
+            try {
+                whileDirty.run()
+                action.run()
+            } finally {
+                dirty = false
+            }
+        }
+
+        @Override
+        boolean getUnlockedCleanly() {
+            return true
+        }
+
+        @Override
+        boolean isLockFile(File file) {
+            return false
+        }
+
+        @Override
+        void close() {
+        }
+
+        @Override
+        FileLock.State getState() {
+            return null
+        }
+
+        @Override
+        FileLockManager.LockMode getMode() {
+            return Exclusive
+        }
+    }
 }
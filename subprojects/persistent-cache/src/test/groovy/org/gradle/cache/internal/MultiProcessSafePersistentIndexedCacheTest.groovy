@@ -18,9 +18,11 @@ package org.gradle.cache.internal
 import org.gradle.cache.FileAccess
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache
 import org.gradle.internal.Factory
-import spock.lang.Specification
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
 
-class MultiProcessSafePersistentIndexedCacheTest extends Specification {
+import java.util.concurrent.Callable
+
+class MultiProcessSafePersistentIndexedCacheTest extends ConcurrentSpec {
     final FileAccess fileAccess = Mock()
     final Factory<BTreePersistentIndexedCache<String, String>> factory = Mock()
     final cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, fileAccess)
@@ -129,10 +131,76 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         0 * _._
     }
 
+    def "does not close the store while another thread is reading from it"() {
+        // Uses hand written fakes rather than mocks, as mocks synchronize the invocations
+        def store = new IndexedCacheStore<String, String>() {
+            boolean closed
+
+            @Override
+            String get(String key) {
+                instant.reading
+                thread.block()
+                instant.read
+                return closed ? null : "value"
+            }
+
+            @Override
+            void put(String key, String value) {
+            }
+
+            @Override
+            void remove(String key) {
+            }
+
+            @Override
+            void close() {
+                instant.closed
+                closed = true
+            }
+        }
+        def cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>({ store } as Factory, new UnlockedFileAccess())
+        def result = null
+
+        when:
+        async {
+            start {
+                result = cache.get("key")
+            }
+            thread.blockUntil.reading
+            cache.finishWork()
+        }
+
+        then:
+        result == "value"
+        instant.closed > instant.read
+    }
+
     def cacheOpened() {
         1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
         1 * factory.create() >> backingCache
 
         cache.get("something")
     }
+
+    private static class UnlockedFileAccess implements FileAccess {
+        @Override
+        def <T> T readFile(Callable<? extends T> action) {
+            return action.call()
+        }
+
+        @Override
+        def <T> T readFile(Factory<? extends T> action) {
+            return action.create()
+        }
+
+        @Override
+        void updateFile(Runnable action) {
+            action.run()
+        }
+
+        @Override
+        void writeFile(Runnable action) {
+            action.run()
+        }
+    }
 }
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.cache.internal.mapped
+
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class MappedPersistentIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+    def cacheFile = tmpDir.file("cache.mapped.bin")
+
+    def createCache() {
+        new MappedPersistentIndexedCache<String, String>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER)
+    }
+
+    def "can add, overwrite and remove entries"() {
+        def cache = createCache()
+
+        expect:
+        cache.get("a") == null
+
+        when:
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.put("a", "3")
+        cache.remove("b")
+
+        then:
+        cache.get("a") == "3"
+        cache.get("b") == null
+        cache.garbageBytes > 0
+
+        cleanup:
+        cache.close()
+    }
+
+    def "entries are visible after reopening"() {
+        def cache = createCache()
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.remove("b")
+        cache.put("c", "x" * 2_000_000)
+        cache.close()
+
+        when:
+        cache = createCache()
+
+        then:
+        cache.get("a") == "1"
+        cache.get("b") == null
+        cache.get("c") == "x" * 2_000_000
+
+        cleanup:
+        cache.close()
+    }
+
+    def "reopened cache sees records appended by another instance in the meantime"() {
+        def cache = createCache()
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.close()
+        def other = createCache()
+        other.put("a", "3")
+        other.remove("b")
+        other.put("c", "4")
+        other.close()
+
+        when:
+        cache.reopen()
+
+        then:
+        cache.get("a") == "3"
+        cache.get("b") == null
+        cache.get("c") == "4"
+
+        when:
+        cache.put("d", "5")
+        cache.close()
+        other.reopen()
+
+        then:
+        other.get("a") == "3"
+        other.get("d") == "5"
+
+        cleanup:
+        cache.close()
+        other.close()
+    }
+
+    def "reopened cache reads the log again when it has been replaced in the meantime"() {
+        def cache = createCache()
+        cache.put("a", "1")
+        cache.close()
+        cacheFile.delete()
+        def other = createCache()
+        other.put("b", "2")
+        other.close()
+
+        when:
+        cache.reopen()
+
+        then:
+        cache.get("a") == null
+        cache.get("b") == "2"
+
+        cleanup:
+        cache.close()
+    }
+
+    def "reopened cache ignores partially written record appended in the meantime"() {
+        def cache = createCache()
+        cache.put("a", "1")
+        cache.close()
+        def other = createCache()
+        other.put("b", "2")
+        other.close()
+        corruptLastRecord()
+
+        when:
+        cache.reopen()
+        cache.put("c", "3")
+        cache.close()
+        cache = createCache()
+
+        then:
+        cache.get("a") == "1"
+        cache.get("b") == null
+        cache.get("c") == "3"
+
+        cleanup:
+        cache.close()
+    }
+
+    def "ignores partially written record at the end of the log"() {
+        def cache = createCache()
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.close()
+
+        when:
+        corruptLastRecord()
+        cache = createCache()
+
+        then:
+        cache.get("a") == "1"
+        cache.get("b") == null
+
+        when:
+        cache.put("c", "3")
+        cache.close()
+        cache = createCache()
+
+        then:
+        cache.get("a") == "1"
+        cache.get("c") == "3"
+
+        cleanup:
+        cache.close()
+    }
+
+    def "does not bring back records after a partially written record"() {
+        def cache = createCache()
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.put("c", "3")
+        cache.close()
+
+        when:
+        corruptRecordAt(lastNonZeroByte() - recordSize("c", "3"))
+        cache = createCache()
+
+        then:
+        cache.get("a") == "1"
+        cache.get("b") == null
+        cache.get("c") == null
+
+        when:
+        cache.put("d", "4")
+        cache.close()
+        cache = createCache()
+
+        then:
+        cache.get("a") == "1"
+        cache.get("c") == null
+        cache.get("d") == "4"
+
+        cleanup:
+        cache.close()
+    }
+
+    def "does not shrink the log"() {
+        def cache = createCache()
+        cache.put("a", "1")
+        cache.close()
+        def length = cacheFile.length()
+        corruptLastRecord()
+
+        when:
+        cache = createCache()
+        cache.close()
+
+        then:
+        cacheFile.length() == length
+    }
+
+    def "discards file with unexpected format"() {
+        cacheFile.text = "not a cache file"
+
+        when:
+        def cache = createCache()
+        cache.put("a", "1")
+
+        then:
+        cache.get("a") == "1"
+
+        cleanup:
+        cache.close()
+    }
+
+    def "compacts log when opened"() {
+        def value = "x" * 10_000
+        def cache = createCache()
+        500.times {
+            cache.put("a", value + it)
+        }
+        cache.put("b", "2")
+        cache.close()
+        def sizeBefore = cacheFile.length()
+
+        when:
+        cache = createCache()
+
+        then:
+        cache.garbageBytes == 0
+        cache.get("a") == value + 499
+        cache.get("b") == "2"
+
+        when:
+        cache.close()
+
+        then:
+        // The log is padded to whole segments
+        cacheFile.length() < sizeBefore / 5
+    }
+
+    def "can read and write concurrently"() {
+        def cache = createCache()
+        def executor = Executors.newFixedThreadPool(8)
+
+        when:
+        def futures = (0..<8).collect { thread ->
+            executor.submit {
+                200.times {
+                    def key = "${thread}-${it}".toString()
+                    cache.put(key, key * 100)
+                    assert cache.get(key) == key * 100
+                }
+            }
+        }
+        futures*.get()
+
+        then:
+        (0..<8).every { thread -> (0..<200).every { cache.get("${thread}-${it}".toString()) == "${thread}-${it}".toString() * 100 } }
+
+        cleanup:
+        executor.shutdown()
+        executor.awaitTermination(10, TimeUnit.SECONDS)
+        cache.close()
+    }
+
+    private void corruptLastRecord() {
+        corruptRecordAt(lastNonZeroByte())
+    }
+
+    /**
+     * Flips the given byte of the log, which invalidates the checksum of the record it belongs to.
+     */
+    private void corruptRecordAt(long pos) {
+        def raf = new RandomAccessFile(cacheFile, "rw")
+        try {
+            raf.seek(pos)
+            int value = raf.read()
+            raf.seek(pos)
+            raf.write(value ^ 0xff)
+        } finally {
+            raf.close()
+        }
+    }
+
+    private long lastNonZeroByte() {
+        def bytes = cacheFile.bytes
+        def pos = bytes.length - 1
+        while (bytes[pos] == 0) {
+            pos--
+        }
+        return pos
+    }
+
+    private static int recordSize(String key, String value) {
+        return 13 + serialized(key).length + serialized(value).length
+    }
+
+    private static byte[] serialized(String value) {
+        def bytes = new ByteArrayOutputStream()
+        def encoder = new KryoBackedEncoder(bytes)
+        BaseSerializerFactory.STRING_SERIALIZER.write(encoder, value)
+        encoder.flush()
+        return bytes.toByteArray()
+    }
+}
@@ -18,6 +18,7 @@
 
 import org.gradle.internal.file.FileMetadata;
 import org.gradle.internal.file.FileType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
 import org.gradle.internal.hash.HashCode;
 
 import java.util.Optional;
@@ -26,15 +27,19 @@
  * A complete snapshot of a regular file.
  *
  * The snapshot includes the content hash of the file.
+ * The length and the modification time are kept as primitive fields instead of a {@link FileMetadata} instance,
+ * since the virtual file system can retain a snapshot for every file of a large build.
  */
 public class RegularFileSnapshot extends AbstractCompleteFileSystemLocationSnapshot {
     private final HashCode contentHash;
-    private final FileMetadata metadata;
+    private final long lastModified;
+    private final long length;
 
     public RegularFileSnapshot(String absolutePath, String name, HashCode contentHash, FileMetadata metadata) {
         super(absolutePath, name, metadata.getAccessType());
         this.contentHash = contentHash;
-        this.metadata = metadata;
+        this.lastModified = metadata.getLastModified();
+        this.length = metadata.getLength();
     }
 
     @Override
@@ -47,9 +52,20 @@ public HashCode getHash() {
         return contentHash;
     }
 
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Creates a new {@link FileMetadata} instance on every call, use {@link #getLastModified()} and {@link #getLength()} instead where possible.
+     */
     // Used by the Maven caching client. Do not remove
     public FileMetadata getMetadata() {
-        return metadata;
+        return DefaultFileMetadata.file(lastModified, length, getAccessType());
     }
 
     @Override
@@ -58,7 +74,10 @@ public boolean isContentAndMetadataUpToDate(CompleteFileSystemLocationSnapshot o
             return false;
         }
         RegularFileSnapshot otherSnapshot = (RegularFileSnapshot) other;
-        return metadata.equals(otherSnapshot.metadata) && contentHash.equals(otherSnapshot.contentHash);
+        return lastModified == otherSnapshot.lastModified
+            && length == otherSnapshot.length
+            && getAccessType() == otherSnapshot.getAccessType()
+            && contentHash.equals(otherSnapshot.contentHash);
     }
 
     @Override
@@ -29,6 +29,7 @@
 import org.gradle.internal.snapshot.MerkleDirectorySnapshotBuilder;
 import org.gradle.internal.snapshot.MissingFileSnapshot;
 import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.RelativePathSegmentsTracker;
 import org.gradle.internal.snapshot.SnapshottingFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,12 +46,18 @@
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 public class DirectorySnapshotter {
     private static final Logger LOGGER = LoggerFactory.getLogger(DirectorySnapshotter.class);
@@ -59,17 +66,27 @@ public class DirectorySnapshotter {
     private final FileHasher hasher;
     private final Interner<String> stringInterner;
     private final DefaultExcludes defaultExcludes;
+    private final Supplier<Executor> hashingExecutor;
 
     public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, String... defaultExcludes) {
+        this(hasher, stringInterner, () -> null, defaultExcludes);
+    }
+
+    /**
+     * @param hashingExecutor Supplies the executor for each walk. When it supplies an executor, the regular files found while walking a directory
+     * are hashed using this executor, in parallel with the walk. The resulting snapshot is the same as when hashing the files on the walking thread.
+     */
+    public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Supplier<Executor> hashingExecutor, String... defaultExcludes) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
+        this.hashingExecutor = hashingExecutor;
         this.defaultExcludes = new DefaultExcludes(defaultExcludes);
     }
 
     public CompleteFileSystemLocationSnapshot snapshot(String absolutePath, @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate, final AtomicBoolean hasBeenFiltered) {
         try {
             Path rootPath = Paths.get(absolutePath);
-            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes);
+            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, hashingExecutor.get());
             Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
             return visitor.getResult();
         } catch (IOException e) {
@@ -170,8 +187,83 @@ public boolean test(String element) {
         }
     }
 
+    /**
+     * Builds the snapshot of a walked directory, optionally computing the snapshots of regular files asynchronously.
+     *
+     * When files are snapshotted asynchronously, the operations on the {@link MerkleDirectorySnapshotBuilder} are recorded in the order
+     * of the walk and replayed once all snapshots are available, so the result doesn't depend on the order the files are hashed in.
+     */
+    private static class SnapshotCollector {
+        private final MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+        private final RelativePathSegmentsTracker relativePathSegmentsTracker = new RelativePathSegmentsTracker();
+        private final Executor executor;
+        private final List<Consumer<MerkleDirectorySnapshotBuilder>> recordedOperations = new ArrayList<>();
+
+        public SnapshotCollector(@Nullable Executor executor) {
+            this.executor = executor;
+        }
+
+        public void preVisitDirectory(String absolutePath, String name) {
+            relativePathSegmentsTracker.enter(name);
+            apply(builder -> builder.preVisitDirectory(absolutePath, name));
+        }
+
+        public void visitFile(CompleteFileSystemLocationSnapshot snapshot) {
+            apply(builder -> builder.visitFile(snapshot));
+        }
+
+        public void visitFile(Supplier<CompleteFileSystemLocationSnapshot> snapshotSupplier) {
+            if (executor == null) {
+                builder.visitFile(snapshotSupplier.get());
+            } else {
+                CompletableFuture<CompleteFileSystemLocationSnapshot> snapshot = CompletableFuture.supplyAsync(snapshotSupplier, executor);
+                recordedOperations.add(builder -> builder.visitFile(join(snapshot)));
+            }
+        }
+
+        public void postVisitDirectory(AccessType accessType) {
+            relativePathSegmentsTracker.leave();
+            apply(builder -> builder.postVisitDirectory(accessType));
+        }
+
+        public boolean isRoot() {
+            return relativePathSegmentsTracker.isRoot();
+        }
+
+        public Iterable<String> getRelativePath() {
+            return relativePathSegmentsTracker.getRelativePath();
+        }
+
+        private void apply(Consumer<MerkleDirectorySnapshotBuilder> operation) {
+            if (executor == null) {
+                operation.accept(builder);
+            } else {
+                recordedOperations.add(operation);
+            }
+        }
+
+        private static CompleteFileSystemLocationSnapshot join(CompletableFuture<CompleteFileSystemLocationSnapshot> snapshot) {
+            try {
+                return snapshot.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        public CompleteFileSystemLocationSnapshot getResult() {
+            for (Consumer<MerkleDirectorySnapshotBuilder> operation : recordedOperations) {
+                operation.accept(builder);
+            }
+            recordedOperations.clear();
+            return builder.getResult();
+        }
+    }
+
     private static class PathVisitor implements java.nio.file.FileVisitor<Path> {
-        private final MerkleDirectorySnapshotBuilder builder;
+        private final SnapshotCollector builder;
         private final SnapshottingFilter.DirectoryWalkerPredicate predicate;
         private final AtomicBoolean hasBeenFiltered;
         private final FileHasher hasher;
@@ -185,9 +277,10 @@ public PathVisitor(
             AtomicBoolean hasBeenFiltered,
             FileHasher hasher,
             Interner<String> stringInterner,
-            DefaultExcludes defaultExcludes
+            DefaultExcludes defaultExcludes,
+            @Nullable Executor hashingExecutor
         ) {
-            this.builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+            this.builder = new SnapshotCollector(hashingExecutor);
             this.predicate = predicate;
             this.hasBeenFiltered = hasBeenFiltered;
             this.hasher = hasher;
@@ -257,7 +350,13 @@ private String remapAbsolutePath(Path dir) {
         private void visitResolvedFile(Path file, BasicFileAttributes targetAttributes, AccessType accessType) {
             String internedName = intern(file.getFileName().toString());
             if (shouldVisit(file, internedName, false, builder.getRelativePath())) {
-                builder.visitFile(snapshotFile(file, internedName, targetAttributes, accessType));
+                if (targetAttributes.isRegularFile()) {
+                    // Remap on the walking thread, as the symbolic link mappings change during the walk
+                    String internedAbsoluteFilePath = intern(remapAbsolutePath(file));
+                    builder.visitFile(() -> snapshotRegularFile(file, internedAbsoluteFilePath, internedName, targetAttributes, accessType));
+                } else {
+                    builder.visitFile(new MissingFileSnapshot(intern(remapAbsolutePath(file)), internedName, accessType));
+                }
             }
         }
 
@@ -271,18 +370,15 @@ private BasicFileAttributes readAttributesOfSymlinkTarget(Path symlink, BasicFil
             }
         }
 
-        private CompleteFileSystemLocationSnapshot snapshotFile(Path absoluteFilePath, String internedName, BasicFileAttributes attrs, AccessType accessType) {
-            String internedAbsoluteFilePath = intern(remapAbsolutePath(absoluteFilePath));
-            if (attrs.isRegularFile()) {
-                try {
-                    long lastModified = attrs.lastModifiedTime().toMillis();
-                    long fileLength = attrs.size();
-                    FileMetadata metadata = DefaultFileMetadata.file(lastModified, fileLength, accessType);
-                    HashCode hash = hasher.hash(absoluteFilePath.toFile(), fileLength, lastModified);
-                    return new RegularFileSnapshot(internedAbsoluteFilePath, internedName, hash, metadata);
-                } catch (UncheckedIOException e) {
-                    LOGGER.info("Could not read file path '{}'.", absoluteFilePath, e);
-                }
+        private CompleteFileSystemLocationSnapshot snapshotRegularFile(Path absoluteFilePath, String internedAbsoluteFilePath, String internedName, BasicFileAttributes attrs, AccessType accessType) {
+            try {
+                long lastModified = attrs.lastModifiedTime().toMillis();
+                long fileLength = attrs.size();
+                FileMetadata metadata = DefaultFileMetadata.file(lastModified, fileLength, accessType);
+                HashCode hash = hasher.hash(absoluteFilePath.toFile(), fileLength, lastModified);
+                return new RegularFileSnapshot(internedAbsoluteFilePath, internedName, hash, metadata);
+            } catch (UncheckedIOException e) {
+                LOGGER.info("Could not read file path '{}'.", absoluteFilePath, e);
             }
             return new MissingFileSnapshot(internedAbsoluteFilePath, internedName, accessType);
         }
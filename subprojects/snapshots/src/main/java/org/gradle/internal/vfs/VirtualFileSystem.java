@@ -69,4 +69,15 @@ public interface VirtualFileSystem {
      * Updates the cached state at the location with the snapshot.
      */
     void updateWithKnownSnapshot(CompleteFileSystemLocationSnapshot snapshot);
+
+    /**
+     * Updates the cached state with all the snapshots.
+     *
+     * Implementations may apply the snapshots in a single update of the cached state.
+     */
+    default void updateWithKnownSnapshots(Iterable<? extends CompleteFileSystemLocationSnapshot> snapshots) {
+        for (CompleteFileSystemLocationSnapshot snapshot : snapshots) {
+            updateWithKnownSnapshot(snapshot);
+        }
+    }
 }
@@ -37,6 +37,7 @@
 
 import java.io.File;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.function.Consumer;
@@ -52,9 +53,16 @@ public class DefaultVirtualFileSystem extends AbstractVirtualFileSystem {
     private final StripedProducerGuard<String> producingSnapshots = new StripedProducerGuard<>();
 
     public DefaultVirtualFileSystem(FileHasher hasher, Interner<String> stringInterner, Stat stat, CaseSensitivity caseSensitivity, SnapshotHierarchy.DiffCapturingUpdateFunctionDecorator updateFunctionDecorator, String... defaultExcludes) {
+        this(hasher, stringInterner, stat, caseSensitivity, updateFunctionDecorator, () -> null, defaultExcludes);
+    }
+
+    /**
+     * @param hashingExecutor When it supplies an executor, files are hashed using this executor while walking directories, see {@link DirectorySnapshotter}.
+     */
+    public DefaultVirtualFileSystem(FileHasher hasher, Interner<String> stringInterner, Stat stat, CaseSensitivity caseSensitivity, SnapshotHierarchy.DiffCapturingUpdateFunctionDecorator updateFunctionDecorator, Supplier<Executor> hashingExecutor, String... defaultExcludes) {
         this.stat = stat;
         this.updateFunctionDecorator = updateFunctionDecorator;
-        this.directorySnapshotter = new DirectorySnapshotter(hasher, stringInterner, defaultExcludes);
+        this.directorySnapshotter = new DirectorySnapshotter(hasher, stringInterner, hashingExecutor, defaultExcludes);
         this.hasher = hasher;
         this.root = new AtomicSnapshotHierarchyReference(DefaultSnapshotHierarchy.empty(caseSensitivity));
     }
@@ -169,10 +177,11 @@ private CompleteFileSystemLocationSnapshot readLocation(String location) {
 
     @Override
     public void update(Iterable<String> locations, Runnable action) {
-        root.update(root -> {
+        // Invalidate all the locations in a single update, so the changes are published only once
+        updateRoot((root, changeListener) -> {
             SnapshotHierarchy result = root;
             for (String location : locations) {
-                result = updateFunctionDecorator.decorate((currentRoot, changeListener) -> currentRoot.invalidate(location, changeListener)).updateRoot(result);
+                result = result.invalidate(location, changeListener);
             }
             return result;
         });
@@ -193,6 +202,17 @@ public void updateWithKnownSnapshot(CompleteFileSystemLocationSnapshot snapshot)
         updateRoot((root, changeListener) -> root.store(snapshot.getAbsolutePath(), snapshot, changeListener));
     }
 
+    @Override
+    public void updateWithKnownSnapshots(Iterable<? extends CompleteFileSystemLocationSnapshot> snapshots) {
+        updateRoot((root, changeListener) -> {
+            SnapshotHierarchy result = root;
+            for (CompleteFileSystemLocationSnapshot snapshot : snapshots) {
+                result = result.store(snapshot.getAbsolutePath(), snapshot, changeListener);
+            }
+            return result;
+        });
+    }
+
     private static class StripedProducerGuard<T> {
         private final Striped<Lock> locks = Striped.lock(Runtime.getRuntime().availableProcessors() * 4);
 
@@ -21,14 +21,21 @@
 import org.gradle.internal.snapshot.FileSystemNode;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
+/**
+ * Collects the snapshots added and removed during an update of the {@link SnapshotHierarchy}.
+ *
+ * An update can consist of several operations on the hierarchy. The collected diff is the net change of all of them,
+ * so a snapshot added by one operation and removed by a later one is neither reported as added nor as removed.
+ * The pending snapshots are keyed by their absolute path, so that matching them stays cheap for large updates.
+ */
 public class SnapshotCollectingDiffListener implements SnapshotHierarchy.NodeDiffListener {
-    private final List<CompleteFileSystemLocationSnapshot> removedSnapshots = new ArrayList<>();
-    private final List<CompleteFileSystemLocationSnapshot> addedSnapshots = new ArrayList<>();
+    private final Map<String, CompleteFileSystemLocationSnapshot> removedSnapshots = new LinkedHashMap<>();
+    private final Map<String, CompleteFileSystemLocationSnapshot> addedSnapshots = new LinkedHashMap<>();
     private final Predicate<String> watchFilter;
 
     public SnapshotCollectingDiffListener(Predicate<String> watchFilter) {
@@ -37,7 +44,7 @@ public SnapshotCollectingDiffListener(Predicate<String> watchFilter) {
 
     public void publishSnapshotDiff(SnapshotHierarchy.SnapshotDiffListener snapshotDiffListener) {
         if (!removedSnapshots.isEmpty() || !addedSnapshots.isEmpty()) {
-            snapshotDiffListener.changed(removedSnapshots, addedSnapshots);
+            snapshotDiffListener.changed(removedSnapshots.values(), addedSnapshots.values());
         }
     }
 
@@ -51,11 +58,21 @@ private void extractRootSnapshots(FileSystemNode rootNode, Consumer<CompleteFile
 
     @Override
     public void nodeRemoved(FileSystemNode node) {
-        extractRootSnapshots(node, removedSnapshots::add);
+        extractRootSnapshots(node, snapshot -> {
+            String absolutePath = snapshot.getAbsolutePath();
+            if (!addedSnapshots.remove(absolutePath, snapshot)) {
+                removedSnapshots.put(absolutePath, snapshot);
+            }
+        });
     }
 
     @Override
     public void nodeAdded(FileSystemNode node) {
-        extractRootSnapshots(node, addedSnapshots::add);
+        extractRootSnapshots(node, snapshot -> {
+            String absolutePath = snapshot.getAbsolutePath();
+            if (!removedSnapshots.remove(absolutePath, snapshot)) {
+                addedSnapshots.put(absolutePath, snapshot);
+            }
+        });
     }
 }
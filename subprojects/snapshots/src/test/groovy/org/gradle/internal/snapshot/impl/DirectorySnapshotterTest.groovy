@@ -39,6 +39,7 @@ import spock.lang.Issue
 import spock.lang.Specification
 
 import java.nio.file.Paths
+import java.util.concurrent.Executors
 import java.util.concurrent.atomic.AtomicBoolean
 
 @UsesNativeServices
@@ -50,6 +51,41 @@ class DirectorySnapshotterTest extends Specification {
     def fileHasher = new TestFileHasher()
     def directorySnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner())
 
+    def "hashing files in parallel gives the same snapshot"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        (1..20).each { dir ->
+            (1..20).each { file ->
+                rootDir.file("dir${dir}/nested/file${file}.txt").text = "content ${dir} ${file}"
+            }
+        }
+        rootDir.file("a.txt").text = "root file"
+        def executor = Executors.newFixedThreadPool(4)
+        def parallelSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), { executor })
+
+        when:
+        def sequential = directorySnapshotter.snapshot(rootDir.absolutePath, null, new AtomicBoolean(false))
+        def parallel = parallelSnapshotter.snapshot(rootDir.absolutePath, null, new AtomicBoolean(false))
+
+        then:
+        parallel.hash == sequential.hash
+        allPaths(parallel) == allPaths(sequential)
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    private static List<String> allPaths(CompleteFileSystemLocationSnapshot snapshot) {
+        def paths = []
+        snapshot.accept(new RelativePathTrackingVisitor() {
+            @Override
+            void visit(String absolutePath, Deque<String> relativePath) {
+                paths << absolutePath
+            }
+        })
+        return paths
+    }
+
     def "should snapshot without filters"() {
         given:
         def rootDir = tmpDir.createDir("root")
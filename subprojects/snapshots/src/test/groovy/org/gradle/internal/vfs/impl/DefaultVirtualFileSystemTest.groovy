@@ -16,12 +16,20 @@
 
 package org.gradle.internal.vfs.impl
 
-
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.snapshot.AtomicSnapshotHierarchyReference
 import org.gradle.internal.snapshot.CompleteDirectorySnapshot
 import org.gradle.internal.snapshot.CompleteFileSystemLocationSnapshot
 import org.gradle.internal.snapshot.FileSystemSnapshotVisitor
+import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.internal.snapshot.SnapshotHierarchy
 import org.gradle.test.fixtures.file.TestFile
 
+import static org.gradle.internal.snapshot.CaseSensitivity.CASE_SENSITIVE
+
 class DefaultVirtualFileSystemTest extends AbstractVirtualFileSystemTest {
 
     def "can read a file"() {
@@ -253,4 +261,67 @@ class DefaultVirtualFileSystemTest extends AbstractVirtualFileSystemTest {
         then: "The filtered tree uses the cached state"
         relativePaths == ["d1", "d1/f1", "f1"] as Set
     }
+
+    def "stores all known snapshots in a single update"() {
+        def firstFile = temporaryFolder.file("some/first.txt")
+        def secondFile = temporaryFolder.file("other/second.txt")
+        def firstSnapshot = new RegularFileSnapshot(firstFile.absolutePath, firstFile.name, HashCode.fromInt(1), DefaultFileMetadata.file(1, 1, AccessType.DIRECT))
+        def secondSnapshot = new RegularFileSnapshot(secondFile.absolutePath, secondFile.name, HashCode.fromInt(2), DefaultFileMetadata.file(2, 2, AccessType.DIRECT))
+        int updates = 0
+        def countingVfs = new DefaultVirtualFileSystem(fileHasher, new StringInterner(), stat, CASE_SENSITIVE, { updateFunction ->
+            updates++
+            return { root -> updateFunction.update(root, SnapshotHierarchy.NodeDiffListener.NOOP) } as AtomicSnapshotHierarchyReference.UpdateFunction
+        } as SnapshotHierarchy.DiffCapturingUpdateFunctionDecorator)
+
+        when:
+        countingVfs.updateWithKnownSnapshots([firstSnapshot, secondSnapshot])
+        then:
+        updates == 1
+
+        when:
+        allowFileSystemAccess(false)
+        then:
+        countingVfs.read(firstFile.absolutePath, { it }) == firstSnapshot
+        countingVfs.read(secondFile.absolutePath, { it }) == secondSnapshot
+
+        when:
+        countingVfs.update([firstFile.absolutePath, secondFile.absolutePath]) {}
+        then:
+        updates == 2
+        !countingVfs.root.get().getSnapshot(firstFile.absolutePath).present
+        !countingVfs.root.get().getSnapshot(secondFile.absolutePath).present
+    }
+
+    def "publishes the net diff of invalidating several locations in a single update"() {
+        def dir = temporaryFolder.createDir("some/dir")
+        def firstFile = dir.file("first.txt").createFile()
+        def secondFile = dir.file("second.txt").createFile()
+        def thirdFile = dir.file("third.txt").createFile()
+        List<Collection<CompleteFileSystemLocationSnapshot>> removed = []
+        List<Collection<CompleteFileSystemLocationSnapshot>> added = []
+        SnapshotHierarchy.SnapshotDiffListener snapshotDiffListener = { removedSnapshots, addedSnapshots ->
+            removed << removedSnapshots.collect()
+            added << addedSnapshots.collect()
+        }
+        def watchingVfs = new DefaultVirtualFileSystem(fileHasher, new StringInterner(), stat, CASE_SENSITIVE, { updateFunction ->
+            def diffListener = new SnapshotCollectingDiffListener({ true })
+            return { root ->
+                def newRoot = updateFunction.update(root, diffListener)
+                diffListener.publishSnapshotDiff(snapshotDiffListener)
+                return newRoot
+            } as AtomicSnapshotHierarchyReference.UpdateFunction
+        } as SnapshotHierarchy.DiffCapturingUpdateFunctionDecorator)
+
+        when:
+        allowFileSystemAccess(true)
+        def dirSnapshot = watchingVfs.read(dir.absolutePath, { it })
+        removed.clear()
+        added.clear()
+        watchingVfs.update([firstFile.absolutePath, secondFile.absolutePath]) {}
+
+        then:
+        removed*.absolutePath == [[dir.absolutePath]]
+        added*.absolutePath == [[thirdFile.absolutePath]]
+        removed[0][0].is(dirSnapshot)
+    }
 }